@@ -0,0 +1,92 @@
+package com.lhb.github.io.utilbox.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 基准测试数据，使用固定随机种子生成词库和文本，保证每次运行的数据一致
+ * <p>
+ * 词库中的词由{@link #WORD_ALPHABET_START}开始的汉字组成，文本中的填充字符取自另一段不相交的汉字和ASCII字符，
+ * 因此文本中的命中只来自按命中密度插入的词库中的词
+ *
+ * @author lihuibin
+ */
+public final class BenchmarkData {
+    private static final long SEED = 20211217L;
+    private static final char WORD_ALPHABET_START = '一';
+    private static final int WORD_ALPHABET_SIZE = 3000;
+    private static final char FILLER_ALPHABET_START = '怀';
+    private static final int FILLER_ALPHABET_SIZE = 4000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成词库，词长度为2到6个字符
+     *
+     * @param size 词数量
+     * @return 返回词集合
+     */
+    public static List<String> dictionary(int size) {
+        Random random = new Random(SEED);
+        Set<String> words = new HashSet<>(size * 4 / 3 + 1);
+        StringBuilder word = new StringBuilder();
+        while (words.size() < size) {
+            word.setLength(0);
+            int length = 2 + random.nextInt(5);
+            for (int i = 0; i < length; i++) {
+                word.append((char) (WORD_ALPHABET_START + random.nextInt(WORD_ALPHABET_SIZE)));
+            }
+            words.add(word.toString());
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * 生成文本
+     *
+     * @param words      词库
+     * @param length     文本长度
+     * @param hitsPerMil 每1000个字符中插入的敏感词数量
+     * @return 返回文本
+     */
+    public static String text(List<String> words, int length, int hitsPerMil) {
+        Random random = new Random(SEED + length);
+        StringBuilder text = new StringBuilder(length);
+        double hitProbability = hitsPerMil / 1000.0;
+        while (text.length() < length) {
+            if (hitsPerMil > 0 && random.nextDouble() < hitProbability) {
+                text.append(words.get(random.nextInt(words.size())));
+            } else if (random.nextInt(8) == 0) {
+                text.append((char) ('a' + random.nextInt(26)));
+            } else {
+                text.append((char) (FILLER_ALPHABET_START + random.nextInt(FILLER_ALPHABET_SIZE)));
+            }
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    /**
+     * 把词库写入临时目录，供{@link com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler}按配置加载
+     *
+     * @param words 词库
+     * @return 返回临时目录
+     * @throws IOException 写入失败时抛出
+     */
+    public static Path writeDictionary(List<String> words) throws IOException {
+        Path dir = Files.createTempDirectory("nlp-benchmark");
+        Path file = dir.resolve("words.txt");
+        Files.write(file, words, StandardCharsets.UTF_8);
+        file.toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+        return dir;
+    }
+}
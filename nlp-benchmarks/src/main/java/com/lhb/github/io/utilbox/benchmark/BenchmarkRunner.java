@@ -0,0 +1,38 @@
+package com.lhb.github.io.utilbox.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口，在JMH命令行参数的基础上默认开启GC分析，输出每次操作的内存分配，
+ * 并把结果写入JSON文件，便于和之前保存的基线结果对比
+ * <p>
+ * 用法：java -jar nlp-benchmarks/target/benchmarks.jar [JMH参数]，例如只运行AC引擎的替换测试：
+ * java -jar benchmarks.jar MatcherBenchmark.replaceSensitiveWord -p engine=BASELINE,AHO_CORASICK -rff result.json
+ *
+ * @author lihuibin
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        builder.addProfiler(GCProfiler.class);
+        if (!commandLine.getResult().hasValue()) {
+            builder.result("jmh-result.json");
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
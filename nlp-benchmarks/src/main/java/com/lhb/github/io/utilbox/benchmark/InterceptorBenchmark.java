@@ -0,0 +1,190 @@
+package com.lhb.github.io.utilbox.benchmark;
+
+import com.lhb.github.io.utilbox.annotation.Sensitive;
+import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+import com.lhb.github.io.utilbox.interceptor.SensitiveAnnotationInterceptor;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 敏感词注解拦截器基准测试，模拟列表接口返回多个{@link Sensitive}对象
+ *
+ * @author lihuibin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class InterceptorBenchmark {
+
+    @Param({"100000"})
+    private int dictionarySize;
+
+    /**
+     * 接口返回的列表长度
+     */
+    @Param({"1", "100", "1000", "50000"})
+    private int listSize;
+
+    @Param({"0", "20"})
+    private int hitsPerMil;
+
+    @Param({"DFA", "AHO_CORASICK"})
+    private String engine;
+
+    private SensitiveWordHandler handler;
+    private SensitiveAnnotationInterceptor interceptor;
+    private List<String> titles;
+    private List<String> contents;
+    private Method controllerMethod;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<String> words = BenchmarkData.dictionary(dictionarySize);
+        handler = MatcherBenchmark.sensitiveWordHandler(words, NlpProperties.MatchEngine.valueOf(engine));
+        interceptor = new SensitiveAnnotationInterceptor();
+        interceptor.setSensitiveWordHandler(handler);
+        String text = BenchmarkData.text(words, listSize * 300, hitsPerMil);
+        titles = new ArrayList<>(listSize);
+        contents = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            titles.add(text.substring(i * 300, i * 300 + 20));
+            contents.add(text.substring(i * 300 + 20, i * 300 + 300));
+        }
+        controllerMethod = ArticleController.class.getMethod("list");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        handler.destroy();
+    }
+
+    @Benchmark
+    public Object invoke() throws Throwable {
+        List<Article> articles = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            articles.add(new Article(titles.get(i), contents.get(i)));
+        }
+        return interceptor.invoke(new ResultInvocation(controllerMethod, new Result(articles)));
+    }
+
+    @RequestMapping("/articles")
+    public static class ArticleController {
+        @GetMapping("/list")
+        public Result list() {
+            return null;
+        }
+    }
+
+    public static class Result {
+        private final Object data;
+
+        public Result(Object data) {
+            this.data = data;
+        }
+
+        public Object getData() {
+            return data;
+        }
+    }
+
+    @Sensitive
+    public static class Article {
+        private long id;
+        @SensitiveWord
+        private String title;
+        @SensitiveWord(ignoreApis = "/articles/admin/**")
+        private String content;
+
+        public Article(String title, String content) {
+            this.title = title;
+            this.content = content;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+
+    /**
+     * 直接返回接口结果的方法调用
+     */
+    private static class ResultInvocation implements MethodInvocation {
+        private final Method method;
+        private final Result result;
+
+        private ResultInvocation(Method method, Result result) {
+            this.method = method;
+            this.result = result;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return new Object[0];
+        }
+
+        @Override
+        public Object proceed() {
+            return result;
+        }
+
+        @Override
+        public Object getThis() {
+            return null;
+        }
+
+        @Override
+        public AccessibleObject getStaticPart() {
+            return method;
+        }
+    }
+}
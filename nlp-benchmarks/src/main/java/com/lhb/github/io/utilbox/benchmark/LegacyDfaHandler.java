@@ -0,0 +1,211 @@
+package com.lhb.github.io.utilbox.benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于嵌套{@link HashMap}的原始DFA实现，作为基准测试的对照组
+ * <p>
+ * 词库构建、checkWord、contains、getSensitiveWordInText和replaceSensitiveWord照搬优化之前NLPAbstractHandler中的代码，
+ * 不随nlp模块的修改变化，BASELINE的结果始终代表优化之前的性能。
+ * 原始的replaceSensitiveWord每次都对原文调用replaceAll，只保留最后一个词的替换结果，这里同样保留
+ *
+ * @author lihuibin
+ */
+public class LegacyDfaHandler {
+    private static final String IS_END = "isEnd";
+
+    private enum IS_END_TYPE {
+        /**
+         * 检索词结束
+         */
+        ZERO,
+        /**
+         * 检索词未结束
+         */
+        ONE
+    }
+
+    private enum MATCH_TYPE {
+        /**
+         * 最小匹配规则
+         */
+        MINIMUM_MATCH,
+        /**
+         * 最大匹配规则
+         */
+        MAXIMUM_MATCH
+    }
+
+    private final HashMap dfaWordMap = new HashMap();
+
+    public LegacyDfaHandler(List<String> words) {
+        init(dfaWordMap, new HashSet<>(words));
+    }
+
+    public int checkWord(String text, int beginIndex) {
+        return checkWord(dfaWordMap, text, beginIndex, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    public boolean contains(String text) {
+        return contains(dfaWordMap, text, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    public Set<String> getSensitiveWordInText(String text) {
+        return getSensitiveWordInText(dfaWordMap, text, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    public String replaceSensitiveWord(String text) {
+        return replaceSensitiveWord(dfaWordMap, text, '*', MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    /**
+     * 初始化DFA处理模型
+     *
+     * @param dfaWordMap
+     * @param wordSet
+     */
+    private void init(HashMap dfaWordMap, Set<String> wordSet) {
+        HashMap currentMap;
+        Iterator<String> iterator = wordSet.iterator();
+        while (iterator.hasNext()) {
+            currentMap = dfaWordMap;
+            String currentWord = iterator.next();
+            for (int i = 0; i < currentWord.length(); i++) {
+                char keyWord = currentWord.charAt(i);
+                Object nextMap = currentMap.get(keyWord);
+                if (nextMap != null) {
+                    // 将map的指针指向nextMap，以便于下次循环使用
+                    currentMap = (HashMap) nextMap;
+                } else {
+                    HashMap<Object, Object> newWord = new HashMap();
+                    newWord.put(IS_END, IS_END_TYPE.ZERO);
+                    currentMap.put(keyWord, newWord);
+                    // 将map指针指向当前新创建的词节点，下次的新词要在这个新词后面添加
+                    currentMap = newWord;
+                }
+
+                // 如果字符是词的结尾字符，设置结束表示isEnd=1
+                // 这里减1是因为执行完本次循环，i会自增，所以这里需要先减1
+                if (i == currentWord.length() - 1) {
+                    currentMap.put(IS_END, IS_END_TYPE.ONE);
+                }
+            }
+        }
+    }
+
+    /**
+     * 判断文本中是否存在词库中指定的词，存在则返回字符串长度
+     *
+     * @param dfaWordMap 词库
+     * @param text       文本
+     * @param beginIndex 文本开始位置
+     * @param matchType  匹配模式,参考 {@link MATCH_TYPE}
+     * @return 返回敏感词长度
+     */
+    private int checkWord(HashMap dfaWordMap, String text, int beginIndex, Enum matchType) {
+        // 敏感词长度
+        AtomicInteger wordLength = new AtomicInteger(0);
+        Map currentMap = dfaWordMap;
+        boolean flag = false;
+        for (int i = beginIndex; i < text.length(); i++) {
+            char keyWord = text.charAt(i);
+            currentMap = (Map) currentMap.get(keyWord);
+            if (currentMap != null) {
+                wordLength.getAndIncrement();
+                if (IS_END_TYPE.ONE == (currentMap.get(IS_END))) {
+                    flag = true;
+                    if (MATCH_TYPE.MINIMUM_MATCH == matchType) {
+                        break;
+                    }
+                }
+
+            } else {
+                break;
+            }
+        }
+        if (wordLength.get() < 1 || !flag) {
+            wordLength.set(0);
+        }
+        return wordLength.get();
+    }
+
+    /**
+     * 是否包含词库中的敏感词
+     *
+     * @param dfaWordMap 词库
+     * @param text       文本
+     * @param matchType  匹配类型 参考{@link MATCH_TYPE}
+     * @return
+     */
+    private boolean contains(HashMap dfaWordMap, String text, Enum matchType) {
+        for (int i = 0; i < text.length(); i++) {
+            int wordLength = checkWord(dfaWordMap, text, i, matchType);
+            if (wordLength > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取文本中的敏感词
+     *
+     * @param dfaWordMap 词库
+     * @param text       文本
+     * @param matchType  匹配模式
+     * @return 返回敏感词集合
+     */
+    private Set<String> getSensitiveWordInText(HashMap dfaWordMap, String text, Enum matchType) {
+        HashSet<String> sensitiveWordSet = new HashSet();
+        for (int i = 0; i < text.length(); i++) {
+            int wordLength = checkWord(dfaWordMap, text, i, matchType);
+            if (wordLength > 0) {
+                sensitiveWordSet.add(text.substring(i, i + wordLength));
+                i = i + wordLength - 1;
+            }
+        }
+        return sensitiveWordSet;
+    }
+
+    /**
+     * 替换文本中的敏感词
+     *
+     * @param dfaWordMap  词库
+     * @param text        文本
+     * @param replaceChar 代表敏感词的字符，替换后文本将使用这里指定的符号代表敏感词
+     * @param matchType   匹配类型
+     * @return 返回替换后的文本
+     */
+    private String replaceSensitiveWord(HashMap dfaWordMap, String text, char replaceChar, Enum matchType) {
+        Set<String> sensitiveWordSet = getSensitiveWordInText(dfaWordMap, text, matchType);
+        Iterator<String> iterator = sensitiveWordSet.iterator();
+        String resultText = "";
+        while (iterator.hasNext()) {
+            String sensitive = iterator.next();
+            String replaceChars = getReplaceChars(replaceChar, sensitive.length());
+            resultText = text.replaceAll(sensitive, replaceChars);
+        }
+        return resultText;
+    }
+
+    /**
+     * 获取替换的字符
+     *
+     * @param replaceChar 替换字符
+     * @param length      字符长度
+     * @return 返回替换字符
+     */
+    private String getReplaceChars(char replaceChar, int length) {
+        String replaceStr = String.valueOf(replaceChar);
+        for (int i = 0; i < length; i++) {
+            replaceStr += replaceStr;
+        }
+        return replaceStr;
+    }
+}
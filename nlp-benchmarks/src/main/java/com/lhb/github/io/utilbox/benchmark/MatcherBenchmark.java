@@ -0,0 +1,154 @@
+package com.lhb.github.io.utilbox.benchmark;
+
+import com.lhb.github.io.utilbox.handler.matcher.MatchBuffer;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import com.lhb.github.io.utilbox.props.SensitiveWordProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 敏感词匹配基准测试
+ * <p>
+ * engine为BASELINE时测试原始的HashMap DFA实现，与DFA、AHO_CORASICK在同一次运行中对比。
+ * 关闭了长文本的分段并行扫描，只比较单线程的匹配引擎，分段并行扫描见{@link ParallelScanBenchmark}
+ *
+ * @author lihuibin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MatcherBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int dictionarySize;
+
+    /**
+     * 从一条微博长度到1MB的文档
+     */
+    @Param({"140", "4096", "1048576"})
+    private int textLength;
+
+    /**
+     * 每1000个字符中的敏感词数量
+     */
+    @Param({"0", "1", "20"})
+    private int hitsPerMil;
+
+    @Param({"BASELINE", "DFA", "AHO_CORASICK"})
+    private String engine;
+
+    private String text;
+    private LegacyDfaHandler baseline;
+    private SensitiveWordHandler handler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<String> words = BenchmarkData.dictionary(dictionarySize);
+        text = BenchmarkData.text(words, textLength, hitsPerMil);
+        if ("BASELINE".equals(engine)) {
+            baseline = new LegacyDfaHandler(words);
+        } else {
+            handler = sensitiveWordHandler(words, NlpProperties.MatchEngine.valueOf(engine));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (handler != null) {
+            handler.destroy();
+        }
+    }
+
+    /**
+     * 按配置从临时目录加载词库，与应用启动时的加载过程一致，不分段并行扫描
+     */
+    static SensitiveWordHandler sensitiveWordHandler(List<String> words, NlpProperties.MatchEngine engine) throws Exception {
+        return sensitiveWordHandler(words, engine, 0);
+    }
+
+    /**
+     * @param parallelScanThreshold 分段并行扫描的文本长度，小于等于0时不并行
+     */
+    static SensitiveWordHandler sensitiveWordHandler(List<String> words, NlpProperties.MatchEngine engine,
+                                                     int parallelScanThreshold) throws Exception {
+        Path dir = BenchmarkData.writeDictionary(words);
+        NlpProperties nlpProperties = new NlpProperties();
+        nlpProperties.setBaseDir(dir.toUri().toString() + "*.txt");
+        nlpProperties.setMatchEngine(engine);
+        nlpProperties.setParallelScanThreshold(parallelScanThreshold);
+        SensitiveWordHandler handler = new SensitiveWordHandler(new SensitiveWordProperties(), nlpProperties);
+        handler.afterPropertiesSet();
+        handler.onApplicationEvent(null);
+        return handler;
+    }
+
+    /**
+     * 逐个位置检测敏感词，BASELINE直接调用checkWord，其他引擎调用底层匹配引擎
+     */
+    @Benchmark
+    public int checkWord() {
+        if (baseline != null) {
+            int matched = 0;
+            for (int i = 0; i < text.length(); i++) {
+                matched += baseline.checkWord(text, i);
+            }
+            return matched;
+        }
+        int[] matched = new int[1];
+        handler.getDictionary().getMatcher().match(text, false, (start, end) -> matched[0] += end - start);
+        return matched[0];
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return baseline != null ? baseline.contains(text) : handler.contains(text);
+    }
+
+    @Benchmark
+    public Set<String> getSensitiveWordInText() {
+        return baseline != null ? baseline.getSensitiveWordInText(text) : handler.getSensitiveWordInText(text);
+    }
+
+    @Benchmark
+    public String replaceSensitiveWord() {
+        return baseline != null ? baseline.replaceSensitiveWord(text) : handler.replaceSensitiveWord(text);
+    }
+
+    /**
+     * 只取位置和词编号的匹配，结果写入每个线程复用的{@link MatchBuffer}。BASELINE没有对应的接口，使用getSensitiveWordInText
+     */
+    @Benchmark
+    public int match(Matches matches) {
+        if (baseline != null) {
+            return baseline.getSensitiveWordInText(text).size();
+        }
+        matches.buffer.clear();
+        handler.match(text, matches.buffer);
+        return matches.buffer.size();
+    }
+
+    @State(Scope.Thread)
+    public static class Matches {
+        private final MatchBuffer buffer = new MatchBuffer();
+    }
+}
@@ -0,0 +1,98 @@
+package com.lhb.github.io.utilbox.benchmark;
+
+import com.lhb.github.io.utilbox.handler.matcher.MatchBuffer;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长文本分段并行扫描基准测试
+ * <p>
+ * scan为SEQUENTIAL时单线程扫描，PARALLEL时使用默认的{@link NlpProperties#getParallelScanThreshold()}
+ * 和{@link NlpProperties#getParallelScanSegmentSize()}分段并行扫描，结果受机器核数影响，不要和{@link MatcherBenchmark}的结果混在一起比较
+ *
+ * @author lihuibin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParallelScanBenchmark {
+
+    @Param({"100000"})
+    private int dictionarySize;
+
+    /**
+     * 1MB和16MB的文档，都达到默认的分段并行扫描长度
+     */
+    @Param({"1048576", "16777216"})
+    private int textLength;
+
+    /**
+     * 每1000个字符中的敏感词数量
+     */
+    @Param({"0", "20"})
+    private int hitsPerMil;
+
+    @Param({"DFA", "AHO_CORASICK"})
+    private String engine;
+
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    private String scan;
+
+    private String text;
+    private SensitiveWordHandler handler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<String> words = BenchmarkData.dictionary(dictionarySize);
+        text = BenchmarkData.text(words, textLength, hitsPerMil);
+        int parallelScanThreshold = "PARALLEL".equals(scan) ? new NlpProperties().getParallelScanThreshold() : 0;
+        handler = MatcherBenchmark.sensitiveWordHandler(words, NlpProperties.MatchEngine.valueOf(engine), parallelScanThreshold);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        handler.destroy();
+    }
+
+    @Benchmark
+    public Set<String> getSensitiveWordInText() {
+        return handler.getSensitiveWordInText(text);
+    }
+
+    @Benchmark
+    public String replaceSensitiveWord() {
+        return handler.replaceSensitiveWord(text);
+    }
+
+    @Benchmark
+    public int match(Matches matches) {
+        matches.buffer.clear();
+        handler.match(text, matches.buffer);
+        return matches.buffer.size();
+    }
+
+    @State(Scope.Thread)
+    public static class Matches {
+        private final MatchBuffer buffer = new MatchBuffer();
+    }
+}
@@ -4,7 +4,8 @@ import java.lang.annotation.*;
 
 /**
  * 敏感词注解，和{@link Sensitive}注解配合使用
- * ignoreApis属性可以用来添加忽略敏感词处理的接口路径
+ * ignoreApis属性可以用来添加忽略敏感词处理的接口路径，路径包含类上{@code @RequestMapping}的前缀，支持Ant风格通配符
+ * categories属性指定只替换哪些分类的敏感词，为空时替换所有分类；replacement属性指定替换字符，为空时使用全局配置
  *
  * @author lihuibin
  **/
@@ -13,4 +14,8 @@ import java.lang.annotation.*;
 @Target(ElementType.FIELD)
 public @interface SensitiveWord {
     String[] ignoreApis() default {""};
+
+    String[] categories() default {};
+
+    String replacement() default "";
 }
@@ -0,0 +1,131 @@
+package com.lhb.github.io.utilbox.audit;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按天和文件大小滚动的gzip文本文件，文件名为“前缀-日期.序号.log.gz”，例如“sensitive-audit-2020-01-01.0.log.gz”
+ * <p>
+ * {@link #flush()}通过gzip的同步刷新把已写入的内容完整写到文件，进程异常退出时文件缺少gzip结尾，
+ * 但已刷新的内容仍可以用“gzip -dc”读出。只由审计日志的后台线程使用，不是线程安全的
+ *
+ * @author lihuibin
+ */
+final class RollingGzipWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path dir;
+    private final String prefix;
+    private final long maxFileBytes;
+    private Writer writer;
+    private CountingOutputStream counter;
+    private LocalDate date;
+    private Path file;
+
+    /**
+     * @param dir          文件目录，不存在时创建
+     * @param prefix       文件名前缀
+     * @param maxFileBytes 单个文件压缩后的最大字节数，小于等于0时只按天滚动
+     */
+    RollingGzipWriter(Path dir, String prefix, long maxFileBytes) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    /**
+     * 写入一行，日期变化或当前文件超过大小限制时先滚动到新文件
+     *
+     * @param day  行的日期
+     * @param line 包含换行符的一行
+     */
+    void append(LocalDate day, CharSequence line) throws IOException {
+        if (writer == null || !day.equals(date) || (maxFileBytes > 0 && counter.count >= maxFileBytes)) {
+            roll(day);
+        }
+        writer.append(line);
+    }
+
+    void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * @return 当前写入的文件，还没有写入时返回null
+     */
+    Path currentFile() {
+        return file;
+    }
+
+    private void roll(LocalDate day) throws IOException {
+        close();
+        Files.createDirectories(dir);
+        // 重启后不覆盖同一天已有的文件
+        Path next;
+        int index = 0;
+        do {
+            next = dir.resolve(String.format("%s-%s.%d.log.gz", prefix, day, index++));
+        } while (Files.exists(next));
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(next, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), BUFFER_SIZE);
+        CountingOutputStream counting = new CountingOutputStream(out);
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(counting, BUFFER_SIZE, true), StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            counting.close();
+            throw e;
+        }
+        counter = counting;
+        date = day;
+        file = next;
+    }
+
+    /**
+     * 写入gzip结尾并关闭当前文件，之后的{@link #append(LocalDate, CharSequence)}会打开新文件
+     */
+    @Override
+    public void close() throws IOException {
+        Writer current = writer;
+        writer = null;
+        counter = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * 统计写到文件的压缩后字节数
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
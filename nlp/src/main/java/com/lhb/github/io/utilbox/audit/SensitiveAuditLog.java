@@ -0,0 +1,359 @@
+package com.lhb.github.io.utilbox.audit;
+
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.ReplacedText;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 敏感词命中审计日志，记录哪个接口在什么时间替换了哪些敏感词
+ * <p>
+ * 请求线程只把替换时命中的词编号和词库快照放入有界无锁环形缓冲区，不做磁盘IO，也不重复扫描；
+ * 后台线程按批取出，在替换时使用的词库快照中取回被替换的敏感词，写入按天和大小滚动的gzip文件。
+ * 每个被替换的敏感词一行：“时间\t接口\t敏感词”，接口为映射的路径，没有路径时为“类名#方法名”。
+ * 缓冲区满时按{@link NlpProperties#getAuditOverflowPolicy()}丢弃或等待，丢弃的事件数量通过{@link #getDroppedCount()}查看
+ *
+ * @author lihuibin
+ */
+public class SensitiveAuditLog implements AutoCloseable {
+    private static final Logger log = Logger.getLogger("SensitiveAuditLog");
+    private static final String FILE_PREFIX = "sensitive-audit";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+    /**
+     * 缓冲区为空时后台线程的等待时间
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    /**
+     * BLOCK策略下每次等待缓冲区空位的时间
+     */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    /**
+     * DROP_OLDEST策略下腾出空位的最多尝试次数，多个线程争抢同一个空位时不无限重试
+     */
+    private static final int DROP_OLDEST_ATTEMPTS = 16;
+    /**
+     * 丢弃事件的告警日志最短间隔
+     */
+    private static final long DROP_REPORT_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final AuditRingBuffer<Event> buffer;
+    private final NlpProperties.AuditOverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final RollingGzipWriter writer;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    /**
+     * 创建审计日志并启动后台写入线程
+     *
+     * @param nlpProperties 自然语言处理属性
+     */
+    public SensitiveAuditLog(NlpProperties nlpProperties) {
+        this.buffer = new AuditRingBuffer<>(nlpProperties.getAuditBufferSize());
+        this.overflowPolicy = nlpProperties.getAuditOverflowPolicy();
+        this.blockTimeoutNanos = nlpProperties.getAuditBlockTimeout().toNanos();
+        this.batchSize = Math.max(1, nlpProperties.getAuditBatchSize());
+        this.flushIntervalNanos = nlpProperties.getAuditFlushInterval().toNanos();
+        this.writer = new RollingGzipWriter(Paths.get(nlpProperties.getAuditDir()), FILE_PREFIX, nlpProperties.getAuditMaxFileSize());
+        this.writerThread = new Thread(this::drain, "nlp-audit");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 记录一个替换了敏感词的字段，在请求线程上调用，只写入缓冲区
+     *
+     * @param endpoint 接口
+     * @param replaced 字段的替换结果，包括命中的词编号和替换时使用的词库快照
+     * @return 事件被丢弃时返回false
+     */
+    public boolean record(String endpoint, ReplacedText replaced) {
+        return record(endpoint, replaced.getSnapshot(), replaced.getWordIds());
+    }
+
+    boolean record(String endpoint, DictionarySnapshot snapshot, int[] wordIds) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        Event event = new Event(System.currentTimeMillis(), endpoint, snapshot, wordIds);
+        if (buffer.offer(event) || offerOnOverflow(event)) {
+            published.increment();
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private boolean offerOnOverflow(Event event) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                for (int i = 0; i < DROP_OLDEST_ATTEMPTS; i++) {
+                    if (buffer.poll() != null) {
+                        dropped.increment();
+                    }
+                    if (buffer.offer(event)) {
+                        return true;
+                    }
+                }
+                return false;
+            case BLOCK:
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                do {
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    if (buffer.offer(event)) {
+                        return true;
+                    }
+                } while (!closed && System.nanoTime() - deadline < 0);
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 后台线程：按批取出事件写入文件，距上次刷新超过刷新间隔时刷新到文件，关闭时写完缓冲区中剩余的事件
+     */
+    private void drain() {
+        List<Event> batch = new ArrayList<>(Math.min(batchSize, buffer.capacity()));
+        long lastFlush = System.nanoTime();
+        long lastReport = lastFlush - DROP_REPORT_NANOS;
+        long reportedDropped = 0;
+        boolean dirty = false;
+        while (true) {
+            boolean stopping = closed;
+            Event event;
+            while (batch.size() < batchSize && (event = buffer.poll()) != null) {
+                batch.add(event);
+            }
+            boolean idle = batch.isEmpty();
+            if (!idle) {
+                write(batch);
+                batch.clear();
+                dirty = true;
+            }
+            long now = System.nanoTime();
+            if (dirty && (stopping || now - lastFlush >= flushIntervalNanos)) {
+                flush();
+                dirty = false;
+                lastFlush = now;
+                long droppedCount = dropped.sum();
+                if (droppedCount != reportedDropped && (stopping || now - lastReport >= DROP_REPORT_NANOS)) {
+                    log.warning(String.format("审计日志缓冲区已满，累计丢弃%d个事件", droppedCount));
+                    reportedDropped = droppedCount;
+                    lastReport = now;
+                }
+            }
+            if (stopping && buffer.isEmpty()) {
+                break;
+            }
+            if (idle) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "关闭审计日志文件失败", e);
+        }
+    }
+
+    /**
+     * 逐个写入事件，一个事件失败时计入失败数量后继续写入后面的事件，后台线程不会因为单个事件退出
+     */
+    private void write(List<Event> batch) {
+        StringBuilder line = new StringBuilder(128);
+        for (Event event : batch) {
+            try {
+                write(event, line);
+            } catch (IOException e) {
+                failed.increment();
+                log.log(Level.SEVERE, String.format("写入审计日志文件%s失败", writer.currentFile()), e);
+                // 丢弃出错的文件句柄，下一个事件重新打开新文件
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                    // 文件已经损坏，忽略关闭异常
+                }
+            } catch (RuntimeException e) {
+                // 例如词编号不属于该词库快照时匹配引擎抛出的IllegalArgumentException
+                failed.increment();
+                log.log(Level.WARNING, String.format("审计日志无法写入接口%s的事件", event.endpoint), e);
+            }
+        }
+    }
+
+    private void write(Event event, StringBuilder line) throws IOException {
+        Set<String> words = words(event);
+        if (words == null) {
+            failed.increment();
+            log.warning(String.format("审计日志无法在词库版本%d中取回接口%s命中的敏感词",
+                    event.snapshot.getVersion(), event.endpoint));
+            return;
+        }
+        ZonedDateTime time = Instant.ofEpochMilli(event.timestamp).atZone(zone);
+        LocalDate day = time.toLocalDate();
+        String prefix = TIME_FORMAT.format(time);
+        for (String word : words) {
+            line.setLength(0);
+            line.append(prefix).append('\t');
+            appendEscaped(line, event.endpoint).append('\t');
+            appendEscaped(line, word).append('\n');
+            writer.append(day, line);
+        }
+        written.add(words.size());
+    }
+
+    /**
+     * 在替换时使用的词库快照中取回命中的词，同一个词只写一行
+     *
+     * @return 返回命中的词，有词编号无法取回时返回null
+     */
+    private static Set<String> words(Event event) {
+        WordMatcher matcher = event.snapshot.getMatcher();
+        Set<String> words = new LinkedHashSet<>();
+        for (int wordId : event.wordIds) {
+            String word = matcher.getWord(wordId);
+            if (word == null) {
+                return null;
+            }
+            words.add(word);
+        }
+        return words;
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.log(Level.SEVERE, String.format("刷新审计日志文件%s失败", writer.currentFile()), e);
+        }
+    }
+
+    /**
+     * 转义制表符、换行符和反斜杠，保证每个敏感词占一行
+     */
+    private static StringBuilder appendEscaped(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return 成功放入缓冲区的事件数量
+     */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * @return 缓冲区满或关闭后丢弃的事件数量，包括{@link NlpProperties.AuditOverflowPolicy#DROP_OLDEST}策略下被挤出缓冲区的事件
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 写入文件的敏感词行数
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return 取回敏感词或写入文件失败的事件数量
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 缓冲区中等待写入的事件数量
+     */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    /**
+     * @return 缓冲区容量
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 停止接收事件，等待后台线程写完缓冲区中的事件并关闭文件
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warning(String.format("审计日志在%dms内没有写完，剩余%d个事件", CLOSE_TIMEOUT_MILLIS, buffer.size()));
+        }
+    }
+
+    private static final class Event {
+        private final long timestamp;
+        private final String endpoint;
+        private final DictionarySnapshot snapshot;
+        private final int[] wordIds;
+
+        private Event(long timestamp, String endpoint, DictionarySnapshot snapshot, int[] wordIds) {
+            this.timestamp = timestamp;
+            this.endpoint = endpoint;
+            this.snapshot = snapshot;
+            this.wordIds = wordIds;
+        }
+    }
+}
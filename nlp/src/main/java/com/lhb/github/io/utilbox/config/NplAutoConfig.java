@@ -1,11 +1,21 @@
 package com.lhb.github.io.utilbox.config;
 
+import com.lhb.github.io.utilbox.audit.SensitiveAuditLog;
 import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+import com.lhb.github.io.utilbox.handler.source.DictionarySource;
+import com.lhb.github.io.utilbox.interceptor.ReactiveSensitiveSupport;
 import com.lhb.github.io.utilbox.interceptor.SensitiveAnnotationInterceptor;
+import com.lhb.github.io.utilbox.metrics.MicrometerSensitiveWordMetrics;
+import com.lhb.github.io.utilbox.metrics.SensitiveWordMetrics;
 import com.lhb.github.io.utilbox.props.NlpProperties;
 import com.lhb.github.io.utilbox.props.SensitiveWordProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.aop.aspectj.AspectJExpressionPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -20,6 +30,7 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 @ConditionalOnWebApplication
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @EnableConfigurationProperties(value = {NlpProperties.class, SensitiveWordProperties.class})
 public class NplAutoConfig {
     @Autowired
@@ -34,32 +45,100 @@ public class NplAutoConfig {
      */
     @Bean
     @ConditionalOnProperty(name = "nlp.sensitive-word.point-cut")
-    public AspectJExpressionPointcutAdvisor advice() {
+    public AspectJExpressionPointcutAdvisor advice(SensitiveAnnotationInterceptor interceptor) {
         AspectJExpressionPointcutAdvisor advisor = new AspectJExpressionPointcutAdvisor();
         advisor.setExpression(sensitiveWordProperties.getPointCut());
-        advisor.setAdvice(interceptor());
+        advisor.setAdvice(interceptor);
         return advisor;
     }
 
     /**
      * 初始化注解拦截器
      *
+     * @param reactiveSupport 响应式返回值的处理，没有引入Reactor时不处理Mono/Flux
+     * @param auditLog        敏感词命中审计日志，没有开启时不记录
      * @return 返回注解处理类 {@link SensitiveAnnotationInterceptor}
      */
     @Bean
-    public SensitiveAnnotationInterceptor interceptor() {
+    public SensitiveAnnotationInterceptor interceptor(SensitiveWordHandler sensitiveWordHandler,
+                                                      ObjectProvider<ReactiveSensitiveSupport> reactiveSupport,
+                                                      ObjectProvider<SensitiveAuditLog> auditLog) {
         SensitiveAnnotationInterceptor interceptor = new SensitiveAnnotationInterceptor();
-        interceptor.setSensitiveWordHandler(sensitiveWordHandler());
+        interceptor.setSensitiveWordHandler(sensitiveWordHandler);
+        reactiveSupport.ifAvailable(interceptor::setReactiveSupport);
+        auditLog.ifAvailable(interceptor::setAuditLog);
         return interceptor;
     }
 
+    /**
+     * 初始化敏感词命中审计日志，容器关闭时写完缓冲区中的事件
+     *
+     * @param sensitiveWordHandler 敏感词处理类，用于注册审计日志的指标
+     * @return 返回审计日志 {@link SensitiveAuditLog}
+     */
+    @Bean
+    @ConditionalOnProperty(name = "nlp.audit-enabled")
+    public SensitiveAuditLog sensitiveAuditLog(SensitiveWordHandler sensitiveWordHandler) {
+        SensitiveAuditLog auditLog = new SensitiveAuditLog(nlpProperties);
+        sensitiveWordHandler.getMetrics().bindAudit(auditLog);
+        return auditLog;
+    }
+
     /**
      * 初始化敏感词处理类，敏感词处理逻辑在此处理类 {@link SensitiveWordHandler}中实现
      *
+     * @param metrics          指标记录，没有时不记录指标
+     * @param dictionarySource 词库来源，例如{@link com.lhb.github.io.utilbox.handler.source.JdbcDictionarySource}，没有时读取词库文件
      * @return 返回敏感词处理类 {@link SensitiveWordHandler}
      */
     @Bean
-    public SensitiveWordHandler sensitiveWordHandler() {
-        return new SensitiveWordHandler(sensitiveWordProperties, nlpProperties);
+    public SensitiveWordHandler sensitiveWordHandler(ObjectProvider<SensitiveWordMetrics> metrics,
+                                                     ObjectProvider<DictionarySource> dictionarySource) {
+        SensitiveWordHandler handler = new SensitiveWordHandler(sensitiveWordProperties, nlpProperties);
+        metrics.ifAvailable(handler::setMetrics);
+        dictionarySource.ifAvailable(handler::setDictionarySource);
+        return handler;
+    }
+
+    /**
+     * 引入Reactor时处理返回Mono/Flux的接口。WebFlux应用的接口运行在事件循环线程上，
+     * Spring MVC应用的接口同样可以返回Mono/Flux，两种应用都需要
+     */
+    @Configuration
+    @ConditionalOnClass(name = "reactor.core.publisher.Mono")
+    static class ReactiveConfig {
+        /**
+         * 初始化响应式返回值的处理
+         *
+         * @param sensitiveWordHandler 敏感词处理类，元素处理使用它的批量处理线程池
+         * @param nlpProperties        自然语言处理属性
+         * @return 返回响应式返回值的处理 {@link ReactiveSensitiveSupport}
+         */
+        @Bean
+        public ReactiveSensitiveSupport reactiveSensitiveSupport(SensitiveWordHandler sensitiveWordHandler, NlpProperties nlpProperties) {
+            return new ReactiveSensitiveSupport(sensitiveWordHandler.getBatchExecutor(), nlpProperties.isReactiveOffload(),
+                    nlpProperties.getReactiveOffloadThreshold());
+        }
+    }
+
+    /**
+     * 引入Micrometer并且容器中存在MeterRegistry时记录敏感词处理指标
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(name = "nlp.metrics-enabled", matchIfMissing = true)
+    static class MetricsConfig {
+        /**
+         * 初始化基于Micrometer的指标记录
+         *
+         * @param registry      指标注册中心
+         * @param nlpProperties 自然语言处理属性
+         * @return 返回指标记录 {@link MicrometerSensitiveWordMetrics}
+         */
+        @Bean
+        public MicrometerSensitiveWordMetrics sensitiveWordMetrics(MeterRegistry registry, NlpProperties nlpProperties) {
+            return new MicrometerSensitiveWordMetrics(registry, nlpProperties.getMetricsTopWords());
+        }
     }
 }
@@ -0,0 +1,157 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.props.NlpProperties;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * 批量敏感词处理的执行器
+ * 数量小于{@link NlpProperties#getBatchParallelThreshold()}时在调用线程上直接处理，
+ * 否则按{@link NlpProperties#getBatchChunkSize()}切分成若干段，在固定并行度的fork-join线程池中并行处理
+ *
+ * @author lihuibin
+ */
+public class BatchExecutor {
+    private final int threshold;
+    private final int chunkSize;
+    private final int parallelism;
+    private volatile ForkJoinPool pool;
+
+    public BatchExecutor(NlpProperties nlpProperties) {
+        this.threshold = nlpProperties.getBatchParallelThreshold();
+        this.chunkSize = Math.max(1, nlpProperties.getBatchChunkSize());
+        this.parallelism = nlpProperties.getBatchParallelism();
+    }
+
+    /**
+     * 分段处理列表，每段只会交给一个线程处理，各段的处理顺序不确定
+     *
+     * @param items  待处理的列表，处理期间不能修改
+     * @param action 每一段的处理逻辑
+     * @param <T>    元素类型
+     */
+    public <T> void forEachChunk(List<T> items, Consumer<List<T>> action) {
+        if (!isParallel(items.size())) {
+            action.accept(items);
+            return;
+        }
+        pool().invoke(new ChunkAction<>(items, 0, items.size(), action));
+    }
+
+    /**
+     * @param size 元素数量
+     * @return 该数量的批量处理是否并行执行
+     */
+    public boolean isParallel(int size) {
+        return parallelism > 1 && threshold > 0 && size >= threshold;
+    }
+
+    /**
+     * 在执行器的线程池中执行任务，任务内的并行流同样使用该线程池
+     *
+     * @param task 任务
+     * @param <T>  结果类型
+     * @return 任务结果
+     */
+    public <T> T invoke(Callable<T> task) {
+        ForkJoinPool current = pool();
+        try {
+            // 已经在线程池中执行时直接调用，避免等待自身线程池
+            return ForkJoinTask.getPool() == current ? task.call() : current.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 获取执行器的线程池，用于把CPU密集的敏感词处理交给固定并行度的线程，例如响应式流中的元素处理
+     *
+     * @return 返回线程池，第一次调用时创建
+     */
+    public ExecutorService getExecutorService() {
+        return pool();
+    }
+
+    /**
+     * @return 线程池的并行度
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private ForkJoinPool pool() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null) {
+                    current = new ForkJoinPool(parallelism, forkJoinPool -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                        thread.setName("nlp-batch-" + thread.getPoolIndex());
+                        return thread;
+                    }, null, false);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 关闭线程池
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 二分切分列表，直到每段不超过chunkSize
+     */
+    private final class ChunkAction<T> extends RecursiveAction {
+        private final List<T> items;
+        private final int from;
+        private final int to;
+        private final Consumer<List<T>> action;
+
+        private ChunkAction(List<T> items, int from, int to, Consumer<List<T>> action) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                action.accept(items.subList(from, to));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkAction<>(items, from, mid, action), new ChunkAction<>(items, mid, to, action));
+        }
+    }
+}
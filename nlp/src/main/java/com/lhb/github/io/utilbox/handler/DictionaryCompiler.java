@@ -0,0 +1,111 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.AhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.CompactTrie;
+import com.lhb.github.io.utilbox.handler.matcher.WordCategories;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 词库快照编译工具，可以在打包阶段预先把词库文件编译成快照，应用启动时通过内存映射直接加载
+ * <p>
+ * 用法：java -cp nlp.jar com.lhb.github.io.utilbox.handler.DictionaryCompiler 词库目录 快照文件
+ * <p>
+ * 每个词库文件以不含扩展名的文件名作为分类，应用中配置了{@link com.lhb.github.io.utilbox.props.NlpProperties#getCategories()}
+ * 或字符规范化时校验和不一致，启动时会重新构建快照
+ *
+ * @author lihuibin
+ */
+public final class DictionaryCompiler {
+    private static final Logger log = Logger.getLogger("DictionaryCompiler");
+
+    private DictionaryCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            log.severe("用法: DictionaryCompiler <词库目录> <快照文件>");
+            System.exit(1);
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(args[0]), "*.txt")) {
+            stream.forEach(files::add);
+        }
+        files.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+        CRC32 checksum = new CRC32();
+        Set<String> wordSet = new HashSet<>(4096);
+        WordCategories.Builder categories = WordCategories.builder(null);
+        for (Path file : files) {
+            String category = baseName(file.getFileName().toString());
+            byte[] content = Files.readAllBytes(file);
+            updateCategory(checksum, category);
+            updateChecksum(checksum, new ByteArrayInputStream(content));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+            Set<String> fileWords = new HashSet<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fileWords.add(line.trim());
+            }
+            wordSet.addAll(fileWords);
+            categories.add(category, fileWords);
+        }
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(CompactTrie.build(wordSet));
+        matcher.writeSnapshot(Paths.get(args[1]), checksum.getValue(), categories.build(matcher));
+        log.info(String.format("编译完成，%d个词库文件，%d个词，快照文件%s", files.size(), matcher.size(), args[1]));
+    }
+
+    /**
+     * 去掉文件扩展名，作为默认的分类名称
+     *
+     * @param fileName 文件名
+     * @return 返回不含扩展名的文件名
+     */
+    static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * 把词库文件的分类计入校验和，在文件内容之前计入，分类变化后旧快照自动失效
+     *
+     * @param checksum 校验和
+     * @param category 分类名称
+     */
+    static void updateCategory(CRC32 checksum, String category) {
+        checksum.update(category.getBytes(StandardCharsets.UTF_8));
+        checksum.update('\n');
+    }
+
+    /**
+     * 把一个词库文件的内容计入校验和，文件需要按文件名顺序依次计入，
+     * 保证{@link NLPAbstractHandler#resourceChecksum}与编译工具得到相同的结果
+     *
+     * @param checksum 校验和
+     * @param in       词库文件内容，方法内不关闭
+     * @throws IOException 读取失败时抛出
+     */
+    static void updateChecksum(CRC32 checksum, InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            checksum.update(buffer, 0, length);
+        }
+        // 文件之间写入分隔符，避免内容在文件之间移动时校验和不变
+        checksum.update('\n');
+    }
+}
@@ -1,19 +1,41 @@
 package com.lhb.github.io.utilbox.handler;
 
+import com.lhb.github.io.utilbox.handler.matcher.AhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.AllowListMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.CharNormalizer;
+import com.lhb.github.io.utilbox.handler.matcher.CompactTrie;
+import com.lhb.github.io.utilbox.handler.matcher.DfaMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.MappedAhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.MatchBuffer;
+import com.lhb.github.io.utilbox.handler.matcher.MatchVisitor;
+import com.lhb.github.io.utilbox.handler.matcher.PatternMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.WordCategories;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatchVisitor;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
 import com.lhb.github.io.utilbox.props.NlpProperties;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 /**
  * 自然语言处理抽象类
@@ -26,7 +48,21 @@ public abstract class NLPAbstractHandler implements InitializingBean {
 
     private String nplDefaultFile = "";
 
-    private InputStream[] wordTextInputStreams;
+    /**
+     * 词库文件，只在加载时打开，不长期占用文件句柄
+     */
+    private Resource[] wordResources;
+
+    /**
+     * 字符规范化规则，未配置时为null
+     */
+    private volatile CharNormalizer normalizer;
+    private volatile boolean normalizerResolved;
+
+    /**
+     * 词数量超过该值时并行构建词库
+     */
+    private static final int PARALLEL_BUILD_THRESHOLD = 10000;
 
     protected static final String IS_END = "isEnd";
 
@@ -34,6 +70,10 @@ public abstract class NLPAbstractHandler implements InitializingBean {
         this.nlpProperties = nlpProperties;
     }
 
+    public NlpProperties getNlpProperties() {
+        return nlpProperties;
+    }
+
     protected enum IS_END_TYPE {
         /**
          * 检索词结束
@@ -61,22 +101,233 @@ public abstract class NLPAbstractHandler implements InitializingBean {
 
     @Override
     public void afterPropertiesSet() throws Exception {
-        Resource[] resources;
-        if (nlpProperties.getBaseDir().startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)) {
-            nplDefaultFile = nlpProperties.getBaseDir().substring(ResourceUtils.CLASSPATH_URL_PREFIX.length());
-            resources = new PathMatchingResourcePatternResolver().getResources(ResourceUtils.CLASSPATH_URL_PREFIX + nplDefaultFile + "/*.txt");
-        } else {
-            resources = new PathMatchingResourcePatternResolver().getResources(nlpProperties.getBaseDir());
-        }
+        Resource[] resources = resolveResources();
         if (resources.length <= 0) {
             log.warning("词库文件为空，自然语言功能将不起作用");
             return;
         }
-        wordTextInputStreams = new InputStream[resources.length];
-        for (int i = 0; i < resources.length; i++) {
-            log.info(String.format("读取词库文件:%s", URLDecoder.decode(resources[i].getURL().getFile(), "utf-8")));
-            wordTextInputStreams[i] = resources[i].getInputStream();
+        wordResources = resources;
+        for (Resource resource : resources) {
+            log.info(String.format("发现词库文件:%s", URLDecoder.decode(resource.getURL().getFile(), "utf-8")));
+        }
+    }
+
+    /**
+     * @return 启动时找到的词库文件，没有词库文件时返回空数组
+     */
+    protected Resource[] getWordResources() {
+        return wordResources == null ? new Resource[0] : wordResources;
+    }
+
+    /**
+     * 查找{@link NlpProperties#getBaseDir()}下的词库文件
+     *
+     * @return 返回词库文件
+     * @throws IOException 查找失败时抛出
+     */
+    protected Resource[] resolveResources() throws IOException {
+        if (nlpProperties.getBaseDir().startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)) {
+            nplDefaultFile = nlpProperties.getBaseDir().substring(ResourceUtils.CLASSPATH_URL_PREFIX.length());
+            return new PathMatchingResourcePatternResolver().getResources(ResourceUtils.CLASSPATH_URL_PREFIX + nplDefaultFile + "/*.txt");
+        }
+        return new PathMatchingResourcePatternResolver().getResources(nlpProperties.getBaseDir());
+    }
+
+    /**
+     * 查找{@link NlpProperties#getAllowDir()}下的白名单词库文件
+     *
+     * @return 返回白名单词库文件，未配置白名单时返回空数组
+     * @throws IOException 查找失败时抛出
+     */
+    protected Resource[] resolveAllowResources() throws IOException {
+        String allowDir = nlpProperties.getAllowDir();
+        if (!StringUtils.hasText(allowDir)) {
+            return new Resource[0];
+        }
+        if (allowDir.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)) {
+            return new PathMatchingResourcePatternResolver().getResources(allowDir + "/*.txt");
+        }
+        return new PathMatchingResourcePatternResolver().getResources(allowDir);
+    }
+
+    /**
+     * 计算词库文件的指纹，文件增删、修改时间或大小变化都会导致指纹变化
+     *
+     * @param resources 词库文件
+     * @return 返回指纹
+     */
+    protected long resourceFingerprint(Resource[] resources) {
+        long fingerprint = resources.length;
+        for (Resource resource : resources) {
+            long lastModified;
+            long contentLength;
+            try {
+                lastModified = resource.lastModified();
+                contentLength = resource.contentLength();
+            } catch (IOException e) {
+                lastModified = -1;
+                contentLength = -1;
+            }
+            fingerprint = 31 * fingerprint + resource.getDescription().hashCode();
+            fingerprint = 31 * fingerprint + lastModified;
+            fingerprint = 31 * fingerprint + contentLength;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 计算词库文件内容的校验和，用于判断词库快照是否过期，计算方式与{@link DictionaryCompiler}一致。
+     * 配置了字符规范化时混入规则的指纹，规则变化后旧快照自动失效
+     *
+     * @param resources 词库文件
+     * @return 返回校验和
+     * @throws IOException 读取文件失败时抛出
+     */
+    protected long resourceChecksum(Resource[] resources) throws IOException {
+        Resource[] sorted = resources.clone();
+        Arrays.sort(sorted, Comparator.comparing(Resource::getFilename));
+        CRC32 checksum = new CRC32();
+        for (Resource resource : sorted) {
+            DictionaryCompiler.updateCategory(checksum, categoryOf(resource));
+            try (InputStream in = resource.getInputStream()) {
+                DictionaryCompiler.updateChecksum(checksum, in);
+            }
+        }
+        CharNormalizer normalizer = getNormalizer();
+        return normalizer == null ? checksum.getValue() : checksum.getValue() ^ normalizer.fingerprint();
+    }
+
+    /**
+     * 按{@link NlpProperties}中的规范化配置创建字符规范化规则，第一次使用时创建
+     *
+     * @return 返回规范化规则，没有配置任何规范化时返回null
+     */
+    protected CharNormalizer getNormalizer() {
+        if (!normalizerResolved) {
+            synchronized (this) {
+                if (!normalizerResolved) {
+                    normalizer = createNormalizer();
+                    normalizerResolved = true;
+                }
+            }
+        }
+        return normalizer;
+    }
+
+    private CharNormalizer createNormalizer() {
+        Map<Character, Character> mapping = null;
+        if (StringUtils.hasText(nlpProperties.getCharMappingFile())) {
+            Resource resource = new PathMatchingResourcePatternResolver().getResource(nlpProperties.getCharMappingFile());
+            try (InputStream in = resource.getInputStream()) {
+                mapping = loadCharMapping(in);
+            } catch (IOException e) {
+                throw new IllegalStateException(String.format("字符映射文件%s读取失败", nlpProperties.getCharMappingFile()), e);
+            }
+            log.info(String.format("字符映射文件加载完成,一共%d个字符", mapping.size()));
+        }
+        boolean hasNoise = StringUtils.hasLength(nlpProperties.getNoiseChars());
+        if (!nlpProperties.isNormalizeWidth() && !nlpProperties.isNormalizeCase() && mapping == null && !hasNoise) {
+            return null;
+        }
+        return CharNormalizer.of(nlpProperties.isNormalizeWidth(), nlpProperties.isNormalizeCase(), mapping,
+                nlpProperties.getNoiseChars(), nlpProperties.getMaxNoiseChars());
+    }
+
+    /**
+     * 读取字符映射文件，每行是若干个原字符和目标字符组成的字符对，例如“國国”，字符对之间可以有空白，#开头的行为注释
+     */
+    private Map<Character, Character> loadCharMapping(InputStream in) throws IOException {
+        Map<Character, Character> mapping = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "utf-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            String pairs = StringUtils.trimAllWhitespace(line);
+            for (int i = 0; i + 1 < pairs.length(); i += 2) {
+                mapping.put(pairs.charAt(i), pairs.charAt(i + 1));
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * 词库文件的分类，先查找{@link NlpProperties#getCategories()}中的配置，没有配置时使用不含扩展名的文件名
+     *
+     * @param resource 词库文件
+     * @return 返回分类名称
+     */
+    protected String categoryOf(Resource resource) {
+        return categoryOf(DictionaryCompiler.baseName(String.valueOf(resource.getFilename())));
+    }
+
+    /**
+     * 按{@link NlpProperties#getCategories()}映射分类名称，没有配置时使用原名称
+     *
+     * @param name 不含扩展名的文件名或词库来源中的分类
+     * @return 返回分类名称
+     */
+    protected String categoryOf(String name) {
+        Map<String, String> categories = nlpProperties.getCategories();
+        String category = categories == null ? null : categories.get(name);
+        return StringUtils.hasText(category) ? category : name;
+    }
+
+    /**
+     * 创建词分类构建器，加载词库文件时按文件添加分类，构建匹配引擎后生成分类位图
+     *
+     * @return 返回构建器
+     */
+    protected WordCategories.Builder categoriesBuilder() {
+        return WordCategories.builder(getNormalizer());
+    }
+
+    /**
+     * 按字符规范化规则处理词，未配置规范化时原样返回
+     *
+     * @param word 词
+     * @return 返回规范化后的词，可能为空字符串
+     */
+    protected String normalizeWord(String word) {
+        CharNormalizer current = getNormalizer();
+        return current == null ? word : current.normalize(word);
+    }
+
+    /**
+     * 按字符规范化规则处理词集合，去掉规范化后为空的词。
+     * 开启{@link NlpProperties#isPatternSyntax()}时模式和含有转义字符的行保持原样，在{@link #init(Set)}中处理
+     *
+     * @param wordSet 词集合
+     * @return 返回规范化后的词集合，未配置规范化时返回wordSet本身
+     */
+    protected Set<String> normalizeWords(Set<String> wordSet) {
+        CharNormalizer current = getNormalizer();
+        if (current == null) {
+            return wordSet;
+        }
+        Set<String> normalized = new HashSet<>(wordSet.size() * 4 / 3 + 1);
+        for (String word : wordSet) {
+            String value = normalizeEntry(word);
+            if (!value.isEmpty()) {
+                normalized.add(value);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * 按{@link #normalizeWords(Set)}的规则处理词库中的一行，用于逐页读取的词库来源
+     *
+     * @param word 词
+     * @return 返回规范化后的词，可能为空字符串
+     */
+    protected String normalizeEntry(String word) {
+        CharNormalizer current = getNormalizer();
+        if (current == null || nlpProperties.isPatternSyntax() && PatternMatcher.isSyntax(word)) {
+            return word;
         }
+        return current.normalize(word);
     }
 
     /**
@@ -117,6 +368,170 @@ public abstract class NLPAbstractHandler implements InitializingBean {
         log.info(String.format("词库初始化完成,一共%d个词,用时%d ms", wordSet.size(), (System.currentTimeMillis() - start)));
     }
 
+    /**
+     * 按{@link NlpProperties#getMatchEngine()}配置的匹配引擎初始化词库，词库使用{@link CompactTrie}保存
+     *
+     * @param words {@link #normalizeWords(Set)}处理之后的词集合
+     * @return 返回匹配引擎
+     */
+    protected WordMatcher init(Set<String> words) {
+        return init(words, Collections.<String>emptySet());
+    }
+
+    /**
+     * 与{@link #init(Set)}相同，白名单短语与词一起构建在同一个匹配引擎中
+     *
+     * @param words        {@link #normalizeWords(Set)}处理之后的词集合，这里不再重复规范化
+     * @param allowPhrases 规范化之后的白名单短语，见{@link #loadAllowPhrases(Resource[])}
+     * @return 返回匹配引擎
+     */
+    protected WordMatcher init(Set<String> words, Set<String> allowPhrases) {
+        log.info("开始初始化词库");
+        long start = System.currentTimeMillis();
+        CharNormalizer normalizer = getNormalizer();
+        PatternMatcher.Builder patterns = PatternMatcher.builder(normalizer);
+        Set<String> literals = nlpProperties.isPatternSyntax() ? splitPatterns(words, patterns) : words;
+        Set<String> wordSet;
+        if (allowPhrases.isEmpty()) {
+            wordSet = literals;
+        } else {
+            wordSet = new HashSet<>(literals);
+            wordSet.addAll(allowPhrases);
+        }
+        boolean parallel = wordSet.size() >= PARALLEL_BUILD_THRESHOLD && nlpProperties.getLoadParallelism() > 1;
+        CompactTrie trie = parallel ? inLoadPool(() -> CompactTrie.build(wordSet, true)) : CompactTrie.build(wordSet);
+        WordMatcher matcher;
+        if (NlpProperties.MatchEngine.AHO_CORASICK == nlpProperties.getMatchEngine()) {
+            matcher = parallel ? inLoadPool(() -> new AhoCorasickMatcher(trie, true, normalizer)) : new AhoCorasickMatcher(trie, false, normalizer);
+        } else {
+            matcher = new DfaMatcher(trie, normalizer);
+        }
+        matcher = allowList(patterns.build(matcher), allowPhrases);
+        log.info(String.format("词库初始化完成,匹配引擎%s,一共%d个词,%d个节点,占用内存约%dKB,用时%d ms", nlpProperties.getMatchEngine(),
+                matcher.size(), trie.nodeCount(), matcher.heapBytes() / 1024, (System.currentTimeMillis() - start)));
+        return matcher;
+    }
+
+    /**
+     * 按白名单短语的词编号包装匹配引擎
+     *
+     * @param matcher      包含白名单短语的匹配引擎
+     * @param allowPhrases 规范化之后的白名单短语
+     * @return 返回匹配引擎，没有白名单短语时返回matcher
+     */
+    protected WordMatcher allowList(WordMatcher matcher, Set<String> allowPhrases) {
+        if (allowPhrases.isEmpty()) {
+            return matcher;
+        }
+        BitSet allowed = new BitSet(matcher.getWordIdLimit());
+        for (String phrase : allowPhrases) {
+            int wordId = matcher.getWordId(phrase);
+            if (wordId >= 0) {
+                allowed.set(wordId);
+            }
+        }
+        log.info(String.format("白名单一共%d个短语", allowed.cardinality()));
+        return allowed.isEmpty() ? matcher : new AllowListMatcher(matcher, allowed);
+    }
+
+    /**
+     * 从词集合中取出模式交给模式构建器编译，含有转义字符的普通词去掉转义字符后规范化，语法错误的模式记录警告后忽略
+     *
+     * @param wordSet  {@link #normalizeWords(Set)}处理之后的词集合
+     * @param patterns 模式构建器
+     * @return 返回普通词集合
+     */
+    private Set<String> splitPatterns(Set<String> wordSet, PatternMatcher.Builder patterns) {
+        Set<String> literals = new HashSet<>(wordSet.size() * 4 / 3 + 1);
+        for (String word : wordSet) {
+            if (!PatternMatcher.isSyntax(word)) {
+                literals.add(word);
+            } else if (PatternMatcher.isPattern(word)) {
+                try {
+                    patterns.add(word);
+                } catch (IllegalArgumentException e) {
+                    log.warning(e.getMessage());
+                }
+            } else {
+                String literal = normalizeWord(PatternMatcher.unescape(word));
+                if (!literal.isEmpty()) {
+                    literals.add(literal);
+                    patterns.addEscaped(word, literal);
+                }
+            }
+        }
+        return literals;
+    }
+
+    /**
+     * 加载{@link NlpProperties#getSnapshotFile()}配置的预编译词库快照，快照通过内存映射读取，不需要重新构建词库
+     *
+     * @param sourceChecksum 当前词库文件内容的校验和，与快照中记录的不一致时认为快照已过期
+     * @return 返回匹配引擎，未配置快照、快照不存在或已过期时返回null
+     */
+    protected WordMatcher loadSnapshot(long sourceChecksum) {
+        if (!StringUtils.hasText(nlpProperties.getSnapshotFile())) {
+            return null;
+        }
+        if (NlpProperties.MatchEngine.AHO_CORASICK != nlpProperties.getMatchEngine()) {
+            log.warning("词库快照只支持AHO_CORASICK匹配引擎，将忽略snapshotFile配置");
+            return null;
+        }
+        if (nlpProperties.isPatternSyntax()) {
+            log.warning("词库快照不支持通配模式，开启patternSyntax时将忽略snapshotFile配置");
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            MappedAhoCorasickMatcher matcher = MappedAhoCorasickMatcher.open(Paths.get(nlpProperties.getSnapshotFile()), sourceChecksum, getNormalizer());
+            if (matcher == null) {
+                log.info(String.format("词库快照%s不存在或已过期，将从词库文件构建", nlpProperties.getSnapshotFile()));
+                return null;
+            }
+            log.info(String.format("词库快照加载完成,一共%d个词,快照大小%dKB,用时%d ms", matcher.size(), matcher.getFileBytes() / 1024,
+                    (System.currentTimeMillis() - start)));
+            return matcher;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "词库快照加载失败，将从词库文件构建", e);
+            return null;
+        }
+    }
+
+    /**
+     * 将构建好的词库写入{@link NlpProperties#getSnapshotFile()}，下次启动时直接加载
+     *
+     * @param matcher        匹配引擎
+     * @param sourceChecksum 构建词库所用词库文件内容的校验和
+     */
+    protected void writeSnapshot(WordMatcher matcher, long sourceChecksum) {
+        writeSnapshot(matcher, WordCategories.NONE, sourceChecksum);
+    }
+
+    /**
+     * 将构建好的词库及词的分类写入{@link NlpProperties#getSnapshotFile()}，下次启动时直接加载
+     *
+     * @param matcher        匹配引擎
+     * @param categories     按匹配引擎的词编号保存的词分类
+     * @param sourceChecksum 构建词库所用词库文件内容的校验和
+     */
+    protected void writeSnapshot(WordMatcher matcher, WordCategories categories, long sourceChecksum) {
+        // 快照保存包含白名单短语的匹配引擎，加载后重新按白名单短语包装
+        if (matcher instanceof AllowListMatcher) {
+            matcher = ((AllowListMatcher) matcher).getBase();
+        }
+        // 开启patternSyntax时加载快照会被忽略，没有模式的词库也不写入
+        if (!StringUtils.hasText(nlpProperties.getSnapshotFile()) || nlpProperties.isPatternSyntax()
+                || !(matcher instanceof AhoCorasickMatcher)) {
+            return;
+        }
+        try {
+            ((AhoCorasickMatcher) matcher).writeSnapshot(Paths.get(nlpProperties.getSnapshotFile()), sourceChecksum, categories);
+            log.info(String.format("词库快照已写入%s", nlpProperties.getSnapshotFile()));
+        } catch (IOException e) {
+            log.log(Level.WARNING, "词库快照写入失败", e);
+        }
+    }
+
     /**
      * 判断文本中是否存在词库中指定的词，存在则返回字符串长度
      *
@@ -127,17 +542,18 @@ public abstract class NLPAbstractHandler implements InitializingBean {
      * @return 返回敏感词长度
      */
     protected int checkWord(HashMap dfaWordMap, String text, int beginIndex, Enum matchType) {
-        // 敏感词长度
-        AtomicInteger wordLength = new AtomicInteger(0);
+        // 已走过的字符数
+        int wordLength = 0;
+        // 最后一个完整词的长度，最大匹配时已走过的字符可能只是更长词的前缀
+        int matchLength = 0;
         Map currentMap = dfaWordMap;
-        boolean flag = false;
         for (int i = beginIndex; i < text.length(); i++) {
             char keyWord = text.charAt(i);
             currentMap = (Map) currentMap.get(keyWord);
             if (currentMap != null) {
-                wordLength.getAndIncrement();
+                wordLength++;
                 if (IS_END_TYPE.ONE == (currentMap.get(IS_END))) {
-                    flag = true;
+                    matchLength = wordLength;
                     if (MATCH_TYPE.MINIMUM_MATCH == matchType) {
                         break;
                     }
@@ -147,10 +563,7 @@ public abstract class NLPAbstractHandler implements InitializingBean {
                 break;
             }
         }
-        if (wordLength.get() < 1 || !flag) {
-            wordLength.set(0);
-        }
-        return wordLength.get();
+        return matchLength;
     }
 
     /**
@@ -201,15 +614,166 @@ public abstract class NLPAbstractHandler implements InitializingBean {
      * @return 返回替换后的文本
      */
     protected String replaceSensitiveWord(HashMap dfaWordMap, String text, char replaceChar, Enum matchType) {
-        Set<String> sensitiveWordSet = getSensitiveWordInText(dfaWordMap, text, matchType);
-        Iterator<String> iterator = sensitiveWordSet.iterator();
-        String resultText = "";
-        while (iterator.hasNext()) {
-            String sensitive = iterator.next();
-            String replaceChars = getReplaceChars(replaceChar, sensitive.length());
-            resultText = text.replaceAll(sensitive, replaceChars);
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            int wordLength = checkWord(dfaWordMap, text, i, matchType);
+            if (wordLength > 0) {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                Arrays.fill(chars, i, i + wordLength, replaceChar);
+                i = i + wordLength - 1;
+            }
+        }
+        return chars == null ? text : new String(chars);
+    }
+
+    /**
+     * 是否包含词库中的敏感词
+     *
+     * @param matcher   匹配引擎
+     * @param text      文本
+     * @param matchType 匹配类型 参考{@link MATCH_TYPE}
+     * @return 包含返回true，否则返回false
+     */
+    protected boolean contains(WordMatcher matcher, String text, Enum matchType) {
+        return contains(matcher, text, matchType, null);
+    }
+
+    /**
+     * 是否包含词库中满足过滤条件的敏感词
+     *
+     * @param matcher    匹配引擎
+     * @param text       文本
+     * @param matchType  匹配类型 参考{@link MATCH_TYPE}
+     * @param wordFilter 按词编号过滤，为null时不过滤
+     * @return 包含返回true，否则返回false
+     */
+    protected boolean contains(WordMatcher matcher, String text, Enum matchType, IntPredicate wordFilter) {
+        return matcher.contains(text, MATCH_TYPE.MAXIMUM_MATCH == matchType, wordFilter);
+    }
+
+    /**
+     * 按顺序回调文本中互不重叠的匹配位置和词编号，不截取子串
+     *
+     * @param matcher   匹配引擎
+     * @param text      文本
+     * @param matchType 匹配类型 参考{@link MATCH_TYPE}
+     * @param visitor   匹配结果回调
+     */
+    protected void match(WordMatcher matcher, CharSequence text, Enum matchType, WordMatchVisitor visitor) {
+        match(matcher, text, matchType, null, visitor);
+    }
+
+    /**
+     * 按顺序回调文本中满足过滤条件的匹配位置和词编号
+     *
+     * @param matcher    匹配引擎
+     * @param text       文本
+     * @param matchType  匹配类型 参考{@link MATCH_TYPE}
+     * @param wordFilter 按词编号过滤，为null时不过滤
+     * @param visitor    匹配结果回调
+     */
+    protected void match(WordMatcher matcher, CharSequence text, Enum matchType, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        matcher.match(text, MATCH_TYPE.MAXIMUM_MATCH == matchType, wordFilter, visitor);
+    }
+
+    /**
+     * 获取文本中的敏感词
+     *
+     * @param matcher   匹配引擎
+     * @param text      文本
+     * @param matchType 匹配模式
+     * @return 返回敏感词集合
+     */
+    protected Set<String> getSensitiveWordInText(WordMatcher matcher, String text, Enum matchType) {
+        return getSensitiveWordInText(matcher, text, matchType, null);
+    }
+
+    /**
+     * 获取文本中满足过滤条件的敏感词
+     *
+     * @param matcher    匹配引擎
+     * @param text       文本
+     * @param matchType  匹配模式
+     * @param wordFilter 按词编号过滤，为null时不过滤
+     * @return 返回敏感词集合
+     */
+    protected Set<String> getSensitiveWordInText(WordMatcher matcher, String text, Enum matchType, IntPredicate wordFilter) {
+        HashSet<String> sensitiveWordSet = new HashSet();
+        matcher.match(text, MATCH_TYPE.MAXIMUM_MATCH == matchType, wordFilter,
+                (start, end, wordId) -> sensitiveWordSet.add(text.substring(start, end)));
+        return sensitiveWordSet;
+    }
+
+    /**
+     * 替换文本中的敏感词
+     *
+     * @param matcher     匹配引擎
+     * @param text        文本
+     * @param replaceChar 代表敏感词的字符，替换后文本将使用这里指定的符号代表敏感词
+     * @param matchType   匹配类型
+     * @return 返回替换后的文本
+     */
+    protected String replaceSensitiveWord(WordMatcher matcher, String text, char replaceChar, Enum matchType) {
+        return replaceSensitiveWord(matcher, text, replaceChar, matchType, (IntPredicate) null);
+    }
+
+    /**
+     * 替换文本中满足过滤条件的敏感词
+     *
+     * @param matcher     匹配引擎
+     * @param text        文本
+     * @param replaceChar 代表敏感词的字符
+     * @param matchType   匹配类型
+     * @param wordFilter  按词编号过滤，为null时不过滤
+     * @return 返回替换后的文本
+     */
+    protected String replaceSensitiveWord(WordMatcher matcher, String text, char replaceChar, Enum matchType, IntPredicate wordFilter) {
+        CharArrayMasker masker = new CharArrayMasker(text, replaceChar);
+        matcher.match(text, MATCH_TYPE.MAXIMUM_MATCH == matchType, wordFilter, masker);
+        return masker.getResult();
+    }
+
+    /**
+     * 替换文本中满足过滤条件的敏感词，同时把命中的位置和词编号写入hits
+     *
+     * @param matcher     匹配引擎
+     * @param text        文本
+     * @param replaceChar 代表敏感词的字符
+     * @param matchType   匹配类型
+     * @param wordFilter  按词编号过滤，为null时不过滤
+     * @param hits        命中的敏感词输出
+     * @return 返回替换后的文本
+     */
+    protected String replaceSensitiveWord(WordMatcher matcher, String text, char replaceChar, Enum matchType, IntPredicate wordFilter,
+                                          MatchBuffer hits) {
+        CharArrayMasker masker = new CharArrayMasker(text, replaceChar);
+        matcher.match(text, MATCH_TYPE.MAXIMUM_MATCH == matchType, wordFilter, (start, end, wordId) -> {
+            hits.visit(start, end, wordId);
+            masker.visit(start, end);
+        });
+        return masker.getResult();
+    }
+
+    /**
+     * 替换文本中的敏感词，替换结果直接写入out，不生成中间字符串
+     *
+     * @param matcher     匹配引擎
+     * @param text        文本
+     * @param replaceChar 代表敏感词的字符
+     * @param matchType   匹配类型
+     * @param out         替换结果输出
+     * @throws IOException 写入out失败时抛出
+     */
+    protected void replaceSensitiveWord(WordMatcher matcher, CharSequence text, char replaceChar, Enum matchType, Appendable out) throws IOException {
+        AppendableMasker masker = new AppendableMasker(text, replaceChar, out);
+        try {
+            matcher.match(text, MATCH_TYPE.MAXIMUM_MATCH == matchType, masker);
+            masker.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return resultText;
     }
 
     /**
@@ -220,11 +784,9 @@ public abstract class NLPAbstractHandler implements InitializingBean {
      * @return 返回替换字符
      */
     protected String getReplaceChars(char replaceChar, int length) {
-        String replaceStr = String.valueOf(replaceChar);
-        for (int i = 0; i < length; i++) {
-            replaceStr += replaceStr;
-        }
-        return replaceStr;
+        char[] replaceChars = new char[length];
+        Arrays.fill(replaceChars, replaceChar);
+        return new String(replaceChars);
     }
 
     /**
@@ -233,47 +795,201 @@ public abstract class NLPAbstractHandler implements InitializingBean {
      * @return
      */
     protected Set<String> loadSensitiveWordResources() {
-        if (this.wordTextInputStreams == null) {
+        return loadSensitiveWordResources((WordCategories.Builder) null);
+    }
+
+    /**
+     * 加载敏感词本地文件，同时按文件记录词的分类
+     *
+     * @param categories 词分类构建器，为null时不记录分类
+     * @return 返回词集合
+     */
+    protected Set<String> loadSensitiveWordResources(WordCategories.Builder categories) {
+        if (this.wordResources == null) {
             log.warning(String.format("在%s下没有找到相应的txt词库文件，敏感词检测将不能使用!!", nlpProperties.getBaseDir()));
             return new HashSet();
         }
         log.info("开始加载本地词库");
         long start = System.currentTimeMillis();
-        HashSet<String> wordSet = new HashSet(4096);
-        for (InputStream fileInputStream : wordTextInputStreams) {
-            wordSet.addAll(loadFile(fileInputStream));
-        }
+        Set<String> wordSet = loadFiles(wordResources, categories);
         log.info(String.format("本地词库加载完成，共有%d个词，耗时%dms", wordSet.size(), (System.currentTimeMillis() - start)));
         return wordSet;
     }
 
+    /**
+     * 重新打开并加载词库文件，用于词库热更新
+     *
+     * @param resources 词库文件
+     * @return 返回词集合
+     * @throws IOException 打开文件失败时抛出
+     */
+    protected Set<String> loadSensitiveWordResources(Resource[] resources) throws IOException {
+        return loadSensitiveWordResources(resources, null);
+    }
+
+    /**
+     * 重新打开并加载词库文件，同时按文件记录词的分类
+     *
+     * @param resources  词库文件
+     * @param categories 词分类构建器，为null时不记录分类
+     * @return 返回词集合
+     * @throws IOException 打开文件失败时抛出
+     */
+    protected Set<String> loadSensitiveWordResources(Resource[] resources, WordCategories.Builder categories) throws IOException {
+        long start = System.currentTimeMillis();
+        Set<String> wordSet;
+        try {
+            wordSet = loadFiles(resources, categories);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info(String.format("重新加载本地词库完成，共有%d个词，耗时%dms", wordSet.size(), (System.currentTimeMillis() - start)));
+        return wordSet;
+    }
+
+    /**
+     * 加载白名单词库文件，白名单短语按词库的字符规范化规则处理，不支持通配模式
+     *
+     * @param resources 白名单词库文件
+     * @return 返回规范化之后的白名单短语
+     * @throws IOException 打开文件失败时抛出
+     */
+    protected Set<String> loadAllowPhrases(Resource[] resources) throws IOException {
+        if (resources.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> lines;
+        try {
+            lines = loadFiles(resources, null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Set<String> phrases = new HashSet<>(lines.size() * 4 / 3 + 1);
+        for (String line : lines) {
+            String phrase = normalizeWord(line);
+            if (!phrase.isEmpty()) {
+                phrases.add(phrase);
+            }
+        }
+        return phrases;
+    }
+
+    /**
+     * 在加载线程池中并行读取词库文件，每个文件在读取时才打开，读取完成后按文件顺序记录分类
+     */
+    private Set<String> loadFiles(Resource[] resources, WordCategories.Builder categories) {
+        List<Set<String>> fileWords = inLoadPool(() -> Arrays.stream(resources).parallel().map(resource -> {
+            try {
+                return loadFile(resource.getInputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).collect(Collectors.toList()));
+        HashSet<String> wordSet = new HashSet(Math.max(4096, fileWords.stream().mapToInt(Set::size).sum() * 4 / 3));
+        for (int i = 0; i < resources.length; i++) {
+            wordSet.addAll(fileWords.get(i));
+            if (categories != null) {
+                categories.add(categoryOf(resources[i]), fileWords.get(i));
+            }
+        }
+        return wordSet;
+    }
+
+    /**
+     * 在{@link NlpProperties#getLoadParallelism()}大小的fork-join线程池中执行词库加载任务，
+     * 任务中的并行流和并行排序都会使用该线程池
+     */
+    private <T> T inLoadPool(Callable<T> task) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, nlpProperties.getLoadParallelism()));
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("词库加载被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("词库加载失败", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     /**
      * 加载文件
      *
-     * @param fileInputStream 文件读入流
-     * @return
+     * @param fileInputStream 文件读入流，读取完成后关闭
+     * @return 返回文件中的词
+     * @throws IOException 读取失败时抛出，不返回只读取了一部分的词
      */
-    protected Set<String> loadFile(InputStream fileInputStream) {
+    protected Set<String> loadFile(InputStream fileInputStream) throws IOException {
         HashSet<String> words = new HashSet(256);
-        BufferedReader reader = null;
-        try {
-            String line = null;
-            InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream, "UTF-8");
-            reader = new BufferedReader(inputStreamReader, 2048);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fileInputStream, StandardCharsets.UTF_8), 2048)) {
+            String line;
             while ((line = reader.readLine()) != null) {
                 words.add(line.trim());
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
+        }
+        return words;
+    }
+
+    /**
+     * 在字符数组上直接覆盖敏感词，没有匹配时不复制原文本
+     */
+    private static class CharArrayMasker implements MatchVisitor {
+        private final String text;
+        private final char replaceChar;
+        private char[] chars;
+
+        private CharArrayMasker(String text, char replaceChar) {
+            this.text = text;
+            this.replaceChar = replaceChar;
+        }
+
+        @Override
+        public void visit(int start, int end) {
+            if (chars == null) {
+                chars = text.toCharArray();
+            }
+            Arrays.fill(chars, start, end, replaceChar);
+        }
+
+        private String getResult() {
+            return chars == null ? text : new String(chars);
+        }
+    }
+
+    /**
+     * 边匹配边把原文本和替换字符写入{@link Appendable}
+     */
+    private static class AppendableMasker implements MatchVisitor {
+        private final CharSequence text;
+        private final char replaceChar;
+        private final Appendable out;
+        private int written;
+
+        private AppendableMasker(CharSequence text, char replaceChar, Appendable out) {
+            this.text = text;
+            this.replaceChar = replaceChar;
+            this.out = out;
+        }
+
+        @Override
+        public void visit(int start, int end) {
             try {
-                if (reader != null) {
-                    reader.close();
+                out.append(text, written, start);
+                for (int i = start; i < end; i++) {
+                    out.append(replaceChar);
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+                written = end;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
-        return words;
+
+        private void finish() throws IOException {
+            out.append(text, written, text.length());
+        }
     }
 }
@@ -0,0 +1,324 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.props.NlpProperties;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 短文本的检测、替换结果缓存，用于昵称、标题、标签这类反复出现的短文本
+ * <p>
+ * 使用分段LRU(SLRU)淘汰策略：新写入的结果先进入试用区，再次命中后才晋升到保护区，
+ * 保护区占总容量的80%，超出时最久未命中的结果降级回试用区，容量不足时优先淘汰试用区中最久未使用的结果。
+ * 只出现一次的文本不会挤掉反复出现的文本。每个结果记录写入时的词库版本，词库更新后旧版本的结果不再命中。
+ * 按文本的哈希值分成多个分片，每个分片单独加锁
+ *
+ * @author lihuibin
+ */
+public final class ResultCache {
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final int maxLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maximumSize 最多缓存的结果数量
+     * @param maxLength   缓存的文本最大长度，超过该长度的文本不缓存
+     */
+    public ResultCache(int maximumSize, int maxLength) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException(String.format("结果缓存容量必须大于0，当前%d", maximumSize));
+        }
+        // 每个分片至少16个结果，分片数为2的幂，不超过CPU核数的4倍
+        int shardCount = 1;
+        int maxShards = Runtime.getRuntime().availableProcessors() * 4;
+        while (shardCount < maxShards && maximumSize / (shardCount * 2) >= 16) {
+            shardCount <<= 1;
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(maximumSize / shardCount + (i < maximumSize % shardCount ? 1 : 0));
+        }
+        this.shardMask = shardCount - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * 按配置创建结果缓存
+     *
+     * @param nlpProperties 配置
+     * @return 返回结果缓存，{@link NlpProperties#getResultCacheSize()}小于等于0时返回null
+     */
+    public static ResultCache of(NlpProperties nlpProperties) {
+        int size = nlpProperties.getResultCacheSize();
+        return size > 0 ? new ResultCache(size, nlpProperties.getResultCacheMaxLength()) : null;
+    }
+
+    /**
+     * @param text 文本
+     * @return 文本长度不超过缓存的最大长度时返回true
+     */
+    public boolean isCacheable(CharSequence text) {
+        return text.length() <= maxLength;
+    }
+
+    /**
+     * 获取缓存的结果
+     *
+     * @param text       文本
+     * @param options    处理方式，例如操作类型、匹配类型和替换字符
+     * @param categories 分类位掩码
+     * @param version    当前词库版本
+     * @return 返回缓存的结果，没有缓存或者缓存的词库版本不同时返回null
+     */
+    public Object get(String text, int options, long categories, long version) {
+        Key key = new Key(text, options, categories);
+        Object value = shard(key).get(key, version);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 缓存处理结果
+     *
+     * @param text       文本
+     * @param options    处理方式
+     * @param categories 分类位掩码
+     * @param version    处理时使用的词库版本
+     * @param value      处理结果
+     */
+    public void put(String text, int options, long categories, long version, Object value) {
+        Key key = new Key(text, options, categories);
+        shard(key).put(key, version, value);
+    }
+
+    /**
+     * 清空缓存，词库更新后调用，释放旧版本结果占用的内存
+     */
+    public void invalidateAll() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+    }
+
+    private Shard shard(Key key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & shardMask];
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 未命中次数，包括词库版本不同的结果
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 容量不足时淘汰的结果数量，不包括词库更新时清空的结果
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return 命中率，没有查询过时返回0
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return 当前缓存的结果数量
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResultCache{size=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.4f}",
+                size(), getHitCount(), getMissCount(), getEvictionCount(), getHitRate());
+    }
+
+    private static final class Key {
+        private final String text;
+        private final int options;
+        private final long categories;
+
+        private Key(String text, int options, long categories) {
+            this.text = text;
+            this.options = options;
+            this.categories = categories;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return options == key.options && categories == key.categories && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return (text.hashCode() * 31 + options) * 31 + Long.hashCode(categories);
+        }
+    }
+
+    private static final class Node {
+        private final Key key;
+        private long version;
+        private Object value;
+        private boolean protectedSegment;
+        private Node prev;
+        private Node next;
+
+        private Node(Key key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 一个分片，试用区和保护区各是一个双向链表，表头是最近使用的结果
+     */
+    private final class Shard {
+        private final int capacity;
+        private final int protectedCapacity;
+        private final HashMap<Key, Node> nodes;
+        private final Node probation = sentinel();
+        private final Node protectedList = sentinel();
+        private int protectedSize;
+
+        private Shard(int capacity) {
+            this.capacity = Math.max(1, capacity);
+            this.protectedCapacity = this.capacity * PROTECTED_PERCENT / 100;
+            this.nodes = new HashMap<>(this.capacity * 4 / 3 + 1);
+        }
+
+        private synchronized Object get(Key key, long version) {
+            Node node = nodes.get(key);
+            if (node == null) {
+                return null;
+            }
+            if (node.version != version) {
+                // 只清除旧版本的结果，持有旧词库的调用不影响新版本的结果
+                if (node.version < version) {
+                    remove(node);
+                }
+                return null;
+            }
+            if (node.protectedSegment) {
+                moveToHead(node, protectedList);
+            } else {
+                promote(node);
+            }
+            return node.value;
+        }
+
+        private synchronized void put(Key key, long version, Object value) {
+            Node node = nodes.get(key);
+            if (node != null) {
+                if (version >= node.version) {
+                    node.version = version;
+                    node.value = value;
+                }
+                return;
+            }
+            node = new Node(key);
+            node.version = version;
+            node.value = value;
+            nodes.put(key, node);
+            link(node, probation);
+            if (nodes.size() > capacity) {
+                Node victim = probation.prev != probation ? probation.prev : protectedList.prev;
+                remove(victim);
+                evictions.increment();
+            }
+        }
+
+        /**
+         * 试用区的结果再次命中后晋升到保护区，保护区超出容量时最久未使用的结果降级回试用区
+         */
+        private void promote(Node node) {
+            unlink(node);
+            node.protectedSegment = true;
+            protectedSize++;
+            link(node, protectedList);
+            if (protectedSize > protectedCapacity) {
+                Node demoted = protectedList.prev;
+                unlink(demoted);
+                demoted.protectedSegment = false;
+                protectedSize--;
+                link(demoted, probation);
+            }
+        }
+
+        private void remove(Node node) {
+            nodes.remove(node.key);
+            unlink(node);
+            if (node.protectedSegment) {
+                protectedSize--;
+            }
+        }
+
+        private synchronized void clear() {
+            nodes.clear();
+            probation.prev = probation.next = probation;
+            protectedList.prev = protectedList.next = protectedList;
+            protectedSize = 0;
+        }
+
+        private synchronized int size() {
+            return nodes.size();
+        }
+
+        private void moveToHead(Node node, Node list) {
+            unlink(node);
+            link(node, list);
+        }
+
+        private void link(Node node, Node list) {
+            node.prev = list;
+            node.next = list.next;
+            list.next.prev = node;
+            list.next = node;
+        }
+
+        private void unlink(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = node.next = null;
+        }
+
+        private Node sentinel() {
+            Node sentinel = new Node(null);
+            sentinel.prev = sentinel.next = sentinel;
+            return sentinel;
+        }
+    }
+}
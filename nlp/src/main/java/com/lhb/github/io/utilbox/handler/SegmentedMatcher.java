@@ -0,0 +1,251 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.Prefilter;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatchVisitor;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 分段并行扫描长文本的匹配引擎，包装其他匹配引擎使用
+ * <p>
+ * 文本长度达到{@link NlpProperties#getParallelScanThreshold()}时按{@link NlpProperties#getParallelScanSegmentSize()}切分，
+ * 每段向后多扫描最长词长度的字符，并向前带上最长词长度减1个字符作为上下文(例如覆盖段首敏感词的白名单短语)，
+ * 在{@link BatchExecutor}的线程池中并行查找每段内开始的匹配。
+ * 各段都假设从段首开始匹配，之后按顺序合并：上一段最后一个匹配越过段首时，丢弃本段中被它覆盖的匹配；
+ * 如果越过的位置落在本段某个匹配的中间，说明本段的匹配结果可能不同，从该位置重新扫描本段。
+ * 合并结果与顺序扫描完全一致，文本较短时直接顺序扫描
+ *
+ * @author lihuibin
+ */
+public class SegmentedMatcher implements WordMatcher {
+    private final WordMatcher matcher;
+    private final BatchExecutor batchExecutor;
+    private final int threshold;
+    private final int segmentSize;
+
+    public SegmentedMatcher(WordMatcher matcher, BatchExecutor batchExecutor, NlpProperties nlpProperties) {
+        this.matcher = matcher;
+        this.batchExecutor = batchExecutor;
+        this.threshold = nlpProperties.getParallelScanThreshold();
+        // 每段至少是最长词的两倍，跨段的匹配最多影响相邻的一段
+        this.segmentSize = Math.max(nlpProperties.getParallelScanSegmentSize(), matcher.getMaxWordLength() * 2);
+    }
+
+    private boolean isParallel(int length) {
+        return threshold > 0 && length >= threshold && length > segmentSize && matcher.getMaxWordLength() > 0
+                && batchExecutor.getParallelism() > 1;
+    }
+
+    /**
+     * 每段只看段内开始的匹配，段尾之后的词可能缺少覆盖它的白名单短语的后半部分，由下一段判断
+     */
+    @Override
+    public boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter) {
+        if (!isParallel(text.length())) {
+            return matcher.contains(text, longest, wordFilter);
+        }
+        int segments = segmentCount(text.length());
+        return batchExecutor.invoke(() -> IntStream.range(0, segments).parallel().anyMatch(i -> {
+            int start = i * segmentSize;
+            return scan(text, start, Math.min(text.length(), start + segmentSize), start, longest, wordFilter).count > 0;
+        }));
+    }
+
+    @Override
+    public boolean contains(CharSequence text, int from, boolean longest, IntPredicate wordFilter) {
+        return from == 0 ? contains(text, longest, wordFilter) : matcher.contains(text, from, longest, wordFilter);
+    }
+
+    /**
+     * 带前文的匹配只用于流式处理等较短的文本，不再分段
+     */
+    @Override
+    public void match(CharSequence text, int from, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        if (from == 0) {
+            match(text, longest, wordFilter, visitor);
+        } else {
+            matcher.match(text, from, longest, wordFilter, visitor);
+        }
+    }
+
+    @Override
+    public void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        if (!isParallel(text.length())) {
+            matcher.match(text, longest, wordFilter, visitor);
+            return;
+        }
+        int segments = segmentCount(text.length());
+        Segment[] results = new Segment[segments];
+        batchExecutor.invoke(() -> {
+            IntStream.range(0, segments).parallel().forEach(i -> {
+                int start = i * segmentSize;
+                results[i] = scan(text, start, Math.min(text.length(), start + segmentSize), start, longest, wordFilter);
+            });
+            return null;
+        });
+        int cursor = 0;
+        for (Segment segment : results) {
+            if (cursor > segment.start && segment.covers(cursor)) {
+                segment = scan(text, segment.start, segment.end, cursor, longest, wordFilter);
+            }
+            for (int m = 0; m < segment.count; m++) {
+                int start = segment.matches[m * 3];
+                if (start >= cursor) {
+                    int end = segment.matches[m * 3 + 1];
+                    visitor.visit(start, end, segment.matches[m * 3 + 2]);
+                    cursor = end;
+                }
+            }
+            cursor = Math.max(cursor, segment.end);
+        }
+    }
+
+    private int segmentCount(int length) {
+        return (length + segmentSize - 1) / segmentSize;
+    }
+
+    /**
+     * 从from开始扫描，只保留开始位置在[start, end)范围内的匹配。
+     * 段内开始的匹配需要向后多看最长词长度减1个字符，白名单短语可能从from之前最长词长度减1个字符内开始
+     */
+    private Segment scan(CharSequence text, int start, int end, int from, boolean longest, IntPredicate wordFilter) {
+        Segment segment = new Segment(start, end);
+        int windowStart = Math.max(0, from - matcher.getMaxWordLength() + 1);
+        int windowEnd = Math.min(text.length(), end + matcher.getMaxWordLength() - 1);
+        matcher.match(window(text, windowStart, windowEnd), from - windowStart, longest, wordFilter, (matchStart, matchEnd, wordId) -> {
+            if (windowStart + matchStart < end) {
+                segment.add(windowStart + matchStart, windowStart + matchEnd, wordId);
+            }
+        });
+        return segment;
+    }
+
+    private static CharSequence window(CharSequence text, int from, int to) {
+        return new CharSequenceWindow(text, from, to);
+    }
+
+    @Override
+    public void matchAll(CharSequence text, WordMatchVisitor visitor) {
+        matcher.matchAll(text, visitor);
+    }
+
+    @Override
+    public String getWord(int wordId) {
+        return matcher.getWord(wordId);
+    }
+
+    @Override
+    public int getWordId(CharSequence word) {
+        return matcher.getWordId(word);
+    }
+
+    @Override
+    public int getWordIdLimit() {
+        return matcher.getWordIdLimit();
+    }
+
+    @Override
+    public boolean hasWord(CharSequence word) {
+        return matcher.hasWord(word);
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return matcher.getMaxWordLength();
+    }
+
+    @Override
+    public int size() {
+        return matcher.size();
+    }
+
+    @Override
+    public long heapBytes() {
+        return matcher.heapBytes();
+    }
+
+    @Override
+    public Prefilter getPrefilter() {
+        return matcher.getPrefilter();
+    }
+
+    /**
+     * 一段文本内的匹配结果，按开始位置排序，每个匹配依次保存开始位置、结束位置和词编号
+     */
+    private static final class Segment {
+        private final int start;
+        private final int end;
+        private int[] matches = new int[24];
+        private int count;
+
+        private Segment(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private void add(int matchStart, int matchEnd, int wordId) {
+            if (count * 3 == matches.length) {
+                matches = Arrays.copyOf(matches, matches.length * 2);
+            }
+            matches[count * 3] = matchStart;
+            matches[count * 3 + 1] = matchEnd;
+            matches[count * 3 + 2] = wordId;
+            count++;
+        }
+
+        /**
+         * 位置是否落在某个匹配的中间，落在中间说明段内扫描跳过了该位置
+         */
+        private boolean covers(int position) {
+            for (int m = 0; m < count; m++) {
+                int matchStart = matches[m * 3];
+                if (matchStart >= position) {
+                    return false;
+                }
+                if (position < matches[m * 3 + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 不复制字符的文本片段
+     */
+    private static final class CharSequenceWindow implements CharSequence {
+        private final CharSequence text;
+        private final int from;
+        private final int to;
+
+        private CharSequenceWindow(CharSequence text, int from, int to) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(from + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new CharSequenceWindow(text, from + start, from + end);
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(from, to).toString();
+        }
+    }
+}
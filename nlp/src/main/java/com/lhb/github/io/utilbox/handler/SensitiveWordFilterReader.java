@@ -0,0 +1,137 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * 替换敏感词的{@link Reader}，从被包装的Reader中读取文本，返回替换敏感词后的文本，
+ * 不需要把整个输入读入内存
+ *
+ * @author lihuibin
+ */
+public class SensitiveWordFilterReader extends FilterReader {
+    private static final int READ_SIZE = 8192;
+
+    private final StreamingMasker masker;
+    private final PendingBuffer pending = new PendingBuffer();
+    private final char[] readBuffer = new char[READ_SIZE];
+    private boolean endOfInput;
+
+    /**
+     * @param in          被包装的Reader
+     * @param matcher     匹配引擎
+     * @param longest     是否为最大匹配模式
+     * @param replaceChar 替换字符
+     */
+    public SensitiveWordFilterReader(Reader in, WordMatcher matcher, boolean longest, char replaceChar) {
+        super(in);
+        this.masker = new StreamingMasker(matcher, longest, replaceChar, pending);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return pending.chars[pending.position++];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, pending.count - pending.position);
+        System.arraycopy(pending.chars, pending.position, cbuf, off, n);
+        pending.position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int step = (int) Math.min(n - skipped, pending.count - pending.position);
+            pending.position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return pending.position < pending.count || (endOfInput ? masker.pending() > 0 : in.ready());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    /**
+     * 读取输入直到有可以返回的字符
+     *
+     * @return 没有更多字符时返回false
+     */
+    private boolean fill() throws IOException {
+        while (pending.position == pending.count) {
+            if (endOfInput) {
+                return false;
+            }
+            pending.position = 0;
+            pending.count = 0;
+            int n = in.read(readBuffer, 0, readBuffer.length);
+            if (n < 0) {
+                endOfInput = true;
+                masker.finish();
+            } else {
+                masker.write(readBuffer, 0, n);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 保存已经替换但还没有被读取的字符
+     */
+    private static final class PendingBuffer extends Writer {
+        private char[] chars = new char[READ_SIZE];
+        private int position;
+        private int count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            if (count + len > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, count + len));
+            }
+            System.arraycopy(cbuf, off, chars, count, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 替换敏感词的{@link Writer}，写入的文本替换敏感词后写入被包装的Writer，适合边生成边输出的大文本
+ * <p>
+ * 与{@link java.io.BufferedWriter}一样，写入的字符先进入缓冲区(8192个字符，最长敏感词很长时为其三倍)，缓冲区满时才扫描并写出已经确定的部分，
+ * 因此写出的内容最多落后于写入8192个字符。{@link #flush()}立即扫描并写出已经确定的部分，只保留最多两倍最长敏感词长度的字符，
+ * 用于判断跨越两次写入的敏感词及覆盖它的白名单短语；{@link #finish()}或{@link #close()}后才会写出全部字符
+ *
+ * @author lihuibin
+ */
+public class SensitiveWordFilterWriter extends FilterWriter {
+    private final StreamingMasker masker;
+    private boolean finished;
+
+    /**
+     * @param out         被包装的Writer
+     * @param matcher     匹配引擎
+     * @param longest     是否为最大匹配模式
+     * @param replaceChar 替换字符
+     */
+    public SensitiveWordFilterWriter(Writer out, WordMatcher matcher, boolean longest, char replaceChar) {
+        super(out);
+        this.masker = new StreamingMasker(matcher, longest, replaceChar, out);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        masker.write(c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        masker.write(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        masker.write(str, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            masker.flush();
+        }
+    }
+
+    /**
+     * 输入结束，写出剩余的字符但不关闭被包装的Writer，之后不能再写入
+     *
+     * @throws IOException 写出失败时抛出
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            masker.finish();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished) {
+            throw new IOException("Writer已经结束写入");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * 流式敏感词替换
+ * <p>
+ * 输入的字符先进入固定大小的缓冲区，缓冲区满时扫描一次。从某个位置开始的匹配只取决于其后最长词长度范围内的字符，
+ * 因此后面至少还有最长词长度个字符的位置，其匹配结果已经确定，可以替换后写出；
+ * 剩余不足最长词长度的字符留在缓冲区中，与后续输入一起扫描，跨越缓冲区边界的敏感词同样可以被替换。
+ * 已写出的最后最长词长度减1个字符也保留在缓冲区中作为下次扫描的前文，从前文开始的白名单短语同样可以覆盖之后的敏感词。
+ * 输出结果与对整段文本调用{@link WordMatcher#match}完全一致，内存占用与文本长度无关
+ *
+ * @author lihuibin
+ */
+class StreamingMasker {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final WordMatcher matcher;
+    private final boolean longest;
+    private final char replaceChar;
+    private final Writer out;
+    private final int lookahead;
+    private final char[] buffer;
+    private int length;
+    /**
+     * 缓冲区开头已经写出、只作为前文的字符数
+     */
+    private int context;
+    private char[] replaceChars;
+
+    /**
+     * @param matcher     匹配引擎，整个流使用同一个版本的词库
+     * @param longest     是否为最大匹配模式
+     * @param replaceChar 替换字符
+     * @param out         替换结果输出
+     */
+    StreamingMasker(WordMatcher matcher, boolean longest, char replaceChar, Writer out) {
+        this.matcher = matcher;
+        this.longest = longest;
+        this.replaceChar = replaceChar;
+        this.out = out;
+        this.lookahead = matcher.getMaxWordLength();
+        // 缓冲区至少是最长词的三倍，除去前文和未确定的字符，每次扫描都能写出三分之一以上的字符
+        this.buffer = new char[Math.max(DEFAULT_BUFFER_SIZE, lookahead * 3)];
+    }
+
+    void write(int c) throws IOException {
+        if (length == buffer.length) {
+            scan(false);
+        }
+        buffer[length++] = (char) c;
+    }
+
+    void write(char[] chars, int off, int len) throws IOException {
+        while (len > 0) {
+            if (length == buffer.length) {
+                scan(false);
+            }
+            int n = Math.min(len, buffer.length - length);
+            System.arraycopy(chars, off, buffer, length, n);
+            length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    void write(String text, int off, int len) throws IOException {
+        while (len > 0) {
+            if (length == buffer.length) {
+                scan(false);
+            }
+            int n = Math.min(len, buffer.length - length);
+            text.getChars(off, off + n, buffer, length);
+            length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出所有已经确定匹配结果的字符，最后不足最长词长度的字符仍保留在缓冲区中
+     */
+    void flush() throws IOException {
+        scan(false);
+        out.flush();
+    }
+
+    /**
+     * 输入结束，写出缓冲区中的所有字符
+     */
+    void finish() throws IOException {
+        scan(true);
+        out.flush();
+    }
+
+    /**
+     * @return 缓冲区中尚未写出的字符数
+     */
+    int pending() {
+        return length - context;
+    }
+
+    /**
+     * 扫描缓冲区，前文之后、开始位置小于safeLimit的匹配已经确定
+     */
+    private void scan(boolean endOfInput) throws IOException {
+        int safeLimit = endOfInput ? length : length - lookahead + 1;
+        if (safeLimit <= context || length == context) {
+            return;
+        }
+        int[] written = {context};
+        try {
+            matcher.match(CharBuffer.wrap(buffer, 0, length), context, longest, null, (start, end, wordId) -> {
+                if (start >= safeLimit) {
+                    return;
+                }
+                try {
+                    out.write(buffer, written[0], start - written[0]);
+                    writeReplaceChars(end - start);
+                    written[0] = end;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // 最后一个匹配可能越过safeLimit，越过的部分已经写出
+        int commit = Math.max(written[0], Math.min(safeLimit, length));
+        out.write(buffer, written[0], commit - written[0]);
+        context = Math.min(commit, Math.max(0, lookahead - 1));
+        System.arraycopy(buffer, commit - context, buffer, 0, length - commit + context);
+        length -= commit - context;
+    }
+
+    private void writeReplaceChars(int count) throws IOException {
+        if (replaceChars == null) {
+            replaceChars = new char[Math.max(16, lookahead)];
+            Arrays.fill(replaceChars, replaceChar);
+        }
+        while (count > 0) {
+            int n = Math.min(count, replaceChars.length);
+            out.write(replaceChars, 0, n);
+            count -= n;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Aho-Corasick自动机匹配逻辑
+ * 子类只需要提供节点的子节点、失败指针、输出指针、深度和词结尾标记，
+ * 节点数据可以保存在堆内数组中，也可以直接读取内存映射的词库快照文件。
+ * 配置了{@link CharNormalizer}时，自动机在规范化后的字符上转移，干扰字符不参与转移，
+ * 用环形数组记录最近每个有效字符在原文中的位置，匹配结果换算回原文位置。
+ * 自动机回到根节点时，之前的匹配都已确定，用{@link Prefilter}直接跳到下一个可能是词开头的位置
+ *
+ * @author lihuibin
+ */
+public abstract class AbstractAutomatonMatcher implements WordMatcher {
+    protected static final int ROOT = 0;
+
+    protected final CharNormalizer normalizer;
+
+    /**
+     * @param normalizer 字符规范化规则，为null时不做规范化
+     */
+    protected AbstractAutomatonMatcher(CharNormalizer normalizer) {
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * 查找子节点
+     *
+     * @return 返回子节点编号，不存在返回-1
+     */
+    protected abstract int child(int node, char keyWord);
+
+    /**
+     * 失败指针，指向当前节点所代表字符串的最长真后缀节点
+     */
+    protected abstract int fail(int node);
+
+    /**
+     * 输出指针，指向失败链上最近的词结尾节点，不存在返回-1
+     */
+    protected abstract int output(int node);
+
+    protected abstract int depth(int node);
+
+    protected abstract boolean isTerminal(int node);
+
+    /**
+     * @param node 词结尾节点
+     * @return 返回节点对应的词编号
+     */
+    protected abstract int wordId(int node);
+
+    /**
+     * @return 词库中最长词的长度，即自动机的最大深度
+     */
+    protected abstract int maxDepth();
+
+    /**
+     * @return 由词库构建的过滤器
+     */
+    @Override
+    public abstract Prefilter getPrefilter();
+
+    /**
+     * 配置了干扰字符时，一个匹配在原文中最多占用最长词长度加上可以跳过的干扰字符数
+     */
+    @Override
+    public int getMaxWordLength() {
+        int maxDepth = maxDepth();
+        return maxDepth == 0 || normalizer == null ? maxDepth : maxDepth + normalizer.getMaxNoise();
+    }
+
+    protected final int next(int state, char keyWord) {
+        int nextNode;
+        while ((nextNode = child(state, keyWord)) < 0 && state != ROOT) {
+            state = fail(state);
+        }
+        return nextNode < 0 ? ROOT : nextNode;
+    }
+
+    @Override
+    public boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter) {
+        if (normalizer != null) {
+            return containsNormalized(text, wordFilter);
+        }
+        Prefilter prefilter = getPrefilter();
+        int candidates = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            if (state == ROOT) {
+                i = prefilter.nextCandidate(text, i);
+                if (i == text.length()) {
+                    break;
+                }
+                candidates++;
+            }
+            state = next(state, text.charAt(i));
+            if (wordFilter == null) {
+                if (isTerminal(state) || output(state) >= 0) {
+                    prefilter.record(i + 1, candidates);
+                    return true;
+                }
+                continue;
+            }
+            for (int out = isTerminal(state) ? state : output(state); out >= 0; out = output(out)) {
+                if (wordFilter.test(wordId(out))) {
+                    prefilter.record(i + 1, candidates);
+                    return true;
+                }
+            }
+        }
+        prefilter.record(text.length(), candidates);
+        return false;
+    }
+
+    /**
+     * 一次扫描找出所有匹配。best以环形数组的方式记录每个开始位置上的候选词结尾节点，
+     * 当自动机当前状态的深度说明后续不可能再出现从某位置开始的匹配时，该位置的结果即可确定
+     */
+    @Override
+    public void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        if (normalizer != null) {
+            matchNormalized(text, longest, wordFilter, visitor);
+            return;
+        }
+        int maxWordLength = maxDepth();
+        if (maxWordLength == 0) {
+            return;
+        }
+        Prefilter prefilter = getPrefilter();
+        int candidates = 0;
+        // 预过滤找到第一个候选位置时才分配，不含敏感词的文本不分配数组
+        int[] best = null;
+        int cursor = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            if (state == ROOT) {
+                // 根节点上没有未确定的匹配，跳过的位置不可能是词的开头
+                i = prefilter.nextCandidate(text, i);
+                if (i == text.length()) {
+                    break;
+                }
+                cursor = Math.max(cursor, i);
+                candidates++;
+                if (best == null) {
+                    best = new int[maxWordLength];
+                }
+            }
+            state = next(state, text.charAt(i));
+            cursor = select(best, cursor, i + 1 - depth(state), null, visitor);
+            for (int out = isTerminal(state) ? state : output(state); out >= 0; out = output(out)) {
+                int wordLength = depth(out);
+                int start = i + 1 - wordLength;
+                if (start < cursor || (wordFilter != null && !wordFilter.test(wordId(out)))) {
+                    continue;
+                }
+                int slot = start % maxWordLength;
+                // 同一开始位置上先出现的匹配更短，最小匹配保留第一个，最大匹配保留最后一个。根节点不是词结尾，0表示没有候选
+                if (best[slot] == ROOT || longest) {
+                    best[slot] = out;
+                }
+            }
+        }
+        if (best != null) {
+            select(best, cursor, text.length(), null, visitor);
+        }
+        prefilter.record(text.length(), candidates);
+    }
+
+    /**
+     * 与{@link #match}相同的选择逻辑，位置按去掉干扰字符后的有效字符计数，
+     * 只接受中间跳过的干扰字符不超过{@link CharNormalizer#getMaxNoise()}的候选词
+     */
+    private void matchNormalized(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        int maxWordLength = maxDepth();
+        if (maxWordLength == 0) {
+            return;
+        }
+        int[] best = null;
+        // 选择结果时最多需要回看最长词长度加1个有效字符的原文位置
+        int[] origin = null;
+        int maxNoise = normalizer.getMaxNoise();
+        Prefilter prefilter = getPrefilter();
+        int candidates = 0;
+        int cursor = 0;
+        int state = ROOT;
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (state == ROOT) {
+                // 跳过的字符不计入有效字符，效果与从下一个可能的词开头重新扫描相同
+                i = prefilter.nextCandidate(text, i, normalizer);
+                if (i == text.length()) {
+                    break;
+                }
+                candidates++;
+                if (best == null) {
+                    best = new int[maxWordLength];
+                    origin = new int[maxWordLength + 1];
+                }
+            }
+            char keyWord = normalizer.normalize(text.charAt(i));
+            if (keyWord == CharNormalizer.NOISE) {
+                continue;
+            }
+            origin[count % origin.length] = i;
+            count++;
+            state = next(state, keyWord);
+            cursor = select(best, cursor, count - depth(state), origin, visitor);
+            for (int out = isTerminal(state) ? state : output(state); out >= 0; out = output(out)) {
+                int wordLength = depth(out);
+                int start = count - wordLength;
+                if (start < cursor || i + 1 - origin[start % origin.length] - wordLength > maxNoise
+                        || (wordFilter != null && !wordFilter.test(wordId(out)))) {
+                    continue;
+                }
+                int slot = start % maxWordLength;
+                if (best[slot] == ROOT || longest) {
+                    best[slot] = out;
+                }
+            }
+        }
+        if (best != null) {
+            select(best, cursor, count, origin, visitor);
+        }
+        prefilter.record(text.length(), candidates);
+    }
+
+    private boolean containsNormalized(CharSequence text, IntPredicate wordFilter) {
+        int[] origin = null;
+        int maxNoise = normalizer.getMaxNoise();
+        Prefilter prefilter = getPrefilter();
+        int candidates = 0;
+        int state = ROOT;
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (state == ROOT) {
+                i = prefilter.nextCandidate(text, i, normalizer);
+                if (i == text.length()) {
+                    break;
+                }
+                candidates++;
+                if (origin == null) {
+                    origin = new int[maxDepth() + 1];
+                }
+            }
+            char keyWord = normalizer.normalize(text.charAt(i));
+            if (keyWord == CharNormalizer.NOISE) {
+                continue;
+            }
+            origin[count % origin.length] = i;
+            count++;
+            state = next(state, keyWord);
+            for (int out = isTerminal(state) ? state : output(state); out >= 0; out = output(out)) {
+                int wordLength = depth(out);
+                if (i + 1 - origin[(count - wordLength) % origin.length] - wordLength <= maxNoise
+                        && (wordFilter == null || wordFilter.test(wordId(out)))) {
+                    prefilter.record(i + 1, candidates);
+                    return true;
+                }
+            }
+        }
+        prefilter.record(text.length(), candidates);
+        return false;
+    }
+
+    /**
+     * 确定[cursor, horizon)范围内的匹配结果
+     *
+     * @param origin 规范化匹配时有效字符在原文中的位置，为null时位置就是原文位置
+     * @return 返回新的扫描位置
+     */
+    private int select(int[] best, int cursor, int horizon, int[] origin, WordMatchVisitor visitor) {
+        while (cursor < horizon) {
+            int slot = cursor % best.length;
+            int node = best[slot];
+            best[slot] = ROOT;
+            if (node != ROOT) {
+                int wordLength = depth(node);
+                if (origin == null) {
+                    visitor.visit(cursor, cursor + wordLength, wordId(node));
+                } else {
+                    visitor.visit(origin[cursor % origin.length], origin[(cursor + wordLength - 1) % origin.length] + 1,
+                            wordId(node));
+                }
+                // 被当前匹配覆盖的位置不再参与匹配
+                for (int i = 1; i < wordLength; i++) {
+                    best[(cursor + i) % best.length] = ROOT;
+                }
+                cursor += wordLength;
+            } else {
+                cursor++;
+            }
+        }
+        return cursor;
+    }
+
+    @Override
+    public void matchAll(CharSequence text, WordMatchVisitor visitor) {
+        if (normalizer != null) {
+            matchAllNormalized(text, visitor);
+            return;
+        }
+        Prefilter prefilter = getPrefilter();
+        int candidates = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            if (state == ROOT) {
+                i = prefilter.nextCandidate(text, i);
+                if (i == text.length()) {
+                    break;
+                }
+                candidates++;
+            }
+            state = next(state, text.charAt(i));
+            for (int out = isTerminal(state) ? state : output(state); out >= 0; out = output(out)) {
+                visitor.visit(i + 1 - depth(out), i + 1, wordId(out));
+            }
+        }
+        prefilter.record(text.length(), candidates);
+    }
+
+    private void matchAllNormalized(CharSequence text, WordMatchVisitor visitor) {
+        int[] origin = null;
+        int maxNoise = normalizer.getMaxNoise();
+        Prefilter prefilter = getPrefilter();
+        int candidates = 0;
+        int state = ROOT;
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (state == ROOT) {
+                i = prefilter.nextCandidate(text, i, normalizer);
+                if (i == text.length()) {
+                    break;
+                }
+                candidates++;
+                if (origin == null) {
+                    origin = new int[maxDepth() + 1];
+                }
+            }
+            char keyWord = normalizer.normalize(text.charAt(i));
+            if (keyWord == CharNormalizer.NOISE) {
+                continue;
+            }
+            origin[count % origin.length] = i;
+            count++;
+            state = next(state, keyWord);
+            for (int out = isTerminal(state) ? state : output(state); out >= 0; out = output(out)) {
+                int wordLength = depth(out);
+                int start = origin[(count - wordLength) % origin.length];
+                if (i + 1 - start - wordLength <= maxNoise) {
+                    visitor.visit(start, i + 1, wordId(out));
+                }
+            }
+        }
+        prefilter.record(text.length(), candidates);
+    }
+
+    /**
+     * 词库中是否存在该词，word应该是规范化之后的词
+     */
+    @Override
+    public boolean hasWord(CharSequence word) {
+        return getWordId(word) >= 0;
+    }
+
+    @Override
+    public int getWordId(CharSequence word) {
+        int node = ROOT;
+        for (int i = 0; i < word.length() && node >= 0; i++) {
+            node = child(node, word.charAt(i));
+        }
+        return node > ROOT && isTerminal(node) ? wordId(node) : -1;
+    }
+}
@@ -0,0 +1,162 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * 基于Aho-Corasick自动机的匹配引擎
+ * 在字典树的基础上为每个节点建立失败指针，文本只需从左到右扫描一遍即可找到所有匹配，
+ * 不需要像DFA那样在每个位置重新从根节点开始查找
+ *
+ * @author lihuibin
+ */
+public class AhoCorasickMatcher extends AbstractAutomatonMatcher {
+    private final CompactTrie trie;
+    private final int[] fail;
+    private final int[] output;
+    private final int[] depth;
+    private final int maxWordLength;
+    private final Prefilter prefilter;
+
+    public AhoCorasickMatcher(CompactTrie trie) {
+        this(trie, false);
+    }
+
+    /**
+     * @param trie     字典树
+     * @param parallel 是否在当前fork-join线程池中按层并行建立失败指针
+     */
+    public AhoCorasickMatcher(CompactTrie trie, boolean parallel) {
+        this(trie, parallel, null);
+    }
+
+    /**
+     * @param trie       字典树，其中的词需要用normalizer规范化
+     * @param parallel   是否在当前fork-join线程池中按层并行建立失败指针
+     * @param normalizer 字符规范化规则，为null时不做规范化
+     */
+    public AhoCorasickMatcher(CompactTrie trie, boolean parallel, CharNormalizer normalizer) {
+        super(normalizer);
+        this.trie = trie;
+        this.maxWordLength = trie.getMaxWordLength();
+        int nodeCount = trie.nodeCount();
+        this.fail = new int[nodeCount];
+        this.output = new int[nodeCount];
+        this.depth = new int[nodeCount];
+        buildFailLinks(parallel);
+        this.prefilter = Prefilter.of(trie);
+    }
+
+    /**
+     * 字典树节点按层序编号，逐层处理即可保证父节点的失败指针先于子节点建立。
+     * 节点的失败指针只依赖更浅层的节点，因此同一层的节点可以并行处理
+     */
+    private void buildFailLinks(boolean parallel) {
+        output[ROOT] = -1;
+        int levelStart = ROOT;
+        int levelEnd = ROOT + 1;
+        while (levelStart < levelEnd) {
+            if (parallel) {
+                IntStream.range(levelStart, levelEnd).parallel().forEach(this::linkChildren);
+            } else {
+                for (int node = levelStart; node < levelEnd; node++) {
+                    linkChildren(node);
+                }
+            }
+            // 下一层的节点就是当前层所有节点的子节点
+            int nextEnd = trie.childEnd(levelEnd - 1);
+            levelStart = levelEnd;
+            levelEnd = nextEnd;
+        }
+    }
+
+    private void linkChildren(int node) {
+        for (int child = trie.firstChild(node); child < trie.childEnd(node); child++) {
+            int failNode = node == ROOT ? ROOT : next(fail[node], trie.label(child));
+            fail[child] = failNode;
+            output[child] = trie.isTerminal(failNode) ? failNode : output[failNode];
+            depth[child] = depth[node] + 1;
+        }
+    }
+
+    @Override
+    protected int child(int node, char keyWord) {
+        return trie.child(node, keyWord);
+    }
+
+    @Override
+    protected int fail(int node) {
+        return fail[node];
+    }
+
+    @Override
+    protected int output(int node) {
+        return output[node];
+    }
+
+    @Override
+    protected int depth(int node) {
+        return depth[node];
+    }
+
+    @Override
+    protected boolean isTerminal(int node) {
+        return trie.isTerminal(node);
+    }
+
+    @Override
+    protected int wordId(int node) {
+        return trie.wordId(node);
+    }
+
+    @Override
+    public String getWord(int wordId) {
+        return trie.word(wordId);
+    }
+
+    /**
+     * 将自动机写入快照文件，文件格式见{@link MappedAhoCorasickMatcher}
+     *
+     * @param file           快照文件
+     * @param sourceChecksum 词库文件内容校验和，加载快照时用于判断快照是否过期
+     * @throws IOException 写入失败时抛出
+     */
+    public void writeSnapshot(Path file, long sourceChecksum) throws IOException {
+        writeSnapshot(file, sourceChecksum, WordCategories.NONE);
+    }
+
+    /**
+     * 将自动机和词的分类写入快照文件
+     *
+     * @param file           快照文件
+     * @param sourceChecksum 词库文件内容校验和，加载快照时用于判断快照是否过期
+     * @param categories     按当前自动机的词编号保存的词分类
+     * @throws IOException 写入失败时抛出
+     */
+    public void writeSnapshot(Path file, long sourceChecksum, WordCategories categories) throws IOException {
+        MappedAhoCorasickMatcher.write(file, sourceChecksum, trie.size(), maxWordLength, trie.terminalArray(),
+                trie.firstChildArray(), fail, output, depth, trie.labelArray(), categories);
+    }
+
+    @Override
+    public int size() {
+        return trie.size();
+    }
+
+    @Override
+    public long heapBytes() {
+        return trie.heapBytes() + CompactTrie.arrayBytes(fail.length, 4) + CompactTrie.arrayBytes(output.length, 4)
+                + CompactTrie.arrayBytes(depth.length, 4) + prefilter.heapBytes();
+    }
+
+    @Override
+    public Prefilter getPrefilter() {
+        return prefilter;
+    }
+
+    @Override
+    protected int maxDepth() {
+        return maxWordLength;
+    }
+}
@@ -0,0 +1,329 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * 带白名单的匹配引擎，白名单短语与敏感词构建在同一个匹配引擎中，一次扫描同时找出二者
+ * <p>
+ * 敏感词的一次出现被某个白名单短语的出现完全覆盖时不算作匹配，例如白名单“江苏大学”会屏蔽其中的“苏大”。
+ * 白名单短语本身不会作为匹配返回，与敏感词相同的白名单短语相当于从词库中去掉该词。
+ * 文本中没有任何候选时与被包装的匹配引擎一样只经过过滤器，有候选时在同一次扫描中按开始位置依次确定候选词是否被覆盖，
+ * 再从左到右选出互不重叠的匹配，不需要第二次扫描，也不对整个文本的候选词排序。
+ * 被包装的匹配引擎的{@link #matchAll(CharSequence, WordMatchVisitor)}之后报告的匹配不能在之前报告的匹配的结束位置减去最长词长度之前开始，
+ * 自动机按结束位置、{@link DfaMatcher}按开始位置报告，{@link PatternMatcher}按结束位置合并模式的匹配，都满足该条件。
+ * 敏感词是否被覆盖取决于它之前最长词长度减1个字符内开始的白名单短语，分段或流式处理时通过
+ * {@link #match(CharSequence, int, boolean, IntPredicate, WordMatchVisitor)}带上前文
+ *
+ * @author lihuibin
+ */
+public class AllowListMatcher implements WordMatcher {
+    private final WordMatcher base;
+    /**
+     * 白名单短语的词编号
+     */
+    private final BitSet allowed;
+    private final int allowedCount;
+
+    /**
+     * @param base    包含敏感词和白名单短语的匹配引擎
+     * @param allowed 白名单短语的词编号
+     */
+    public AllowListMatcher(WordMatcher base, BitSet allowed) {
+        this.base = base;
+        this.allowed = (BitSet) allowed.clone();
+        this.allowedCount = allowed.cardinality();
+    }
+
+    /**
+     * @return 包含敏感词和白名单短语的匹配引擎，用于写入词库快照
+     */
+    public WordMatcher getBase() {
+        return base;
+    }
+
+    /**
+     * @return 白名单短语数量
+     */
+    public int allowedSize() {
+        return allowedCount;
+    }
+
+    /**
+     * @param wordId 词编号
+     * @return 是白名单短语时返回true
+     */
+    public boolean isAllowed(int wordId) {
+        return wordId >= 0 && allowed.get(wordId);
+    }
+
+    @Override
+    public boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter) {
+        return contains(text, 0, longest, wordFilter);
+    }
+
+    /**
+     * 扫描中确定第一个未被覆盖的敏感词时立即返回
+     */
+    @Override
+    public boolean contains(CharSequence text, int from, boolean longest, IntPredicate wordFilter) {
+        Sweep sweep = new Sweep(from, wordFilter, (start, end, wordId) -> {
+            throw Found.INSTANCE;
+        });
+        try {
+            base.matchAll(text, sweep);
+            sweep.finish();
+        } catch (Found e) {
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        match(text, 0, longest, wordFilter, visitor);
+    }
+
+    /**
+     * 未被覆盖的敏感词按开始位置依次确定，同一开始位置上最小匹配取最短的词，最大匹配取最长的词，再跳过已匹配的字符
+     */
+    @Override
+    public void match(CharSequence text, int from, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        Selector selector = new Selector(from, longest, visitor);
+        Sweep sweep = new Sweep(from, wordFilter, selector);
+        base.matchAll(text, sweep);
+        sweep.finish();
+        selector.flush();
+    }
+
+    /**
+     * 只报告没有被白名单短语覆盖的敏感词，按开始位置排序
+     */
+    @Override
+    public void matchAll(CharSequence text, WordMatchVisitor visitor) {
+        Sweep sweep = new Sweep(0, null, visitor);
+        base.matchAll(text, sweep);
+        sweep.finish();
+    }
+
+    /**
+     * 白名单短语的编号同样可以取回短语
+     */
+    @Override
+    public String getWord(int wordId) {
+        return base.getWord(wordId);
+    }
+
+    /**
+     * 白名单短语不是词库中的词，返回-1
+     */
+    @Override
+    public int getWordId(CharSequence word) {
+        int wordId = base.getWordId(word);
+        return isAllowed(wordId) ? -1 : wordId;
+    }
+
+    @Override
+    public int getWordIdLimit() {
+        return base.getWordIdLimit();
+    }
+
+    @Override
+    public boolean hasWord(CharSequence word) {
+        return getWordId(word) >= 0;
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return base.getMaxWordLength();
+    }
+
+    @Override
+    public int size() {
+        return base.size() - allowedCount;
+    }
+
+    @Override
+    public long heapBytes() {
+        return base.heapBytes() + CompactTrie.arrayBytes((allowed.length() + 63) >>> 6, 8);
+    }
+
+    @Override
+    public Prefilter getPrefilter() {
+        return base.getPrefilter();
+    }
+
+    /**
+     * 一次扫描中判断敏感词是否被白名单短语覆盖。
+     * 被包装的匹配引擎报告一个匹配后，之后报告的匹配不会在它的结束位置减去最长词长度之前开始，
+     * 因此开始位置早于该位置的敏感词不会再出现覆盖它的白名单短语，可以确定结果。
+     * 未确定的敏感词和白名单短语的开始位置都在最长词长度的范围内，按开始位置放在环形数组中，
+     * 确定时按开始位置从小到大维护已出现的白名单短语最远的结束位置，结束位置不超过它的敏感词被覆盖。
+     * 未被覆盖、从from之后开始并且满足过滤条件的敏感词按开始位置的顺序交给output
+     */
+    private final class Sweep implements WordMatchVisitor {
+        private final int from;
+        private final IntPredicate wordFilter;
+        private final WordMatchVisitor output;
+        private final int window = Math.max(1, base.getMaxWordLength());
+        /**
+         * 每个开始位置上白名单短语最远的结束位置，0表示没有
+         */
+        private int[] phraseEnd;
+        /**
+         * 每个开始位置上第一个和最后一个未确定的敏感词，-1表示没有，同一开始位置的敏感词按报告的顺序通过next连接
+         */
+        private int[] head;
+        private int[] tail;
+        private int[] ends;
+        private int[] wordIds;
+        private int[] next;
+        private int used;
+        private int free = -1;
+        /**
+         * 开始位置小于该值的敏感词都已确定
+         */
+        private int decided;
+        /**
+         * 未确定的敏感词和白名单短语最大的开始位置加1
+         */
+        private int highest;
+        private int cover;
+
+        private Sweep(int from, IntPredicate wordFilter, WordMatchVisitor output) {
+            this.from = from;
+            this.wordFilter = wordFilter;
+            this.output = output;
+        }
+
+        @Override
+        public void visit(int start, int end, int wordId) {
+            advance(end - window);
+            boolean phrase = allowed.get(wordId);
+            if (!phrase && (start < from || (wordFilter != null && !wordFilter.test(wordId)))) {
+                return;
+            }
+            if (head == null) {
+                phraseEnd = new int[window];
+                head = new int[window];
+                tail = new int[window];
+                Arrays.fill(head, -1);
+                ends = new int[16];
+                wordIds = new int[16];
+                next = new int[16];
+            }
+            int slot = start % window;
+            if (phrase) {
+                phraseEnd[slot] = Math.max(phraseEnd[slot], end);
+            } else {
+                int node = allocate();
+                ends[node] = end;
+                wordIds[node] = wordId;
+                next[node] = -1;
+                if (head[slot] < 0) {
+                    head[slot] = node;
+                } else {
+                    next[tail[slot]] = node;
+                }
+                tail[slot] = node;
+            }
+            highest = Math.max(highest, start + 1);
+        }
+
+        private int allocate() {
+            if (free >= 0) {
+                int node = free;
+                free = next[node];
+                return node;
+            }
+            if (used == ends.length) {
+                ends = Arrays.copyOf(ends, used * 2);
+                wordIds = Arrays.copyOf(wordIds, used * 2);
+                next = Arrays.copyOf(next, used * 2);
+            }
+            return used++;
+        }
+
+        /**
+         * 确定开始位置小于limit的敏感词
+         */
+        private void advance(int limit) {
+            for (; decided < limit; decided++) {
+                if (decided >= highest) {
+                    decided = limit;
+                    return;
+                }
+                int slot = decided % window;
+                cover = Math.max(cover, phraseEnd[slot]);
+                phraseEnd[slot] = 0;
+                for (int node = head[slot]; node >= 0; ) {
+                    int following = next[node];
+                    if (ends[node] > cover) {
+                        output.visit(decided, ends[node], wordIds[node]);
+                    }
+                    next[node] = free;
+                    free = node;
+                    node = following;
+                }
+                head[slot] = -1;
+            }
+        }
+
+        /**
+         * 扫描结束后确定剩余的敏感词
+         */
+        private void finish() {
+            advance(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * 按开始位置顺序接收未被覆盖的敏感词，每个开始位置选出一个词，再跳过已匹配的字符
+     */
+    private static final class Selector implements WordMatchVisitor {
+        private final boolean longest;
+        private final WordMatchVisitor visitor;
+        private int cursor;
+        private int start = -1;
+        private int end;
+        private int wordId;
+
+        private Selector(int from, boolean longest, WordMatchVisitor visitor) {
+            this.cursor = from;
+            this.longest = longest;
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void visit(int start, int end, int wordId) {
+            if (start != this.start) {
+                flush();
+                this.start = start;
+            } else if (longest ? end <= this.end : end >= this.end) {
+                return;
+            }
+            this.end = end;
+            this.wordId = wordId;
+        }
+
+        private void flush() {
+            if (start >= cursor) {
+                visitor.visit(start, end, wordId);
+                cursor = end;
+            }
+        }
+    }
+
+    /**
+     * 找到未被覆盖的敏感词时结束扫描，不记录调用栈
+     */
+    private static final class Found extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final Found INSTANCE = new Found();
+
+        private Found() {
+            super(null, null, false, false);
+        }
+    }
+}
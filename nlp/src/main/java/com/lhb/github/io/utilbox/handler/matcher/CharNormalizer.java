@@ -0,0 +1,132 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 匹配时的字符规范化，在匹配循环中逐个字符查表，不生成规范化后的文本
+ * <p>
+ * 支持全角转半角、大写转小写、按映射表转换字符(例如繁体转简体)以及跳过干扰字符。
+ * 词库中的词在构建时用{@link #normalize(CharSequence)}做同样的处理，匹配结果仍然是原文中的位置，
+ * 干扰字符出现在敏感词中间时一起替换。每个匹配最多跳过{@link #getMaxNoise()}个干扰字符，
+ * 因此一个匹配在原文中最多占用最长词长度加上该值个字符
+ *
+ * @author lihuibin
+ */
+public final class CharNormalizer {
+    /**
+     * 干扰字符规范化后的值，U+FFFF不是有效字符，不会出现在正常文本中
+     */
+    public static final char NOISE = '\uFFFF';
+
+    private final char[] table;
+    private final int maxNoise;
+    private final long fingerprint;
+
+    private CharNormalizer(char[] table, int maxNoise) {
+        this.table = table;
+        this.maxNoise = maxNoise;
+        CRC32 crc = new CRC32();
+        for (char c : table) {
+            crc.update(c >>> 8);
+            crc.update(c);
+        }
+        crc.update(maxNoise);
+        this.fingerprint = crc.getValue();
+    }
+
+    /**
+     * 创建字符规范化规则
+     *
+     * @param foldWidth  是否将全角字符转为半角
+     * @param foldCase   是否将大写字母转为小写
+     * @param mapping    字符映射表，在全角、大小写转换之后应用，可以为null
+     * @param noiseChars 匹配时跳过的干扰字符，可以为null
+     * @param maxNoise   每个匹配最多跳过的干扰字符数
+     * @return 返回规范化规则
+     */
+    public static CharNormalizer of(boolean foldWidth, boolean foldCase, Map<Character, Character> mapping, String noiseChars, int maxNoise) {
+        char[] table = new char[Character.MAX_VALUE + 1];
+        for (int c = 0; c < table.length; c++) {
+            char folded = (char) c;
+            if (foldWidth) {
+                folded = foldWidth(folded);
+            }
+            if (foldCase) {
+                folded = Character.toLowerCase(folded);
+            }
+            table[c] = folded;
+        }
+        if (mapping != null) {
+            for (int c = 0; c < table.length; c++) {
+                Character mapped = mapping.get(table[c]);
+                if (mapped != null) {
+                    table[c] = mapped;
+                }
+            }
+        }
+        boolean hasNoise = noiseChars != null && !noiseChars.isEmpty();
+        if (hasNoise) {
+            boolean[] noise = new boolean[table.length];
+            for (int i = 0; i < noiseChars.length(); i++) {
+                noise[noiseChars.charAt(i)] = true;
+            }
+            // 规范化后是干扰字符的字符同样是干扰字符，例如全角的＊
+            for (int c = 0; c < table.length; c++) {
+                if (noise[c] || noise[table[c]]) {
+                    table[c] = NOISE;
+                }
+            }
+        }
+        table[NOISE] = NOISE;
+        return new CharNormalizer(table, hasNoise ? Math.max(0, maxNoise) : 0);
+    }
+
+    private static char foldWidth(char c) {
+        if (c >= '\uFF01' && c <= '\uFF5E') {
+            return (char) (c - 0xFEE0);
+        }
+        return c == '\u3000' ? ' ' : c;
+    }
+
+    /**
+     * 规范化单个字符
+     *
+     * @param c 字符
+     * @return 返回规范化后的字符，干扰字符返回{@link #NOISE}
+     */
+    public char normalize(char c) {
+        return table[c];
+    }
+
+    /**
+     * 规范化词库中的词，去掉其中的干扰字符
+     *
+     * @param word 词
+     * @return 返回规范化后的词
+     */
+    public String normalize(CharSequence word) {
+        StringBuilder builder = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = table[word.charAt(i)];
+            if (c != NOISE) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return 每个匹配最多跳过的干扰字符数，没有干扰字符时为0
+     */
+    public int getMaxNoise() {
+        return maxNoise;
+    }
+
+    /**
+     * @return 规范化规则的指纹，规则不同的词库快照不能混用
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+}
@@ -0,0 +1,438 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 基于基本类型数组的紧凑字典树
+ * 节点按层序编号，同一节点的子节点编号连续且按字符排序，因此只需要保存每个节点第一个子节点的编号、
+ * 节点的入边字符以及词结尾位图，不再为每个字符创建{@link java.util.HashMap}节点
+ *
+ * @author lihuibin
+ */
+public class CompactTrie {
+    public static final int ROOT = 0;
+    /**
+     * 小于该数量的子节点使用顺序查找，否则使用二分查找
+     */
+    private static final int LINEAR_SEARCH_THRESHOLD = 8;
+
+    /**
+     * 节点u的子节点编号范围为[firstChild[u], firstChild[u + 1])
+     */
+    private final int[] firstChild;
+    /**
+     * 节点的入边字符，根节点无意义
+     */
+    private final char[] labels;
+    /**
+     * 词结尾节点位图
+     */
+    private final long[] terminals;
+    /**
+     * 位图中每个long之前的词结尾节点数量，用于计算词编号
+     */
+    private final int[] terminalRanks;
+    private final int size;
+    private final int maxWordLength;
+
+    private CompactTrie(int[] firstChild, char[] labels, long[] terminals, int size, int maxWordLength) {
+        this.firstChild = firstChild;
+        this.labels = labels;
+        this.terminals = terminals;
+        this.terminalRanks = ranks(terminals);
+        this.size = size;
+        this.maxWordLength = maxWordLength;
+    }
+
+    static int[] ranks(long[] terminals) {
+        int[] ranks = new int[terminals.length];
+        int count = 0;
+        for (int i = 0; i < terminals.length; i++) {
+            ranks[i] = count;
+            count += Long.bitCount(terminals[i]);
+        }
+        return ranks;
+    }
+
+    /**
+     * 构建字典树
+     *
+     * @param words 词集合
+     * @return 返回字典树
+     */
+    public static CompactTrie build(Collection<String> words) {
+        return build(words, false);
+    }
+
+    /**
+     * 构建字典树。先对词排序，相同前缀的词在排序后连续，每个节点对应排序数组中的一段区间，
+     * 按层序逐个节点切分区间即可得到子节点，构建过程中不创建节点对象。
+     * 并行构建时按首字符把词分组，在当前fork-join线程池中分别构建各组的子树，再按层合并为全局的层序编号
+     *
+     * @param words    词集合
+     * @param parallel 是否并行构建，需要在fork-join线程池中调用才能使用指定的线程池
+     * @return 返回字典树
+     */
+    public static CompactTrie build(Collection<String> words, boolean parallel) {
+        String[] sorted = sortedWords(words, parallel);
+        int maxWordLength = 0;
+        for (String word : sorted) {
+            maxWordLength = Math.max(maxWordLength, word.length());
+        }
+        if (!parallel || sorted.length == 0) {
+            Layout layout = Layout.build(sorted, 0, sorted.length, 0);
+            return new CompactTrie(layout.firstChild, layout.labels, layout.terminals, sorted.length, maxWordLength);
+        }
+        return merge(sorted, maxWordLength);
+    }
+
+    private static String[] sortedWords(Collection<String> words, boolean parallel) {
+        String[] sorted = words.stream().filter(word -> word != null && !word.isEmpty()).toArray(String[]::new);
+        if (parallel) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || !sorted[i].equals(sorted[distinct - 1])) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * 并行构建首字符子树并合并。全局层序中第d层的节点依次是各子树第d层的节点，
+     * 因此子树中的节点只需加上所在层的全局起始位置和前面子树在该层的节点数即可得到全局编号
+     */
+    private static CompactTrie merge(String[] sorted, int maxWordLength) {
+        List<int[]> groups = new ArrayList<>();
+        for (int lo = 0; lo < sorted.length; ) {
+            int hi = lo + 1;
+            while (hi < sorted.length && sorted[hi].charAt(0) == sorted[lo].charAt(0)) {
+                hi++;
+            }
+            groups.add(new int[]{lo, hi});
+            lo = hi;
+        }
+        Layout[] subTries = groups.parallelStream().map(group -> Layout.build(sorted, group[0], group[1], 1)).toArray(Layout[]::new);
+        int levels = 0;
+        for (Layout subTrie : subTries) {
+            levels = Math.max(levels, subTrie.levels());
+        }
+        // offsets[g][j]为第g棵子树第j层节点的全局起始编号，子树的第j层对应全局深度j+1
+        int[][] offsets = new int[subTries.length][levels + 1];
+        int nodeCount = 1;
+        for (int level = 0; level <= levels; level++) {
+            for (int g = 0; g < subTries.length; g++) {
+                offsets[g][level] = nodeCount;
+                nodeCount += subTries[g].levelSize(level);
+            }
+        }
+        int[] firstChild = new int[nodeCount + 1];
+        char[] labels = new char[nodeCount];
+        long[] terminals = new long[(nodeCount + 63) >>> 6];
+        firstChild[ROOT] = 1;
+        firstChild[nodeCount] = nodeCount;
+        IntStream.range(0, subTries.length).parallel().forEach(g -> subTries[g].copyTo(offsets[g], firstChild, labels));
+        // 不同子树的节点可能落在位图的同一个long中，词结尾标记单线程写入
+        for (int g = 0; g < subTries.length; g++) {
+            subTries[g].copyTerminalsTo(offsets[g], terminals);
+        }
+        return new CompactTrie(firstChild, labels, terminals, sorted.length, maxWordLength);
+    }
+
+    /**
+     * 以某个节点为根、按层序编号的字典树布局
+     */
+    private static final class Layout {
+        private final int[] firstChild;
+        private final char[] labels;
+        private final long[] terminals;
+        /**
+         * levelStart[j]为第j层第一个节点的编号，最后一个元素为节点总数
+         */
+        private final int[] levelStart;
+
+        private Layout(int[] firstChild, char[] labels, long[] terminals, int[] levelStart) {
+            this.firstChild = firstChild;
+            this.labels = labels;
+            this.terminals = terminals;
+            this.levelStart = levelStart;
+        }
+
+        /**
+         * 构建排序数组[from, to)区间内的词组成的字典树，根节点深度为rootDepth，
+         * rootDepth为1时根节点代表这些词共同的首字符
+         */
+        private static Layout build(String[] sorted, int from, int to, int rootDepth) {
+            int capacity = 1;
+            for (int i = from; i < to; i++) {
+                capacity += sorted[i].length();
+            }
+            // 节点数不会超过所有词的字符总数加1，构建完成后再截断
+            int[] low = new int[capacity];
+            int[] high = new int[capacity];
+            int[] depth = new int[capacity];
+            int[] firstChild = new int[capacity + 1];
+            char[] labels = new char[capacity];
+            long[] terminals = new long[(capacity + 63) >>> 6];
+            low[ROOT] = from;
+            high[ROOT] = to;
+            depth[ROOT] = rootDepth;
+            if (rootDepth > 0) {
+                labels[ROOT] = sorted[from].charAt(rootDepth - 1);
+            }
+            int nodeCount = 1;
+            for (int node = 0; node < nodeCount; node++) {
+                int lo = low[node];
+                int hi = high[node];
+                int d = depth[node];
+                // 排序后与前缀等长的词排在区间最前面
+                if (lo < hi && sorted[lo].length() == d) {
+                    terminals[node >>> 6] |= 1L << node;
+                    lo++;
+                }
+                firstChild[node] = nodeCount;
+                while (lo < hi) {
+                    char keyWord = sorted[lo].charAt(d);
+                    int groupEnd = lo + 1;
+                    while (groupEnd < hi && sorted[groupEnd].charAt(d) == keyWord) {
+                        groupEnd++;
+                    }
+                    low[nodeCount] = lo;
+                    high[nodeCount] = groupEnd;
+                    depth[nodeCount] = d + 1;
+                    labels[nodeCount] = keyWord;
+                    nodeCount++;
+                    lo = groupEnd;
+                }
+            }
+            firstChild[nodeCount] = nodeCount;
+            int levels = depth[nodeCount - 1] - rootDepth + 1;
+            int[] levelStart = new int[levels + 1];
+            for (int node = nodeCount - 1; node >= 0; node--) {
+                levelStart[depth[node] - rootDepth] = node;
+            }
+            levelStart[levels] = nodeCount;
+            return new Layout(Arrays.copyOf(firstChild, nodeCount + 1), Arrays.copyOf(labels, nodeCount),
+                    Arrays.copyOf(terminals, (nodeCount + 63) >>> 6), levelStart);
+        }
+
+        private int levels() {
+            return levelStart.length - 1;
+        }
+
+        private int levelSize(int level) {
+            return level < levels() ? levelStart[level + 1] - levelStart[level] : 0;
+        }
+
+        private int globalId(int[] offsets, int level, int node) {
+            return offsets[level] + node - levelStart[Math.min(level, levels())];
+        }
+
+        private void copyTo(int[] offsets, int[] globalFirstChild, char[] globalLabels) {
+            for (int level = 0; level < levels(); level++) {
+                for (int node = levelStart[level]; node < levelStart[level + 1]; node++) {
+                    int id = globalId(offsets, level, node);
+                    globalLabels[id] = labels[node];
+                    // 子节点在下一层，叶子节点的firstChild指向下一层中紧随其后的位置
+                    globalFirstChild[id] = globalId(offsets, level + 1, firstChild[node]);
+                }
+            }
+        }
+
+        private void copyTerminalsTo(int[] offsets, long[] globalTerminals) {
+            for (int level = 0; level < levels(); level++) {
+                for (int node = levelStart[level]; node < levelStart[level + 1]; node++) {
+                    if ((terminals[node >>> 6] & (1L << node)) != 0) {
+                        int id = globalId(offsets, level, node);
+                        globalTerminals[id >>> 6] |= 1L << id;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 查找子节点
+     *
+     * @param node    当前节点
+     * @param keyWord 字符
+     * @return 返回子节点编号，不存在返回-1
+     */
+    public int child(int node, char keyWord) {
+        int lo = firstChild[node];
+        int hi = firstChild[node + 1] - 1;
+        if (hi - lo < LINEAR_SEARCH_THRESHOLD) {
+            for (int i = lo; i <= hi; i++) {
+                if (labels[i] == keyWord) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels[mid];
+            if (label < keyWord) {
+                lo = mid + 1;
+            } else if (label > keyWord) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 字典树中是否存在该词
+     *
+     * @param word 词
+     * @return 存在返回true，否则返回false
+     */
+    public boolean contains(CharSequence word) {
+        return wordId(word) >= 0;
+    }
+
+    /**
+     * 查找词的编号
+     *
+     * @param word 词
+     * @return 返回词编号，词不存在时返回-1
+     */
+    public int wordId(CharSequence word) {
+        int node = ROOT;
+        for (int i = 0; i < word.length() && node >= 0; i++) {
+            node = child(node, word.charAt(i));
+        }
+        return node > ROOT && isTerminal(node) ? wordId(node) : -1;
+    }
+
+    public boolean isTerminal(int node) {
+        return (terminals[node >>> 6] & (1L << node)) != 0;
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int childEnd(int node) {
+        return firstChild[node + 1];
+    }
+
+    public char label(int node) {
+        return labels[node];
+    }
+
+    public int nodeCount() {
+        return labels.length;
+    }
+
+    /**
+     * @return 词的数量
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    /**
+     * 词编号是词结尾节点在所有词结尾节点中的序号，范围为[0, size())
+     *
+     * @param node 词结尾节点
+     * @return 返回词编号
+     */
+    public int wordId(int node) {
+        return terminalRanks[node >>> 6] + Long.bitCount(terminals[node >>> 6] & ((1L << node) - 1));
+    }
+
+    /**
+     * 取回词编号对应的词，从词结尾节点沿父节点回溯到根节点
+     *
+     * @param wordId 词编号
+     * @return 返回词
+     */
+    public String word(int wordId) {
+        if (wordId < 0 || wordId >= size) {
+            throw new IllegalArgumentException(String.format("词编号%d超出范围[0, %d)", wordId, size));
+        }
+        // 最后一个序号不大于wordId的long中包含该词结尾节点
+        int lo = 0;
+        int hi = terminalRanks.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (terminalRanks[mid] <= wordId) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long bits = terminals[lo];
+        for (int i = terminalRanks[lo]; i < wordId; i++) {
+            bits &= bits - 1;
+        }
+        int node = (lo << 6) + Long.numberOfTrailingZeros(bits);
+        StringBuilder word = new StringBuilder();
+        while (node != ROOT) {
+            word.append(labels[node]);
+            node = parent(node);
+        }
+        return word.reverse().toString();
+    }
+
+    /**
+     * 子节点编号区间按节点编号递增，父节点是第一个子节点编号不大于node的最后一个节点
+     */
+    private int parent(int node) {
+        int lo = ROOT;
+        int hi = node - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstChild[mid] <= node) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    int[] firstChildArray() {
+        return firstChild;
+    }
+
+    char[] labelArray() {
+        return labels;
+    }
+
+    long[] terminalArray() {
+        return terminals;
+    }
+
+    /**
+     * 估算字典树占用的堆内存
+     *
+     * @return 返回字节数
+     */
+    public long heapBytes() {
+        return arrayBytes(firstChild.length, 4) + arrayBytes(labels.length, 2) + arrayBytes(terminals.length, 8)
+                + arrayBytes(terminalRanks.length, 4);
+    }
+
+    /**
+     * 估算数组占用的堆内存，数组对象头按16字节计算，并按8字节对齐
+     */
+    static long arrayBytes(int length, int elementBytes) {
+        return (16L + (long) length * elementBytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,181 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.function.IntPredicate;
+
+import static com.lhb.github.io.utilbox.handler.matcher.CompactTrie.ROOT;
+
+/**
+ * 基于紧凑字典树的DFA匹配引擎，在文本的每个位置上从根节点开始匹配
+ * 配置了{@link CharNormalizer}时逐个字符规范化后再查找子节点，干扰字符不能作为词的开头，出现在词中间时跳过。
+ * 只在{@link Prefilter}判断可能是词开头的位置上查找
+ *
+ * @author lihuibin
+ */
+public class DfaMatcher implements WordMatcher {
+    private final CompactTrie trie;
+    private final CharNormalizer normalizer;
+    private final int maxNoise;
+    private final Prefilter prefilter;
+
+    public DfaMatcher(CompactTrie trie) {
+        this(trie, null);
+    }
+
+    /**
+     * @param trie       字典树，其中的词需要用normalizer规范化
+     * @param normalizer 字符规范化规则，为null时不做规范化
+     */
+    public DfaMatcher(CompactTrie trie, CharNormalizer normalizer) {
+        this.trie = trie;
+        this.normalizer = normalizer;
+        this.maxNoise = normalizer == null ? 0 : normalizer.getMaxNoise();
+        this.prefilter = Prefilter.of(trie);
+    }
+
+    /**
+     * 判断文本从指定位置开始是否存在词库中的词
+     *
+     * @param text       文本
+     * @param beginIndex 文本开始位置
+     * @param longest    是否为最大匹配模式
+     * @return 返回匹配到的词长度，没有匹配返回0
+     */
+    public int checkWord(CharSequence text, int beginIndex, boolean longest) {
+        return (int) (checkNode(text, beginIndex, longest, null) >>> 32);
+    }
+
+    /**
+     * 与{@link #checkWord}相同，同时返回匹配到的词结尾节点，不满足过滤条件的词结尾节点不算匹配
+     *
+     * @return 高32位是匹配到的词长度，低32位是词结尾节点，没有匹配返回0
+     */
+    private long checkNode(CharSequence text, int beginIndex, boolean longest, IntPredicate wordFilter) {
+        int matchLength = 0;
+        int matchNode = ROOT;
+        int node = ROOT;
+        int noise = 0;
+        for (int i = beginIndex; i < text.length(); i++) {
+            char keyWord = text.charAt(i);
+            if (normalizer != null && (keyWord = normalizer.normalize(keyWord)) == CharNormalizer.NOISE) {
+                if (i == beginIndex || ++noise > maxNoise) {
+                    break;
+                }
+                continue;
+            }
+            node = trie.child(node, keyWord);
+            if (node < 0) {
+                break;
+            }
+            if (trie.isTerminal(node) && (wordFilter == null || wordFilter.test(trie.wordId(node)))) {
+                matchLength = i + 1 - beginIndex;
+                matchNode = node;
+                if (!longest) {
+                    break;
+                }
+            }
+        }
+        return (long) matchLength << 32 | matchNode;
+    }
+
+    @Override
+    public boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter) {
+        int candidates = 0;
+        for (int i = nextCandidate(text, 0); i < text.length(); i = nextCandidate(text, i + 1)) {
+            candidates++;
+            if (checkNode(text, i, false, wordFilter) != 0) {
+                prefilter.record(i + 1, candidates);
+                return true;
+            }
+        }
+        prefilter.record(text.length(), candidates);
+        return false;
+    }
+
+    @Override
+    public void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        int candidates = 0;
+        for (int i = nextCandidate(text, 0); i < text.length(); i = nextCandidate(text, i + 1)) {
+            candidates++;
+            long matched = checkNode(text, i, longest, wordFilter);
+            int wordLength = (int) (matched >>> 32);
+            if (wordLength > 0) {
+                visitor.visit(i, i + wordLength, trie.wordId((int) matched));
+                i = i + wordLength - 1;
+            }
+        }
+        prefilter.record(text.length(), candidates);
+    }
+
+    private int nextCandidate(CharSequence text, int from) {
+        return normalizer == null ? prefilter.nextCandidate(text, from) : prefilter.nextCandidate(text, from, normalizer);
+    }
+
+    @Override
+    public void matchAll(CharSequence text, WordMatchVisitor visitor) {
+        int candidates = 0;
+        for (int start = nextCandidate(text, 0); start < text.length(); start = nextCandidate(text, start + 1)) {
+            candidates++;
+            int node = ROOT;
+            int noise = 0;
+            for (int i = start; i < text.length(); i++) {
+                char keyWord = text.charAt(i);
+                if (normalizer != null && (keyWord = normalizer.normalize(keyWord)) == CharNormalizer.NOISE) {
+                    if (i == start || ++noise > maxNoise) {
+                        break;
+                    }
+                    continue;
+                }
+                node = trie.child(node, keyWord);
+                if (node < 0) {
+                    break;
+                }
+                if (trie.isTerminal(node)) {
+                    visitor.visit(start, i + 1, trie.wordId(node));
+                }
+            }
+        }
+        prefilter.record(text.length(), candidates);
+    }
+
+    @Override
+    public String getWord(int wordId) {
+        return trie.word(wordId);
+    }
+
+    @Override
+    public int getWordId(CharSequence word) {
+        return trie.wordId(word);
+    }
+
+    /**
+     * 词库中是否存在该词，word应该是规范化之后的词
+     */
+    @Override
+    public boolean hasWord(CharSequence word) {
+        return trie.contains(word);
+    }
+
+    /**
+     * 配置了干扰字符时，一个匹配在原文中最多占用最长词长度加上可以跳过的干扰字符数
+     */
+    @Override
+    public int getMaxWordLength() {
+        int maxWordLength = trie.getMaxWordLength();
+        return maxWordLength == 0 ? 0 : maxWordLength + maxNoise;
+    }
+
+    @Override
+    public int size() {
+        return trie.size();
+    }
+
+    @Override
+    public long heapBytes() {
+        return trie.heapBytes() + prefilter.heapBytes();
+    }
+
+    @Override
+    public Prefilter getPrefilter() {
+        return prefilter;
+    }
+}
@@ -0,0 +1,62 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+/**
+ * 词库快照，包含构建完成的匹配引擎、词的分类及其版本信息
+ * 快照创建后不再修改，词库更新时构建新的快照并整体替换，同一个快照中的词编号和分类始终一致
+ *
+ * @author lihuibin
+ */
+public final class DictionarySnapshot {
+    private final WordMatcher matcher;
+    private final WordCategories categories;
+    private final long version;
+    private final long buildMillis;
+    private final long createTime;
+
+    public DictionarySnapshot(WordMatcher matcher, long version, long buildMillis) {
+        this(matcher, WordCategories.NONE, version, buildMillis);
+    }
+
+    /**
+     * @param matcher     匹配引擎
+     * @param categories  按匹配引擎的词编号保存的词分类
+     * @param version     词库版本
+     * @param buildMillis 加载并构建的耗时，单位毫秒
+     */
+    public DictionarySnapshot(WordMatcher matcher, WordCategories categories, long version, long buildMillis) {
+        this.matcher = matcher;
+        this.categories = categories;
+        this.version = version;
+        this.buildMillis = buildMillis;
+        this.createTime = System.currentTimeMillis();
+    }
+
+    public WordMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * @return 词的分类
+     */
+    public WordCategories getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return 词库版本，每次重新加载后递增
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 加载并构建该快照的耗时，单位毫秒
+     */
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+}
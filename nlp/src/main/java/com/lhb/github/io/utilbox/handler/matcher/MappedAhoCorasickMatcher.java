@@ -0,0 +1,367 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 直接在内存映射的词库快照文件上匹配的Aho-Corasick自动机，词库数据不占用堆内存
+ * <p>
+ * 快照文件使用小端字节序，结构如下：
+ * <pre>
+ * int   魔数 NLPA
+ * int   格式版本
+ * long  词库文件内容校验和
+ * int   节点数N
+ * int   词数量
+ * int   最长词长度
+ * int   词结尾位图长度M
+ * int   分类数量C
+ * int   分类位图长度K，为0或词数量
+ * int   分类名称字节数B
+ * int   保留
+ * long[M]   词结尾位图
+ * long[K]   按词编号保存的分类位图
+ * int[N+1]  第一个子节点编号
+ * int[N]    失败指针
+ * int[N]    输出指针
+ * int[N]    节点深度
+ * char[N]   节点入边字符
+ * byte[B]   UTF-8编码的分类名称，以换行符分隔
+ * </pre>
+ *
+ * @author lihuibin
+ */
+public class MappedAhoCorasickMatcher extends AbstractAutomatonMatcher {
+    private static final int MAGIC = 0x4E4C5041;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 48;
+    private static final int LINEAR_SEARCH_THRESHOLD = 8;
+
+    private final LongBuffer terminals;
+    /**
+     * 位图中每个long之前的词结尾节点数量，加载时计算，保存在堆内
+     */
+    private final int[] terminalRanks;
+    private final IntBuffer firstChild;
+    private final IntBuffer fail;
+    private final IntBuffer output;
+    private final IntBuffer depth;
+    private final CharBuffer labels;
+    private final WordCategories categories;
+    /**
+     * 过滤器由快照中字典树的前两层构建，保存在堆内
+     */
+    private final Prefilter prefilter;
+    private final int size;
+    private final int maxWordLength;
+    private final long fileBytes;
+
+    private MappedAhoCorasickMatcher(ByteBuffer buffer, CharNormalizer normalizer) {
+        super(normalizer);
+        int nodeCount = buffer.getInt(16);
+        this.size = buffer.getInt(20);
+        this.maxWordLength = buffer.getInt(24);
+        int terminalLength = buffer.getInt(28);
+        int categoryCount = buffer.getInt(32);
+        int maskLength = buffer.getInt(36);
+        int nameBytes = buffer.getInt(40);
+        int offset = HEADER_BYTES;
+        this.terminals = section(buffer, offset, terminalLength * 8).asLongBuffer();
+        this.terminalRanks = new int[terminalLength];
+        int rank = 0;
+        for (int i = 0; i < terminalLength; i++) {
+            terminalRanks[i] = rank;
+            rank += Long.bitCount(terminals.get(i));
+        }
+        offset += terminalLength * 8;
+        LongBuffer masks = maskLength == 0 ? null : section(buffer, offset, maskLength * 8).asLongBuffer();
+        offset += maskLength * 8;
+        this.firstChild = section(buffer, offset, (nodeCount + 1) * 4).asIntBuffer();
+        offset += (nodeCount + 1) * 4;
+        this.fail = section(buffer, offset, nodeCount * 4).asIntBuffer();
+        offset += nodeCount * 4;
+        this.output = section(buffer, offset, nodeCount * 4).asIntBuffer();
+        offset += nodeCount * 4;
+        this.depth = section(buffer, offset, nodeCount * 4).asIntBuffer();
+        offset += nodeCount * 4;
+        this.labels = section(buffer, offset, nodeCount * 2).asCharBuffer();
+        offset += nodeCount * 2;
+        this.categories = WordCategories.of(categoryNames(section(buffer, offset, nameBytes), categoryCount), masks);
+        this.fileBytes = buffer.capacity();
+        this.prefilter = buildPrefilter();
+    }
+
+    private Prefilter buildPrefilter() {
+        int rootEnd = firstChild.get(ROOT + 1);
+        Prefilter result = new Prefilter(rootEnd < labels.limit() ? firstChild.get(rootEnd) - rootEnd : 0);
+        for (int node = firstChild.get(ROOT); node < rootEnd; node++) {
+            char c = labels.get(node);
+            result.addFirst(c, isTerminal(node));
+            for (int child = firstChild.get(node); child < firstChild.get(node + 1); child++) {
+                result.addBigram(c, labels.get(child));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 映射词库快照文件
+     *
+     * @param file           快照文件
+     * @param sourceChecksum 当前词库文件内容的校验和
+     * @return 返回匹配引擎，文件不存在、格式不正确或校验和不一致时返回null
+     * @throws IOException 读取文件失败时抛出
+     */
+    public static MappedAhoCorasickMatcher open(Path file, long sourceChecksum) throws IOException {
+        return open(file, sourceChecksum, null);
+    }
+
+    /**
+     * 映射词库快照文件
+     *
+     * @param file           快照文件
+     * @param sourceChecksum 当前词库文件内容的校验和，使用规范化规则时应包含规则的指纹
+     * @param normalizer     字符规范化规则，需要与构建快照时一致，为null时不做规范化
+     * @return 返回匹配引擎，文件不存在、格式不正确或校验和不一致时返回null
+     * @throws IOException 读取文件失败时抛出
+     */
+    public static MappedAhoCorasickMatcher open(Path file, long sourceChecksum, CharNormalizer normalizer) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < HEADER_BYTES) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getLong(8) != sourceChecksum) {
+            return null;
+        }
+        int nodeCount = buffer.getInt(16);
+        if (buffer.capacity() != fileBytes(nodeCount, buffer.getInt(28), buffer.getInt(36), buffer.getInt(40))) {
+            return null;
+        }
+        return new MappedAhoCorasickMatcher(buffer, normalizer);
+    }
+
+    private static List<String> categoryNames(ByteBuffer bytes, int count) {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        byte[] content = new byte[bytes.remaining()];
+        bytes.get(content);
+        return Arrays.asList(new String(content, StandardCharsets.UTF_8).split("\n", count));
+    }
+
+    /**
+     * 写入快照文件，先写临时文件再替换，避免其他进程读到不完整的快照
+     */
+    static void write(Path file, long sourceChecksum, int size, int maxWordLength, long[] terminals, int[] firstChild,
+                      int[] fail, int[] output, int[] depth, char[] labels, WordCategories categories) throws IOException {
+        int nodeCount = labels.length;
+        LongBuffer masks = categories.getMasks();
+        int maskLength = masks == null ? 0 : masks.remaining();
+        byte[] names = String.join("\n", categories.getNames()).getBytes(StandardCharsets.UTF_8);
+        long bytes = fileBytes(nodeCount, terminals.length, maskLength, names.length);
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT_VERSION);
+                buffer.putLong(8, sourceChecksum);
+                buffer.putInt(16, nodeCount);
+                buffer.putInt(20, size);
+                buffer.putInt(24, maxWordLength);
+                buffer.putInt(28, terminals.length);
+                buffer.putInt(32, categories.getNames().size());
+                buffer.putInt(36, maskLength);
+                buffer.putInt(40, names.length);
+                int offset = HEADER_BYTES;
+                section(buffer, offset, terminals.length * 8).asLongBuffer().put(terminals);
+                offset += terminals.length * 8;
+                if (masks != null) {
+                    section(buffer, offset, maskLength * 8).asLongBuffer().put(masks);
+                }
+                offset += maskLength * 8;
+                section(buffer, offset, firstChild.length * 4).asIntBuffer().put(firstChild);
+                offset += firstChild.length * 4;
+                section(buffer, offset, nodeCount * 4).asIntBuffer().put(fail);
+                offset += nodeCount * 4;
+                section(buffer, offset, nodeCount * 4).asIntBuffer().put(output);
+                offset += nodeCount * 4;
+                section(buffer, offset, nodeCount * 4).asIntBuffer().put(depth);
+                offset += nodeCount * 4;
+                section(buffer, offset, nodeCount * 2).asCharBuffer().put(labels);
+                offset += nodeCount * 2;
+                section(buffer, offset, names.length).put(names);
+                buffer.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long fileBytes(int nodeCount, int terminalLength, int maskLength, int nameBytes) {
+        return HEADER_BYTES + terminalLength * 8L + maskLength * 8L + (nodeCount + 1) * 4L + nodeCount * 12L + nodeCount * 2L
+                + nameBytes;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int offset, int bytes) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + bytes);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    protected int child(int node, char keyWord) {
+        int lo = firstChild.get(node);
+        int hi = firstChild.get(node + 1) - 1;
+        if (hi - lo < LINEAR_SEARCH_THRESHOLD) {
+            for (int i = lo; i <= hi; i++) {
+                if (labels.get(i) == keyWord) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels.get(mid);
+            if (label < keyWord) {
+                lo = mid + 1;
+            } else if (label > keyWord) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected int fail(int node) {
+        return fail.get(node);
+    }
+
+    @Override
+    protected int output(int node) {
+        return output.get(node);
+    }
+
+    @Override
+    protected int depth(int node) {
+        return depth.get(node);
+    }
+
+    @Override
+    protected boolean isTerminal(int node) {
+        return (terminals.get(node >>> 6) & (1L << node)) != 0;
+    }
+
+    @Override
+    protected int wordId(int node) {
+        return terminalRanks[node >>> 6] + Long.bitCount(terminals.get(node >>> 6) & ((1L << node) - 1));
+    }
+
+    /**
+     * 与{@link CompactTrie#word(int)}相同，先找到词结尾节点，再沿父节点回溯
+     */
+    @Override
+    public String getWord(int wordId) {
+        if (wordId < 0 || wordId >= size) {
+            throw new IllegalArgumentException(String.format("词编号%d超出范围[0, %d)", wordId, size));
+        }
+        int lo = 0;
+        int hi = terminalRanks.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (terminalRanks[mid] <= wordId) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long bits = terminals.get(lo);
+        for (int i = terminalRanks[lo]; i < wordId; i++) {
+            bits &= bits - 1;
+        }
+        int node = (lo << 6) + Long.numberOfTrailingZeros(bits);
+        char[] word = new char[depth.get(node)];
+        for (int i = word.length - 1; i >= 0; i--) {
+            word[i] = labels.get(node);
+            node = parent(node);
+        }
+        return new String(word);
+    }
+
+    private int parent(int node) {
+        int lo = ROOT;
+        int hi = node - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstChild.get(mid) <= node) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    protected int maxDepth() {
+        return maxWordLength;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 词库数据位于内存映射文件中，只计算缓冲区视图对象本身、词编号索引和过滤器
+     */
+    @Override
+    public long heapBytes() {
+        return 64L * 7 + CompactTrie.arrayBytes(terminalRanks.length, 4) + prefilter.heapBytes();
+    }
+
+    @Override
+    public Prefilter getPrefilter() {
+        return prefilter;
+    }
+
+    /**
+     * @return 快照中保存的词分类，分类位图直接读取映射的文件
+     */
+    public WordCategories getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return 快照文件大小，即映射到内存中的字节数
+     */
+    public long getFileBytes() {
+        return fileBytes;
+    }
+}
@@ -0,0 +1,97 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的匹配结果缓冲区，每个匹配依次保存开始位置、结束位置和词编号三个int
+ * 调用{@link #clear()}后可以用于下一次匹配，容量只增不减，同一线程反复使用时匹配过程不分配对象。
+ * 非线程安全
+ *
+ * @author lihuibin
+ */
+public final class MatchBuffer implements WordMatchVisitor {
+    private int[] matches;
+    private int count;
+
+    public MatchBuffer() {
+        this(16);
+    }
+
+    /**
+     * @param capacity 初始可以保存的匹配数量
+     */
+    public MatchBuffer(int capacity) {
+        this.matches = new int[Math.max(1, capacity) * 3];
+    }
+
+    @Override
+    public void visit(int start, int end, int wordId) {
+        if (count * 3 == matches.length) {
+            matches = Arrays.copyOf(matches, matches.length * 2);
+        }
+        matches[count * 3] = start;
+        matches[count * 3 + 1] = end;
+        matches[count * 3 + 2] = wordId;
+        count++;
+    }
+
+    /**
+     * 清空匹配结果，保留已分配的空间
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return 匹配数量
+     */
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @param index 第几个匹配
+     * @return 匹配开始位置（包含）
+     */
+    public int start(int index) {
+        return matches[checkIndex(index) * 3];
+    }
+
+    /**
+     * @param index 第几个匹配
+     * @return 匹配结束位置（不包含）
+     */
+    public int end(int index) {
+        return matches[checkIndex(index) * 3 + 1];
+    }
+
+    /**
+     * @param index 第几个匹配
+     * @return 匹配到的词的编号
+     */
+    public int wordId(int index) {
+        return matches[checkIndex(index) * 3 + 2];
+    }
+
+    /**
+     * @return 按匹配顺序排列的词编号
+     */
+    public int[] wordIds() {
+        int[] wordIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            wordIds[i] = matches[i * 3 + 2];
+        }
+        return wordIds;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.format("下标%d超出范围[0, %d)", index, count));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,25 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+/**
+ * 匹配结果回调，按文本从左到右的顺序接收互不重叠的匹配区间
+ *
+ * @author lihuibin
+ */
+@FunctionalInterface
+public interface MatchVisitor extends WordMatchVisitor {
+    /**
+     * 接收一个匹配结果
+     *
+     * @param start 匹配开始位置（包含）
+     * @param end   匹配结束位置（不包含）
+     */
+    void visit(int start, int end);
+
+    /**
+     * 不需要词编号的回调忽略编号
+     */
+    @Override
+    default void visit(int start, int end, int wordId) {
+        visit(start, end);
+    }
+}
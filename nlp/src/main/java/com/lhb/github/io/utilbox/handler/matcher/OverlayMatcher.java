@@ -0,0 +1,427 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 增量词库匹配引擎，在构建好的基础词库之上叠加运行时新增和删除的词
+ * 新增词只保存不在基础词库中的词，删除词只保存基础词库中存在的词，二者都使用{@link PersistentTrie}，
+ * 每次增删只复制一条路径，旧的匹配引擎仍可被正在进行的匹配安全使用。
+ * 新增词的编号从基础词库的编号上界开始依次分配，删除后再新增的词使用新的编号。
+ * 匹配前新增词编译成自己的自动机，删除的词作为基础词库的过滤条件，文本中没有新增词时匹配代价与基础词库相同
+ *
+ * @author lihuibin
+ */
+public class OverlayMatcher implements WordMatcher {
+    private final WordMatcher base;
+    private final CharNormalizer normalizer;
+    private final PersistentTrie added;
+    private final PersistentTrie removed;
+    /**
+     * 下一个新增词的编号
+     */
+    private final int nextId;
+    /**
+     * 编译后的增删词，第一次匹配时创建
+     */
+    private volatile Delta delta;
+
+    public OverlayMatcher(WordMatcher base) {
+        this(base, null);
+    }
+
+    /**
+     * @param base       基础词库
+     * @param normalizer 基础词库使用的字符规范化规则，增删的词按同样的规则处理，为null时不做规范化
+     */
+    public OverlayMatcher(WordMatcher base, CharNormalizer normalizer) {
+        this(base, normalizer, PersistentTrie.EMPTY, PersistentTrie.EMPTY, base.getWordIdLimit());
+    }
+
+    private OverlayMatcher(WordMatcher base, CharNormalizer normalizer, PersistentTrie added, PersistentTrie removed,
+                           int nextId) {
+        this.base = base;
+        this.normalizer = normalizer;
+        this.added = added;
+        this.removed = removed;
+        this.nextId = nextId;
+    }
+
+    /**
+     * 新增词
+     *
+     * @param word 词
+     * @return 返回新的匹配引擎
+     */
+    public OverlayMatcher addWord(String word) {
+        word = normalize(word);
+        if (word.isEmpty()) {
+            return this;
+        }
+        if (removed.contains(word, 0, word.length())) {
+            return new OverlayMatcher(base, normalizer, added, removed.remove(word), nextId);
+        }
+        if (base.hasWord(word)) {
+            return this;
+        }
+        return new OverlayMatcher(base, normalizer, added.add(word, nextId), removed, nextId + 1);
+    }
+
+    /**
+     * 删除词
+     *
+     * @param word 词
+     * @return 返回新的匹配引擎
+     */
+    public OverlayMatcher removeWord(String word) {
+        word = normalize(word);
+        if (word.isEmpty()) {
+            return this;
+        }
+        if (added.contains(word, 0, word.length())) {
+            return new OverlayMatcher(base, normalizer, added.remove(word), removed, nextId);
+        }
+        if (!base.hasWord(word)) {
+            return this;
+        }
+        return new OverlayMatcher(base, normalizer, added, removed.add(word), nextId);
+    }
+
+    private String normalize(String word) {
+        return normalizer == null ? word : normalizer.normalize(word);
+    }
+
+    /**
+     * @return 叠加在基础词库上的增删词数量
+     */
+    public int deltaSize() {
+        return added.size() + removed.size();
+    }
+
+    @Override
+    public boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter) {
+        return contains(text, 0, longest, wordFilter);
+    }
+
+    /**
+     * 删除的词作为基础词库的过滤条件，基础词库的结果可能与前文有关，例如白名单短语，交给基础词库按from处理
+     */
+    @Override
+    public boolean contains(CharSequence text, int from, boolean longest, IntPredicate wordFilter) {
+        Delta delta = delta();
+        if (base.contains(text, from, longest, delta.baseFilter(wordFilter))) {
+            return true;
+        }
+        return delta.added != null && delta.added.contains(text, from, longest, delta.addedFilter(wordFilter));
+    }
+
+    @Override
+    public void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        match(text, 0, longest, wordFilter, visitor);
+    }
+
+    /**
+     * 文本中没有新增词时，删除的词作为过滤条件直接交给基础词库。否则沿用基础词库选出的匹配，
+     * 只在新增词开始的位置附近按窗口收集所有候选词重新选择，直到扫描位置重新落在基础词库也会经过的位置
+     */
+    @Override
+    public void match(CharSequence text, int from, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        Delta delta = delta();
+        IntPredicate baseFilter = delta.baseFilter(wordFilter);
+        MatchBuffer hits = delta.addedHits(text, from, wordFilter);
+        if (hits == null) {
+            base.match(text, from, longest, baseFilter, visitor);
+            return;
+        }
+        // 新增词的匹配按开始位置排序，高32位是开始位置，低32位是在hits中的下标
+        long[] order = new long[hits.size()];
+        for (int m = 0; m < order.length; m++) {
+            order[m] = (long) hits.start(m) << 32 | m;
+        }
+        Arrays.sort(order);
+        MatchBuffer selected = new MatchBuffer();
+        base.match(text, from, longest, baseFilter, selected);
+        int length = text.length();
+        int maxWordLength = getMaxWordLength();
+        int span = maxWordLength * 2;
+        int[] best = new int[span];
+        int[] bestId = new int[span];
+        int cursor = from;
+        int g = 0;
+        int h = 0;
+        while (cursor < length) {
+            while (h < order.length && (int) (order[h] >>> 32) < cursor) {
+                h++;
+            }
+            int nextHit = h < order.length ? (int) (order[h] >>> 32) : length;
+            // 扫描位置是基础词库也会经过的位置，下一个新增词匹配之前的结果与它相同
+            while (g < selected.size() && selected.start(g) < nextHit) {
+                visitor.visit(selected.start(g), selected.end(g), selected.wordId(g));
+                cursor = selected.end(g);
+                g++;
+            }
+            if (cursor > nextHit) {
+                continue;
+            }
+            cursor = nextHit;
+            while (cursor < length) {
+                int windowStart = cursor;
+                int windowEnd = Math.min(length, windowStart + span);
+                Arrays.fill(best, 0);
+                WordMatchVisitor collector = (start, end, wordId) -> {
+                    int offset = start - windowStart;
+                    int wordLength = end - start;
+                    if (offset < 0 || start >= windowEnd) {
+                        return;
+                    }
+                    if (best[offset] == 0 || (longest ? wordLength > best[offset] : wordLength < best[offset])) {
+                        best[offset] = wordLength;
+                        bestId[offset] = wordId;
+                    }
+                };
+                // 基础词库的结果可能与前文有关，窗口前带上最长词长度减1个字符
+                int context = Math.max(0, windowStart - maxWordLength + 1);
+                base.matchAll(CharBuffer.wrap(text, context, Math.min(length, windowEnd + maxWordLength)), (start, end, wordId) -> {
+                    if (baseFilter == null || baseFilter.test(wordId)) {
+                        collector.visit(context + start, context + end, wordId);
+                    }
+                });
+                for (int k = h; k < order.length && (int) (order[k] >>> 32) < windowEnd; k++) {
+                    int m = (int) order[k];
+                    collector.visit(hits.start(m), hits.end(m), hits.wordId(m));
+                }
+                while (cursor < windowEnd) {
+                    int wordLength = best[cursor - windowStart];
+                    if (wordLength > 0) {
+                        visitor.visit(cursor, cursor + wordLength, bestId[cursor - windowStart]);
+                        cursor += wordLength;
+                    } else {
+                        cursor++;
+                    }
+                }
+                while (h < order.length && (int) (order[h] >>> 32) < cursor) {
+                    h++;
+                }
+                while (g < selected.size() && selected.end(g) <= cursor) {
+                    g++;
+                }
+                // 扫描位置不在基础词库选出的某个匹配中间，之后的结果重新与它一致
+                if (g == selected.size() || selected.start(g) >= cursor) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void matchAll(CharSequence text, WordMatchVisitor visitor) {
+        Delta delta = delta();
+        IntPredicate baseFilter = delta.baseFilter(null);
+        base.matchAll(text, baseFilter == null ? visitor : (start, end, wordId) -> {
+            if (baseFilter.test(wordId)) {
+                visitor.visit(start, end, wordId);
+            }
+        });
+        if (delta.added != null) {
+            int[] addedIds = delta.addedIds;
+            delta.added.matchAll(text, (start, end, wordId) -> visitor.visit(start, end, addedIds[wordId]));
+        }
+    }
+
+    /**
+     * 编译增删词，增删词较多时可以在发布前调用，避免第一次匹配时编译
+     *
+     * @return 返回当前匹配引擎
+     */
+    public OverlayMatcher compile() {
+        delta();
+        return this;
+    }
+
+    /**
+     * 第一次匹配时把增删词编译成{@link Delta}，多个线程同时编译时结果相同，保留任意一个即可
+     */
+    private Delta delta() {
+        Delta current = delta;
+        if (current == null) {
+            current = new Delta(base, normalizer, added, removed, nextId);
+            delta = current;
+        }
+        return current;
+    }
+
+    /**
+     * 基础词库的编号交给基础词库解析，其余是新增词的编号
+     */
+    @Override
+    public String getWord(int wordId) {
+        if (wordId < base.getWordIdLimit()) {
+            return base.getWord(wordId);
+        }
+        String word = delta().word(wordId);
+        if (word == null) {
+            throw new IllegalArgumentException(String.format("词编号%d不存在", wordId));
+        }
+        return word;
+    }
+
+    @Override
+    public int getWordId(CharSequence word) {
+        int id = added.id(word, 0, word.length());
+        if (id >= 0) {
+            return id;
+        }
+        return removed.contains(word, 0, word.length()) ? -1 : base.getWordId(word);
+    }
+
+    @Override
+    public int getWordIdLimit() {
+        return nextId;
+    }
+
+    /**
+     * 词库中是否存在该词，word应该是规范化之后的词
+     */
+    @Override
+    public boolean hasWord(CharSequence word) {
+        if (added.contains(word, 0, word.length())) {
+            return true;
+        }
+        return !removed.contains(word, 0, word.length()) && base.hasWord(word);
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        int addedLength = added.getMaxWordLength();
+        if (addedLength > 0 && normalizer != null) {
+            addedLength += normalizer.getMaxNoise();
+        }
+        return Math.max(base.getMaxWordLength(), addedLength);
+    }
+
+    @Override
+    public int size() {
+        return base.size() + added.size() - removed.size();
+    }
+
+    /**
+     * 增删词部分按每个字符一个节点、每个节点约48字节估算
+     */
+    @Override
+    public long heapBytes() {
+        long bytes = 48L * (added.size() + removed.size()) * Math.max(added.getMaxWordLength(), removed.getMaxWordLength());
+        Delta current = delta;
+        return base.heapBytes() + bytes + (current == null ? 0 : current.heapBytes());
+    }
+
+    /**
+     * 过滤器只统计基础词库的扫描，新增词的自动机有自己的过滤器
+     */
+    @Override
+    public Prefilter getPrefilter() {
+        return base.getPrefilter();
+    }
+
+    /**
+     * 编译后的增删词：新增词构建成带过滤器的Aho-Corasick自动机，自动机的词编号映射回新增词的编号；
+     * 删除的词记录为基础词库的词编号，匹配时作为基础词库的过滤条件，不需要比对原文；
+     * 新增词按编号保存在数组中，取回词时不需要遍历字典树
+     */
+    private static final class Delta {
+        /**
+         * 新增词的自动机，没有新增词时为null
+         */
+        private final AhoCorasickMatcher added;
+        private final int[] addedIds;
+        /**
+         * 新增词按编号减去基础词库编号上界排列，删除后再新增的词留下的空位为null
+         */
+        private final String[] addedWords;
+        private final int baseIdLimit;
+        private final BitSet removedIds;
+
+        private Delta(WordMatcher base, CharNormalizer normalizer, PersistentTrie addedWords, PersistentTrie removedWords,
+                      int nextId) {
+            this.baseIdLimit = base.getWordIdLimit();
+            this.addedWords = new String[nextId - baseIdLimit];
+            addedWords.forEach((word, id) -> this.addedWords[id - baseIdLimit] = word);
+            if (addedWords.isEmpty()) {
+                this.added = null;
+                this.addedIds = new int[0];
+            } else {
+                List<String> words = new ArrayList<>(addedWords.size());
+                addedWords.forEach((word, id) -> words.add(word));
+                CompactTrie trie = CompactTrie.build(words);
+                this.added = new AhoCorasickMatcher(trie, false, normalizer);
+                this.addedIds = new int[trie.size()];
+                addedWords.forEach((word, id) -> addedIds[trie.wordId(word)] = id);
+            }
+            this.removedIds = new BitSet();
+            removedWords.forEach((word, id) -> {
+                int wordId = base.getWordId(word);
+                if (wordId >= 0) {
+                    removedIds.set(wordId);
+                }
+            });
+        }
+
+        /**
+         * @return 返回新增词的编号对应的词，不存在时返回null
+         */
+        private String word(int wordId) {
+            int index = wordId - baseIdLimit;
+            return index >= 0 && index < addedWords.length ? addedWords[index] : null;
+        }
+
+        /**
+         * 基础词库的过滤条件，排除删除的词
+         */
+        private IntPredicate baseFilter(IntPredicate wordFilter) {
+            if (removedIds.isEmpty()) {
+                return wordFilter;
+            }
+            return wordFilter == null ? wordId -> !removedIds.get(wordId)
+                    : wordId -> !removedIds.get(wordId) && wordFilter.test(wordId);
+        }
+
+        /**
+         * 新增词自动机的过滤条件，按映射后的编号过滤
+         */
+        private IntPredicate addedFilter(IntPredicate wordFilter) {
+            return wordFilter == null ? null : wordId -> wordFilter.test(addedIds[wordId]);
+        }
+
+        /**
+         * 找出从from开始、满足过滤条件的新增词，新增词与前文无关，只扫描from之后的部分
+         *
+         * @return 返回新增词的匹配，位置相对于text，没有时返回null
+         */
+        private MatchBuffer addedHits(CharSequence text, int from, IntPredicate wordFilter) {
+            if (added == null) {
+                return null;
+            }
+            CharSequence suffix = from == 0 ? text : CharBuffer.wrap(text, from, text.length());
+            if (!added.contains(suffix, false, addedFilter(wordFilter))) {
+                return null;
+            }
+            MatchBuffer hits = new MatchBuffer();
+            added.matchAll(suffix, (start, end, wordId) -> {
+                int id = addedIds[wordId];
+                if (wordFilter == null || wordFilter.test(id)) {
+                    hits.visit(from + start, from + end, id);
+                }
+            });
+            return hits;
+        }
+
+        private long heapBytes() {
+            return (added == null ? 0 : added.heapBytes()) + CompactTrie.arrayBytes(addedIds.length, 4)
+                    + CompactTrie.arrayBytes(addedWords.length, 4)
+                    + CompactTrie.arrayBytes((removedIds.length() + 63) >>> 6, 8);
+        }
+    }
+}
@@ -0,0 +1,777 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * 支持通配模式的匹配引擎，包装由普通词构建的匹配引擎使用
+ * <p>
+ * 词库中的一行可以是一个模式：{@code ?}匹配任意一个字符，{@code [abc]}、{@code [a-z]}、{@code [^abc]}匹配字符集合中的一个字符，
+ * {@code {m,n}}、{@code {n}}匹配m到n个任意字符(最多{@link #MAX_GAP}个)，{@code \}转义下一个字符。
+ * 例如{@code f?ck}、{@code 法{0,3}轮}，一个模式可以代替大量穷举的词。模式不能以{@code {m,n}}开头或结尾。
+ * <p>
+ * 模式不使用正则表达式，而是编译成元素数组，在每个可能的开始位置用位图记录所有可达的结束位置，
+ * 每个元素只需对位图做一次推进，没有回溯。模式中第一个前面只有单字符元素的字符作为锚点，
+ * 锚点字符和它后面的字符建立与{@link Prefilter}相同的过滤表，只在通过过滤的锚点处回推出开始位置验证整个模式，
+ * 没有锚点的模式(例如{@code [ab]{1,3}c})才需要在每个位置尝试。
+ * 模式的词编号从被包装的匹配引擎的编号上界开始，与普通词一起按{@link WordMatcher}约定的规则选出互不重叠的匹配
+ *
+ * @author lihuibin
+ */
+public class PatternMatcher implements WordMatcher {
+    /**
+     * 一个{@code {m,n}}最多匹配的字符数
+     */
+    public static final int MAX_GAP = 16;
+    /**
+     * 一个模式在原文中最多占用的字符数，包括跳过的干扰字符
+     */
+    public static final int MAX_PATTERN_LENGTH = 63;
+
+    private static final byte LITERAL = 0;
+    private static final byte CLASS = 1;
+    private static final byte ANY = 2;
+    private static final byte GAP = 3;
+
+    private final WordMatcher base;
+    private final CharNormalizer normalizer;
+    private final int maxNoise;
+    private final CompiledPattern[] patterns;
+    private final int baseIdLimit;
+    /**
+     * 模式及转义的词对应的编号，key包括模式原文和规范化之后的原文，用于按词库文件记录分类
+     */
+    private final Map<String, Integer> ids;
+    /**
+     * 有锚点的模式的锚点过滤表，以及锚点字符到模式下标的索引
+     */
+    private final Prefilter anchors;
+    private final Map<Character, int[]> byAnchor = new HashMap<>();
+    /**
+     * 没有锚点的模式，每个位置都需要尝试
+     */
+    private final int[] general;
+    private final int maxPatternLength;
+
+    private PatternMatcher(WordMatcher base, CharNormalizer normalizer, CompiledPattern[] patterns, Map<String, Integer> aliases) {
+        this.base = base;
+        this.normalizer = normalizer;
+        this.maxNoise = normalizer == null ? 0 : normalizer.getMaxNoise();
+        this.patterns = patterns;
+        this.baseIdLimit = base.getWordIdLimit();
+        this.ids = new HashMap<>(aliases);
+        this.anchors = new Prefilter(patterns.length);
+        Map<Character, List<Integer>> anchorIndex = new HashMap<>();
+        List<Integer> generalIndex = new ArrayList<>();
+        int maxLength = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            CompiledPattern pattern = patterns[i];
+            ids.put(pattern.source, baseIdLimit + i);
+            if (normalizer != null) {
+                ids.putIfAbsent(normalizer.normalize(pattern.source), baseIdLimit + i);
+            }
+            int anchor = pattern.anchor;
+            if (anchor >= 0) {
+                char c = pattern.chars[anchor];
+                // 锚点后面是字符时按双字过滤，否则只按锚点字符过滤
+                boolean bigram = anchor + 1 < pattern.kinds.length && pattern.kinds[anchor + 1] == LITERAL;
+                anchors.addFirst(c, !bigram);
+                if (bigram) {
+                    anchors.addBigram(c, pattern.chars[anchor + 1]);
+                }
+                anchorIndex.computeIfAbsent(c, key -> new ArrayList<>()).add(i);
+            } else {
+                generalIndex.add(i);
+            }
+            maxLength = Math.max(maxLength, pattern.maxLength + maxNoise);
+        }
+        anchorIndex.forEach((c, list) -> byAnchor.put(c, list.stream().mapToInt(Integer::intValue).toArray()));
+        this.general = generalIndex.stream().mapToInt(Integer::intValue).toArray();
+        this.maxPatternLength = maxLength;
+    }
+
+    /**
+     * 创建模式构建器
+     *
+     * @param normalizer 词库使用的字符规范化规则，模式中的字符按同样的规则处理，为null时不做规范化
+     * @return 返回构建器
+     */
+    public static Builder builder(CharNormalizer normalizer) {
+        return new Builder(normalizer);
+    }
+
+    /**
+     * 词库中的一行是否是模式，即包含未转义的{@code ?}、{@code [}或{@code {}
+     *
+     * @param line 词库中的一行
+     * @return 是模式返回true
+     */
+    public static boolean isPattern(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '?' || c == '[' || c == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 词库中的一行是否需要按模式语法处理，包括模式和含有转义字符的普通词
+     *
+     * @param line 词库中的一行
+     * @return 需要处理返回true
+     */
+    public static boolean isSyntax(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' || c == '?' || c == '[' || c == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 去掉普通词中的转义字符
+     *
+     * @param line 不是模式的一行
+     * @return 返回词
+     */
+    public static String unescape(String line) {
+        if (line.indexOf('\\') < 0) {
+            return line;
+        }
+        StringBuilder word = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                c = line.charAt(++i);
+            }
+            word.append(c);
+        }
+        return word.toString();
+    }
+
+    /**
+     * @return 模式数量
+     */
+    public int patternCount() {
+        return patterns.length;
+    }
+
+    /**
+     * @return 被包装的普通词匹配引擎
+     */
+    public WordMatcher getBase() {
+        return base;
+    }
+
+    @Override
+    public boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter) {
+        return base.contains(text, longest, wordFilter) || scan(text, wordFilter, null);
+    }
+
+    /**
+     * 文本中没有模式的匹配时直接使用被包装的匹配引擎。否则沿用被包装的匹配引擎选出的匹配，
+     * 只在模式匹配开始的位置附近按窗口收集所有候选词重新选择，直到扫描位置重新落在被包装的匹配引擎也会经过的位置
+     */
+    @Override
+    public void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        MatchBuffer hits = new MatchBuffer();
+        scan(text, wordFilter, hits);
+        if (hits.isEmpty()) {
+            base.match(text, longest, wordFilter, visitor);
+            return;
+        }
+        // 模式的匹配按开始位置排序，高32位是开始位置，低32位是在hits中的下标
+        long[] order = new long[hits.size()];
+        for (int m = 0; m < order.length; m++) {
+            order[m] = (long) hits.start(m) << 32 | m;
+        }
+        Arrays.sort(order);
+        MatchBuffer selected = new MatchBuffer();
+        base.match(text, longest, wordFilter, selected);
+        int length = text.length();
+        int maxWordLength = getMaxWordLength();
+        int span = maxWordLength * 2;
+        int[] best = new int[span];
+        int[] bestId = new int[span];
+        int cursor = 0;
+        int g = 0;
+        int h = 0;
+        while (cursor < length) {
+            while (h < order.length && (int) (order[h] >>> 32) < cursor) {
+                h++;
+            }
+            int nextHit = h < order.length ? (int) (order[h] >>> 32) : length;
+            // 扫描位置是被包装的匹配引擎也会经过的位置，下一个模式匹配之前的结果与它相同
+            while (g < selected.size() && selected.start(g) < nextHit) {
+                visitor.visit(selected.start(g), selected.end(g), selected.wordId(g));
+                cursor = selected.end(g);
+                g++;
+            }
+            if (cursor > nextHit) {
+                continue;
+            }
+            cursor = nextHit;
+            while (cursor < length) {
+                int from = cursor;
+                int to = Math.min(length, from + span);
+                Arrays.fill(best, 0);
+                WordMatchVisitor collector = (start, end, wordId) -> {
+                    int wordLength = end - start;
+                    if (start >= to - from || (wordFilter != null && !wordFilter.test(wordId))) {
+                        return;
+                    }
+                    if (best[start] == 0 || (longest ? wordLength > best[start] : wordLength < best[start])) {
+                        best[start] = wordLength;
+                        bestId[start] = wordId;
+                    }
+                };
+                base.matchAll(CharBuffer.wrap(text, from, Math.min(length, to + maxWordLength)), collector);
+                for (int k = h; k < order.length && (int) (order[k] >>> 32) < to; k++) {
+                    int m = (int) order[k];
+                    collector.visit(hits.start(m) - from, hits.end(m) - from, hits.wordId(m));
+                }
+                while (cursor < to) {
+                    int wordLength = best[cursor - from];
+                    if (wordLength > 0) {
+                        visitor.visit(cursor, cursor + wordLength, bestId[cursor - from]);
+                        cursor += wordLength;
+                    } else {
+                        cursor++;
+                    }
+                }
+                while (h < order.length && (int) (order[h] >>> 32) < cursor) {
+                    h++;
+                }
+                while (g < selected.size() && selected.end(g) <= cursor) {
+                    g++;
+                }
+                // 扫描位置不在被包装的匹配引擎选出的某个匹配中间，之后的结果重新与它一致
+                if (g == selected.size() || selected.start(g) >= cursor) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 模式的匹配按结束位置插入被包装的匹配引擎报告的匹配之间，之后报告的匹配不会在之前报告的匹配的结束位置减去最长词长度之前开始，
+     * {@link AllowListMatcher}依赖这一点在一次扫描中确定覆盖关系
+     */
+    @Override
+    public void matchAll(CharSequence text, WordMatchVisitor visitor) {
+        MatchBuffer hits = new MatchBuffer();
+        if (!scan(text, null, hits)) {
+            base.matchAll(text, visitor);
+            return;
+        }
+        // 高32位是结束位置，低32位是在hits中的下标
+        long[] order = new long[hits.size()];
+        for (int m = 0; m < order.length; m++) {
+            order[m] = (long) hits.end(m) << 32 | m;
+        }
+        Arrays.sort(order);
+        int[] next = new int[1];
+        base.matchAll(text, (start, end, wordId) -> {
+            for (; next[0] < order.length && (int) (order[next[0]] >>> 32) <= end; next[0]++) {
+                int m = (int) order[next[0]];
+                visitor.visit(hits.start(m), hits.end(m), hits.wordId(m));
+            }
+            visitor.visit(start, end, wordId);
+        });
+        for (int k = next[0]; k < order.length; k++) {
+            int m = (int) order[k];
+            visitor.visit(hits.start(m), hits.end(m), hits.wordId(m));
+        }
+    }
+
+    /**
+     * 在每个开始位置尝试可能匹配的模式，visitor为null时找到第一个匹配即返回
+     *
+     * @return 存在匹配时返回true
+     */
+    private boolean scan(CharSequence text, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        if (patterns.length == 0) {
+            return false;
+        }
+        boolean found = false;
+        long[] reach = null;
+        long[] next = null;
+        int length = text.length();
+        for (int j = nextAnchor(text, 0); j < length; j = nextAnchor(text, j + 1)) {
+            int[] candidates = byAnchor.get(normalize(text.charAt(j)));
+            if (candidates == null) {
+                continue;
+            }
+            for (int p : candidates) {
+                if (wordFilter != null && !wordFilter.test(baseIdLimit + p)) {
+                    continue;
+                }
+                int start = startOf(text, j, patterns[p].anchor);
+                if (start < 0) {
+                    continue;
+                }
+                if (reach == null) {
+                    reach = new long[maxNoise + 1];
+                    next = new long[maxNoise + 1];
+                }
+                if ((found |= tryMatch(text, start, p, reach, next, visitor)) && visitor == null) {
+                    return true;
+                }
+            }
+        }
+        if (general.length == 0) {
+            return found;
+        }
+        if (reach == null) {
+            reach = new long[maxNoise + 1];
+            next = new long[maxNoise + 1];
+        }
+        for (int i = 0; i < length; i++) {
+            if (normalize(text.charAt(i)) == CharNormalizer.NOISE) {
+                continue;
+            }
+            for (int p : general) {
+                if ((wordFilter == null || wordFilter.test(baseIdLimit + p))
+                        && (found |= tryMatch(text, i, p, reach, next, visitor)) && visitor == null) {
+                    return true;
+                }
+            }
+        }
+        return found;
+    }
+
+    private int nextAnchor(CharSequence text, int from) {
+        return normalizer == null ? anchors.nextCandidate(text, from) : anchors.nextCandidate(text, from, normalizer);
+    }
+
+    /**
+     * 从锚点向前跳过offset个有效字符得到模式的开始位置，中间的干扰字符超过上限或越过文本开头时返回-1
+     */
+    private int startOf(CharSequence text, int anchor, int offset) {
+        int start = anchor;
+        int noise = 0;
+        while (offset > 0) {
+            if (--start < 0) {
+                return -1;
+            }
+            if (normalize(text.charAt(start)) != CharNormalizer.NOISE) {
+                offset--;
+            } else if (++noise > maxNoise) {
+                return -1;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 从start开始匹配一个模式，reach[k]的第p位表示跳过k个干扰字符后，模式已匹配的部分在原文中占用p个字符
+     */
+    private boolean tryMatch(CharSequence text, int start, int index, long[] reach, long[] next, WordMatchVisitor visitor) {
+        CompiledPattern pattern = patterns[index];
+        int available = text.length() - start;
+        long limit = available >= 63 ? -1L : (1L << (available + 1)) - 1;
+        Arrays.fill(reach, 0);
+        reach[0] = 1L;
+        for (int e = 0; e < pattern.kinds.length; e++) {
+            Arrays.fill(next, 0);
+            boolean advanced = false;
+            if (pattern.kinds[e] == GAP) {
+                for (int k = 0; k <= maxNoise; k++) {
+                    for (int g = pattern.gapMin[e]; g <= pattern.gapMax[e]; g++) {
+                        next[k] |= reach[k] << g;
+                    }
+                    next[k] &= limit;
+                    advanced |= next[k] != 0;
+                }
+            } else {
+                for (int k = 0; k <= maxNoise; k++) {
+                    for (long bits = reach[k]; bits != 0; bits &= bits - 1) {
+                        int j = start + Long.numberOfTrailingZeros(bits);
+                        // 第一个元素之后可以跳过干扰字符，整个匹配最多跳过maxNoise个
+                        int noise = k;
+                        while (e > 0 && noise < maxNoise && j < text.length() && normalize(text.charAt(j)) == CharNormalizer.NOISE) {
+                            j++;
+                            noise++;
+                        }
+                        if (j < text.length() && pattern.accept(e, normalize(text.charAt(j)))) {
+                            next[noise] |= 1L << (j + 1 - start);
+                            advanced = true;
+                        }
+                    }
+                }
+            }
+            if (!advanced) {
+                return false;
+            }
+            long[] swap = reach;
+            reach = next;
+            next = swap;
+        }
+        long ends = 0;
+        for (long bits : reach) {
+            ends |= bits;
+        }
+        if (visitor != null) {
+            for (; ends != 0; ends &= ends - 1) {
+                visitor.visit(start, start + Long.numberOfTrailingZeros(ends), baseIdLimit + index);
+            }
+        }
+        return true;
+    }
+
+    private char normalize(char c) {
+        return normalizer == null ? c : normalizer.normalize(c);
+    }
+
+    /**
+     * 模式的编号返回模式原文
+     */
+    @Override
+    public String getWord(int wordId) {
+        if (wordId < baseIdLimit) {
+            return base.getWord(wordId);
+        }
+        if (wordId - baseIdLimit >= patterns.length) {
+            throw new IllegalArgumentException(String.format("词编号%d不存在", wordId));
+        }
+        return patterns[wordId - baseIdLimit].source;
+    }
+
+    @Override
+    public int getWordId(CharSequence word) {
+        Integer id = ids.get(word.toString());
+        return id != null ? id : base.getWordId(word);
+    }
+
+    @Override
+    public int getWordIdLimit() {
+        return baseIdLimit + patterns.length;
+    }
+
+    @Override
+    public boolean hasWord(CharSequence word) {
+        Integer id = ids.get(word.toString());
+        return (id != null && id >= baseIdLimit) || base.hasWord(word);
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return Math.max(base.getMaxWordLength(), maxPatternLength);
+    }
+
+    @Override
+    public int size() {
+        return base.size() + patterns.length;
+    }
+
+    /**
+     * 模式部分按每个模式约64字节、每个元素约16字节加字符集合的大小估算
+     */
+    @Override
+    public long heapBytes() {
+        long bytes = anchors.heapBytes();
+        for (CompiledPattern pattern : patterns) {
+            bytes += 64 + 16L * pattern.kinds.length;
+            for (char[] ranges : pattern.classes) {
+                bytes += ranges == null ? 0 : CompactTrie.arrayBytes(ranges.length, 2);
+            }
+        }
+        return base.heapBytes() + bytes;
+    }
+
+    /**
+     * 过滤器只统计被包装的匹配引擎的扫描，模式不经过过滤器
+     */
+    @Override
+    public Prefilter getPrefilter() {
+        return base.getPrefilter();
+    }
+
+    /**
+     * 编译后的模式，每个元素是一个字符、一个字符集合、任意一个字符或者一段任意字符
+     */
+    private static final class CompiledPattern {
+        private final String source;
+        private final byte[] kinds;
+        private final char[] chars;
+        /**
+         * 字符集合按规范化之后的字符保存为有序的区间，每两个字符表示一个闭区间
+         */
+        private final char[][] classes;
+        private final boolean[] negated;
+        private final int[] gapMin;
+        private final int[] gapMax;
+        private final int maxLength;
+        /**
+         * 锚点元素的下标，即第一个前面只有单字符元素的字符，同时也是锚点与开始位置之间的有效字符数，没有时为-1
+         */
+        private final int anchor;
+
+        private CompiledPattern(String source, List<Element> elements) {
+            this.source = source;
+            int size = elements.size();
+            this.kinds = new byte[size];
+            this.chars = new char[size];
+            this.classes = new char[size][];
+            this.negated = new boolean[size];
+            this.gapMin = new int[size];
+            this.gapMax = new int[size];
+            int length = 0;
+            for (int e = 0; e < size; e++) {
+                Element element = elements.get(e);
+                kinds[e] = element.kind;
+                chars[e] = element.c;
+                classes[e] = element.ranges;
+                negated[e] = element.negated;
+                gapMin[e] = element.min;
+                gapMax[e] = element.max;
+                length += element.kind == GAP ? element.max : 1;
+            }
+            this.maxLength = length;
+            int first = -1;
+            for (int e = 0; e < size && kinds[e] != GAP; e++) {
+                if (kinds[e] == LITERAL) {
+                    first = e;
+                    break;
+                }
+            }
+            this.anchor = first;
+        }
+
+        private boolean accept(int e, char c) {
+            if (c == CharNormalizer.NOISE) {
+                return false;
+            }
+            switch (kinds[e]) {
+                case LITERAL:
+                    return chars[e] == c;
+                case ANY:
+                    return true;
+                default:
+                    char[] ranges = classes[e];
+                    boolean member = false;
+                    for (int r = 0; r < ranges.length && c >= ranges[r]; r += 2) {
+                        if (c <= ranges[r + 1]) {
+                            member = true;
+                            break;
+                        }
+                    }
+                    return member != negated[e];
+            }
+        }
+    }
+
+    private static final class Element {
+        private byte kind;
+        private char c;
+        private char[] ranges;
+        private boolean negated;
+        private int min;
+        private int max;
+    }
+
+    /**
+     * 模式构建器，逐行添加词库中的模式，普通词构建好匹配引擎后再包装
+     */
+    public static final class Builder {
+        private final CharNormalizer normalizer;
+        private final TreeSet<String> sources = new TreeSet<>();
+        private final Map<String, CompiledPattern> compiled = new HashMap<>();
+        private final Map<String, String> escaped = new HashMap<>();
+
+        private Builder(CharNormalizer normalizer) {
+            this.normalizer = normalizer;
+        }
+
+        /**
+         * 添加一行模式
+         *
+         * @param source 模式
+         * @return 返回当前构建器
+         * @throws IllegalArgumentException 模式语法错误时抛出
+         */
+        public synchronized Builder add(String source) {
+            if (!sources.contains(source)) {
+                compiled.put(source, compile(source));
+                sources.add(source);
+            }
+            return this;
+        }
+
+        /**
+         * 记录含有转义字符的普通词，按词库文件记录分类时可以通过原文找到词的编号
+         *
+         * @param line 词库中的一行
+         * @param word 去掉转义字符并规范化之后的词
+         * @return 返回当前构建器
+         */
+        public synchronized Builder addEscaped(String line, String word) {
+            escaped.put(normalizer == null ? line : normalizer.normalize(line), word);
+            escaped.put(line, word);
+            return this;
+        }
+
+        /**
+         * 包装普通词构建的匹配引擎，模式按原文排序编号，同样的词库得到同样的编号
+         *
+         * @param base 普通词构建的匹配引擎
+         * @return 返回匹配引擎，没有模式和转义的词时返回base
+         */
+        public synchronized WordMatcher build(WordMatcher base) {
+            if (sources.isEmpty() && escaped.isEmpty()) {
+                return base;
+            }
+            CompiledPattern[] patterns = new CompiledPattern[sources.size()];
+            int i = 0;
+            for (String source : sources) {
+                patterns[i++] = compiled.get(source);
+            }
+            Map<String, Integer> aliases = new HashMap<>();
+            escaped.forEach((line, word) -> {
+                int id = base.getWordId(word);
+                if (id >= 0) {
+                    aliases.put(line, id);
+                }
+            });
+            return new PatternMatcher(base, normalizer, patterns, aliases);
+        }
+
+        private CompiledPattern compile(String source) {
+            List<Element> elements = new ArrayList<>();
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                Element element = new Element();
+                if (c == '\\') {
+                    if (++i == source.length()) {
+                        throw syntaxError(source, "转义字符后缺少字符");
+                    }
+                    element.kind = LITERAL;
+                    element.c = source.charAt(i++);
+                } else if (c == '?') {
+                    element.kind = ANY;
+                    i++;
+                } else if (c == '[') {
+                    i = parseClass(source, i + 1, element);
+                } else if (c == '{') {
+                    i = parseGap(source, i + 1, element);
+                } else {
+                    element.kind = LITERAL;
+                    element.c = c;
+                    i++;
+                }
+                if (element.kind == LITERAL) {
+                    element.c = normalize(element.c);
+                    // 规范化之后是干扰字符的字符不参与匹配，与普通词的规范化一致
+                    if (element.c == CharNormalizer.NOISE) {
+                        continue;
+                    }
+                }
+                elements.add(element);
+            }
+            if (elements.isEmpty() || elements.get(0).kind == GAP || elements.get(elements.size() - 1).kind == GAP) {
+                throw syntaxError(source, "模式不能为空，也不能以{m,n}开头或结尾");
+            }
+            CompiledPattern pattern = new CompiledPattern(source, elements);
+            int maxNoise = normalizer == null ? 0 : normalizer.getMaxNoise();
+            if (pattern.maxLength + maxNoise > MAX_PATTERN_LENGTH) {
+                throw syntaxError(source, String.format("模式最多占用%d个字符(包括干扰字符)", MAX_PATTERN_LENGTH));
+            }
+            return pattern;
+        }
+
+        private int parseClass(String source, int i, Element element) {
+            element.kind = CLASS;
+            if (i < source.length() && source.charAt(i) == '^') {
+                element.negated = true;
+                i++;
+            }
+            BitSet members = new BitSet();
+            boolean closed = false;
+            while (i < source.length()) {
+                char c = source.charAt(i++);
+                if (c == ']') {
+                    closed = true;
+                    break;
+                }
+                if (c == '\\' && i < source.length()) {
+                    c = source.charAt(i++);
+                }
+                char to = c;
+                if (i + 1 < source.length() && source.charAt(i) == '-' && source.charAt(i + 1) != ']') {
+                    to = source.charAt(i + 1);
+                    if (to == '\\' && i + 2 < source.length()) {
+                        to = source.charAt(i + 2);
+                        i++;
+                    }
+                    i += 2;
+                    if (to < c) {
+                        throw syntaxError(source, String.format("字符范围%c-%c无效", c, to));
+                    }
+                }
+                for (int member = c; member <= to; member++) {
+                    char normalized = normalize((char) member);
+                    if (normalized != CharNormalizer.NOISE) {
+                        members.set(normalized);
+                    }
+                }
+            }
+            if (!closed || members.isEmpty()) {
+                throw syntaxError(source, "字符集合缺少]或为空");
+            }
+            List<Character> ranges = new ArrayList<>();
+            for (int from = members.nextSetBit(0); from >= 0; ) {
+                int to = members.nextClearBit(from);
+                ranges.add((char) from);
+                ranges.add((char) (to - 1));
+                from = members.nextSetBit(to);
+            }
+            element.ranges = new char[ranges.size()];
+            for (int r = 0; r < ranges.size(); r++) {
+                element.ranges[r] = ranges.get(r);
+            }
+            return i;
+        }
+
+        private int parseGap(String source, int i, Element element) {
+            element.kind = GAP;
+            int close = source.indexOf('}', i);
+            if (close < 0) {
+                throw syntaxError(source, "{m,n}缺少}");
+            }
+            String range = source.substring(i, close);
+            int comma = range.indexOf(',');
+            try {
+                element.min = Integer.parseInt(comma < 0 ? range.trim() : range.substring(0, comma).trim());
+                element.max = comma < 0 ? element.min : Integer.parseInt(range.substring(comma + 1).trim());
+            } catch (NumberFormatException e) {
+                throw syntaxError(source, String.format("{%s}不是有效的字符数范围", range));
+            }
+            if (element.min < 0 || element.max < element.min || element.max == 0 || element.max > MAX_GAP) {
+                throw syntaxError(source, String.format("{%s}的字符数范围必须在0到%d之间", range, MAX_GAP));
+            }
+            return close + 1;
+        }
+
+        private char normalize(char c) {
+            return normalizer == null ? c : normalizer.normalize(c);
+        }
+
+        private static IllegalArgumentException syntaxError(String source, String message) {
+            return new IllegalArgumentException(String.format("模式%s语法错误：%s", source, message));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 不可变字典树，增删词时只复制从根节点到该词结尾路径上的节点，其余节点与旧版本共享，
+ * 因此修改的代价只与词的长度有关，旧版本可以继续被并发读取
+ *
+ * @author lihuibin
+ */
+public final class PersistentTrie {
+    public static final PersistentTrie EMPTY = new PersistentTrie(Node.EMPTY, 0, 0);
+    /**
+     * 不是词结尾的节点上的词编号
+     */
+    private static final int NONE = -1;
+
+    private final Node root;
+    private final int size;
+    /**
+     * 最长词长度的上界，删除词时不回退
+     */
+    private final int maxWordLength;
+
+    private static final class Node {
+        private static final Node EMPTY = new Node(new char[0], new Node[0], NONE);
+
+        private final char[] labels;
+        private final Node[] children;
+        /**
+         * 以该节点结尾的词的编号，不是词结尾时为{@link #NONE}
+         */
+        private final int id;
+
+        private Node(char[] labels, Node[] children, int id) {
+            this.labels = labels;
+            this.children = children;
+            this.id = id;
+        }
+
+        private Node child(char keyWord) {
+            int index = Arrays.binarySearch(labels, keyWord);
+            return index < 0 ? null : children[index];
+        }
+
+        private boolean isEmpty() {
+            return id == NONE && labels.length == 0;
+        }
+
+        /**
+         * 复制当前节点并替换一个子节点，child为null时删除该子节点
+         */
+        private Node withChild(char keyWord, Node child) {
+            int index = Arrays.binarySearch(labels, keyWord);
+            if (index >= 0) {
+                if (child == null) {
+                    char[] newLabels = new char[labels.length - 1];
+                    Node[] newChildren = new Node[children.length - 1];
+                    System.arraycopy(labels, 0, newLabels, 0, index);
+                    System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+                    System.arraycopy(children, 0, newChildren, 0, index);
+                    System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+                    return new Node(newLabels, newChildren, id);
+                }
+                Node[] newChildren = children.clone();
+                newChildren[index] = child;
+                return new Node(labels, newChildren, id);
+            }
+            if (child == null) {
+                return this;
+            }
+            int insert = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insert);
+            System.arraycopy(labels, insert, newLabels, insert + 1, labels.length - insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            newLabels[insert] = keyWord;
+            newChildren[insert] = child;
+            return new Node(newLabels, newChildren, id);
+        }
+
+        private Node withId(int id) {
+            return this.id == id ? this : new Node(labels, children, id);
+        }
+    }
+
+    private PersistentTrie(Node root, int size, int maxWordLength) {
+        this.root = root;
+        this.size = size;
+        this.maxWordLength = maxWordLength;
+    }
+
+    /**
+     * 添加词
+     *
+     * @param word 词
+     * @return 返回添加后的新版本，词已存在时返回当前版本
+     */
+    public PersistentTrie add(String word) {
+        return add(word, 0);
+    }
+
+    /**
+     * 添加词并指定词编号，通过{@link #id}和{@link #forEach}取回
+     *
+     * @param word 词
+     * @param id   词编号，不能为负数
+     * @return 返回添加后的新版本，词已存在时返回当前版本
+     */
+    public PersistentTrie add(String word, int id) {
+        if (word == null || word.isEmpty() || contains(word, 0, word.length())) {
+            return this;
+        }
+        return new PersistentTrie(add(root, word, 0, id), size + 1, Math.max(maxWordLength, word.length()));
+    }
+
+    private Node add(Node node, String word, int index, int id) {
+        if (index == word.length()) {
+            return node.withId(id);
+        }
+        char keyWord = word.charAt(index);
+        Node child = node.child(keyWord);
+        return node.withChild(keyWord, add(child == null ? Node.EMPTY : child, word, index + 1, id));
+    }
+
+    /**
+     * 删除词
+     *
+     * @param word 词
+     * @return 返回删除后的新版本，词不存在时返回当前版本
+     */
+    public PersistentTrie remove(String word) {
+        if (word == null || word.isEmpty() || !contains(word, 0, word.length())) {
+            return this;
+        }
+        Node newRoot = remove(root, word, 0);
+        return new PersistentTrie(newRoot == null ? Node.EMPTY : newRoot, size - 1, maxWordLength);
+    }
+
+    /**
+     * @return 返回删除后的节点，节点不再包含任何词时返回null
+     */
+    private Node remove(Node node, String word, int index) {
+        Node newNode;
+        if (index == word.length()) {
+            newNode = node.withId(NONE);
+        } else {
+            char keyWord = word.charAt(index);
+            newNode = node.withChild(keyWord, remove(node.child(keyWord), word, index + 1));
+        }
+        return newNode.isEmpty() ? null : newNode;
+    }
+
+    /**
+     * 文本的[start, end)区间是否是字典树中的词
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        return id(text, start, end) != NONE;
+    }
+
+    /**
+     * 查找文本的[start, end)区间对应的词编号
+     *
+     * @return 返回词编号，不是字典树中的词时返回-1
+     */
+    public int id(CharSequence text, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end && node != null; i++) {
+            node = node.child(text.charAt(i));
+        }
+        return node == null ? NONE : node.id;
+    }
+
+    /**
+     * 遍历字典树中的所有词及其编号，用于把增量词库编译成自动机
+     *
+     * @param action 回调，参数为词和词编号
+     */
+    public void forEach(ObjIntConsumer<String> action) {
+        forEach(root, new StringBuilder(maxWordLength), action);
+    }
+
+    private static void forEach(Node node, StringBuilder word, ObjIntConsumer<String> action) {
+        if (node.id != NONE) {
+            action.accept(word.toString(), node.id);
+        }
+        for (int i = 0; i < node.labels.length; i++) {
+            word.append(node.labels[i]);
+            forEach(node.children[i], word, action);
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+}
@@ -0,0 +1,180 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 匹配前的快速过滤，用于跳过不可能是敏感词开头的位置
+ * <p>
+ * 由词库中所有词的前两个字符构建：64K位的首字符表记录可以作为词开头的字符，
+ * 另一张64K位的表记录本身就是一个词的单字，双字位图按哈希记录词的前两个字符。
+ * 一个位置只有首字符在表中，并且是单字词或者与下一个字符组成的双字在位图中，才可能是敏感词的开头。
+ * 双字位图存在哈希冲突，只会多放过一些位置，不会漏掉匹配。
+ * 绝大多数文本不包含敏感词，逐字符查表即可跳过，不需要进入自动机
+ *
+ * @author lihuibin
+ */
+public final class Prefilter {
+    private static final int MIN_BIGRAM_BITS = 12;
+    private static final int MAX_BIGRAM_BITS = 24;
+    /**
+     * 双字位图中每个双字占用的位数，越大冲突越少
+     */
+    private static final int BITS_PER_BIGRAM = 16;
+
+    private final long[] first = new long[(Character.MAX_VALUE + 1) >>> 6];
+    private final long[] single = new long[(Character.MAX_VALUE + 1) >>> 6];
+    private final long[] bigrams;
+    private final int bigramShift;
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+
+    /**
+     * @param bigramCount 词库中不同的前两个字符的数量，用于确定双字位图的大小
+     */
+    Prefilter(int bigramCount) {
+        int bits = MIN_BIGRAM_BITS;
+        while (bits < MAX_BIGRAM_BITS && (1L << bits) < (long) bigramCount * BITS_PER_BIGRAM) {
+            bits++;
+        }
+        this.bigrams = new long[1 << (bits - 6)];
+        this.bigramShift = 32 - bits;
+    }
+
+    /**
+     * 由字典树第一、二层的节点构建
+     *
+     * @param trie 字典树
+     * @return 返回过滤器
+     */
+    static Prefilter of(CompactTrie trie) {
+        int rootEnd = trie.childEnd(CompactTrie.ROOT);
+        Prefilter prefilter = new Prefilter(rootEnd < trie.nodeCount() ? trie.childEnd(rootEnd - 1) - rootEnd : 0);
+        for (int node = trie.firstChild(CompactTrie.ROOT); node < rootEnd; node++) {
+            char c = trie.label(node);
+            prefilter.addFirst(c, trie.isTerminal(node));
+            for (int child = trie.firstChild(node); child < trie.childEnd(node); child++) {
+                prefilter.addBigram(c, trie.label(child));
+            }
+        }
+        return prefilter;
+    }
+
+    void addFirst(char c, boolean isWord) {
+        first[c >>> 6] |= 1L << c;
+        if (isWord) {
+            single[c >>> 6] |= 1L << c;
+        }
+    }
+
+    void addBigram(char c1, char c2) {
+        int bit = bigramBit(c1, c2);
+        bigrams[bit >>> 6] |= 1L << bit;
+    }
+
+    private int bigramBit(char c1, char c2) {
+        return ((c1 << 16) | c2) * 0x9E3779B1 >>> bigramShift;
+    }
+
+    private boolean hasBigram(char c1, char c2) {
+        int bit = bigramBit(c1, c2);
+        return (bigrams[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * 查找下一个可能是敏感词开头的位置
+     *
+     * @param text 文本
+     * @param from 开始查找的位置
+     * @return 返回位置，没有时返回文本长度
+     */
+    public int nextCandidate(CharSequence text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if ((first[c >>> 6] & (1L << c)) != 0
+                    && ((single[c >>> 6] & (1L << c)) != 0 || (i + 1 < length && hasBigram(c, text.charAt(i + 1))))) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 与{@link #nextCandidate(CharSequence, int)}相同，字符先规范化，干扰字符不能作为词的开头，
+     * 开头字符之后最多跳过{@link CharNormalizer#getMaxNoise()}个干扰字符再取第二个字符
+     *
+     * @param text       文本
+     * @param from       开始查找的位置
+     * @param normalizer 字符规范化规则
+     * @return 返回位置，没有时返回文本长度
+     */
+    public int nextCandidate(CharSequence text, int from, CharNormalizer normalizer) {
+        int length = text.length();
+        int maxNoise = normalizer.getMaxNoise();
+        for (int i = from; i < length; i++) {
+            char c = normalizer.normalize(text.charAt(i));
+            if (c == CharNormalizer.NOISE || (first[c >>> 6] & (1L << c)) == 0) {
+                continue;
+            }
+            if ((single[c >>> 6] & (1L << c)) != 0) {
+                return i;
+            }
+            int noise = 0;
+            for (int j = i + 1; j < length; j++) {
+                char next = normalizer.normalize(text.charAt(j));
+                if (next != CharNormalizer.NOISE) {
+                    if (hasBigram(c, next)) {
+                        return i;
+                    }
+                    break;
+                }
+                if (++noise > maxNoise) {
+                    break;
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 记录一次扫描的过滤结果，每次扫描只记录一次，不在逐字符的循环中计数
+     *
+     * @param chars          扫描的字符数
+     * @param candidateCount 通过过滤、需要进入自动机的位置数
+     */
+    void record(int chars, int candidateCount) {
+        scanned.add(chars);
+        candidates.add(candidateCount);
+    }
+
+    /**
+     * @return 扫描过的字符数
+     */
+    public long getScannedChars() {
+        return scanned.sum();
+    }
+
+    /**
+     * @return 通过过滤的位置数
+     */
+    public long getCandidates() {
+        return candidates.sum();
+    }
+
+    /**
+     * 过滤的选择率，即通过过滤的位置占扫描字符数的比例，越小说明跳过的位置越多
+     *
+     * @return 返回选择率，没有扫描过时返回0
+     */
+    public double getSelectivity() {
+        long chars = scanned.sum();
+        return chars == 0 ? 0 : (double) candidates.sum() / chars;
+    }
+
+    /**
+     * @return 过滤表占用的堆内存
+     */
+    public long heapBytes() {
+        return CompactTrie.arrayBytes(first.length, 8) * 2 + CompactTrie.arrayBytes(bigrams.length, 8);
+    }
+}
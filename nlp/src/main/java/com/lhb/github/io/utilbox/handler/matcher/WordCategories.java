@@ -0,0 +1,332 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 词的分类，例如政治、广告、辱骂、个人信息，所有分类的词共用同一个匹配引擎，一次扫描即可按分类过滤结果
+ * <p>
+ * 每个分类占用一个二进制位，最多64个分类。每个词的分类位图按词编号保存，可以是堆内数组，也可以是内存映射的快照文件。
+ * 只有一个分类时不保存位图。不在位图范围内的词(例如运行时新增的词)属于所有分类，
+ * 增量词库中分类有变化的词用{@link #withMasks(Map)}覆盖位图
+ *
+ * @author lihuibin
+ */
+public final class WordCategories {
+    /**
+     * 最多支持的分类数量
+     */
+    public static final int MAX_CATEGORIES = 64;
+    /**
+     * 所有分类
+     */
+    public static final long ALL = -1L;
+    /**
+     * 没有分类
+     */
+    public static final WordCategories NONE = new WordCategories(Collections.<String>emptyList(), null, null);
+
+    private static final IntPredicate REJECT_ALL = wordId -> false;
+
+    private final List<String> names;
+    private final Map<String, Integer> index;
+    /**
+     * 按词编号保存的分类位图，为null时所有词属于所有分类
+     */
+    private final LongBuffer masks;
+    /**
+     * 增量词库中覆盖位图的词编号和分类位图，为null时没有覆盖
+     */
+    private final Map<Integer, Long> overrides;
+    private final long allBits;
+
+    private WordCategories(List<String> names, LongBuffer masks, Map<Integer, Long> overrides) {
+        if (names.size() > MAX_CATEGORIES) {
+            throw new IllegalArgumentException(String.format("最多支持%d个词库分类，当前%d个", MAX_CATEGORIES, names.size()));
+        }
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.index = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            index.put(names.get(i), i);
+        }
+        this.masks = masks;
+        this.overrides = overrides;
+        this.allBits = names.size() == MAX_CATEGORIES ? ALL : (1L << names.size()) - 1;
+    }
+
+    /**
+     * 使用已有的分类位图创建分类，用于加载词库快照
+     *
+     * @param names 分类名称，按位的顺序排列
+     * @param masks 按词编号保存的分类位图，为null时所有词属于所有分类
+     * @return 返回分类
+     */
+    public static WordCategories of(List<String> names, LongBuffer masks) {
+        return names.isEmpty() ? NONE : new WordCategories(names, masks, null);
+    }
+
+    /**
+     * 创建覆盖部分词分类位图的分类，用于增量词库，分类名称和原位图不变，与之前覆盖的位图合并
+     *
+     * @param changes 词编号和新的分类位图
+     * @return 返回新的分类
+     */
+    public WordCategories withMasks(Map<Integer, Long> changes) {
+        if (this == NONE || changes.isEmpty()) {
+            return this;
+        }
+        Map<Integer, Long> merged = overrides == null ? new HashMap<>(changes) : new HashMap<>(overrides);
+        if (overrides != null) {
+            merged.putAll(changes);
+        }
+        return new WordCategories(names, masks, merged);
+    }
+
+    /**
+     * 创建分类构建器，分类按第一次添加的顺序编号
+     *
+     * @param normalizer 词库使用的字符规范化规则，为null时不做规范化
+     * @return 返回构建器
+     */
+    public static Builder builder(CharNormalizer normalizer) {
+        return new Builder(normalizer);
+    }
+
+    /**
+     * 创建按词记录分类位的构建器，分类按第一次出现的顺序编号
+     *
+     * @param expectedWords 预计的词数量
+     * @return 返回构建器
+     */
+    public static MaskBuilder maskBuilder(int expectedWords) {
+        return new MaskBuilder(expectedWords);
+    }
+
+    /**
+     * @return 分类名称，第i个分类对应第i位
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * 计算分类名称对应的位掩码，不存在的分类名称被忽略
+     *
+     * @param categories 分类名称，为空时表示所有分类
+     * @return 返回位掩码
+     */
+    public long mask(String... categories) {
+        if (categories == null || categories.length == 0) {
+            return ALL;
+        }
+        long mask = 0;
+        for (String category : categories) {
+            Integer bit = index.get(category);
+            if (bit != null) {
+                mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 获取词所属分类的位图
+     *
+     * @param wordId 词编号
+     * @return 返回位图
+     */
+    public long getMask(int wordId) {
+        if (overrides != null) {
+            Long mask = overrides.get(wordId);
+            if (mask != null) {
+                return mask;
+            }
+        }
+        return masks == null || wordId < 0 || wordId >= masks.limit() ? ALL : masks.get(wordId);
+    }
+
+    /**
+     * 获取词所属的分类名称
+     *
+     * @param wordId 词编号
+     * @return 返回分类名称
+     */
+    public List<String> getCategories(int wordId) {
+        long mask = getMask(wordId) & allBits;
+        List<String> categories = new ArrayList<>(Long.bitCount(mask));
+        for (; mask != 0; mask &= mask - 1) {
+            categories.add(names.get(Long.numberOfTrailingZeros(mask)));
+        }
+        return categories;
+    }
+
+    /**
+     * 按分类过滤词的条件，用于{@link WordMatcher#match(CharSequence, boolean, IntPredicate, WordMatchVisitor)}
+     *
+     * @param mask 分类位掩码
+     * @return 返回过滤条件，包含所有分类时返回null，表示不需要过滤
+     */
+    public IntPredicate filter(long mask) {
+        if ((mask & allBits) == allBits) {
+            return null;
+        }
+        if ((mask & allBits) == 0) {
+            return REJECT_ALL;
+        }
+        return wordId -> (getMask(wordId) & mask) != 0;
+    }
+
+    /**
+     * 按词编号保存的分类位图，用于写入词库快照，不包含{@link #withMasks(Map)}覆盖的位图
+     *
+     * @return 返回位图，不保存位图时返回null
+     */
+    public LongBuffer getMasks() {
+        return masks == null ? null : masks.duplicate();
+    }
+
+    /**
+     * 估算分类位图占用的堆内存，内存映射的位图不计算
+     *
+     * @return 返回字节数
+     */
+    public long heapBytes() {
+        long overrideBytes = overrides == null ? 0 : overrides.size() * 64L;
+        return overrideBytes + (masks == null || masks.isDirect() ? 0 : CompactTrie.arrayBytes(masks.capacity(), 8));
+    }
+
+    /**
+     * 分类构建器，先按分类添加词库文件中的词，匹配引擎构建完成后按词编号生成分类位图
+     */
+    public static final class Builder {
+        private final CharNormalizer normalizer;
+        private final Map<String, List<Collection<String>>> categories = new LinkedHashMap<>();
+
+        private Builder(CharNormalizer normalizer) {
+            this.normalizer = normalizer;
+        }
+
+        /**
+         * 添加一个分类的词，同一个分类可以多次添加
+         *
+         * @param category 分类名称
+         * @param words    未规范化的词
+         * @return 返回当前构建器
+         */
+        public synchronized Builder add(String category, Collection<String> words) {
+            categories.computeIfAbsent(category, key -> new ArrayList<>()).add(words);
+            if (categories.size() > MAX_CATEGORIES) {
+                throw new IllegalStateException(String.format("最多支持%d个词库分类，当前分类%s", MAX_CATEGORIES, categories.keySet()));
+            }
+            return this;
+        }
+
+        /**
+         * 按匹配引擎的词编号生成分类位图，不在任何分类中的词属于所有分类
+         *
+         * @param matcher 使用添加的词构建的匹配引擎
+         * @return 返回分类
+         */
+        public synchronized WordCategories build(WordMatcher matcher) {
+            List<String> names = new ArrayList<>(categories.keySet());
+            if (names.size() <= 1) {
+                return of(names, null);
+            }
+            long[] masks = new long[matcher.getWordIdLimit()];
+            int bit = 0;
+            for (List<Collection<String>> wordLists : categories.values()) {
+                for (Collection<String> words : wordLists) {
+                    for (String word : words) {
+                        int wordId = matcher.getWordId(normalizer == null ? word : normalizer.normalize(word));
+                        if (wordId >= 0) {
+                            masks[wordId] |= 1L << bit;
+                        }
+                    }
+                }
+                bit++;
+            }
+            for (int i = 0; i < masks.length; i++) {
+                if (masks[i] == 0) {
+                    masks[i] = ALL;
+                }
+            }
+            return of(names, LongBuffer.wrap(masks));
+        }
+    }
+
+    /**
+     * 按词记录分类位的构建器，用于按页读取的词库来源：每页的词规范化后直接合并到词的分类位，
+     * 词集合就是位图的键，不保留按页划分的词列表。非线程安全
+     */
+    public static final class MaskBuilder {
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Long> masks;
+
+        private MaskBuilder(int expectedWords) {
+            this.masks = new HashMap<>(Math.max(16, expectedWords * 4 / 3 + 1));
+        }
+
+        /**
+         * @param category 分类名称
+         * @return 返回分类对应的位，第一次出现的分类分配新的位
+         */
+        public long bit(String category) {
+            int index = names.indexOf(category);
+            if (index < 0) {
+                if (names.size() == MAX_CATEGORIES) {
+                    throw new IllegalStateException(String.format("最多支持%d个词库分类，当前分类%s", MAX_CATEGORIES, names));
+                }
+                names.add(category);
+                index = names.size() - 1;
+            }
+            return 1L << index;
+        }
+
+        /**
+         * 添加一个分类中的词
+         *
+         * @param word 规范化之后的词
+         * @param bit  {@link #bit(String)}返回的分类位，为0时只添加词，不属于任何分类的词属于所有分类
+         */
+        public void add(String word, long bit) {
+            masks.merge(word, bit, (a, b) -> a | b);
+        }
+
+        /**
+         * @return 添加的所有词，可以删除，删除的词不再参与生成位图
+         */
+        public Set<String> words() {
+            return masks.keySet();
+        }
+
+        /**
+         * 按匹配引擎的词编号生成分类位图，不在任何分类中的词属于所有分类
+         *
+         * @param matcher 使用{@link #words()}构建的匹配引擎
+         * @return 返回分类
+         */
+        public WordCategories build(WordMatcher matcher) {
+            if (names.size() <= 1) {
+                return of(names, null);
+            }
+            long[] bits = new long[matcher.getWordIdLimit()];
+            Arrays.fill(bits, ALL);
+            masks.forEach((word, mask) -> {
+                int wordId = matcher.getWordId(word);
+                if (wordId >= 0 && mask != 0) {
+                    bits[wordId] = mask;
+                }
+            });
+            return of(names, LongBuffer.wrap(bits));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+/**
+ * 带词编号的匹配结果回调，按文本从左到右的顺序接收互不重叠的匹配区间
+ * 词编号在同一个匹配引擎内唯一，可以用{@link WordMatcher#getWord(int)}取回对应的词，
+ * 编号范围为[0, {@link WordMatcher#getWordIdLimit()})，可以直接作为计数数组的下标
+ *
+ * @author lihuibin
+ */
+@FunctionalInterface
+public interface WordMatchVisitor {
+    /**
+     * 接收一个匹配结果
+     *
+     * @param start  匹配开始位置（包含）
+     * @param end    匹配结束位置（不包含）
+     * @param wordId 匹配到的词的编号
+     */
+    void visit(int start, int end, int wordId);
+}
@@ -0,0 +1,174 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import java.nio.CharBuffer;
+import java.util.function.IntPredicate;
+
+/**
+ * 词库匹配引擎
+ * 所有实现对同一词库、同一匹配模式必须给出相同的匹配结果：从左到右逐个位置查找，
+ * 找到匹配后跳过已匹配的字符继续查找，最小匹配取当前位置最短的词，最大匹配取当前位置最长的词。
+ * 指定词过滤条件时，不满足条件的词视为不在词库中，例如只匹配某些分类的词，见{@link WordCategories#filter(long)}
+ *
+ * @author lihuibin
+ */
+public interface WordMatcher {
+    /**
+     * 文本中是否包含词库中的词
+     *
+     * @param text    文本
+     * @param longest 是否为最大匹配模式
+     * @return 包含返回true，否则返回false
+     */
+    default boolean contains(CharSequence text, boolean longest) {
+        return contains(text, longest, null);
+    }
+
+    /**
+     * 文本中是否包含词库中满足过滤条件的词
+     *
+     * @param text       文本
+     * @param longest    是否为最大匹配模式
+     * @param wordFilter 按词编号过滤，为null时不过滤
+     * @return 包含返回true，否则返回false
+     */
+    boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter);
+
+    /**
+     * 查找文本中互不重叠的匹配，按从左到右的顺序回调，同时报告匹配到的词的编号
+     *
+     * @param text    文本
+     * @param longest 是否为最大匹配模式
+     * @param visitor 匹配结果回调
+     */
+    default void match(CharSequence text, boolean longest, WordMatchVisitor visitor) {
+        match(text, longest, null, visitor);
+    }
+
+    /**
+     * 只在满足过滤条件的词中查找互不重叠的匹配，不满足条件的词不会遮挡从同一位置开始的其他词
+     *
+     * @param text       文本
+     * @param longest    是否为最大匹配模式
+     * @param wordFilter 按词编号过滤，为null时不过滤
+     * @param visitor    匹配结果回调
+     */
+    void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor);
+
+    /**
+     * 与{@link #contains(CharSequence, boolean, IntPredicate)}相同，只查找从from开始的词，from之前的字符只作为上下文，
+     * 例如从from之前开始的白名单短语可以覆盖from之后的敏感词。匹配结果与前文无关的实现直接查找from之后的部分
+     *
+     * @param text       文本
+     * @param from       开始查找的位置，之前最多需要保留最长词长度减1个字符作为上下文
+     * @param longest    是否为最大匹配模式
+     * @param wordFilter 按词编号过滤，为null时不过滤
+     * @return 包含返回true，否则返回false
+     */
+    default boolean contains(CharSequence text, int from, boolean longest, IntPredicate wordFilter) {
+        return contains(from == 0 ? text : CharBuffer.wrap(text, from, text.length()), longest, wordFilter);
+    }
+
+    /**
+     * 与{@link #match(CharSequence, boolean, IntPredicate, WordMatchVisitor)}相同，从from开始选出互不重叠的匹配，
+     * from之前的字符只作为上下文，分段或流式处理时每段带上前文，结果与整段文本匹配一致。
+     * 匹配结果与前文无关的实现直接匹配from之后的部分
+     *
+     * @param text       文本
+     * @param from       开始选择匹配的位置，之前最多需要保留最长词长度减1个字符作为上下文
+     * @param longest    是否为最大匹配模式
+     * @param wordFilter 按词编号过滤，为null时不过滤
+     * @param visitor    匹配结果回调，位置相对于text
+     */
+    default void match(CharSequence text, int from, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        if (from == 0) {
+            match(text, longest, wordFilter, visitor);
+            return;
+        }
+        match(CharBuffer.wrap(text, from, text.length()), longest, wordFilter,
+                (start, end, wordId) -> visitor.visit(from + start, from + end, wordId));
+    }
+
+    /**
+     * 查找文本中互不重叠的匹配，按从左到右的顺序回调
+     *
+     * @param text    文本
+     * @param longest 是否为最大匹配模式
+     * @param visitor 匹配结果回调
+     */
+    default void match(CharSequence text, boolean longest, MatchVisitor visitor) {
+        match(text, longest, (WordMatchVisitor) visitor);
+    }
+
+    /**
+     * 报告文本中所有词的出现位置及词的编号，包括相互重叠的匹配，回调顺序由具体实现决定
+     *
+     * @param text    文本
+     * @param visitor 匹配结果回调
+     */
+    void matchAll(CharSequence text, WordMatchVisitor visitor);
+
+    /**
+     * 报告文本中所有词的出现位置，包括相互重叠的匹配，回调顺序由具体实现决定
+     *
+     * @param text    文本
+     * @param visitor 匹配结果回调
+     */
+    default void matchAll(CharSequence text, MatchVisitor visitor) {
+        matchAll(text, (WordMatchVisitor) visitor);
+    }
+
+    /**
+     * 取回词编号对应的词，配置了字符规范化时返回规范化之后的词
+     *
+     * @param wordId 词编号
+     * @return 返回词
+     */
+    String getWord(int wordId);
+
+    /**
+     * 查找词的编号，word应该是规范化之后的词
+     *
+     * @param word 词
+     * @return 返回词编号，词不存在时返回-1
+     */
+    int getWordId(CharSequence word);
+
+    /**
+     * @return 词编号的上界，所有词编号都小于该值
+     */
+    default int getWordIdLimit() {
+        return size();
+    }
+
+    /**
+     * 词库中是否存在该词
+     *
+     * @param word 词
+     * @return 存在返回true，否则返回false
+     */
+    boolean hasWord(CharSequence word);
+
+    /**
+     * @return 词库中最长词的长度，流式处理时最多需要保留这么多字符才能确定匹配结果
+     */
+    int getMaxWordLength();
+
+    /**
+     * @return 词库中词的数量
+     */
+    int size();
+
+    /**
+     * 估算词库占用的堆内存
+     *
+     * @return 返回字节数
+     */
+    long heapBytes();
+
+    /**
+     * 获取匹配前跳过不可能是词开头的位置的过滤器，可以查看过滤的选择率
+     *
+     * @return 返回过滤器
+     */
+    Prefilter getPrefilter();
+}
@@ -0,0 +1,49 @@
+package com.lhb.github.io.utilbox.handler.sensitiveWord;
+
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+
+/**
+ * 替换后的文本及替换时命中的词编号，词编号属于替换时使用的词库快照，
+ * 可以在其他线程上通过{@link DictionarySnapshot#getMatcher()}取回命中的词，不需要重新扫描文本
+ *
+ * @author lihuibin
+ */
+public final class ReplacedText {
+    private final DictionarySnapshot snapshot;
+    private final String text;
+    private final int[] wordIds;
+
+    ReplacedText(DictionarySnapshot snapshot, String text, int[] wordIds) {
+        this.snapshot = snapshot;
+        this.text = text;
+        this.wordIds = wordIds;
+    }
+
+    /**
+     * @return 替换时使用的词库快照
+     */
+    public DictionarySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return 替换后的文本
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return 按文本顺序命中的词编号，同一个词命中多次时出现多次，不要修改返回的数组
+     */
+    public int[] getWordIds() {
+        return wordIds;
+    }
+
+    /**
+     * @return 是否替换了敏感词
+     */
+    public boolean isReplaced() {
+        return wordIds.length > 0;
+    }
+}
@@ -1,35 +1,129 @@
 package com.lhb.github.io.utilbox.handler.sensitiveWord;
 
+import com.lhb.github.io.utilbox.handler.BatchExecutor;
 import com.lhb.github.io.utilbox.handler.NLPAbstractHandler;
+import com.lhb.github.io.utilbox.handler.ResultCache;
+import com.lhb.github.io.utilbox.handler.SegmentedMatcher;
+import com.lhb.github.io.utilbox.handler.SensitiveWordFilterReader;
+import com.lhb.github.io.utilbox.handler.SensitiveWordFilterWriter;
+import com.lhb.github.io.utilbox.handler.matcher.CompactTrie;
+import com.lhb.github.io.utilbox.handler.matcher.DfaMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.matcher.MappedAhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.MatchBuffer;
+import com.lhb.github.io.utilbox.handler.matcher.OverlayMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.WordCategories;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatchVisitor;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import com.lhb.github.io.utilbox.handler.source.DictionarySource;
+import com.lhb.github.io.utilbox.metrics.InstrumentedMatcher;
+import com.lhb.github.io.utilbox.metrics.SensitiveWordMetrics;
 import com.lhb.github.io.utilbox.props.NlpProperties;
 import com.lhb.github.io.utilbox.props.SensitiveWordProperties;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * 敏感词处理
  *
  * @author lihuibin
  */
-public class SensitiveWordHandler extends NLPAbstractHandler implements ApplicationListener<ContextRefreshedEvent> {
+public class SensitiveWordHandler extends NLPAbstractHandler implements ApplicationListener<ContextRefreshedEvent>, DisposableBean {
     private SensitiveWordProperties sensitiveWord;
 
     public SensitiveWordHandler(SensitiveWordProperties sensitiveWord, NlpProperties nlpProperties) {
         this.sensitiveWord = sensitiveWord;
         super.setNlpProperties(nlpProperties);
+        this.batchExecutor = new BatchExecutor(nlpProperties);
+        this.resultCache = ResultCache.of(nlpProperties);
     }
 
+    private Logger log = Logger.getLogger("SensitiveWordHandler");
+    private volatile SensitiveWordMetrics metrics = SensitiveWordMetrics.NONE;
+
     /**
-     * dfa敏感词库
+     * 结果缓存中区分检测和替换的操作类型
      */
-    private HashMap dfaWordMap;
+    private static final int CACHE_CONTAINS = 0;
+    private static final int CACHE_REPLACE = 1;
     /**
-     * 本地词库
+     * 词库尚未加载完成且策略为{@link NlpProperties.NotReadyPolicy#PASS_THROUGH}时使用的空词库
      */
-    private Set<String> wordModelSet;
+    private static final DictionarySnapshot EMPTY_DICTIONARY = new DictionarySnapshot(
+            new DfaMatcher(CompactTrie.build(Collections.<String>emptySet())), 0, 0);
+
+    /**
+     * 当前词库快照，词库更新时整体替换，读取方不需要加锁
+     */
+    private volatile DictionarySnapshot dictionary;
+    /**
+     * 词库版本号，只在持有当前对象锁时修改
+     */
+    private long dictionaryVersion;
+    /**
+     * 最近一次加载时词库文件的指纹
+     */
+    private long resourceFingerprint;
+    /**
+     * 词库来源，为null时从{@link NlpProperties#getBaseDir()}读取词库文件
+     */
+    private DictionarySource dictionarySource;
+    /**
+     * 最近一次从词库来源读取或回放到的版本水位
+     */
+    private long sourceWatermark;
+    /**
+     * 运行时新增和删除的词，只在持有当前对象锁时修改，重新加载词库文件后会再次应用
+     */
+    private final Set<String> runtimeAddedWords = new HashSet<>();
+    private final Set<String> runtimeRemovedWords = new HashSet<>();
+    private boolean reloadWatching;
+    private boolean compactScheduled;
+    /**
+     * 词库热更新和增量合并使用的后台线程
+     */
+    private ScheduledExecutorService backgroundExecutor;
+    /**
+     * 批量处理使用的并行执行器
+     */
+    private final BatchExecutor batchExecutor;
+    /**
+     * 短文本的处理结果缓存，未开启时为null
+     */
+    private final ResultCache resultCache;
+    private boolean initStarted;
+    /**
+     * 首次发布词库后完成，异步加载词库时用于等待词库就绪
+     */
+    private final CompletableFuture<DictionarySnapshot> ready = new CompletableFuture<>();
 
     /**
      * 文本中是否包含敏感词
@@ -39,7 +133,28 @@ public class SensitiveWordHandler extends NLPAbstractHandler implements Applicat
      * @return 包含返回true，否则返回false
      */
     public boolean contains(String text, Enum matchType) {
-        return contains(dfaWordMap, text, matchType);
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        boolean result = contains(snapshot, documentMatcher(snapshot, text), text, matchType, WordCategories.ALL);
+        metrics.recordScan("contains", text.length(), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 文本中是否包含指定分类的敏感词，所有分类共用一次扫描
+     *
+     * @param text       文本
+     * @param matchType  敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @param categories 分类名称，为空时表示所有分类，不存在的分类被忽略
+     * @return 包含返回true，否则返回false
+     */
+    public boolean contains(String text, Enum matchType, String[] categories) {
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        boolean result = contains(snapshot, documentMatcher(snapshot, text), text, matchType,
+                snapshot.getCategories().mask(categories));
+        metrics.recordScan("contains", text.length(), System.nanoTime() - start);
+        return result;
     }
 
     /**
@@ -49,7 +164,7 @@ public class SensitiveWordHandler extends NLPAbstractHandler implements Applicat
      * @return 包含返回true，否则返回false
      */
     public boolean contains(String text) {
-        return contains(dfaWordMap, text, MATCH_TYPE.MINIMUM_MATCH);
+        return contains(text, MATCH_TYPE.MINIMUM_MATCH);
     }
 
     /**
@@ -60,7 +175,26 @@ public class SensitiveWordHandler extends NLPAbstractHandler implements Applicat
      * @return 返回敏感词集合
      */
     public Set<String> getSensitiveWordInText(String text, Enum matchType) {
-        return getSensitiveWordInText(dfaWordMap, text, matchType);
+        long start = System.nanoTime();
+        Set<String> result = getSensitiveWordInText(documentMatcher(snapshot(), text), text, matchType);
+        metrics.recordScan("find", text.length(), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 获取文本中指定分类的敏感词
+     *
+     * @param text       文本
+     * @param matchType  敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @param categories 分类名称，为空时表示所有分类，不存在的分类被忽略
+     * @return 返回敏感词集合
+     */
+    public Set<String> getSensitiveWordInText(String text, Enum matchType, String[] categories) {
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        Set<String> result = getSensitiveWordInText(documentMatcher(snapshot, text), text, matchType, wordFilter(snapshot, categories));
+        metrics.recordScan("find", text.length(), System.nanoTime() - start);
+        return result;
     }
 
     /**
@@ -70,7 +204,60 @@ public class SensitiveWordHandler extends NLPAbstractHandler implements Applicat
      * @return 返回敏感词集合
      */
     public Set<String> getSensitiveWordInText(String text) {
-        return getSensitiveWordInText(dfaWordMap, text, MATCH_TYPE.MINIMUM_MATCH);
+        return getSensitiveWordInText(text, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    /**
+     * 获取文本中指定分类的敏感词，默认最小模式匹配，与{@link #replaceSensitiveWord(String, String[], String)}替换的词相同
+     *
+     * @param text       文本
+     * @param categories 分类名称，为空时表示所有分类
+     * @return 返回敏感词集合
+     */
+    public Set<String> getSensitiveWordInText(String text, String[] categories) {
+        return getSensitiveWordInText(text, MATCH_TYPE.MINIMUM_MATCH, categories);
+    }
+
+    /**
+     * 按从左到右的顺序回调文本中敏感词的位置和词编号，不截取子串、不创建结果集合，
+     * 需要保存结果时可以使用可复用的{@link MatchBuffer}
+     *
+     * @param text      文本
+     * @param matchType 敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @param visitor   匹配结果回调
+     * @return 返回本次匹配使用的词库快照，词编号需要用其中匹配引擎的{@link WordMatcher#getWord(int)}取回对应的词，
+     * 用{@link DictionarySnapshot#getCategories()}查询词的分类
+     */
+    public DictionarySnapshot match(CharSequence text, Enum matchType, WordMatchVisitor visitor) {
+        return match(text, matchType, null, visitor);
+    }
+
+    /**
+     * 按从左到右的顺序回调文本中指定分类的敏感词的位置和词编号
+     *
+     * @param text       文本
+     * @param matchType  敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @param categories 分类名称，为空时表示所有分类，不存在的分类被忽略
+     * @param visitor    匹配结果回调
+     * @return 返回本次匹配使用的词库快照
+     */
+    public DictionarySnapshot match(CharSequence text, Enum matchType, String[] categories, WordMatchVisitor visitor) {
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        match(documentMatcher(snapshot, text), text, matchType, wordFilter(snapshot, categories), visitor);
+        metrics.recordScan("match", text.length(), System.nanoTime() - start);
+        return snapshot;
+    }
+
+    /**
+     * 回调文本中敏感词的位置和词编号，默认最小模式匹配
+     *
+     * @param text    文本
+     * @param visitor 匹配结果回调
+     * @return 返回本次匹配使用的词库快照
+     */
+    public DictionarySnapshot match(CharSequence text, WordMatchVisitor visitor) {
+        return match(text, MATCH_TYPE.MINIMUM_MATCH, visitor);
     }
 
     /**
@@ -81,7 +268,75 @@ public class SensitiveWordHandler extends NLPAbstractHandler implements Applicat
      * @return 返回替换后的文本
      */
     public String replaceSensitiveWord(String text, Enum matchType) {
-        return replaceSensitiveWord(dfaWordMap, text, sensitiveWord.getReplacement().charAt(0), matchType);
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        String result = replaceSensitiveWord(snapshot, documentMatcher(snapshot, text), text,
+                sensitiveWord.getReplacement().charAt(0), matchType, WordCategories.ALL);
+        metrics.recordScan("replace", text.length(), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 替换文本中指定分类的敏感词，不同分类可以使用不同的替换字符，所有分类共用一次扫描
+     *
+     * @param text        文本
+     * @param matchType   敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @param categories  分类名称，为空时表示所有分类，不存在的分类被忽略
+     * @param replacement 代表敏感词的字符，为空时使用{@link SensitiveWordProperties#getReplacement()}
+     * @return 返回替换后的文本
+     */
+    public String replaceSensitiveWord(String text, Enum matchType, String[] categories, String replacement) {
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        char replaceChar = (StringUtils.hasLength(replacement) ? replacement : sensitiveWord.getReplacement()).charAt(0);
+        String result = replaceSensitiveWord(snapshot, documentMatcher(snapshot, text), text, replaceChar, matchType,
+                snapshot.getCategories().mask(categories));
+        metrics.recordScan("replace", text.length(), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 替换文本中指定分类的敏感词，同时返回命中的词编号和使用的词库快照，
+     * 需要在其他线程上找出被替换的敏感词时使用，不需要用公开的查找方法重新扫描
+     *
+     * @param text        文本
+     * @param matchType   敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @param categories  分类名称，为空时表示所有分类，不存在的分类被忽略
+     * @param replacement 代表敏感词的字符，为空时使用{@link SensitiveWordProperties#getReplacement()}
+     * @return 返回替换后的文本及命中的词编号
+     */
+    public ReplacedText replaceSensitiveWordWithHits(String text, Enum matchType, String[] categories, String replacement) {
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        char replaceChar = (StringUtils.hasLength(replacement) ? replacement : sensitiveWord.getReplacement()).charAt(0);
+        CachedReplace replaced = replaceWithHits(snapshot, documentMatcher(snapshot, text), text, replaceChar, matchType,
+                snapshot.getCategories().mask(categories));
+        metrics.recordScan("replace", text.length(), System.nanoTime() - start);
+        return new ReplacedText(snapshot, replaced.text, replaced.wordIds);
+    }
+
+    /**
+     * 替换文本中指定分类的敏感词并返回命中的词编号，默认最小模式匹配
+     *
+     * @param text        文本
+     * @param categories  分类名称，为空时表示所有分类
+     * @param replacement 代表敏感词的字符，为空时使用默认的替换字符
+     * @return 返回替换后的文本及命中的词编号
+     */
+    public ReplacedText replaceSensitiveWordWithHits(String text, String[] categories, String replacement) {
+        return replaceSensitiveWordWithHits(text, MATCH_TYPE.MINIMUM_MATCH, categories, replacement);
+    }
+
+    /**
+     * 替换文本中指定分类的敏感词，默认最小模式匹配
+     *
+     * @param text        文本
+     * @param categories  分类名称，为空时表示所有分类
+     * @param replacement 代表敏感词的字符，为空时使用默认的替换字符
+     * @return 返回替换后的文本
+     */
+    public String replaceSensitiveWord(String text, String[] categories, String replacement) {
+        return replaceSensitiveWord(text, MATCH_TYPE.MINIMUM_MATCH, categories, replacement);
     }
 
     /**
@@ -91,14 +346,800 @@ public class SensitiveWordHandler extends NLPAbstractHandler implements Applicat
      * @return 返回替换后的文本
      */
     public String replaceSensitiveWord(String text) {
-        return replaceSensitiveWord(dfaWordMap, text, sensitiveWord.getReplacement().charAt(0), MATCH_TYPE.MINIMUM_MATCH);
+        return replaceSensitiveWord(text, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    /**
+     * 替换文本中的敏感词，替换结果直接写入out
+     *
+     * @param text      文本
+     * @param matchType 敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @param out       替换结果输出，例如{@link StringBuilder}或{@link java.io.Writer}
+     * @throws IOException 写入out失败时抛出
+     */
+    public void replaceSensitiveWord(CharSequence text, Enum matchType, Appendable out) throws IOException {
+        long start = System.nanoTime();
+        replaceSensitiveWord(documentMatcher(snapshot(), text), text, sensitiveWord.getReplacement().charAt(0), matchType, out);
+        metrics.recordScan("replace", text.length(), System.nanoTime() - start);
+    }
+
+    /**
+     * 替换文本中的敏感词，替换结果直接写入out，默认最小模式匹配
+     *
+     * @param text 文本
+     * @param out  替换结果输出
+     * @throws IOException 写入out失败时抛出
+     */
+    public void replaceSensitiveWord(CharSequence text, Appendable out) throws IOException {
+        replaceSensitiveWord(text, MATCH_TYPE.MINIMUM_MATCH, out);
+    }
+
+    /**
+     * 包装Writer，写入的文本替换敏感词后再写入out，整个流使用同一个版本的词库
+     *
+     * @param out       替换结果输出
+     * @param matchType 敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @return 返回替换敏感词的Writer，写入结束后需要调用finish或close
+     */
+    public SensitiveWordFilterWriter filterWriter(Writer out, Enum matchType) {
+        return new SensitiveWordFilterWriter(out, matcher(), MATCH_TYPE.MAXIMUM_MATCH == matchType, sensitiveWord.getReplacement().charAt(0));
+    }
+
+    /**
+     * 包装Writer，默认最小模式匹配
+     *
+     * @param out 替换结果输出
+     * @return 返回替换敏感词的Writer
+     */
+    public SensitiveWordFilterWriter filterWriter(Writer out) {
+        return filterWriter(out, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    /**
+     * 包装Reader，读取到的文本是替换敏感词后的文本，整个流使用同一个版本的词库
+     *
+     * @param in        原文本输入
+     * @param matchType 敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @return 返回替换敏感词的Reader
+     */
+    public SensitiveWordFilterReader filterReader(Reader in, Enum matchType) {
+        return new SensitiveWordFilterReader(in, matcher(), MATCH_TYPE.MAXIMUM_MATCH == matchType, sensitiveWord.getReplacement().charAt(0));
+    }
+
+    /**
+     * 包装Reader，默认最小模式匹配
+     *
+     * @param in 原文本输入
+     * @return 返回替换敏感词的Reader
+     */
+    public SensitiveWordFilterReader filterReader(Reader in) {
+        return filterReader(in, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    /**
+     * 批量替换文本中的敏感词，整批文本使用同一个版本的词库，数量较多时分段并行处理
+     *
+     * @param texts     文本列表，元素可以为null
+     * @param matchType 敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @return 返回替换后的文本列表，与texts一一对应
+     */
+    public List<String> replaceSensitiveWords(List<String> texts, Enum matchType) {
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        WordMatcher matcher = instrumented(snapshot, snapshot.getMatcher());
+        char replaceChar = sensitiveWord.getReplacement().charAt(0);
+        String[] result = new String[texts.size()];
+        List<String> source = texts instanceof RandomAccess ? texts : new ArrayList<>(texts);
+        forEachIndex(source.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                String text = source.get(i);
+                result[i] = text == null ? null : replaceSensitiveWord(snapshot, matcher, text, replaceChar, matchType, WordCategories.ALL);
+            }
+        });
+        metrics.recordScan("replaceBatch", totalLength(source), System.nanoTime() - start);
+        return Arrays.asList(result);
+    }
+
+    /**
+     * 批量替换文本中的敏感词，默认最小模式匹配
+     *
+     * @param texts 文本列表
+     * @return 返回替换后的文本列表
+     */
+    public List<String> replaceSensitiveWords(List<String> texts) {
+        return replaceSensitiveWords(texts, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    /**
+     * 批量检测文本中是否包含敏感词，整批文本使用同一个版本的词库
+     *
+     * @param texts     文本列表，元素可以为null
+     * @param matchType 敏感词匹配类型 参考{@link NLPAbstractHandler}类中的{@link MATCH_TYPE}变量
+     * @return 返回检测结果，与texts一一对应
+     */
+    public boolean[] contains(List<String> texts, Enum matchType) {
+        long start = System.nanoTime();
+        DictionarySnapshot snapshot = snapshot();
+        WordMatcher matcher = snapshot.getMatcher();
+        boolean[] result = new boolean[texts.size()];
+        List<String> source = texts instanceof RandomAccess ? texts : new ArrayList<>(texts);
+        forEachIndex(source.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                String text = source.get(i);
+                result[i] = text != null && contains(snapshot, matcher, text, matchType, WordCategories.ALL);
+            }
+        });
+        metrics.recordScan("containsBatch", totalLength(source), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 批量检测文本中是否包含敏感词，默认最小匹配模式
+     *
+     * @param texts 文本列表
+     * @return 返回检测结果
+     */
+    public boolean[] contains(List<String> texts) {
+        return contains(texts, MATCH_TYPE.MINIMUM_MATCH);
+    }
+
+    /**
+     * 检测文本中是否包含指定分类的敏感词，短文本优先使用缓存的结果
+     */
+    private boolean contains(DictionarySnapshot snapshot, WordMatcher matcher, String text, Enum matchType, long categoryMask) {
+        boolean cacheable = isCacheable(text);
+        int options = cacheOptions(CACHE_CONTAINS, matchType, '\0');
+        if (cacheable) {
+            Object cached = resultCache.get(text, options, categoryMask, snapshot.getVersion());
+            if (cached != null) {
+                return (Boolean) cached;
+            }
+        }
+        boolean result = contains(matcher, text, matchType, snapshot.getCategories().filter(categoryMask));
+        if (cacheable) {
+            resultCache.put(text, options, categoryMask, snapshot.getVersion(), result);
+        }
+        return result;
+    }
+
+    /**
+     * 替换文本中指定分类的敏感词，短文本优先使用缓存的结果
+     */
+    private String replaceSensitiveWord(DictionarySnapshot snapshot, WordMatcher matcher, String text, char replaceChar,
+                                        Enum matchType, long categoryMask) {
+        if (!isCacheable(text)) {
+            return replaceSensitiveWord(matcher, text, replaceChar, matchType, snapshot.getCategories().filter(categoryMask));
+        }
+        return replaceWithHits(snapshot, matcher, text, replaceChar, matchType, categoryMask).text;
+    }
+
+    /**
+     * 替换文本中指定分类的敏感词并返回命中的词编号，短文本优先使用缓存的结果。
+     * 缓存的结果同时保存命中的词编号，缓存命中时不经过匹配引擎，按词编号补记命中次数
+     */
+    private CachedReplace replaceWithHits(DictionarySnapshot snapshot, WordMatcher matcher, String text, char replaceChar,
+                                          Enum matchType, long categoryMask) {
+        boolean cacheable = isCacheable(text);
+        int options = cacheOptions(CACHE_REPLACE, matchType, replaceChar);
+        if (cacheable) {
+            Object cached = resultCache.get(text, options, categoryMask, snapshot.getVersion());
+            if (cached != null) {
+                CachedReplace replaced = (CachedReplace) cached;
+                recordHits(snapshot, replaced.wordIds);
+                return replaced;
+            }
+        }
+        MatchBuffer hits = new MatchBuffer(4);
+        String result = replaceSensitiveWord(matcher, text, replaceChar, matchType, snapshot.getCategories().filter(categoryMask), hits);
+        CachedReplace replaced = new CachedReplace(result, hits.wordIds());
+        if (cacheable) {
+            resultCache.put(text, options, categoryMask, snapshot.getVersion(), replaced);
+        }
+        return replaced;
+    }
+
+    /**
+     * 缓存命中时补记命中次数，缓存键包含词库版本，词编号与snapshot一致
+     */
+    private void recordHits(DictionarySnapshot snapshot, int[] wordIds) {
+        SensitiveWordMetrics current = metrics;
+        if (current.isRecordingHits()) {
+            for (int wordId : wordIds) {
+                current.recordHit(snapshot, wordId);
+            }
+        }
+    }
+
+    private boolean isCacheable(String text) {
+        return resultCache != null && resultCache.isCacheable(text);
+    }
+
+    /**
+     * 缓存结果的处理方式：操作类型、是否最大匹配和替换字符
+     */
+    private static int cacheOptions(int operation, Enum matchType, char replaceChar) {
+        return operation << 17 | (MATCH_TYPE.MAXIMUM_MATCH == matchType ? 1 << 16 : 0) | replaceChar;
+    }
+
+    private static long totalLength(List<String> texts) {
+        long length = 0;
+        for (String text : texts) {
+            if (text != null) {
+                length += text.length();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 按下标区间分段处理，每段结果写入各自的下标，不需要额外同步
+     */
+    private void forEachIndex(int size, IndexRangeAction action) {
+        if (!batchExecutor.isParallel(size)) {
+            action.accept(0, size);
+            return;
+        }
+        batchExecutor.forEachChunk(new IndexRange(size), chunk -> {
+            IndexRange range = (IndexRange) chunk;
+            action.accept(range.from, range.to);
+        });
     }
 
+    /**
+     * 获取批量处理使用的执行器
+     *
+     * @return 返回执行器
+     */
+    public BatchExecutor getBatchExecutor() {
+        return batchExecutor;
+    }
+
+    /**
+     * 设置指标记录，默认不记录任何指标
+     *
+     * @param metrics 指标记录
+     */
+    public void setMetrics(SensitiveWordMetrics metrics) {
+        this.metrics = metrics == null ? SensitiveWordMetrics.NONE : metrics;
+        this.metrics.bind(this);
+    }
+
+    /**
+     * 获取指标记录
+     *
+     * @return 返回指标记录
+     */
+    public SensitiveWordMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 获取词库中词的数量
+     *
+     * @return 返回词数量，词库未初始化时返回0
+     */
+    public int getDictionarySize() {
+        DictionarySnapshot snapshot = dictionary;
+        return snapshot == null ? 0 : snapshot.getMatcher().size();
+    }
+
+    /**
+     * 获取词库占用的堆内存估算值
+     *
+     * @return 返回字节数，词库未初始化时返回0
+     */
+    public long getDictionaryHeapBytes() {
+        DictionarySnapshot snapshot = dictionary;
+        return snapshot == null ? 0 : snapshot.getMatcher().heapBytes();
+    }
+
+    /**
+     * 获取当前词库过滤器的选择率，即扫描过的字符中需要进入自动机匹配的比例，词库更新后重新统计
+     *
+     * @return 返回选择率，词库未初始化或者没有扫描过时返回0
+     */
+    public double getPrefilterSelectivity() {
+        DictionarySnapshot snapshot = dictionary;
+        return snapshot == null ? 0 : snapshot.getMatcher().getPrefilter().getSelectivity();
+    }
+
+    /**
+     * 获取当前词库版本，初次加载为1，每次重新加载后递增
+     *
+     * @return 返回词库版本，词库未初始化时返回0
+     */
+    public long getDictionaryVersion() {
+        DictionarySnapshot snapshot = dictionary;
+        return snapshot == null ? 0 : snapshot.getVersion();
+    }
+
+    /**
+     * 获取最近一次加载词库的耗时
+     *
+     * @return 返回耗时，单位毫秒
+     */
+    public long getLastReloadMillis() {
+        DictionarySnapshot snapshot = dictionary;
+        return snapshot == null ? 0 : snapshot.getBuildMillis();
+    }
+
+    /**
+     * 设置词库来源，需要在词库加载前设置，设置后不再读取{@link NlpProperties#getBaseDir()}下的词库文件，也不使用词库快照
+     *
+     * @param dictionarySource 词库来源
+     */
+    public synchronized void setDictionarySource(DictionarySource dictionarySource) {
+        this.dictionarySource = dictionarySource;
+    }
+
+    /**
+     * 获取词库来源的版本水位，热更新时只回放该水位之后的变化
+     *
+     * @return 返回版本水位，没有设置词库来源时返回0
+     */
+    public synchronized long getSourceWatermark() {
+        return sourceWatermark;
+    }
+
+    /**
+     * 获取短文本的处理结果缓存，可以查看命中率和淘汰数量
+     *
+     * @return 返回结果缓存，{@link NlpProperties#getResultCacheSize()}小于等于0时返回null
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * 获取当前词库的分类名称
+     *
+     * @return 返回分类名称，词库未初始化时返回空列表
+     */
+    public List<String> getCategories() {
+        DictionarySnapshot snapshot = dictionary;
+        return snapshot == null ? Collections.<String>emptyList() : snapshot.getCategories().getNames();
+    }
+
+    /**
+     * 获取当前词库快照
+     *
+     * @return 返回词库快照，词库未初始化时返回null
+     */
+    public DictionarySnapshot getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * 重新读取词库文件并构建词库，构建完成后替换当前词库，构建期间不影响正在进行的敏感词处理
+     *
+     * @throws IOException 读取词库文件失败时抛出
+     */
+    public synchronized void reload() throws IOException {
+        if (dictionarySource != null) {
+            reloadSource();
+            return;
+        }
+        Resource[] resources = resolveResources();
+        Resource[] allowResources = resolveAllowResources();
+        long fingerprint = dictionaryFingerprint(resources, allowResources);
+        long start = System.currentTimeMillis();
+        // 运行时增删的词已经规范化，先规范化词库文件中的词再合并
+        WordCategories.Builder categoriesBuilder = categoriesBuilder();
+        Set<String> wordSet = normalizeWords(loadSensitiveWordResources(resources, categoriesBuilder));
+        wordSet.addAll(runtimeAddedWords);
+        wordSet.removeAll(runtimeRemovedWords);
+        WordMatcher matcher = init(wordSet, loadAllowPhrases(allowResources));
+        WordCategories categories = categoriesBuilder.build(matcher);
+        publish(matcher, categories, start);
+        this.resourceFingerprint = fingerprint;
+        // 快照只对应词库文件的内容，包含运行时增删词时不写入
+        if (runtimeAddedWords.isEmpty() && runtimeRemovedWords.isEmpty() && StringUtils.hasText(getNlpProperties().getSnapshotFile())) {
+            writeSnapshot(matcher, categories, dictionaryChecksum(resources, allowResources));
+        }
+    }
+
+    /**
+     * 从词库来源分页读取全部词并构建词库，每页的词规范化后直接合并到同一个词到分类位的映射中，不保留按页划分的词
+     */
+    private void reloadSource() throws IOException {
+        long start = System.currentTimeMillis();
+        WordCategories.MaskBuilder categoriesBuilder = WordCategories.maskBuilder(4096);
+        long watermark = dictionarySource.load(getNlpProperties().getSourcePageSize(), (category, words) -> {
+            long bit = categoriesBuilder.bit(categoryOf(category));
+            for (String word : words) {
+                String value = normalizeEntry(word);
+                if (!value.isEmpty()) {
+                    categoriesBuilder.add(value, bit);
+                }
+            }
+        });
+        Set<String> words = categoriesBuilder.words();
+        log.info(String.format("从%s加载词库完成，共有%d个词，版本水位%d，耗时%dms", dictionarySource.getName(), words.size(), watermark,
+                (System.currentTimeMillis() - start)));
+        for (String word : runtimeAddedWords) {
+            categoriesBuilder.add(word, 0);
+        }
+        words.removeAll(runtimeRemovedWords);
+        WordMatcher matcher = init(words, loadAllowPhrases(resolveAllowResources()));
+        publish(matcher, categoriesBuilder.build(matcher), start);
+        this.sourceWatermark = watermark;
+    }
+
+    /**
+     * 词库来源的水位变化时回放水位之后的变化，作为增量叠加在当前词库上，来源不支持回放时重新读取全部词。
+     * 变化的词按回放的分类覆盖分类位图，出现当前词库中没有的分类时重新读取全部词。
+     * 回放的变化不记入运行时增删的词，重新读取时以来源中的词为准
+     */
+    private synchronized void replaySource() throws IOException {
+        if (dictionarySource.getVersion() == sourceWatermark) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        // 同一个词有多次变化时以最后一次为准
+        Map<String, List<String>> changes = new LinkedHashMap<>();
+        long watermark = dictionarySource.replay(sourceWatermark, getNlpProperties().getSourcePageSize(), (word, categories) -> {
+            changes.remove(word);
+            changes.put(word, categories);
+        });
+        if (watermark == DictionarySource.REPLAY_UNSUPPORTED) {
+            log.info(String.format("检测到%s变化，开始重新加载词库", dictionarySource.getName()));
+            reload();
+            return;
+        }
+        WordCategories wordCategories = dictionary.getCategories();
+        List<String> names = wordCategories.getNames();
+        OverlayMatcher overlay = overlay();
+        Map<Integer, Long> masks = new HashMap<>();
+        for (Map.Entry<String, List<String>> change : changes.entrySet()) {
+            String word = normalizeWord(change.getKey().trim());
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (change.getValue().isEmpty()) {
+                overlay = overlay.removeWord(word);
+                continue;
+            }
+            long mask = 0;
+            for (String category : change.getValue()) {
+                String name = categoryOf(category);
+                if (!names.contains(name)) {
+                    log.info(String.format("%s中出现新的分类%s，开始重新加载词库", dictionarySource.getName(), name));
+                    reload();
+                    return;
+                }
+                mask |= wordCategories.mask(name);
+            }
+            overlay = overlay.addWord(word);
+            masks.put(overlay.getWordId(word), mask);
+        }
+        publishDelta(overlay, wordCategories.withMasks(masks), start);
+        this.sourceWatermark = watermark;
+        log.info(String.format("从%s回放%d个变化，版本水位%d", dictionarySource.getName(), changes.size(), watermark));
+    }
+
+    /**
+     * 词库文件和白名单文件的指纹，任一变化都重新构建词库
+     */
+    private long dictionaryFingerprint(Resource[] resources, Resource[] allowResources) {
+        long fingerprint = resourceFingerprint(resources);
+        return allowResources.length == 0 ? fingerprint : fingerprint * 31 + resourceFingerprint(allowResources);
+    }
+
+    /**
+     * 词库文件和白名单文件内容的校验和，没有白名单时与{@link com.lhb.github.io.utilbox.handler.DictionaryCompiler}编译的快照一致
+     */
+    private long dictionaryChecksum(Resource[] resources, Resource[] allowResources) throws IOException {
+        long checksum = resourceChecksum(resources);
+        return allowResources.length == 0 ? checksum : checksum * 31 + resourceChecksum(allowResources);
+    }
+
+    /**
+     * 运行时新增敏感词，只复制受影响的字典树路径，不重新构建整个词库
+     *
+     * @param words 新增的词
+     */
+    public synchronized void addWords(Collection<String> words) {
+        long start = System.currentTimeMillis();
+        OverlayMatcher overlay = overlay();
+        for (String word : words) {
+            if (word == null || (word = normalizeWord(word.trim())).isEmpty()) {
+                continue;
+            }
+            overlay = overlay.addWord(word);
+            runtimeRemovedWords.remove(word);
+            runtimeAddedWords.add(word);
+        }
+        publishDelta(overlay, dictionary.getCategories(), start);
+    }
+
+    /**
+     * 运行时删除敏感词，只复制受影响的字典树路径，不重新构建整个词库
+     *
+     * @param words 删除的词
+     */
+    public synchronized void removeWords(Collection<String> words) {
+        long start = System.currentTimeMillis();
+        OverlayMatcher overlay = overlay();
+        for (String word : words) {
+            if (word == null || (word = normalizeWord(word.trim())).isEmpty()) {
+                continue;
+            }
+            overlay = overlay.removeWord(word);
+            runtimeAddedWords.remove(word);
+            runtimeRemovedWords.add(word);
+        }
+        publishDelta(overlay, dictionary.getCategories(), start);
+    }
+
+    private OverlayMatcher overlay() {
+        if (dictionary == null) {
+            throw new IllegalStateException("敏感词库尚未初始化");
+        }
+        WordMatcher matcher = matcher();
+        return matcher instanceof OverlayMatcher ? (OverlayMatcher) matcher : new OverlayMatcher(matcher, getNormalizer());
+    }
+
+    /**
+     * 发布增量词库，增删词数量超过{@link NlpProperties#getDeltaCompactThreshold()}时在后台重新构建完整词库。
+     * 增量词库沿用基础词库的词编号和分类，运行时新增的词属于所有分类
+     */
+    private void publishDelta(OverlayMatcher overlay, WordCategories categories, long start) {
+        // 发布前编译增删词，请求线程不需要在第一次匹配时编译
+        publish(overlay.compile(), categories, start);
+        if (overlay.deltaSize() > getNlpProperties().getDeltaCompactThreshold() && !compactScheduled) {
+            compactScheduled = true;
+            backgroundExecutor().execute(this::compact);
+        }
+    }
+
+    private void compact() {
+        try {
+            log.info("增量敏感词数量超过阈值，开始在后台合并词库");
+            reload();
+        } catch (Exception e) {
+            log.log(Level.WARNING, "增量敏感词合并失败，继续使用当前词库", e);
+        } finally {
+            synchronized (this) {
+                compactScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * 获取当前匹配引擎，词库尚未加载完成时按{@link NlpProperties#getNotReadyPolicy()}处理
+     */
+    private WordMatcher matcher() {
+        return snapshot().getMatcher();
+    }
+
+    /**
+     * 获取当前词库快照，词库尚未加载完成时按{@link NlpProperties#getNotReadyPolicy()}处理
+     */
+    private DictionarySnapshot snapshot() {
+        DictionarySnapshot snapshot = dictionary;
+        return snapshot != null ? snapshot : notReady();
+    }
+
+    /**
+     * 按分类过滤词的条件，包含所有分类时返回null
+     */
+    private static IntPredicate wordFilter(DictionarySnapshot snapshot, String[] categories) {
+        WordCategories wordCategories = snapshot.getCategories();
+        return wordCategories.filter(wordCategories.mask(categories));
+    }
+
+    /**
+     * 单个文本使用的匹配引擎，长文本分段并行扫描，短文本直接使用词库快照的匹配引擎
+     */
+    private WordMatcher documentMatcher(DictionarySnapshot snapshot, CharSequence text) {
+        WordMatcher matcher = snapshot.getMatcher();
+        int threshold = getNlpProperties().getParallelScanThreshold();
+        if (threshold > 0 && text.length() >= threshold) {
+            matcher = new SegmentedMatcher(matcher, batchExecutor, getNlpProperties());
+        }
+        return instrumented(snapshot, matcher);
+    }
+
+    /**
+     * 需要统计命中的敏感词时包装匹配引擎，命中的词编号属于snapshot
+     */
+    private WordMatcher instrumented(DictionarySnapshot snapshot, WordMatcher matcher) {
+        SensitiveWordMetrics current = metrics;
+        return current.isRecordingHits() ? new InstrumentedMatcher(matcher, snapshot, current) : matcher;
+    }
+
+    private DictionarySnapshot notReady() {
+        NlpProperties nlpProperties = getNlpProperties();
+        switch (nlpProperties.getNotReadyPolicy()) {
+            case PASS_THROUGH:
+                return EMPTY_DICTIONARY;
+            case BLOCK:
+                try {
+                    return ready.get(nlpProperties.getInitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("等待敏感词库加载被中断", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("敏感词库加载失败", e.getCause());
+                } catch (TimeoutException e) {
+                    throw new IllegalStateException(String.format("等待敏感词库加载超过%dms", nlpProperties.getInitTimeout().toMillis()), e);
+                }
+            default:
+                throw new IllegalStateException("敏感词库尚未加载完成");
+        }
+    }
+
+    private void publish(WordMatcher matcher, WordCategories categories, long start) {
+        this.dictionary = new DictionarySnapshot(matcher, categories, ++dictionaryVersion, System.currentTimeMillis() - start);
+        if (resultCache != null) {
+            resultCache.invalidateAll();
+        }
+        ready.complete(dictionary);
+        metrics.recordDictionary(dictionary);
+    }
+
+    /**
+     * 检查词库文件是否变化，有变化时重新构建词库
+     */
+    private void reloadIfChanged() {
+        try {
+            if (dictionarySource != null) {
+                replaySource();
+                return;
+            }
+            long fingerprint = dictionaryFingerprint(resolveResources(), resolveAllowResources());
+            if (fingerprint != resourceFingerprint) {
+                log.info("检测到词库文件变化，开始重新加载词库");
+                reload();
+                log.info(String.format("词库重新加载完成，当前版本%d，耗时%dms", getDictionaryVersion(), getLastReloadMillis()));
+            }
+        } catch (Exception e) {
+            log.log(Level.WARNING, "词库重新加载失败，继续使用当前词库", e);
+        }
+    }
+
+    private void startReloadWatcher() {
+        NlpProperties nlpProperties = getNlpProperties();
+        if (!nlpProperties.isReloadEnabled() || reloadWatching) {
+            return;
+        }
+        reloadWatching = true;
+        long interval = nlpProperties.getReloadInterval().toMillis();
+        backgroundExecutor().scheduleWithFixedDelay(this::reloadIfChanged, interval, interval, TimeUnit.MILLISECONDS);
+        log.info(String.format("已开启词库热更新，检查间隔%dms", interval));
+    }
+
+    private synchronized ScheduledExecutorService backgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "nlp-dictionary-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return backgroundExecutor;
+    }
+
+    @Override
+    public synchronized void onApplicationEvent(ContextRefreshedEvent event) {
+        // 父子容器多次刷新时不重复加载
+        if (initStarted) {
+            return;
+        }
+        initStarted = true;
+        if (getNlpProperties().isAsyncInit()) {
+            log.info("在后台异步加载敏感词库");
+            backgroundExecutor().execute(this::initDictionary);
+        } else {
+            initDictionary();
+        }
+    }
+
+    private synchronized void initDictionary() {
+        try {
+            loadDictionary();
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "敏感词库加载失败", e);
+            ready.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void loadDictionary() {
+        if (dictionarySource != null) {
+            try {
+                reloadSource();
+            } catch (IOException e) {
+                throw new IllegalStateException(String.format("从%s加载词库失败", dictionarySource.getName()), e);
+            }
+            startReloadWatcher();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        WordMatcher matcher = null;
+        WordCategories categories = WordCategories.NONE;
+        long checksum = 0;
+        Set<String> allowPhrases = Collections.emptySet();
+        try {
+            Resource[] resources = resolveResources();
+            Resource[] allowResources = resolveAllowResources();
+            this.resourceFingerprint = dictionaryFingerprint(resources, allowResources);
+            allowPhrases = loadAllowPhrases(allowResources);
+            if (StringUtils.hasText(getNlpProperties().getSnapshotFile())) {
+                checksum = dictionaryChecksum(resources, allowResources);
+                matcher = loadSnapshot(checksum);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "读取词库文件信息失败", e);
+        }
+        if (matcher instanceof MappedAhoCorasickMatcher) {
+            categories = ((MappedAhoCorasickMatcher) matcher).getCategories();
+            matcher = allowList(matcher, allowPhrases);
+        } else {
+            WordCategories.Builder categoriesBuilder = categoriesBuilder();
+            matcher = init(normalizeWords(loadSensitiveWordResources(categoriesBuilder)), allowPhrases);
+            categories = categoriesBuilder.build(matcher);
+            writeSnapshot(matcher, categories, checksum);
+        }
+        publish(matcher, categories, start);
+        startReloadWatcher();
+    }
 
     @Override
-    public void onApplicationEvent(ContextRefreshedEvent event) {
-        this.wordModelSet = loadSensitiveWordResources();
-        this.dfaWordMap = new HashMap(wordModelSet.size());
-        init(this.dfaWordMap, wordModelSet);
+    public synchronized void destroy() {
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+        }
+        batchExecutor.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface IndexRangeAction {
+        void accept(int from, int to);
+    }
+
+    /**
+     * 只表示下标区间的列表，用于按下标分段
+     */
+    private static final class IndexRange extends AbstractList<Integer> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        private IndexRange(int size) {
+            this(0, size);
+        }
+
+        private IndexRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return from + index;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public List<Integer> subList(int fromIndex, int toIndex) {
+            return new IndexRange(from + fromIndex, from + toIndex);
+        }
+    }
+
+    /**
+     * 缓存的替换结果及按顺序命中的词编号
+     */
+    private static final class CachedReplace {
+        private final String text;
+        private final int[] wordIds;
+
+        private CachedReplace(String text, int[] wordIds) {
+            this.text = text;
+            this.wordIds = wordIds;
+        }
     }
 }
@@ -0,0 +1,80 @@
+package com.lhb.github.io.utilbox.handler.source;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 词库来源，用于替代从{@link com.lhb.github.io.utilbox.props.NlpProperties#getBaseDir()}读取txt文件，例如保存在数据库中的大词库
+ * <p>
+ * 词按页读取，每页直接交给词库构建，不需要先把整个来源复制成按文件划分的集合。每次读取都返回来源的版本水位，
+ * 热更新时先比较水位，支持增量的来源只回放水位之后的变化并叠加在当前词库上，不支持时重新读取全部词。
+ * 回放的每个变化都带有词当前所在的全部分类，增量词库按分类过滤的结果与重新读取一致
+ *
+ * @author lihuibin
+ */
+public interface DictionarySource {
+    /**
+     * {@link #replay}的返回值，表示来源不支持增量回放
+     */
+    long REPLAY_UNSUPPORTED = -1L;
+
+    /**
+     * @return 来源名称，用于日志
+     */
+    String getName();
+
+    /**
+     * 获取来源当前的版本水位，词库有变化时水位一定变化
+     *
+     * @return 返回版本水位
+     * @throws IOException 读取失败时抛出
+     */
+    long getVersion() throws IOException;
+
+    /**
+     * 按页读取全部词，同一个分类的词可以分多页返回
+     *
+     * @param pageSize 每页最多的词数量
+     * @param consumer 每页回调一次
+     * @return 返回开始读取前的版本水位，读取期间发生的变化在下次回放时再次读取
+     * @throws IOException 读取失败时抛出
+     */
+    long load(int pageSize, PageConsumer consumer) throws IOException;
+
+    /**
+     * 按版本顺序回放水位之后的变化
+     *
+     * @param watermark 上次读取或回放返回的水位
+     * @param pageSize  每次查询最多的变化数量
+     * @param consumer  每个变化的词回调一次，同一个词可以回调多次，以最后一次为准
+     * @return 返回回放到的水位，不支持增量回放时返回{@link #REPLAY_UNSUPPORTED}
+     * @throws IOException 读取失败时抛出
+     */
+    default long replay(long watermark, int pageSize, ChangeConsumer consumer) throws IOException {
+        return REPLAY_UNSUPPORTED;
+    }
+
+    /**
+     * 一页词的回调
+     */
+    @FunctionalInterface
+    interface PageConsumer {
+        /**
+         * @param category 词的分类，按{@link com.lhb.github.io.utilbox.props.NlpProperties#getCategories()}映射后使用
+         * @param words    未规范化的词，回调之后仍可能被词库构建持有，来源不能再修改
+         */
+        void accept(String category, List<String> words);
+    }
+
+    /**
+     * 一个变化的回调
+     */
+    @FunctionalInterface
+    interface ChangeConsumer {
+        /**
+         * @param word       未规范化的词
+         * @param categories 变化后词所在的全部分类，映射方式与{@link PageConsumer}相同，为空时词已从所有分类中删除
+         */
+        void accept(String word, List<String> categories);
+    }
+}
@@ -0,0 +1,249 @@
+package com.lhb.github.io.utilbox.handler.source;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 从数据库表读取词库的词库来源，按主键分页查询，不使用各数据库不同的分页语法
+ * <p>
+ * 表结构示例：
+ * <pre>
+ * create table nlp_sensitive_word (
+ *     word     varchar(64) not null,
+ *     category varchar(32) not null,
+ *     version  bigint      not null,
+ *     deleted  smallint    not null default 0,
+ *     primary key (word, category)
+ * );
+ * create index idx_nlp_sensitive_word_version on nlp_sensitive_word (version);
+ * </pre>
+ * 每次新增、修改和删除都要把version设为比当前所有version都大的值，删除只把deleted设为1，
+ * 这样水位之后的变化(包括删除)都可以按version回放。直接物理删除的行无法回放，需要调用{@link
+ * com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler#reload()}重新加载。
+ * 同一个词在多个分类中时，回放时按词查询当前未删除的分类，只有所有分类中都删除后才从词库中删除
+ *
+ * @author lihuibin
+ */
+public class JdbcDictionarySource implements DictionarySource {
+    /**
+     * 查询变化的词当前所在分类时每条语句最多的词数量，不超过常见数据库对in列表和参数数量的限制
+     */
+    private static final int IN_BATCH = 500;
+
+    private final DataSource dataSource;
+    private final String table;
+    private String wordColumn = "word";
+    private String categoryColumn = "category";
+    private String versionColumn = "version";
+    private String deletedColumn = "deleted";
+
+    /**
+     * @param dataSource 数据源
+     * @param table      词库表名
+     */
+    public JdbcDictionarySource(DataSource dataSource, String table) {
+        this.dataSource = dataSource;
+        this.table = table;
+    }
+
+    @Override
+    public String getName() {
+        return "jdbc:" + table;
+    }
+
+    @Override
+    public long getVersion() throws IOException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     String.format("select max(%s) from %s", versionColumn, table));
+             ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? Math.max(0, rs.getLong(1)) : 0;
+        } catch (SQLException e) {
+            throw new IOException(String.format("查询词库表%s的版本失败", table), e);
+        }
+    }
+
+    /**
+     * 按(词, 分类)的顺序分页查询未删除的词，每页从上一页最后一行之后开始
+     */
+    @Override
+    public long load(int pageSize, PageConsumer consumer) throws IOException {
+        long version = getVersion();
+        String first = String.format("select %s, %s from %s where %s = 0 order by %s, %s",
+                wordColumn, categoryColumn, table, deletedColumn, wordColumn, categoryColumn);
+        String next = String.format("select %s, %s from %s where %s = 0 and (%s > ? or (%s = ? and %s > ?)) order by %s, %s",
+                wordColumn, categoryColumn, table, deletedColumn, wordColumn, wordColumn, categoryColumn, wordColumn, categoryColumn);
+        try (Connection connection = dataSource.getConnection()) {
+            String lastWord = null;
+            String lastCategory = null;
+            while (true) {
+                Map<String, List<String>> page = new LinkedHashMap<>();
+                int rows = 0;
+                try (PreparedStatement statement = connection.prepareStatement(lastWord == null ? first : next)) {
+                    statement.setMaxRows(pageSize);
+                    statement.setFetchSize(pageSize);
+                    if (lastWord != null) {
+                        statement.setString(1, lastWord);
+                        statement.setString(2, lastWord);
+                        statement.setString(3, lastCategory);
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            lastWord = rs.getString(1);
+                            lastCategory = rs.getString(2);
+                            page.computeIfAbsent(lastCategory, key -> new ArrayList<>()).add(lastWord);
+                            rows++;
+                        }
+                    }
+                }
+                page.forEach(consumer::accept);
+                if (rows < pageSize) {
+                    return version;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(String.format("读取词库表%s失败", table), e);
+        }
+    }
+
+    /**
+     * 按(版本, 词, 分类)的顺序分页查询水位之后变化的行，每页变化的词再用一条in查询取回当前所在的分类
+     */
+    @Override
+    public long replay(long watermark, int pageSize, ChangeConsumer consumer) throws IOException {
+        String first = String.format("select %s, %s, %s from %s where %s > ? order by %s, %s, %s",
+                wordColumn, categoryColumn, versionColumn, table, versionColumn, versionColumn, wordColumn, categoryColumn);
+        String next = String.format("select %s, %s, %s from %s where %s > ? or (%s = ? and (%s > ? or (%s = ? and %s > ?))) order by %s, %s, %s",
+                wordColumn, categoryColumn, versionColumn, table, versionColumn, versionColumn, wordColumn, wordColumn,
+                categoryColumn, versionColumn, wordColumn, categoryColumn);
+        try (Connection connection = dataSource.getConnection()) {
+            long lastVersion = watermark;
+            String lastWord = null;
+            String lastCategory = null;
+            while (true) {
+                Set<String> words = new LinkedHashSet<>();
+                int rows = 0;
+                try (PreparedStatement statement = connection.prepareStatement(lastWord == null ? first : next)) {
+                    statement.setMaxRows(pageSize);
+                    statement.setFetchSize(pageSize);
+                    statement.setLong(1, lastVersion);
+                    if (lastWord != null) {
+                        statement.setLong(2, lastVersion);
+                        statement.setString(3, lastWord);
+                        statement.setString(4, lastWord);
+                        statement.setString(5, lastCategory);
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            lastWord = rs.getString(1);
+                            lastCategory = rs.getString(2);
+                            lastVersion = rs.getLong(3);
+                            words.add(lastWord);
+                            rows++;
+                        }
+                    }
+                }
+                // 查询结束后再按版本顺序回调，回调的是词当前所在的分类，之后的变化在下一页或下次回放中再次回调
+                Map<String, List<String>> categories = liveCategories(connection, words);
+                for (String word : words) {
+                    consumer.accept(word, categories.getOrDefault(word, Collections.<String>emptyList()));
+                }
+                if (rows < pageSize) {
+                    return lastVersion;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(String.format("回放词库表%s的变化失败", table), e);
+        }
+    }
+
+    /**
+     * 查询一页变化的词当前未删除的分类，词数量超过{@link #IN_BATCH}时分成多条语句
+     *
+     * @return 返回词和按名称排序的分类，所有分类都已删除的词不在结果中
+     */
+    private Map<String, List<String>> liveCategories(Connection connection, Collection<String> words) throws SQLException {
+        Map<String, List<String>> categories = new HashMap<>(words.size() * 4 / 3 + 1);
+        List<String> batch = new ArrayList<>(Math.min(words.size(), IN_BATCH));
+        for (String word : words) {
+            batch.add(word);
+            if (batch.size() == IN_BATCH) {
+                liveCategories(connection, batch, categories);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            liveCategories(connection, batch, categories);
+        }
+        return categories;
+    }
+
+    private void liveCategories(Connection connection, List<String> words, Map<String, List<String>> categories) throws SQLException {
+        StringBuilder sql = new StringBuilder(128 + words.size() * 3).append(String.format("select %s, %s from %s where %s = 0 and %s in (",
+                wordColumn, categoryColumn, table, deletedColumn, wordColumn));
+        for (int i = 0; i < words.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(String.format(") order by %s, %s", wordColumn, categoryColumn));
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < words.size(); i++) {
+                statement.setString(i + 1, words.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    categories.computeIfAbsent(rs.getString(1), key -> new ArrayList<>()).add(rs.getString(2));
+                }
+            }
+        }
+    }
+
+    public String getWordColumn() {
+        return wordColumn;
+    }
+
+    public void setWordColumn(String wordColumn) {
+        this.wordColumn = wordColumn;
+    }
+
+    public String getCategoryColumn() {
+        return categoryColumn;
+    }
+
+    public void setCategoryColumn(String categoryColumn) {
+        this.categoryColumn = categoryColumn;
+    }
+
+    public String getVersionColumn() {
+        return versionColumn;
+    }
+
+    public void setVersionColumn(String versionColumn) {
+        this.versionColumn = versionColumn;
+    }
+
+    public String getDeletedColumn() {
+        return deletedColumn;
+    }
+
+    public void setDeletedColumn(String deletedColumn) {
+        this.deletedColumn = deletedColumn;
+    }
+
+    @Override
+    public String toString() {
+        return "JdbcDictionarySource{" + table + "}";
+    }
+}
@@ -0,0 +1,95 @@
+package com.lhb.github.io.utilbox.handler.source;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.ResourceUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 从本地文件或classpath读取txt词库文件的词库来源，每个文件以不含扩展名的文件名作为分类
+ * <p>
+ * 文件逐行读取，每读满一页交给词库构建。版本水位由文件名、修改时间和大小计算，不支持增量回放，文件变化时重新读取全部词
+ *
+ * @author lihuibin
+ */
+public class ResourceDictionarySource implements DictionarySource {
+    private final String location;
+
+    /**
+     * @param location 词库目录，写法与{@link com.lhb.github.io.utilbox.props.NlpProperties#getBaseDir()}相同，
+     *                 classpath目录下读取所有txt文件，其他位置按Ant风格的路径匹配，例如“file:/data/nlp/*.txt”
+     */
+    public ResourceDictionarySource(String location) {
+        this.location = location;
+    }
+
+    @Override
+    public String getName() {
+        return location;
+    }
+
+    private Resource[] resources() throws IOException {
+        String pattern = location.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX) ? location + "/*.txt" : location;
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(pattern);
+        Arrays.sort(resources, Comparator.comparing(Resource::getDescription));
+        return resources;
+    }
+
+    @Override
+    public long getVersion() throws IOException {
+        Resource[] resources = resources();
+        long version = resources.length;
+        for (Resource resource : resources) {
+            version = 31 * version + resource.getDescription().hashCode();
+            version = 31 * version + resource.lastModified();
+            version = 31 * version + resource.contentLength();
+        }
+        // 与REPLAY_UNSUPPORTED区分
+        return version & Long.MAX_VALUE;
+    }
+
+    @Override
+    public long load(int pageSize, PageConsumer consumer) throws IOException {
+        long version = getVersion();
+        for (Resource resource : resources()) {
+            String category = baseName(String.valueOf(resource.getFilename()));
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8), 8192)) {
+                List<String> page = new ArrayList<>(Math.min(pageSize, 4096));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    page.add(line);
+                    if (page.size() >= pageSize) {
+                        consumer.accept(category, page);
+                        page = new ArrayList<>(Math.min(pageSize, 4096));
+                    }
+                }
+                if (!page.isEmpty()) {
+                    consumer.accept(category, page);
+                }
+            }
+        }
+        return version;
+    }
+
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceDictionarySource{" + location + "}";
+    }
+}
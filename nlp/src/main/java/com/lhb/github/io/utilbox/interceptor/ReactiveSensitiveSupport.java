@@ -0,0 +1,92 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.handler.BatchExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * 返回{@link Mono}/{@link Flux}的接口的敏感词处理，只在引入Reactor时使用
+ * <p>
+ * 不订阅、不阻塞返回的流，而是在流上追加一步处理，对每个发出的元素替换敏感词。
+ * 开启offload时大小达到阈值的元素切换到{@link BatchExecutor}的固定并行度线程池再处理，
+ * 扫描大文本等CPU密集的处理不会占用WebFlux的事件循环线程；较小的元素不切换线程，在发出元素或处理完上一个元素的线程上直接处理，
+ * 不付出线程切换的开销。每个元素单独决定是否切换线程，元素仍按顺序逐个处理
+ *
+ * @author lihuibin
+ */
+public class ReactiveSensitiveSupport {
+    private final Scheduler scheduler;
+    private final int offloadThreshold;
+
+    /**
+     * @param batchExecutor    处理元素使用的线程池
+     * @param offload          是否切换到线程池处理，为false时在发出元素的线程上直接处理
+     * @param offloadThreshold 切换到线程池处理的元素大小，大小的计算方式见{@link #sizeOf(Object)}
+     */
+    public ReactiveSensitiveSupport(BatchExecutor batchExecutor, boolean offload, int offloadThreshold) {
+        this.scheduler = offload ? Schedulers.fromExecutorService(batchExecutor.getExecutorService(), "nlp-sensitive") : null;
+        this.offloadThreshold = Math.max(0, offloadThreshold);
+    }
+
+    /**
+     * @param value 接口返回值
+     * @return 返回值是{@link Mono}或{@link Flux}时返回true
+     */
+    boolean isReactive(Object value) {
+        return value instanceof Mono || value instanceof Flux;
+    }
+
+    /**
+     * 在流上追加敏感词处理
+     *
+     * @param value  {@link Mono}或{@link Flux}
+     * @param size   元素的大小，决定元素是否切换到线程池处理
+     * @param action 对每个元素的处理，返回处理后的元素
+     * @return 返回追加处理后的流
+     */
+    @SuppressWarnings("unchecked")
+    Object apply(Object value, ToIntFunction<Object> size, UnaryOperator<Object> action) {
+        if (value instanceof Mono) {
+            Mono<Object> mono = (Mono<Object>) value;
+            return scheduler == null ? mono.map(action) : mono.flatMap(element -> process(element, size, action));
+        }
+        Flux<Object> flux = (Flux<Object>) value;
+        // concatMap按元素顺序逐个处理，不切换线程的元素同步执行
+        return scheduler == null ? flux.map(action) : flux.concatMap(element -> process(element, size, action));
+    }
+
+    private Mono<Object> process(Object element, ToIntFunction<Object> size, UnaryOperator<Object> action) {
+        Mono<Object> result = Mono.fromCallable(() -> action.apply(element));
+        return size.applyAsInt(element) >= offloadThreshold ? result.subscribeOn(scheduler) : result;
+    }
+
+    /**
+     * 估计处理一个元素的工作量
+     *
+     * @param value 元素
+     * @return 字符串返回长度，集合、Map、数组返回元素数量，其他对象返回1
+     */
+    static int sizeOf(Object value) {
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        }
+        if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,133 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 接口路径解析，用于判断{@link SensitiveWord#ignoreApis()}是否命中当前接口
+ * <p>
+ * 接口路径由类上的{@link RequestMapping}前缀和方法上的{@link RequestMapping}、GetMapping、PostMapping、PutMapping、
+ * DeleteMapping、PatchMapping路径组合而成，每个方法只解析一次
+ *
+ * @author lihuibin
+ */
+final class RequestRoutes {
+    private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+    private static final ConcurrentHashMap<Method, RequestRoutes> ROUTES = new ConcurrentHashMap<>();
+
+    /**
+     * 类前缀和方法路径组合后的完整路径
+     */
+    private final String[] paths;
+    /**
+     * 只包含方法上配置的路径，兼容以前只按方法路径配置ignoreApis的写法
+     */
+    private final String[] methodPaths;
+    /**
+     * 审计日志中的接口名称
+     */
+    private final String endpoint;
+
+    private RequestRoutes(String[] paths, String[] methodPaths, String endpoint) {
+        this.paths = paths;
+        this.methodPaths = methodPaths;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * 获取方法映射的接口路径
+     *
+     * @param method 接口方法
+     * @return 返回接口路径
+     */
+    static RequestRoutes of(Method method) {
+        RequestRoutes routes = ROUTES.get(method);
+        return routes != null ? routes : ROUTES.computeIfAbsent(method, RequestRoutes::resolve);
+    }
+
+    private static RequestRoutes resolve(Method method) {
+        String[] classPaths = mappingPaths(AnnotatedElementUtils.findMergedAnnotation(method.getDeclaringClass(), RequestMapping.class));
+        String[] methodPaths = mappingPaths(AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class));
+        Set<String> paths = new LinkedHashSet<>();
+        for (String classPath : classPaths) {
+            for (String methodPath : methodPaths) {
+                paths.add(combine(classPath, methodPath));
+            }
+        }
+        return new RequestRoutes(paths.toArray(new String[0]), methodPaths, endpoint(method, paths));
+    }
+
+    /**
+     * 有映射路径时使用路径，多个路径用逗号分隔，否则使用“类名#方法名”
+     */
+    private static String endpoint(Method method, Set<String> paths) {
+        StringJoiner endpoint = new StringJoiner(",");
+        for (String path : paths) {
+            if (StringUtils.hasText(path)) {
+                endpoint.add(path);
+            }
+        }
+        return endpoint.length() > 0 ? endpoint.toString() : method.getDeclaringClass().getSimpleName() + "#" + method.getName();
+    }
+
+    private static String[] mappingPaths(RequestMapping mapping) {
+        if (mapping == null || mapping.path().length == 0) {
+            return new String[]{""};
+        }
+        return mapping.path();
+    }
+
+    private static String combine(String classPath, String methodPath) {
+        if (!StringUtils.hasText(classPath)) {
+            return methodPath;
+        }
+        if (!StringUtils.hasText(methodPath)) {
+            return classPath;
+        }
+        return PATH_MATCHER.combine(classPath, methodPath);
+    }
+
+    /**
+     * 接口路径是否命中忽略列表，忽略列表中的路径可以使用Ant风格的通配符，空字符串不匹配任何接口
+     *
+     * @param ignoreApis 忽略敏感词处理的接口路径
+     * @return 命中返回true，否则返回false
+     */
+    boolean matches(String[] ignoreApis) {
+        for (String ignoreApi : ignoreApis) {
+            if (!StringUtils.hasText(ignoreApi)) {
+                continue;
+            }
+            if (matches(ignoreApi, paths) || matches(ignoreApi, methodPaths)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 返回审计日志中的接口名称
+     */
+    String endpoint() {
+        return endpoint;
+    }
+
+    private static boolean matches(String ignoreApi, String[] paths) {
+        for (String path : paths) {
+            if (ignoreApi.equals(path) || (PATH_MATCHER.isPattern(ignoreApi) && PATH_MATCHER.match(ignoreApi, path))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,120 +1,114 @@
 package com.lhb.github.io.utilbox.interceptor;
 
-import com.lhb.github.io.utilbox.annotation.Sensitive;
 import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+import com.lhb.github.io.utilbox.audit.SensitiveAuditLog;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.ReplacedText;
 import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
 import org.aopalliance.aop.Advice;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.springframework.lang.Nullable;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.List;
+import java.util.function.Function;
 
 /**
  * 敏感词注解拦截器，拦截方法
  * 如果没有在{@link SensitiveWord}中配置忽略路径，这里会调用{@link SensitiveWordHandler}的getReplaceChars(char, int)
- * 方法将敏感词替换成{@link SensitiveWord}中replacement属性配置的字符
+ * 方法将敏感词替换成{@link SensitiveWord}中replacement属性配置的字符。
+ * 返回值中嵌套的对象、集合、Map和数组都会按{@link SensitiveClassPlan}处理。
+ * 返回{@code Mono}/{@code Flux}时通过{@link ReactiveSensitiveSupport}对流中的每个元素做同样的处理。
+ * 设置了{@link SensitiveAuditLog}时，替换了敏感词的字段交给审计日志在后台记录
  *
  * @author lihuibin
  */
 public class SensitiveAnnotationInterceptor implements MethodInterceptor, Advice {
+    /**
+     * 返回值包装类的getData访问器，没有getData方法的类缓存为null
+     */
+    private static final ClassValue<Function<Object, Object>> DATA_GETTERS = new ClassValue<Function<Object, Object>>() {
+        @Override
+        protected Function<Object, Object> computeValue(Class<?> type) {
+            try {
+                return SensitiveClassPlan.getter(type.getDeclaredMethod("getData"));
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
     private SensitiveWordHandler sensitiveWordHandler;
+    /**
+     * 响应式返回值的处理，没有引入Reactor时为null
+     */
+    private ReactiveSensitiveSupport reactiveSupport;
+    /**
+     * 敏感词命中审计日志，没有开启时为null
+     */
+    private SensitiveAuditLog auditLog;
 
     public void setSensitiveWordHandler(SensitiveWordHandler sensitiveWordHandler) {
         this.sensitiveWordHandler = sensitiveWordHandler;
     }
 
-    private boolean ignoreSensitive(Method method, String[] ignoreApi) {
-        List<String> ignoreApis = Arrays.asList(ignoreApi);
-        RequestMapping requestMapping = method.getDeclaredAnnotation(RequestMapping.class);
-        String requestUrl = "";
-        if (requestMapping != null) {
-            if (requestMapping.value().length > 0) {
-                requestUrl += requestMapping.value()[0];
-            }
-        }
-        if (method.getDeclaredAnnotation(GetMapping.class) != null) {
-            String[] value = method.getDeclaredAnnotation(GetMapping.class).value();
-            requestUrl += value.length > 0 ? value[0] : "";
-        } else if (method.getDeclaredAnnotation(PostMapping.class) != null) {
-            String[] value = method.getDeclaredAnnotation(PostMapping.class).value();
-            requestUrl += value.length > 0 ? value[0] : "";
-        } else if (method.getDeclaredAnnotation(RequestMapping.class) != null) {
-            String[] value = method.getDeclaredAnnotation(RequestMapping.class).value();
-            requestUrl += value.length > 0 ? value[0] : "";
-        }
-        if (ignoreApis.contains(requestUrl)) {
-            return true;
-        }
-        return false;
-    }
-
-    private boolean isSensitiveClass(Object data) {
-        List dataList = (List) data;
-        if (dataList.isEmpty()) {
-            return false;
-        }
-        for (Object o : dataList) {
-            Sensitive sensitive = o.getClass().getDeclaredAnnotation(Sensitive.class);
-            if (sensitive == null) {
-                return false;
-            }
-        }
-        return true;
+    public void setReactiveSupport(ReactiveSensitiveSupport reactiveSupport) {
+        this.reactiveSupport = reactiveSupport;
     }
 
-    private void replaceSensitiveWordHandle(Method method, Object data) {
-        try {
-            Sensitive sensitive = data.getClass().getDeclaredAnnotation(Sensitive.class);
-            if (sensitive != null) {
-                Field[] fields = data.getClass().getDeclaredFields();
-                for (Field field : fields) {
-                    SensitiveWord sensitiveWord = field.getDeclaredAnnotation(SensitiveWord.class);
-                    if (sensitiveWord != null) {
-                        if (!ignoreSensitive(method, sensitiveWord.ignoreApis())) {
-                            char[] fieldNames = field.getName().toCharArray();
-                            fieldNames[0] = Character.toUpperCase(fieldNames[0]);
-                            Method getMethod = data.getClass().getMethod("get" + String.valueOf(fieldNames));
-                            String context = (String) getMethod.invoke(data, null);
-                            String replaceSensitiveWord = sensitiveWordHandler.replaceSensitiveWord(context);
-                            Method setMethod = data.getClass().getMethod("set" + String.valueOf(fieldNames), String.class);
-                            setMethod.invoke(data, replaceSensitiveWord);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public void setAuditLog(SensitiveAuditLog auditLog) {
+        this.auditLog = auditLog;
     }
 
     @Nullable
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
         Object proceed = invocation.proceed();
-        Method getDataMethod = proceed.getClass().getDeclaredMethod("getData", null);
-        Object data = getDataMethod.invoke(proceed, null);
-        if (data == null) {
-            return proceed;
+        if (proceed == null) {
+            return null;
         }
-        if (data instanceof List) {
-            List dataList = (List) data;
-            if (!isSensitiveClass(data)) {
-                return proceed;
-            }
-            for (Object o : dataList) {
-                replaceSensitiveWordHandle(invocation.getMethod(), o);
-            }
-
-        } else {
-            replaceSensitiveWordHandle(invocation.getMethod(), data);
+        Method method = invocation.getMethod();
+        if (reactiveSupport != null && reactiveSupport.isReactive(proceed)) {
+            return reactiveSupport.apply(proceed, element -> ReactiveSensitiveSupport.sizeOf(data(element)), element -> replace(method, element));
         }
-        return proceed;
+        return replace(method, proceed);
+    }
+
+    /**
+     * 替换返回值中的敏感词，返回值有getData方法时只处理data，否则处理整个返回值
+     *
+     * @param method 接口方法
+     * @param value  返回值或者响应式流中的元素
+     * @return 返回原对象
+     */
+    private Object replace(Method method, Object value) {
+        Object data = data(value);
+        long start = System.nanoTime();
+        SensitiveTraversal.Replacer replacer = auditLog == null ? sensitiveWordHandler::replaceSensitiveWord : auditingReplacer(method);
+        new SensitiveTraversal(method, replacer, sensitiveWordHandler.getBatchExecutor()).traverse(data);
+        sensitiveWordHandler.getMetrics().recordInterceptor(method, System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * @return 返回值有getData方法时返回data，否则返回返回值本身
+     */
+    private static Object data(Object value) {
+        Function<Object, Object> getData = DATA_GETTERS.get(value.getClass());
+        return getData == null ? value : getData.apply(value);
+    }
+
+    /**
+     * 替换了敏感词的字段把替换时命中的词编号放入审计日志的缓冲区，审计日志的后台线程只取回词并写入文件，不重复扫描
+     */
+    private SensitiveTraversal.Replacer auditingReplacer(Method method) {
+        SensitiveAuditLog audit = auditLog;
+        String endpoint = RequestRoutes.of(method).endpoint();
+        return (text, categories, replacement) -> {
+            ReplacedText replaced = sensitiveWordHandler.replaceSensitiveWordWithHits(text, categories, replacement);
+            if (replaced.isReplaced()) {
+                audit.record(endpoint, replaced);
+            }
+            return replaced.getText();
+        };
     }
 }
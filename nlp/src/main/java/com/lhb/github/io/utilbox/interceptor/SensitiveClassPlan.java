@@ -0,0 +1,410 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.annotation.Sensitive;
+import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 类的敏感词处理计划，每个类只在第一次处理时解析一次，之后直接通过缓存的访问器读写字段，不再重复反射查找
+ * <p>
+ * 计划包含两部分：{@link Sensitive}类中需要替换的String类型{@link SensitiveWord}字段，
+ * 以及可能间接包含{@link SensitiveWord}字段的子对象字段。子对象字段按声明类型判断，
+ * 声明类型及其字段、集合元素、Map值、数组元素都不可能到达{@link SensitiveWord}字段时不再遍历；
+ * 声明类型为Object、接口、抽象类或泛型参数时无法预先判断，按运行时对象的计划处理
+ *
+ * @author lihuibin
+ */
+final class SensitiveClassPlan {
+    private static final Logger log = Logger.getLogger("SensitiveClassPlan");
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final SensitiveClassPlan LEAF = new SensitiveClassPlan(new FieldAccessor[0], new ChildAccessor[0]);
+
+    private static final ClassValue<SensitiveClassPlan> PLANS = new ClassValue<SensitiveClassPlan>() {
+        @Override
+        protected SensitiveClassPlan computeValue(Class<?> type) {
+            return compile(type);
+        }
+    };
+
+    private final FieldAccessor[] fields;
+    private final ChildAccessor[] children;
+
+    private SensitiveClassPlan(FieldAccessor[] fields, ChildAccessor[] children) {
+        this.fields = fields;
+        this.children = children;
+    }
+
+    /**
+     * 获取类的处理计划
+     *
+     * @param type 类
+     * @return 返回处理计划，JDK中的类以及不可能包含敏感词字段的类返回不做任何处理的计划
+     */
+    static SensitiveClassPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * @return 没有需要处理的字段时返回true
+     */
+    boolean isLeaf() {
+        return fields.length == 0 && children.length == 0;
+    }
+
+    /**
+     * @return 需要处理的{@link SensitiveWord}字段
+     */
+    FieldAccessor[] getFields() {
+        return fields;
+    }
+
+    /**
+     * @return 需要继续遍历的子对象字段
+     */
+    ChildAccessor[] getChildren() {
+        return children;
+    }
+
+    private static SensitiveClassPlan compile(Class<?> type) {
+        if (isOpaque(type) || type.isArray() || type.isEnum()) {
+            return LEAF;
+        }
+        boolean sensitive = type.getDeclaredAnnotation(Sensitive.class) != null;
+        List<FieldAccessor> accessors = new ArrayList<>();
+        List<ChildAccessor> children = new ArrayList<>();
+        for (Class<?> current = type; current != null && !isOpaque(current); current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                SensitiveWord sensitiveWord = field.getDeclaredAnnotation(SensitiveWord.class);
+                if (sensitive && current == type && sensitiveWord != null && field.getType() == String.class) {
+                    FieldAccessor accessor = fieldAccessor(type, field, sensitiveWord);
+                    if (accessor != null) {
+                        accessors.add(accessor);
+                    }
+                } else if (canReach(field.getGenericType())) {
+                    children.add(new ChildAccessor(field.getName(), fieldReader(field)));
+                }
+            }
+        }
+        if (accessors.isEmpty() && children.isEmpty()) {
+            return LEAF;
+        }
+        return new SensitiveClassPlan(accessors.toArray(new FieldAccessor[0]), children.toArray(new ChildAccessor[0]));
+    }
+
+    private static FieldAccessor fieldAccessor(Class<?> type, Field field, SensitiveWord sensitiveWord) {
+        char[] fieldNames = field.getName().toCharArray();
+        fieldNames[0] = Character.toUpperCase(fieldNames[0]);
+        String name = String.valueOf(fieldNames);
+        try {
+            Method getMethod = type.getMethod("get" + name);
+            Method setMethod = type.getMethod("set" + name, String.class);
+            return new FieldAccessor(field.getName(), sensitiveWord, getter(getMethod), setter(setMethod));
+        } catch (NoSuchMethodException e) {
+            log.warning(String.format("%s的敏感词字段%s没有对应的String类型getter/setter方法，不做敏感词处理", type.getName(), field.getName()));
+            return null;
+        }
+    }
+
+    /**
+     * JDK中的类不会包含{@link SensitiveWord}字段，集合、Map和数组在遍历时单独处理
+     */
+    private static boolean isOpaque(Class<?> type) {
+        return type.isPrimitive() || type.getClassLoader() == null || type.getName().startsWith("java.");
+    }
+
+    /**
+     * 按声明类型判断字段值是否可能到达{@link SensitiveWord}字段
+     */
+    private static boolean canReach(Type type) {
+        Deque<Type> pending = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        pending.push(type);
+        while (!pending.isEmpty()) {
+            Type current = pending.pop();
+            if (current instanceof TypeVariable) {
+                return true;
+            } else if (current instanceof WildcardType) {
+                pending.push(((WildcardType) current).getUpperBounds()[0]);
+            } else if (current instanceof GenericArrayType) {
+                pending.push(((GenericArrayType) current).getGenericComponentType());
+            } else if (current instanceof ParameterizedType) {
+                ParameterizedType parameterized = (ParameterizedType) current;
+                Class<?> raw = (Class<?>) parameterized.getRawType();
+                Type[] arguments = parameterized.getActualTypeArguments();
+                if (Collection.class.isAssignableFrom(raw) && arguments.length == 1) {
+                    pending.push(arguments[0]);
+                } else if (Map.class.isAssignableFrom(raw) && arguments.length == 2) {
+                    pending.push(arguments[1]);
+                } else {
+                    pending.push(raw);
+                }
+            } else if (current instanceof Class) {
+                Class<?> clazz = (Class<?>) current;
+                if (clazz.isArray()) {
+                    pending.push(clazz.getComponentType());
+                } else if (clazz == Object.class || Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz)) {
+                    // 不知道元素类型，只能在运行时判断
+                    return true;
+                } else if (!isOpaque(clazz) && !clazz.isEnum() && visited.add(clazz)) {
+                    if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+                        return true;
+                    }
+                    if (hasSensitiveWordField(clazz)) {
+                        return true;
+                    }
+                    for (Class<?> c = clazz; c != null && !isOpaque(c); c = c.getSuperclass()) {
+                        for (Field field : c.getDeclaredFields()) {
+                            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                                pending.push(field.getGenericType());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasSensitiveWordField(Class<?> type) {
+        if (type.getDeclaredAnnotation(Sensitive.class) == null) {
+            return false;
+        }
+        for (Field field : type.getDeclaredFields()) {
+            if (field.getType() == String.class && field.getDeclaredAnnotation(SensitiveWord.class) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取字段值的访问器
+     */
+    private static Function<Object, Object> fieldReader(Field field) {
+        MethodHandle handle;
+        try {
+            field.setAccessible(true);
+            handle = LOOKUP.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalStateException(String.format("无法访问字段%s", field), e);
+        }
+        return target -> {
+            try {
+                return handle.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        };
+    }
+
+    /**
+     * 为无参方法生成访问器，优先通过{@link LambdaMetafactory}生成直接调用的实现，
+     * 方法所在类不可访问时退回到{@link MethodHandle}
+     *
+     * @param method 无参方法
+     * @return 返回访问器
+     */
+    static Function<Object, Object> getter(Method method) {
+        MethodHandle handle = unreflect(method);
+        if (canSpinLambda(method)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), handle, handle.type());
+                return (Function<Object, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.log(Level.FINE, String.format("无法为%s生成访问器，使用MethodHandle调用", method), e);
+            }
+        }
+        MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return target -> {
+            try {
+                return generic.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        };
+    }
+
+    /**
+     * 为单参数方法生成访问器，返回值被忽略
+     *
+     * @param method 单参数方法
+     * @return 返回访问器
+     */
+    static BiConsumer<Object, Object> setter(Method method) {
+        MethodHandle handle = unreflect(method);
+        if (canSpinLambda(method)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class), handle, handle.type().changeReturnType(void.class));
+                return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.log(Level.FINE, String.format("无法为%s生成访问器，使用MethodHandle调用", method), e);
+            }
+        }
+        MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (target, value) -> {
+            try {
+                generic.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        };
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalStateException(String.format("无法访问方法%s", method), e);
+        }
+    }
+
+    /**
+     * 生成的访问器类由当前类的类加载器加载，只有方法和类都是public且对当前类加载器可见时才能直接调用
+     */
+    private static boolean canSpinLambda(Method method) {
+        Class<?> type = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(type.getName(), false, SensitiveClassPlan.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    /**
+     * {@link SensitiveWord}字段的访问器
+     */
+    static final class FieldAccessor {
+        private final String name;
+        private final SensitiveWord sensitiveWord;
+        private final String[] categories;
+        private final String replacement;
+        private final Function<Object, Object> getter;
+        private final BiConsumer<Object, Object> setter;
+        /**
+         * 各接口方法是否忽略该字段
+         */
+        private final ConcurrentHashMap<Method, Boolean> ignoredApis = new ConcurrentHashMap<>();
+
+        private FieldAccessor(String name, SensitiveWord sensitiveWord, Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+            this.name = name;
+            this.sensitiveWord = sensitiveWord;
+            // 注解属性每次读取都会复制数组，解析计划时读取一次
+            this.categories = sensitiveWord.categories();
+            this.replacement = sensitiveWord.replacement();
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        SensitiveWord getSensitiveWord() {
+            return sensitiveWord;
+        }
+
+        /**
+         * @return {@link SensitiveWord#categories()}，为空时替换所有分类
+         */
+        String[] getCategories() {
+            return categories;
+        }
+
+        /**
+         * @return {@link SensitiveWord#replacement()}，为空时使用全局配置的替换字符
+         */
+        String getReplacement() {
+            return replacement;
+        }
+
+        /**
+         * 当前接口是否在{@link SensitiveWord#ignoreApis()}中，每个接口方法只计算一次
+         *
+         * @param method 接口方法
+         * @return 忽略返回true，否则返回false
+         */
+        boolean isIgnored(Method method) {
+            Boolean ignored = ignoredApis.get(method);
+            if (ignored == null) {
+                ignored = RequestRoutes.of(method).matches(sensitiveWord.ignoreApis());
+                ignoredApis.put(method, ignored);
+            }
+            return ignored;
+        }
+
+        String get(Object target) {
+            return (String) getter.apply(target);
+        }
+
+        void set(Object target, String value) {
+            setter.accept(target, value);
+        }
+    }
+
+    /**
+     * 可能包含{@link SensitiveWord}字段的子对象字段
+     */
+    static final class ChildAccessor {
+        private final String name;
+        private final Function<Object, Object> reader;
+
+        private ChildAccessor(String name, Function<Object, Object> reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Object get(Object target) {
+            return reader.apply(target);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+import com.lhb.github.io.utilbox.handler.BatchExecutor;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 按{@link SensitiveClassPlan}遍历接口返回的对象图，替换其中{@link SensitiveWord}字段的敏感词
+ * <p>
+ * 集合、Map的值和对象数组逐个元素处理，其他对象按运行时类型的计划处理，
+ * 已经遍历过的容器和对象不再重复处理，避免对象之间循环引用时无限递归。
+ * 元素数量达到{@link BatchExecutor#isParallel(int)}阈值的集合分段并行处理，各段共用同一个线程安全的已遍历集合，
+ * 子对象引用回上层对象时不会重新遍历，同一个对象出现在多段中时也只由一个线程处理
+ *
+ * @author lihuibin
+ */
+final class SensitiveTraversal {
+    private static final Logger log = Logger.getLogger("SensitiveTraversal");
+
+    private final Method method;
+    private final Replacer replacer;
+    private final BatchExecutor batchExecutor;
+    /**
+     * 按引用记录已经遍历过的对象
+     */
+    private Set<Object> visited;
+    /**
+     * visited是否与其他线程共用，共用时没有子对象的对象也要记录，避免多个线程同时替换同一个对象的字段
+     */
+    private boolean shared;
+
+    /**
+     * @param method        接口方法，用于判断{@link SensitiveWord#ignoreApis()}
+     * @param replacer      敏感词替换，按字段配置的分类和替换字符处理
+     * @param batchExecutor 元素较多的集合使用的并行执行器，为null时不并行
+     */
+    SensitiveTraversal(Method method, Replacer replacer, BatchExecutor batchExecutor) {
+        this.method = method;
+        this.replacer = replacer;
+        this.batchExecutor = batchExecutor;
+    }
+
+    private SensitiveTraversal(SensitiveTraversal parent, Set<Object> visited) {
+        this(parent.method, parent.replacer, parent.batchExecutor);
+        this.visited = visited;
+        this.shared = true;
+    }
+
+    /**
+     * 处理对象及其可以到达的所有{@link SensitiveWord}字段
+     *
+     * @param value 对象
+     */
+    void traverse(Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Collection) {
+            if (firstVisit(value)) {
+                traverseElements((Collection<?>) value);
+            }
+        } else if (value instanceof Map) {
+            if (firstVisit(value)) {
+                traverseElements(((Map<?, ?>) value).values());
+            }
+        } else if (value instanceof Object[]) {
+            if (firstVisit(value)) {
+                traverseElements(Arrays.asList((Object[]) value));
+            }
+        } else {
+            SensitiveClassPlan plan = SensitiveClassPlan.of(value.getClass());
+            if (plan.isLeaf()) {
+                return;
+            }
+            // 只有字符串字段的对象不会形成环，单线程遍历时不需要记录
+            if ((shared || plan.getChildren().length > 0) && !firstVisit(value)) {
+                return;
+            }
+            replaceFields(plan, value);
+            for (SensitiveClassPlan.ChildAccessor child : plan.getChildren()) {
+                traverse(child.get(value));
+            }
+        }
+    }
+
+    /**
+     * 元素数量较多时交给{@link BatchExecutor}分段并行处理，每段共用当前的已遍历集合
+     */
+    private void traverseElements(Collection<?> elements) {
+        if (batchExecutor == null || !batchExecutor.isParallel(elements.size())) {
+            for (Object element : elements) {
+                traverse(element);
+            }
+            return;
+        }
+        List<?> list = elements instanceof List && elements instanceof RandomAccess ? (List<?>) elements : new ArrayList<>(elements);
+        Set<Object> sharedVisited = shareVisited();
+        batchExecutor.forEachChunk(list, chunk -> {
+            SensitiveTraversal traversal = new SensitiveTraversal(this, sharedVisited);
+            for (Object element : chunk) {
+                traversal.traverse(element);
+            }
+        });
+    }
+
+    /**
+     * 只替换对象自身的{@link SensitiveWord}字段，不遍历子对象
+     *
+     * @param plan  对象的处理计划
+     * @param value 对象
+     */
+    void replaceFields(SensitiveClassPlan plan, Object value) {
+        for (SensitiveClassPlan.FieldAccessor field : plan.getFields()) {
+            try {
+                if (!field.isIgnored(method)) {
+                    String context = field.get(value);
+                    if (context != null) {
+                        field.set(value, replacer.replace(context, field.getCategories(), field.getReplacement()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, String.format("%s字段%s敏感词处理失败", value.getClass().getName(), field.getName()), e);
+            }
+        }
+    }
+
+    private boolean firstVisit(Object value) {
+        if (visited == null) {
+            visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        return visited.add(value);
+    }
+
+    /**
+     * 第一次分段并行前把已遍历集合换成线程安全的集合，之后当前线程和各段都使用这个集合
+     */
+    private Set<Object> shareVisited() {
+        if (!shared) {
+            Set<Object> concurrent = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+            if (visited != null) {
+                concurrent.addAll(visited);
+            }
+            visited = concurrent;
+            shared = true;
+        }
+        return visited;
+    }
+
+    /**
+     * 字段的敏感词替换
+     */
+    @FunctionalInterface
+    interface Replacer {
+        /**
+         * @param text        字段值
+         * @param categories  {@link SensitiveWord#categories()}
+         * @param replacement {@link SensitiveWord#replacement()}
+         * @return 返回替换后的字段值
+         */
+        String replace(String text, String[] categories, String replacement);
+    }
+}
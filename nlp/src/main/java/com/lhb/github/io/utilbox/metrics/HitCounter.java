@@ -0,0 +1,184 @@
+package com.lhb.github.io.utilbox.metrics;
+
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 命中次数最多的敏感词统计，只保留有限个词的计数
+ * <p>
+ * 请求线程按词库快照和词编号计数，不取回词、不查找哈希表：每个词库快照有一个按词编号分块、命中时才分配的计数数组。
+ * 定时刷新时才把词编号解析为词，已被替换的词库快照的计数按词合并后丢弃，合并后的计数只保留次数最多的2倍容量个词，
+ * 丢弃后再次命中的词从0开始计数，因此结果是近似值，但命中频繁的词会一直保留
+ *
+ * @author lihuibin
+ */
+class HitCounter {
+    /**
+     * 每块计数数组的词数量的位数
+     */
+    private static final int CHUNK_BITS = 10;
+
+    private final int capacity;
+    private final LongAdder total = new LongAdder();
+    /**
+     * 最新的词库快照的计数，请求线程只比较一次引用即可找到
+     */
+    private volatile SnapshotHits current;
+    /**
+     * 所有尚未合并的词库快照的计数，只在持有当前对象锁时访问
+     */
+    private final Map<DictionarySnapshot, SnapshotHits> live = new IdentityHashMap<>();
+    /**
+     * 已被替换的词库快照按词合并后的计数，只在持有当前对象锁时访问
+     */
+    private final Map<String, Long> retired = new HashMap<>();
+
+    /**
+     * @param capacity 需要统计的词数量
+     */
+    HitCounter(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    void increment(DictionarySnapshot snapshot, int wordId) {
+        total.increment();
+        SnapshotHits hits = current;
+        if (hits == null || hits.snapshot != snapshot) {
+            hits = hitsOf(snapshot);
+        }
+        hits.increment(wordId);
+    }
+
+    /**
+     * 词库更新后第一次命中新的词库快照时创建计数，仍在使用旧词库快照的调用继续使用旧的计数
+     */
+    private synchronized SnapshotHits hitsOf(DictionarySnapshot snapshot) {
+        SnapshotHits hits = live.get(snapshot);
+        if (hits == null) {
+            hits = new SnapshotHits(snapshot);
+            live.put(snapshot, hits);
+        }
+        SnapshotHits latest = current;
+        if (latest == null || latest.snapshot.getVersion() <= snapshot.getVersion()) {
+            current = hits;
+        }
+        return hits;
+    }
+
+    /**
+     * @return 所有词的命中次数之和，包括已经丢弃计数的词
+     */
+    long total() {
+        return total.sum();
+    }
+
+    /**
+     * 合并已被替换的词库快照的计数，再与最新词库快照中次数最多的词一起排序
+     *
+     * @return 命中次数最多的词，按次数从多到少排列
+     */
+    synchronized Map<String, Long> top() {
+        SnapshotHits latest = current;
+        for (Iterator<SnapshotHits> it = live.values().iterator(); it.hasNext(); ) {
+            SnapshotHits hits = it.next();
+            if (hits != latest) {
+                hits.top(Integer.MAX_VALUE).forEach((word, count) -> retired.merge(word, count, Long::sum));
+                it.remove();
+            }
+        }
+        List<Map.Entry<String, Long>> entries = sorted(retired);
+        for (int i = capacity * 2; i < entries.size(); i++) {
+            retired.remove(entries.get(i).getKey());
+        }
+        Map<String, Long> merged = new HashMap<>(retired);
+        if (latest != null) {
+            latest.top(capacity).forEach((word, count) -> merged.merge(word, count, Long::sum));
+        }
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : sorted(merged)) {
+            if (top.size() == capacity) {
+                break;
+            }
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    private static List<Map.Entry<String, Long>> sorted(Map<String, Long> counts) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.size());
+        counts.forEach((word, count) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(word, count)));
+        entries.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return entries;
+    }
+
+    /**
+     * 一个词库快照的命中计数，计数数组按词编号分块，命中某块中的词时才分配该块
+     */
+    private static final class SnapshotHits {
+        private final DictionarySnapshot snapshot;
+        private final AtomicReferenceArray<AtomicLongArray> chunks;
+
+        private SnapshotHits(DictionarySnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.chunks = new AtomicReferenceArray<>((snapshot.getMatcher().getWordIdLimit() >>> CHUNK_BITS) + 1);
+        }
+
+        private void increment(int wordId) {
+            int index = wordId >>> CHUNK_BITS;
+            if (wordId < 0 || index >= chunks.length()) {
+                return;
+            }
+            AtomicLongArray chunk = chunks.get(index);
+            if (chunk == null) {
+                chunks.compareAndSet(index, null, new AtomicLongArray(1 << CHUNK_BITS));
+                chunk = chunks.get(index);
+            }
+            chunk.incrementAndGet(wordId & ((1 << CHUNK_BITS) - 1));
+        }
+
+        /**
+         * 找出次数最多的limit个词编号，只解析这些编号对应的词
+         */
+        private Map<String, Long> top(int limit) {
+            PriorityQueue<long[]> heap = new PriorityQueue<>(Comparator.comparingLong(entry -> entry[1]));
+            for (int index = 0; index < chunks.length(); index++) {
+                AtomicLongArray chunk = chunks.get(index);
+                for (int i = 0; chunk != null && i < chunk.length(); i++) {
+                    long count = chunk.get(i);
+                    if (count == 0) {
+                        continue;
+                    }
+                    if (heap.size() < limit) {
+                        heap.add(new long[]{(index << CHUNK_BITS) | i, count});
+                    } else if (heap.peek()[1] < count) {
+                        heap.poll();
+                        heap.add(new long[]{(index << CHUNK_BITS) | i, count});
+                    }
+                }
+            }
+            WordMatcher matcher = snapshot.getMatcher();
+            Map<String, Long> words = new HashMap<>(heap.size() * 4 / 3 + 1);
+            for (long[] entry : heap) {
+                String word = matcher.getWord((int) entry[0]);
+                if (word != null) {
+                    words.merge(word, entry[1], Long::sum);
+                }
+            }
+            return words;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.lhb.github.io.utilbox.metrics;
+
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.matcher.Prefilter;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatchVisitor;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+
+import java.util.function.IntPredicate;
+
+/**
+ * 记录命中敏感词的匹配引擎，包装其他匹配引擎使用
+ * 只在{@link SensitiveWordMetrics#isRecordingHits()}为true时使用。
+ * 命中时只记录词库快照和词编号，不取回词，同一个词的不同写法(例如全角、夹杂干扰字符)计为同一个词
+ *
+ * @author lihuibin
+ */
+public class InstrumentedMatcher implements WordMatcher {
+    private final WordMatcher matcher;
+    private final DictionarySnapshot snapshot;
+    private final SensitiveWordMetrics metrics;
+
+    /**
+     * @param matcher  匹配引擎，词编号与snapshot的匹配引擎相同，例如分段扫描时包装的匹配引擎
+     * @param snapshot 词编号所属的词库快照
+     * @param metrics  指标记录
+     */
+    public InstrumentedMatcher(WordMatcher matcher, DictionarySnapshot snapshot, SensitiveWordMetrics metrics) {
+        this.matcher = matcher;
+        this.snapshot = snapshot;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean contains(CharSequence text, boolean longest, IntPredicate wordFilter) {
+        return matcher.contains(text, longest, wordFilter);
+    }
+
+    @Override
+    public void match(CharSequence text, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        matcher.match(text, longest, wordFilter, (start, end, wordId) -> {
+            metrics.recordHit(snapshot, wordId);
+            visitor.visit(start, end, wordId);
+        });
+    }
+
+    @Override
+    public boolean contains(CharSequence text, int from, boolean longest, IntPredicate wordFilter) {
+        return matcher.contains(text, from, longest, wordFilter);
+    }
+
+    @Override
+    public void match(CharSequence text, int from, boolean longest, IntPredicate wordFilter, WordMatchVisitor visitor) {
+        matcher.match(text, from, longest, wordFilter, (start, end, wordId) -> {
+            metrics.recordHit(snapshot, wordId);
+            visitor.visit(start, end, wordId);
+        });
+    }
+
+    @Override
+    public void matchAll(CharSequence text, WordMatchVisitor visitor) {
+        matcher.matchAll(text, visitor);
+    }
+
+    @Override
+    public String getWord(int wordId) {
+        return matcher.getWord(wordId);
+    }
+
+    @Override
+    public int getWordId(CharSequence word) {
+        return matcher.getWordId(word);
+    }
+
+    @Override
+    public int getWordIdLimit() {
+        return matcher.getWordIdLimit();
+    }
+
+    @Override
+    public boolean hasWord(CharSequence word) {
+        return matcher.hasWord(word);
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return matcher.getMaxWordLength();
+    }
+
+    @Override
+    public int size() {
+        return matcher.size();
+    }
+
+    @Override
+    public long heapBytes() {
+        return matcher.heapBytes();
+    }
+
+    @Override
+    public Prefilter getPrefilter() {
+        return matcher.getPrefilter();
+    }
+}
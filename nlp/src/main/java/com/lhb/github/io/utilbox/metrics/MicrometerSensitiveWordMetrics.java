@@ -0,0 +1,213 @@
+package com.lhb.github.io.utilbox.metrics;
+
+import com.lhb.github.io.utilbox.audit.SensitiveAuditLog;
+import com.lhb.github.io.utilbox.handler.ResultCache;
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 基于Micrometer的指标记录
+ * <ul>
+ * <li>nlp.sensitive.scan: 每种操作的扫描耗时直方图，标签operation</li>
+ * <li>nlp.sensitive.scan.chars: 每种操作扫描的字符数，标签operation</li>
+ * <li>nlp.sensitive.hits: 敏感词命中总次数</li>
+ * <li>nlp.sensitive.hits.top: 命中次数最多的topWords个敏感词的命中次数，标签word，定时刷新</li>
+ * <li>nlp.sensitive.dictionary.build: 词库加载构建耗时</li>
+ * <li>nlp.sensitive.dictionary.words/bytes/version: 当前词库的词数量、堆内存估算值和版本</li>
+ * <li>nlp.sensitive.prefilter.selectivity: 当前词库过滤器的选择率，扫描过的字符中需要进入自动机匹配的比例</li>
+ * <li>nlp.sensitive.interceptor: 拦截器处理接口返回值的耗时，标签endpoint为类名#方法名</li>
+ * <li>nlp.sensitive.cache.gets/evictions/size: 开启结果缓存时的查询次数(标签result为hit或miss)、淘汰数量和当前结果数量</li>
+ * <li>nlp.sensitive.audit.events/words/pending: 开启审计日志时的事件数量(标签result为published、dropped或failed)、
+ * 写入文件的敏感词行数和缓冲区中等待写入的事件数量</li>
+ * </ul>
+ *
+ * @author lihuibin
+ */
+public class MicrometerSensitiveWordMetrics implements SensitiveWordMetrics, AutoCloseable {
+    private static final long TOP_WORDS_REFRESH_SECONDS = 10;
+
+    private final MeterRegistry registry;
+    private final HitCounter hitCounter;
+    private final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Method, Timer> endpoints = new ConcurrentHashMap<>();
+    private final Timer dictionaryBuild;
+    private final MultiGauge topWords;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @param registry 指标注册中心
+     * @param topWords 统计命中次数的敏感词数量，小于等于0时不统计每个词的命中次数
+     */
+    public MicrometerSensitiveWordMetrics(MeterRegistry registry, int topWords) {
+        this.registry = registry;
+        this.dictionaryBuild = Timer.builder("nlp.sensitive.dictionary.build")
+                .description("敏感词库加载构建耗时")
+                .register(registry);
+        if (topWords > 0) {
+            this.hitCounter = new HitCounter(topWords);
+            FunctionCounter.builder("nlp.sensitive.hits", hitCounter, HitCounter::total)
+                    .description("敏感词命中次数")
+                    .register(registry);
+            this.topWords = MultiGauge.builder("nlp.sensitive.hits.top")
+                    .description("命中次数最多的敏感词")
+                    .register(registry);
+        } else {
+            this.hitCounter = null;
+            this.topWords = null;
+        }
+    }
+
+    @Override
+    public void bind(SensitiveWordHandler handler) {
+        Gauge.builder("nlp.sensitive.dictionary.words", handler, SensitiveWordHandler::getDictionarySize)
+                .description("敏感词库中词的数量")
+                .register(registry);
+        Gauge.builder("nlp.sensitive.dictionary.bytes", handler, SensitiveWordHandler::getDictionaryHeapBytes)
+                .description("敏感词库占用的堆内存估算值")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("nlp.sensitive.dictionary.version", handler, SensitiveWordHandler::getDictionaryVersion)
+                .description("敏感词库版本")
+                .register(registry);
+        Gauge.builder("nlp.sensitive.prefilter.selectivity", handler, SensitiveWordHandler::getPrefilterSelectivity)
+                .description("过滤器的选择率，扫描过的字符中需要进入自动机匹配的比例")
+                .register(registry);
+        ResultCache cache = handler.getResultCache();
+        if (cache != null) {
+            FunctionCounter.builder("nlp.sensitive.cache.gets", cache, ResultCache::getHitCount)
+                    .tag("result", "hit")
+                    .description("结果缓存查询次数")
+                    .register(registry);
+            FunctionCounter.builder("nlp.sensitive.cache.gets", cache, ResultCache::getMissCount)
+                    .tag("result", "miss")
+                    .description("结果缓存查询次数")
+                    .register(registry);
+            FunctionCounter.builder("nlp.sensitive.cache.evictions", cache, ResultCache::getEvictionCount)
+                    .description("结果缓存容量不足时淘汰的数量")
+                    .register(registry);
+            Gauge.builder("nlp.sensitive.cache.size", cache, ResultCache::size)
+                    .description("结果缓存当前的结果数量")
+                    .register(registry);
+        }
+        synchronized (this) {
+            if (topWords != null && refresher == null) {
+                refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "nlp-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                refresher.scheduleWithFixedDelay(this::refreshTopWords, TOP_WORDS_REFRESH_SECONDS, TOP_WORDS_REFRESH_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void bindAudit(SensitiveAuditLog auditLog) {
+        FunctionCounter.builder("nlp.sensitive.audit.events", auditLog, SensitiveAuditLog::getPublishedCount)
+                .tag("result", "published")
+                .description("审计日志事件数量")
+                .register(registry);
+        FunctionCounter.builder("nlp.sensitive.audit.events", auditLog, SensitiveAuditLog::getDroppedCount)
+                .tag("result", "dropped")
+                .description("审计日志事件数量")
+                .register(registry);
+        FunctionCounter.builder("nlp.sensitive.audit.events", auditLog, SensitiveAuditLog::getFailedCount)
+                .tag("result", "failed")
+                .description("审计日志事件数量")
+                .register(registry);
+        FunctionCounter.builder("nlp.sensitive.audit.words", auditLog, SensitiveAuditLog::getWrittenCount)
+                .description("写入审计日志文件的敏感词行数")
+                .register(registry);
+        Gauge.builder("nlp.sensitive.audit.pending", auditLog, SensitiveAuditLog::getPendingCount)
+                .description("审计日志缓冲区中等待写入的事件数量")
+                .register(registry);
+    }
+
+    @Override
+    public void recordScan(String operation, long chars, long nanos) {
+        Operation meters = operations.computeIfAbsent(operation, this::operation);
+        meters.latency.record(nanos, TimeUnit.NANOSECONDS);
+        meters.chars.increment(chars);
+    }
+
+    @Override
+    public boolean isRecordingHits() {
+        return hitCounter != null;
+    }
+
+    @Override
+    public void recordHit(DictionarySnapshot snapshot, int wordId) {
+        hitCounter.increment(snapshot, wordId);
+    }
+
+    @Override
+    public void recordDictionary(DictionarySnapshot snapshot) {
+        dictionaryBuild.record(snapshot.getBuildMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordInterceptor(Method method, long nanos) {
+        endpoints.computeIfAbsent(method, key -> Timer.builder("nlp.sensitive.interceptor")
+                .description("拦截器处理接口返回值的耗时")
+                .tag("endpoint", key.getDeclaringClass().getSimpleName() + "#" + key.getName())
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 用当前命中次数最多的词替换nlp.sensitive.hits.top的所有标签值，不再是前几名的词会被移除
+     */
+    void refreshTopWords() {
+        List<MultiGauge.Row<?>> rows = hitCounter.top().entrySet().stream()
+                .map(entry -> MultiGauge.Row.of(Tags.of("word", entry.getKey()), entry.getValue()))
+                .collect(Collectors.toList());
+        topWords.register(rows, true);
+    }
+
+    private Operation operation(String operation) {
+        Timer latency = Timer.builder("nlp.sensitive.scan")
+                .description("敏感词扫描耗时")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+        Counter chars = Counter.builder("nlp.sensitive.scan.chars")
+                .description("扫描的字符数")
+                .tag("operation", operation)
+                .baseUnit("chars")
+                .register(registry);
+        return new Operation(latency, chars);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private static final class Operation {
+        private final Timer latency;
+        private final Counter chars;
+
+        private Operation(Timer latency, Counter chars) {
+            this.latency = latency;
+            this.chars = chars;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.lhb.github.io.utilbox.metrics;
+
+import com.lhb.github.io.utilbox.audit.SensitiveAuditLog;
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+
+import java.lang.reflect.Method;
+
+/**
+ * 敏感词处理的指标记录接口，默认实现不做任何记录
+ * 引入Micrometer并且容器中存在MeterRegistry时自动使用{@link MicrometerSensitiveWordMetrics}
+ *
+ * @author lihuibin
+ */
+public interface SensitiveWordMetrics {
+    /**
+     * 不记录任何指标
+     */
+    SensitiveWordMetrics NONE = new SensitiveWordMetrics() {
+    };
+
+    /**
+     * 绑定敏感词处理类，用于注册词库大小等需要实时读取的指标
+     *
+     * @param handler 敏感词处理类
+     */
+    default void bind(SensitiveWordHandler handler) {
+    }
+
+    /**
+     * 绑定敏感词命中审计日志，用于注册丢弃事件数量等需要实时读取的指标
+     *
+     * @param auditLog 审计日志
+     */
+    default void bindAudit(SensitiveAuditLog auditLog) {
+    }
+
+    /**
+     * 记录一次扫描
+     *
+     * @param operation 操作类型，例如contains、replace
+     * @param chars     扫描的字符数
+     * @param nanos     耗时，单位纳秒
+     */
+    default void recordScan(String operation, long chars, long nanos) {
+    }
+
+    /**
+     * @return 是否需要记录每个命中的敏感词，返回false时不调用{@link #recordHit(DictionarySnapshot, int)}
+     */
+    default boolean isRecordingHits() {
+        return false;
+    }
+
+    /**
+     * 记录一次敏感词命中，每次命中都会调用，实现应按词编号计数，只在汇总时通过快照的匹配引擎取回词
+     *
+     * @param snapshot 命中时使用的词库快照
+     * @param wordId   命中的词在snapshot中的编号
+     */
+    default void recordHit(DictionarySnapshot snapshot, int wordId) {
+    }
+
+    /**
+     * 记录一次词库发布，包括启动加载、重新加载和运行时增删词
+     *
+     * @param snapshot 新的词库快照
+     */
+    default void recordDictionary(DictionarySnapshot snapshot) {
+    }
+
+    /**
+     * 记录拦截器处理一次接口返回值的耗时，不包括接口本身的执行时间
+     *
+     * @param method 接口方法
+     * @param nanos  耗时，单位纳秒
+     */
+    default void recordInterceptor(Method method, long nanos) {
+    }
+}
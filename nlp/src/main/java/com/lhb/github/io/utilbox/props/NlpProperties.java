@@ -4,6 +4,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.util.ResourceUtils;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 自然语言处理属性
@@ -14,6 +17,206 @@ import java.io.Serializable;
 public class NlpProperties implements Serializable {
     private String baseDir = ResourceUtils.CLASSPATH_URL_PREFIX + "/nlp";
     private String postFixed = "/*.txt";
+    /**
+     * 白名单词库目录，写法与baseDir相同，例如“classpath:/nlp-allow”；被白名单短语完全覆盖的敏感词不算作匹配，为空时不使用白名单
+     */
+    private String allowDir;
+    /**
+     * 匹配引擎，默认使用DFA
+     */
+    private MatchEngine matchEngine = MatchEngine.DFA;
+    /**
+     * 是否开启词库热更新，开启后定时检查词库文件，发生变化时在后台重新构建词库
+     */
+    private boolean reloadEnabled = false;
+    /**
+     * 词库文件检查间隔
+     */
+    private Duration reloadInterval = Duration.ofSeconds(30);
+    /**
+     * 运行时增删词数量超过该值后，在后台合并为完整词库
+     */
+    private int deltaCompactThreshold = 10000;
+    /**
+     * 从{@link com.lhb.github.io.utilbox.handler.source.DictionarySource}分页读取词库时每页的词数量
+     */
+    private int sourcePageSize = 10000;
+    /**
+     * 预编译词库快照文件路径，配置后启动时优先通过内存映射加载快照，快照不存在或词库文件变化时重新构建并写入快照。
+     * 快照只支持AHO_CORASICK匹配引擎，不保存通配模式，开启patternSyntax时不读写快照并在启动时记录警告
+     */
+    private String snapshotFile;
+    /**
+     * 词库文件对应的分类，key为不含扩展名的文件名，value为分类名称；没有配置的文件以文件名作为分类名称
+     */
+    private Map<String, String> categories = new HashMap<>();
+    /**
+     * 匹配时是否将全角字符视为对应的半角字符
+     */
+    private boolean normalizeWidth = false;
+    /**
+     * 匹配时是否忽略英文字母大小写
+     */
+    private boolean normalizeCase = false;
+    /**
+     * 字符映射文件，例如繁体转简体对照表，每行是若干个原字符和目标字符组成的字符对
+     */
+    private String charMappingFile;
+    /**
+     * 匹配时跳过的干扰字符，例如“ *-_.”，出现在敏感词中间时一起替换
+     */
+    private String noiseChars;
+    /**
+     * 每个敏感词中最多跳过的干扰字符数
+     */
+    private int maxNoiseChars = 8;
+    /**
+     * 是否支持词库中的通配模式，例如“f?ck”、“法{0,3}轮”、“[微威]信”，开启后词库中作为普通字符的?、[、{和\需要用\转义
+     */
+    private boolean patternSyntax = false;
+    /**
+     * 加载词库文件和构建词库使用的并行度
+     */
+    private int loadParallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * 是否在后台异步加载词库，开启后应用启动不等待词库加载完成
+     */
+    private boolean asyncInit = false;
+    /**
+     * 异步加载词库期间收到敏感词处理请求时的处理策略
+     */
+    private NotReadyPolicy notReadyPolicy = NotReadyPolicy.BLOCK;
+    /**
+     * 使用{@link NotReadyPolicy#BLOCK}策略时等待词库加载完成的最长时间
+     */
+    private Duration initTimeout = Duration.ofSeconds(10);
+    /**
+     * 批量处理的文本或对象数量达到该值后分段并行处理，小于等于0时不并行
+     */
+    private int batchParallelThreshold = 2000;
+    /**
+     * 并行批量处理时每段的数量
+     */
+    private int batchChunkSize = 256;
+    /**
+     * 并行批量处理使用的线程数
+     */
+    private int batchParallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * 单个文本的长度达到该值后分段并行扫描，小于等于0时不并行
+     */
+    private int parallelScanThreshold = 1 << 20;
+    /**
+     * 分段并行扫描时每段的字符数
+     */
+    private int parallelScanSegmentSize = 1 << 16;
+    /**
+     * 存在MeterRegistry时是否记录敏感词处理指标
+     */
+    private boolean metricsEnabled = true;
+    /**
+     * 统计命中次数的敏感词数量，小于等于0时不统计每个词的命中次数
+     */
+    private int metricsTopWords = 100;
+    /**
+     * 短文本处理结果缓存的最大数量，小于等于0时不缓存。缓存的替换结果保存命中的词编号，缓存命中时照常统计每个词的命中次数
+     */
+    private int resultCacheSize = 0;
+    /**
+     * 缓存处理结果的文本最大长度，超过该长度的文本每次重新处理
+     */
+    private int resultCacheMaxLength = 64;
+    /**
+     * 接口返回Mono/Flux时，是否把元素的敏感词处理切换到批量处理的线程池，避免占用事件循环线程
+     */
+    private boolean reactiveOffload = true;
+    /**
+     * 开启reactiveOffload时，元素大小达到该值才切换线程池处理，较小的元素在发出元素的线程上直接处理，避免线程切换的开销超过扫描本身。
+     * 元素大小为字符串的长度或集合、Map、数组的元素数量，其他对象为1，为0时所有元素都切换
+     */
+    private int reactiveOffloadThreshold = 1024;
+    /**
+     * 是否记录敏感词命中审计日志，开启后拦截器替换了敏感词的字段由后台线程写入按天和大小滚动的gzip文件
+     */
+    private boolean auditEnabled = false;
+    /**
+     * 审计日志文件目录
+     */
+    private String auditDir = "logs/nlp-audit";
+    /**
+     * 请求线程与后台写入线程之间的环形缓冲区容量，向上取整为2的幂
+     */
+    private int auditBufferSize = 8192;
+    /**
+     * 后台线程每批最多取出的事件数量
+     */
+    private int auditBatchSize = 512;
+    /**
+     * 审计日志刷新到文件的间隔
+     */
+    private Duration auditFlushInterval = Duration.ofSeconds(1);
+    /**
+     * 单个审计日志文件压缩后的最大字节数，超过后滚动到新文件，小于等于0时只按天滚动
+     */
+    private long auditMaxFileSize = 64L << 20;
+    /**
+     * 审计日志缓冲区已满时的处理策略
+     */
+    private AuditOverflowPolicy auditOverflowPolicy = AuditOverflowPolicy.DROP_NEWEST;
+    /**
+     * 使用{@link AuditOverflowPolicy#BLOCK}策略时等待缓冲区空位的最长时间
+     */
+    private Duration auditBlockTimeout = Duration.ofMillis(50);
+
+    /**
+     * 匹配引擎类型
+     */
+    public enum MatchEngine {
+        /**
+         * DFA确定有限自动机，在文本的每个位置上重新从词库根节点开始匹配
+         */
+        DFA,
+        /**
+         * Aho-Corasick自动机，通过失败指针一次扫描完成匹配，适合长文本和大词库
+         */
+        AHO_CORASICK
+    }
+
+    /**
+     * 词库尚未加载完成时的处理策略
+     */
+    public enum NotReadyPolicy {
+        /**
+         * 不做敏感词处理，直接放行
+         */
+        PASS_THROUGH,
+        /**
+         * 等待词库加载完成，超过{@link #getInitTimeout()}后抛出异常
+         */
+        BLOCK,
+        /**
+         * 直接抛出异常
+         */
+        REJECT
+    }
+
+    /**
+     * 审计日志缓冲区已满时的处理策略
+     */
+    public enum AuditOverflowPolicy {
+        /**
+         * 丢弃新的事件，请求线程不等待
+         */
+        DROP_NEWEST,
+        /**
+         * 丢弃缓冲区中最早的事件，保留新的事件
+         */
+        DROP_OLDEST,
+        /**
+         * 请求线程等待缓冲区空位，超过{@link #getAuditBlockTimeout()}后丢弃新的事件
+         */
+        BLOCK
+    }
 
     public String getBaseDir() {
         return baseDir;
@@ -23,6 +226,14 @@ public class NlpProperties implements Serializable {
         this.baseDir = baseDir;
     }
 
+    public String getAllowDir() {
+        return allowDir;
+    }
+
+    public void setAllowDir(String allowDir) {
+        this.allowDir = allowDir;
+    }
+
     public String getPostFixed() {
         return postFixed;
     }
@@ -30,4 +241,292 @@ public class NlpProperties implements Serializable {
     public void setPostFixed(String postFixed) {
         this.postFixed = postFixed;
     }
+
+    public MatchEngine getMatchEngine() {
+        return matchEngine;
+    }
+
+    public void setMatchEngine(MatchEngine matchEngine) {
+        this.matchEngine = matchEngine;
+    }
+
+    public boolean isReloadEnabled() {
+        return reloadEnabled;
+    }
+
+    public void setReloadEnabled(boolean reloadEnabled) {
+        this.reloadEnabled = reloadEnabled;
+    }
+
+    public Duration getReloadInterval() {
+        return reloadInterval;
+    }
+
+    public void setReloadInterval(Duration reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
+
+    public int getDeltaCompactThreshold() {
+        return deltaCompactThreshold;
+    }
+
+    public void setDeltaCompactThreshold(int deltaCompactThreshold) {
+        this.deltaCompactThreshold = deltaCompactThreshold;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public int getLoadParallelism() {
+        return loadParallelism;
+    }
+
+    public void setLoadParallelism(int loadParallelism) {
+        this.loadParallelism = loadParallelism;
+    }
+
+    public boolean isAsyncInit() {
+        return asyncInit;
+    }
+
+    public void setAsyncInit(boolean asyncInit) {
+        this.asyncInit = asyncInit;
+    }
+
+    public NotReadyPolicy getNotReadyPolicy() {
+        return notReadyPolicy;
+    }
+
+    public void setNotReadyPolicy(NotReadyPolicy notReadyPolicy) {
+        this.notReadyPolicy = notReadyPolicy;
+    }
+
+    public Duration getInitTimeout() {
+        return initTimeout;
+    }
+
+    public void setInitTimeout(Duration initTimeout) {
+        this.initTimeout = initTimeout;
+    }
+
+    public int getBatchParallelThreshold() {
+        return batchParallelThreshold;
+    }
+
+    public void setBatchParallelThreshold(int batchParallelThreshold) {
+        this.batchParallelThreshold = batchParallelThreshold;
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    public void setBatchChunkSize(int batchChunkSize) {
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    public void setBatchParallelism(int batchParallelism) {
+        this.batchParallelism = batchParallelism;
+    }
+
+    public int getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    public void setParallelScanThreshold(int parallelScanThreshold) {
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    public int getParallelScanSegmentSize() {
+        return parallelScanSegmentSize;
+    }
+
+    public void setParallelScanSegmentSize(int parallelScanSegmentSize) {
+        this.parallelScanSegmentSize = parallelScanSegmentSize;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public int getMetricsTopWords() {
+        return metricsTopWords;
+    }
+
+    public void setMetricsTopWords(int metricsTopWords) {
+        this.metricsTopWords = metricsTopWords;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public int getResultCacheMaxLength() {
+        return resultCacheMaxLength;
+    }
+
+    public void setResultCacheMaxLength(int resultCacheMaxLength) {
+        this.resultCacheMaxLength = resultCacheMaxLength;
+    }
+
+    public boolean isReactiveOffload() {
+        return reactiveOffload;
+    }
+
+    public void setReactiveOffload(boolean reactiveOffload) {
+        this.reactiveOffload = reactiveOffload;
+    }
+
+    public int getReactiveOffloadThreshold() {
+        return reactiveOffloadThreshold;
+    }
+
+    public void setReactiveOffloadThreshold(int reactiveOffloadThreshold) {
+        this.reactiveOffloadThreshold = reactiveOffloadThreshold;
+    }
+
+    public Map<String, String> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(Map<String, String> categories) {
+        this.categories = categories;
+    }
+
+    public boolean isNormalizeWidth() {
+        return normalizeWidth;
+    }
+
+    public void setNormalizeWidth(boolean normalizeWidth) {
+        this.normalizeWidth = normalizeWidth;
+    }
+
+    public boolean isNormalizeCase() {
+        return normalizeCase;
+    }
+
+    public void setNormalizeCase(boolean normalizeCase) {
+        this.normalizeCase = normalizeCase;
+    }
+
+    public String getCharMappingFile() {
+        return charMappingFile;
+    }
+
+    public void setCharMappingFile(String charMappingFile) {
+        this.charMappingFile = charMappingFile;
+    }
+
+    public String getNoiseChars() {
+        return noiseChars;
+    }
+
+    public void setNoiseChars(String noiseChars) {
+        this.noiseChars = noiseChars;
+    }
+
+    public int getMaxNoiseChars() {
+        return maxNoiseChars;
+    }
+
+    public void setMaxNoiseChars(int maxNoiseChars) {
+        this.maxNoiseChars = maxNoiseChars;
+    }
+
+    public boolean isPatternSyntax() {
+        return patternSyntax;
+    }
+
+    public void setPatternSyntax(boolean patternSyntax) {
+        this.patternSyntax = patternSyntax;
+    }
+
+    public int getSourcePageSize() {
+        return sourcePageSize;
+    }
+
+    public void setSourcePageSize(int sourcePageSize) {
+        this.sourcePageSize = sourcePageSize;
+    }
+
+    public boolean isAuditEnabled() {
+        return auditEnabled;
+    }
+
+    public void setAuditEnabled(boolean auditEnabled) {
+        this.auditEnabled = auditEnabled;
+    }
+
+    public String getAuditDir() {
+        return auditDir;
+    }
+
+    public void setAuditDir(String auditDir) {
+        this.auditDir = auditDir;
+    }
+
+    public int getAuditBufferSize() {
+        return auditBufferSize;
+    }
+
+    public void setAuditBufferSize(int auditBufferSize) {
+        this.auditBufferSize = auditBufferSize;
+    }
+
+    public int getAuditBatchSize() {
+        return auditBatchSize;
+    }
+
+    public void setAuditBatchSize(int auditBatchSize) {
+        this.auditBatchSize = auditBatchSize;
+    }
+
+    public Duration getAuditFlushInterval() {
+        return auditFlushInterval;
+    }
+
+    public void setAuditFlushInterval(Duration auditFlushInterval) {
+        this.auditFlushInterval = auditFlushInterval;
+    }
+
+    public long getAuditMaxFileSize() {
+        return auditMaxFileSize;
+    }
+
+    public void setAuditMaxFileSize(long auditMaxFileSize) {
+        this.auditMaxFileSize = auditMaxFileSize;
+    }
+
+    public AuditOverflowPolicy getAuditOverflowPolicy() {
+        return auditOverflowPolicy;
+    }
+
+    public void setAuditOverflowPolicy(AuditOverflowPolicy auditOverflowPolicy) {
+        this.auditOverflowPolicy = auditOverflowPolicy;
+    }
+
+    public Duration getAuditBlockTimeout() {
+        return auditBlockTimeout;
+    }
+
+    public void setAuditBlockTimeout(Duration auditBlockTimeout) {
+        this.auditBlockTimeout = auditBlockTimeout;
+    }
 }
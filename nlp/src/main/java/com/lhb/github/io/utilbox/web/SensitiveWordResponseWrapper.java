@@ -0,0 +1,263 @@
+package com.lhb.github.io.utilbox.web;
+
+import com.lhb.github.io.utilbox.handler.SensitiveWordFilterWriter;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 替换响应内容中敏感词的响应包装类，响应内容边写出边替换，不需要缓存整个响应
+ * <p>
+ * 只处理文本类型(text/*、json、xml、javascript)的响应，其他类型原样输出。
+ * 替换后字节数可能变化，因此忽略Content-Length。请求处理完成后需要调用{@link #finish()}写出剩余内容，例如在过滤器中：
+ * <pre>
+ * SensitiveWordResponseWrapper wrapper = new SensitiveWordResponseWrapper(response, sensitiveWordHandler);
+ * chain.doFilter(request, wrapper);
+ * wrapper.finish();
+ * </pre>
+ *
+ * @author lihuibin
+ */
+public class SensitiveWordResponseWrapper extends HttpServletResponseWrapper {
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private final SensitiveWordHandler sensitiveWordHandler;
+    private SensitiveWordFilterWriter filterWriter;
+    private PrintWriter writer;
+    private ServletOutputStream outputStream;
+
+    public SensitiveWordResponseWrapper(HttpServletResponse response, SensitiveWordHandler sensitiveWordHandler) {
+        super(response);
+        this.sensitiveWordHandler = sensitiveWordHandler;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            if (isText(getContentType(), true)) {
+                filterWriter = sensitiveWordHandler.filterWriter(super.getWriter());
+                writer = new PrintWriter(filterWriter);
+            } else {
+                writer = super.getWriter();
+            }
+        }
+        return writer;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called for this response");
+            }
+            ServletOutputStream original = super.getOutputStream();
+            if (isText(getContentType(), false)) {
+                Charset charset = responseCharset(getContentType());
+                filterWriter = sensitiveWordHandler.filterWriter(new OutputStreamWriter(original, charset));
+                outputStream = new DecodingOutputStream(original, charset.newDecoder(), filterWriter);
+            } else {
+                outputStream = original;
+            }
+        }
+        return outputStream;
+    }
+
+    /**
+     * 写出缓冲区中剩余的内容，不关闭响应输出流
+     *
+     * @throws IOException 写出失败时抛出
+     */
+    public void finish() throws IOException {
+        if (outputStream instanceof DecodingOutputStream) {
+            ((DecodingOutputStream) outputStream).finish();
+        } else if (writer != null) {
+            writer.flush();
+        }
+        if (filterWriter != null) {
+            filterWriter.finish();
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (outputStream != null) {
+            outputStream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (!CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (!CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    /**
+     * 是否为需要替换敏感词的文本类型
+     *
+     * @param contentType     响应类型
+     * @param textWhenUnknown 没有设置响应类型时的结果
+     */
+    private static boolean isText(String contentType, boolean textWhenUnknown) {
+        if (contentType == null) {
+            return textWhenUnknown;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml") || type.contains("javascript");
+    }
+
+    /**
+     * 字节流使用的编码，响应类型中带有charset时使用该编码，否则使用UTF-8；
+     * 没有指定编码时{@link #getCharacterEncoding()}返回容器默认的ISO-8859-1，按它解码UTF-8的JSON会使敏感词无法匹配
+     */
+    private Charset responseCharset(String contentType) {
+        if (contentType != null && contentType.toLowerCase().contains("charset=")) {
+            return Charset.forName(getCharacterEncoding());
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * 把写入的字节按响应编码解码后交给{@link SensitiveWordFilterWriter}，替换结果再按同样的编码写入原输出流
+     */
+    private static final class DecodingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream original;
+        private final CharsetDecoder decoder;
+        private final SensitiveWordFilterWriter out;
+        private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+        private boolean finished;
+
+        private DecodingOutputStream(ServletOutputStream original, CharsetDecoder decoder, SensitiveWordFilterWriter out) {
+            this.original = original;
+            this.decoder = decoder.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!bytes.hasRemaining()) {
+                decode(false);
+            }
+            bytes.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!bytes.hasRemaining()) {
+                    decode(false);
+                }
+                int n = Math.min(len, bytes.remaining());
+                bytes.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            decode(false);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            original.close();
+        }
+
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            decode(true);
+            CoderResult result;
+            do {
+                result = decoder.flush(chars);
+                drainChars();
+            } while (result.isOverflow());
+            out.finish();
+        }
+
+        /**
+         * 解码缓冲区中的字节，不完整的多字节字符留到下次解码
+         */
+        private void decode(boolean endOfInput) throws IOException {
+            bytes.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, endOfInput);
+                drainChars();
+            } while (result.isOverflow());
+            bytes.compact();
+        }
+
+        private void drainChars() throws IOException {
+            chars.flip();
+            if (chars.hasRemaining()) {
+                out.write(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+            }
+            chars.clear();
+        }
+
+        @Override
+        public boolean isReady() {
+            return original.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            original.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.lhb.github.io.utilbox.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 环形缓冲区的容量、先进先出顺序、满时拒绝写入，以及多线程同时写入和取出时不丢失、不重复
+ *
+ * @author lihuibin
+ */
+class AuditRingBufferTest {
+
+    @Test
+    void capacityRoundedUpToPowerOfTwo() {
+        assertEquals(2, new AuditRingBuffer<>(1).capacity());
+        assertEquals(8, new AuditRingBuffer<>(5).capacity());
+        assertEquals(1024, new AuditRingBuffer<>(1024).capacity());
+    }
+
+    @Test
+    void fifoAndRejectWhenFull() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        assertNull(buffer.poll());
+        // 多轮写满再取空，覆盖序号回绕
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(round * 4 + i));
+            }
+            assertFalse(buffer.offer(-1), "缓冲区已满");
+            assertEquals(4, buffer.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(round * 4 + i, buffer.poll());
+            }
+            assertNull(buffer.poll());
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    @Test
+    void concurrentProducersAndConsumers() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(64);
+        BitSet seen = new BitSet(producers * perProducer);
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < 2; c++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (received.get() < producers * perProducer) {
+                    Integer value = buffer.poll();
+                    if (value == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    synchronized (seen) {
+                        if (seen.get(value)) {
+                            duplicates.incrementAndGet();
+                        }
+                        seen.set(value);
+                    }
+                    received.incrementAndGet();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(60_000);
+        }
+        assertEquals(0, duplicates.get(), "同一个元素被取出多次");
+        assertEquals(producers * perProducer, seen.cardinality(), "有元素丢失");
+        assertTrue(buffer.isEmpty());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.lhb.github.io.utilbox.audit;
+
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 审计日志后台写入和缓冲区满时的三种处理策略
+ * <p>
+ * 词编号0的词在取回时等待放行，后台线程取出第一个事件后停在该事件上，之后的事件留在缓冲区中，用于构造缓冲区满的场景
+ *
+ * @author lihuibin
+ */
+class SensitiveAuditLogTest {
+    private static final String[] WORDS = {"甲", "乙", "丙", "丁"};
+
+    @TempDir
+    Path dir;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void drainSkipsFailingEvent() throws IOException {
+        release.countDown();
+        SensitiveAuditLog auditLog = new SensitiveAuditLog(properties(NlpProperties.AuditOverflowPolicy.DROP_NEWEST, 16));
+        DictionarySnapshot snapshot = snapshot();
+        assertTrue(auditLog.record("/a", snapshot, new int[]{1, 1}));
+        // 不属于该词库快照的词编号，取回时抛出异常
+        assertTrue(auditLog.record("/b", snapshot, new int[]{99}));
+        assertTrue(auditLog.record("/c", snapshot, new int[]{2, 3}));
+        auditLog.close();
+        assertEquals(1, auditLog.getFailedCount());
+        assertEquals(3, auditLog.getWrittenCount());
+        assertEquals(Arrays.asList("/a\t乙", "/c\t丙", "/c\t丁"), lines());
+    }
+
+    @Test
+    void dropNewest() throws IOException {
+        SensitiveAuditLog auditLog = new SensitiveAuditLog(properties(NlpProperties.AuditOverflowPolicy.DROP_NEWEST, 2));
+        DictionarySnapshot snapshot = fillBuffer(auditLog);
+        assertFalse(auditLog.record("/d", snapshot, new int[]{3}));
+        assertEquals(1, auditLog.getDroppedCount());
+        release.countDown();
+        auditLog.close();
+        assertEquals(Arrays.asList("/a\t甲", "/b\t乙", "/c\t丙"), lines());
+    }
+
+    @Test
+    void dropOldest() throws IOException {
+        SensitiveAuditLog auditLog = new SensitiveAuditLog(properties(NlpProperties.AuditOverflowPolicy.DROP_OLDEST, 2));
+        DictionarySnapshot snapshot = fillBuffer(auditLog);
+        assertTrue(auditLog.record("/d", snapshot, new int[]{3}));
+        assertEquals(1, auditLog.getDroppedCount());
+        release.countDown();
+        auditLog.close();
+        assertEquals(Arrays.asList("/a\t甲", "/c\t丙", "/d\t丁"), lines());
+    }
+
+    @Test
+    void blockUntilSpace() throws Exception {
+        NlpProperties properties = properties(NlpProperties.AuditOverflowPolicy.BLOCK, 2);
+        properties.setAuditBlockTimeout(Duration.ofSeconds(30));
+        SensitiveAuditLog auditLog = new SensitiveAuditLog(properties);
+        DictionarySnapshot snapshot = fillBuffer(auditLog);
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> auditLog.record("/d", snapshot, new int[]{3}));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone(), "缓冲区满时等待空位");
+        release.countDown();
+        assertTrue(blocked.get(10, TimeUnit.SECONDS));
+        auditLog.close();
+        assertEquals(0, auditLog.getDroppedCount());
+        assertEquals(Arrays.asList("/a\t甲", "/b\t乙", "/c\t丙", "/d\t丁"), lines());
+    }
+
+    @Test
+    void blockTimeout() throws IOException {
+        NlpProperties properties = properties(NlpProperties.AuditOverflowPolicy.BLOCK, 2);
+        properties.setAuditBlockTimeout(Duration.ofMillis(50));
+        SensitiveAuditLog auditLog = new SensitiveAuditLog(properties);
+        DictionarySnapshot snapshot = fillBuffer(auditLog);
+        assertFalse(auditLog.record("/d", snapshot, new int[]{3}));
+        assertEquals(1, auditLog.getDroppedCount());
+        release.countDown();
+        auditLog.close();
+        assertEquals(Arrays.asList("/a\t甲", "/b\t乙", "/c\t丙"), lines());
+    }
+
+    private NlpProperties properties(NlpProperties.AuditOverflowPolicy policy, int bufferSize) {
+        NlpProperties properties = new NlpProperties();
+        properties.setAuditDir(dir.toString());
+        properties.setAuditBufferSize(bufferSize);
+        properties.setAuditBatchSize(1);
+        properties.setAuditOverflowPolicy(policy);
+        return properties;
+    }
+
+    /**
+     * 后台线程停在第一个事件上之后再写满缓冲区
+     */
+    private DictionarySnapshot fillBuffer(SensitiveAuditLog auditLog) {
+        DictionarySnapshot snapshot = snapshot();
+        assertTrue(auditLog.record("/a", snapshot, new int[]{0}));
+        while (auditLog.getPendingCount() > 0) {
+            Thread.yield();
+        }
+        assertTrue(auditLog.record("/b", snapshot, new int[]{1}));
+        assertTrue(auditLog.record("/c", snapshot, new int[]{2}));
+        assertEquals(auditLog.getCapacity(), auditLog.getPendingCount());
+        return snapshot;
+    }
+
+    /**
+     * 只实现取回词的匹配引擎
+     */
+    private DictionarySnapshot snapshot() {
+        WordMatcher matcher = (WordMatcher) Proxy.newProxyInstance(WordMatcher.class.getClassLoader(),
+                new Class<?>[]{WordMatcher.class}, (proxy, method, args) -> {
+                    if (!"getWord".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    int wordId = (Integer) args[0];
+                    if (wordId >= WORDS.length) {
+                        throw new IllegalArgumentException(String.format("词编号%d不存在", wordId));
+                    }
+                    if (wordId == 0) {
+                        release.await();
+                    }
+                    return WORDS[wordId];
+                });
+        return new DictionarySnapshot(matcher, 1, 0);
+    }
+
+    /**
+     * @return 所有审计日志文件中去掉时间之后的行
+     */
+    private List<String> lines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.sorted().collect(Collectors.toList())) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines.add(line.substring(line.indexOf('\t') + 1));
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,125 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.AhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.CompactTrie;
+import com.lhb.github.io.utilbox.handler.matcher.MappedAhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import com.lhb.github.io.utilbox.props.SensitiveWordProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 编译工具写出的词库快照可以被应用直接加载，词库文件变化导致校验和不一致时重新构建词库并覆盖快照
+ *
+ * @author lihuibin
+ */
+class DictionaryCompilerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        Set<String> words = new HashSet<>(Arrays.asList("中国", "中国人", "abc", "bcd"));
+        AhoCorasickMatcher built = new AhoCorasickMatcher(CompactTrie.build(words));
+        Path snapshot = dir.resolve("words.snapshot");
+        built.writeSnapshot(snapshot, 42L);
+
+        MappedAhoCorasickMatcher mapped = MappedAhoCorasickMatcher.open(snapshot, 42L);
+        assertNotNull(mapped);
+        assertEquals(built.size(), mapped.size());
+        assertEquals(built.getMaxWordLength(), mapped.getMaxWordLength());
+        for (String text : new String[]{"我是中国人", "xabcdx", "中国abc", "无"}) {
+            for (boolean longest : new boolean[]{false, true}) {
+                assertEquals(matches(built, text, longest), matches(mapped, text, longest), text);
+            }
+        }
+        for (String word : words) {
+            assertEquals(word, mapped.getWord(mapped.getWordId(word)));
+        }
+        assertNull(MappedAhoCorasickMatcher.open(snapshot, 43L), "校验和不一致时不加载快照");
+    }
+
+    @Test
+    void compiledSnapshotLoadedByHandler() throws Exception {
+        Path words = Files.createDirectory(dir.resolve("words"));
+        write(words.resolve("ad.txt"), "广告\n推广");
+        write(words.resolve("politics.txt"), "敏感词");
+        Path snapshot = dir.resolve("words.snapshot");
+        DictionaryCompiler.main(new String[]{words.toString(), snapshot.toString()});
+
+        SensitiveWordHandler handler = handler(words, snapshot);
+        try {
+            WordMatcher matcher = handler.getDictionary().getMatcher();
+            assertTrue(matcher instanceof MappedAhoCorasickMatcher, "直接加载编译工具写出的快照: " + matcher.getClass());
+            assertEquals(new HashSet<>(Arrays.asList("广告", "敏感词")), handler.getSensitiveWordInText("广告里的敏感词"));
+            assertEquals(Arrays.asList("ad", "politics"), handler.getDictionary().getCategories().getNames());
+        } finally {
+            handler.destroy();
+        }
+    }
+
+    @Test
+    void checksumMismatchRebuilds() throws Exception {
+        Path words = Files.createDirectory(dir.resolve("words"));
+        write(words.resolve("politics.txt"), "敏感词");
+        Path snapshot = dir.resolve("words.snapshot");
+        DictionaryCompiler.main(new String[]{words.toString(), snapshot.toString()});
+        // 编译之后词库文件发生变化，快照中的校验和与词库文件不一致
+        write(words.resolve("politics.txt"), "敏感词\n新增词");
+
+        SensitiveWordHandler handler = handler(words, snapshot);
+        try {
+            assertFalse(handler.getDictionary().getMatcher() instanceof MappedAhoCorasickMatcher, "过期的快照不能被加载");
+            assertEquals(new HashSet<>(Arrays.asList("敏感词", "新增词")), handler.getSensitiveWordInText("敏感词和新增词"));
+        } finally {
+            handler.destroy();
+        }
+        // 重新构建后覆盖了快照，下次启动直接加载
+        handler = handler(words, snapshot);
+        try {
+            assertTrue(handler.getDictionary().getMatcher() instanceof MappedAhoCorasickMatcher);
+            assertEquals(new HashSet<>(Arrays.asList("敏感词", "新增词")), handler.getSensitiveWordInText("敏感词和新增词"));
+        } finally {
+            handler.destroy();
+        }
+    }
+
+    private static SensitiveWordHandler handler(Path words, Path snapshot) throws Exception {
+        NlpProperties properties = new NlpProperties();
+        properties.setBaseDir("file:" + words.toAbsolutePath() + "/*.txt");
+        properties.setMatchEngine(NlpProperties.MatchEngine.AHO_CORASICK);
+        properties.setSnapshotFile(snapshot.toString());
+        SensitiveWordHandler handler = new SensitiveWordHandler(new SensitiveWordProperties(), properties);
+        handler.afterPropertiesSet();
+        handler.onApplicationEvent(null);
+        return handler;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> matches(WordMatcher matcher, String text, boolean longest) {
+        List<String> matches = new ArrayList<>();
+        matcher.match(text, longest, null, (start, end, wordId) -> matches.add(start + "-" + end + ":" + matcher.getWord(wordId)));
+        return matches;
+    }
+}
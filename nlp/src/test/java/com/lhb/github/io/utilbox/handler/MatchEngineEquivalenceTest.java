@@ -0,0 +1,135 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.AhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.CompactTrie;
+import com.lhb.github.io.utilbox.handler.matcher.DfaMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * DFA、Aho-Corasick两种匹配引擎与基于HashMap的逐位置checkWord在两种匹配模式下的结果一致
+ *
+ * @author lihuibin
+ */
+class MatchEngineEquivalenceTest {
+    private static final String ALPHABET = "abcd中国人民";
+
+    @Test
+    void sameMatchesAsHashMapCheckWord() {
+        Random random = new Random(20200701L);
+        for (int round = 0; round < 300; round++) {
+            Set<String> words = randomWords(random, 1 + random.nextInt(30), 6);
+            LegacyHandler legacy = new LegacyHandler(words);
+            CompactTrie trie = CompactTrie.build(words);
+            WordMatcher[] matchers = {new DfaMatcher(trie), new AhoCorasickMatcher(trie)};
+            for (int t = 0; t < 50; t++) {
+                String text = randomText(random, random.nextInt(120));
+                for (NLPAbstractHandler.MATCH_TYPE matchType : NLPAbstractHandler.MATCH_TYPE.values()) {
+                    List<String> expected = legacy.positions(text, matchType);
+                    for (WordMatcher matcher : matchers) {
+                        String message = matcher.getClass().getSimpleName() + " " + matchType + " " + words + " " + text;
+                        assertEquals(expected, positions(matcher, text, matchType), message);
+                        assertEquals(legacy.contains(text, matchType), legacy.containsWith(matcher, text, matchType), message);
+                        assertEquals(legacy.find(text, matchType), legacy.findWith(matcher, text, matchType), message);
+                        assertEquals(legacy.replace(text, matchType), legacy.replaceWith(matcher, text, matchType), message);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void nestedWordsFollowMatchType() {
+        Set<String> words = new HashSet<>();
+        words.add("中国");
+        words.add("中国人");
+        words.add("国人民");
+        LegacyHandler legacy = new LegacyHandler(words);
+        CompactTrie trie = CompactTrie.build(words);
+        for (WordMatcher matcher : new WordMatcher[]{new DfaMatcher(trie), new AhoCorasickMatcher(trie)}) {
+            assertEquals("我是**人民", legacy.replaceWith(matcher, "我是中国人民", NLPAbstractHandler.MATCH_TYPE.MINIMUM_MATCH));
+            assertEquals("我是***民", legacy.replaceWith(matcher, "我是中国人民", NLPAbstractHandler.MATCH_TYPE.MAXIMUM_MATCH));
+        }
+    }
+
+    static List<String> positions(WordMatcher matcher, CharSequence text, NLPAbstractHandler.MATCH_TYPE matchType) {
+        List<String> positions = new ArrayList<>();
+        matcher.match(text, NLPAbstractHandler.MATCH_TYPE.MAXIMUM_MATCH == matchType, null,
+                (start, end, wordId) -> positions.add(start + "-" + end));
+        return positions;
+    }
+
+    static Set<String> randomWords(Random random, int count, int maxLength) {
+        Set<String> words = new HashSet<>();
+        while (words.size() < count) {
+            words.add(randomText(random, 1 + random.nextInt(maxLength)));
+        }
+        return words;
+    }
+
+    static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * 通过{@link NLPAbstractHandler}中基于HashMap的方法得到对照结果
+     */
+    static class LegacyHandler extends NLPAbstractHandler {
+        private final HashMap dfaWordMap = new HashMap();
+
+        LegacyHandler(Set<String> words) {
+            setNlpProperties(new NlpProperties());
+            init(dfaWordMap, words);
+        }
+
+        List<String> positions(String text, MATCH_TYPE matchType) {
+            List<String> positions = new ArrayList<>();
+            for (int i = 0; i < text.length(); i++) {
+                int wordLength = checkWord(dfaWordMap, text, i, matchType);
+                if (wordLength > 0) {
+                    positions.add(i + "-" + (i + wordLength));
+                    i = i + wordLength - 1;
+                }
+            }
+            return positions;
+        }
+
+        boolean contains(String text, MATCH_TYPE matchType) {
+            return contains(dfaWordMap, text, matchType);
+        }
+
+        Set<String> find(String text, MATCH_TYPE matchType) {
+            return getSensitiveWordInText(dfaWordMap, text, matchType);
+        }
+
+        String replace(String text, MATCH_TYPE matchType) {
+            return replaceSensitiveWord(dfaWordMap, text, '*', matchType);
+        }
+
+        boolean containsWith(WordMatcher matcher, String text, MATCH_TYPE matchType) {
+            return contains(matcher, text, matchType);
+        }
+
+        Set<String> findWith(WordMatcher matcher, String text, MATCH_TYPE matchType) {
+            return getSensitiveWordInText(matcher, text, matchType);
+        }
+
+        String replaceWith(WordMatcher matcher, String text, MATCH_TYPE matchType) {
+            return replaceSensitiveWord(matcher, text, '*', matchType);
+        }
+    }
+}
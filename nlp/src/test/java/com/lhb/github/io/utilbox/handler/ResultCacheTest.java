@@ -0,0 +1,121 @@
+package com.lhb.github.io.utilbox.handler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 结果缓存的分段LRU淘汰：试用区的结果再次命中后晋升到保护区，容量不足时先淘汰试用区中最久未使用的结果，
+ * 词库版本变化后旧结果不再命中
+ * <p>
+ * 容量小于32时只有一个分片，淘汰顺序是确定的
+ *
+ * @author lihuibin
+ */
+class ResultCacheTest {
+    private static final int CAPACITY = 10;
+
+    @Test
+    void evictLeastRecentlyUsedAtCapacity() {
+        ResultCache cache = new ResultCache(CAPACITY, 64);
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.put("text" + i, 0, 0, 1, i);
+        }
+        assertEquals(CAPACITY, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+        cache.put("text" + CAPACITY, 0, 0, 1, CAPACITY);
+        assertEquals(CAPACITY, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("text0", 0, 0, 1), "最早写入的结果被淘汰");
+        for (int i = 1; i <= CAPACITY; i++) {
+            assertEquals(i, cache.get("text" + i, 0, 0, 1));
+        }
+    }
+
+    @Test
+    void hitPromotesToProtected() {
+        ResultCache cache = new ResultCache(CAPACITY, 64);
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.put("text" + i, 0, 0, 1, i);
+        }
+        // 最早写入的结果再次命中，晋升到保护区，之后淘汰试用区中次早写入的结果
+        assertEquals(0, cache.get("text0", 0, 0, 1));
+        cache.put("new", 0, 0, 1, -1);
+        assertEquals(0, cache.get("text0", 0, 0, 1));
+        assertNull(cache.get("text1", 0, 0, 1));
+    }
+
+    @Test
+    void oneOffTextsDoNotEvictProtected() {
+        ResultCache cache = new ResultCache(CAPACITY, 64);
+        int hot = CAPACITY / 2;
+        for (int i = 0; i < hot; i++) {
+            cache.put("hot" + i, 0, 0, 1, i);
+            cache.get("hot" + i, 0, 0, 1);
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.put("once" + i, 0, 0, 1, i);
+        }
+        assertEquals(CAPACITY, cache.size());
+        assertEquals(100 - (CAPACITY - hot), cache.getEvictionCount());
+        for (int i = 0; i < hot; i++) {
+            assertEquals(i, cache.get("hot" + i, 0, 0, 1), "反复出现的文本不会被只出现一次的文本挤掉");
+        }
+    }
+
+    @Test
+    void protectedOverflowDemotesToProbation() {
+        ResultCache cache = new ResultCache(CAPACITY, 64);
+        // 保护区容量为80%，第9个晋升的结果使最久未命中的text0降级回试用区
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.put("text" + i, 0, 0, 1, i);
+        }
+        for (int i = 0; i < 9; i++) {
+            cache.get("text" + i, 0, 0, 1);
+        }
+        // 试用区中有text9和降级的text0，text9更早进入试用区，先被淘汰
+        cache.put("new1", 0, 0, 1, -1);
+        assertNull(cache.get("text9", 0, 0, 1));
+        cache.put("new2", 0, 0, 1, -2);
+        assertNull(cache.get("text0", 0, 0, 1));
+        for (int i = 1; i < 9; i++) {
+            assertEquals(i, cache.get("text" + i, 0, 0, 1));
+        }
+    }
+
+    @Test
+    void missAfterVersionChange() {
+        ResultCache cache = new ResultCache(CAPACITY, 64);
+        cache.put("text", 0, 0, 1, "v1");
+        assertEquals("v1", cache.get("text", 0, 0, 1));
+        // 持有旧词库的调用不命中也不清除新版本的结果
+        assertNull(cache.get("text", 0, 0, 0));
+        assertEquals(1, cache.size());
+        // 新版本查询时清除旧版本的结果
+        assertNull(cache.get("text", 0, 0, 2));
+        assertEquals(0, cache.size());
+        assertNull(cache.get("text", 0, 0, 1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        cache.put("text", 0, 0, 2, "v2");
+        cache.put("text", 0, 0, 1, "stale");
+        assertEquals("v2", cache.get("text", 0, 0, 2), "旧版本的结果不覆盖新版本");
+    }
+
+    @Test
+    void keyIncludesOptionsAndCategories() {
+        ResultCache cache = new ResultCache(CAPACITY, 4);
+        cache.put("text", 0, 0, 1, "contains");
+        cache.put("text", 1, 0, 1, "replace");
+        cache.put("text", 1, 2L, 1, "replace ad");
+        assertEquals("contains", cache.get("text", 0, 0, 1));
+        assertEquals("replace", cache.get("text", 1, 0, 1));
+        assertEquals("replace ad", cache.get("text", 1, 2L, 1));
+        assertTrue(cache.isCacheable("text"));
+        assertFalse(cache.isCacheable("texts"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.AhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.CompactTrie;
+import com.lhb.github.io.utilbox.handler.matcher.DfaMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static com.lhb.github.io.utilbox.handler.MatchEngineEquivalenceTest.positions;
+import static com.lhb.github.io.utilbox.handler.MatchEngineEquivalenceTest.randomText;
+import static com.lhb.github.io.utilbox.handler.MatchEngineEquivalenceTest.randomWords;
+import static com.lhb.github.io.utilbox.handler.SensitiveWordFilterWriterTest.allowList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 分段并行扫描与顺序扫描的结果一致，段长度很小时几乎每个匹配都跨越段的边界，白名单短语也经常从上一段开始
+ *
+ * @author lihuibin
+ */
+class SegmentedMatcherTest {
+    private final NlpProperties nlpProperties = new NlpProperties();
+    private final BatchExecutor batchExecutor;
+
+    SegmentedMatcherTest() {
+        nlpProperties.setBatchParallelism(4);
+        nlpProperties.setParallelScanThreshold(1);
+        batchExecutor = new BatchExecutor(nlpProperties);
+    }
+
+    @AfterEach
+    void shutdown() {
+        batchExecutor.shutdown();
+    }
+
+    @Test
+    void sameMatchesAsSequentialScan() {
+        Random random = new Random(20200714L);
+        for (int round = 0; round < 200; round++) {
+            Set<String> words = randomWords(random, 1 + random.nextInt(20), 5);
+            CompactTrie trie = CompactTrie.build(words);
+            nlpProperties.setParallelScanSegmentSize(1 + random.nextInt(16));
+            for (WordMatcher matcher : new WordMatcher[]{new DfaMatcher(trie), new AhoCorasickMatcher(trie)}) {
+                SegmentedMatcher segmented = new SegmentedMatcher(matcher, batchExecutor, nlpProperties);
+                for (int t = 0; t < 20; t++) {
+                    String text = randomText(random, random.nextInt(300));
+                    for (NLPAbstractHandler.MATCH_TYPE matchType : NLPAbstractHandler.MATCH_TYPE.values()) {
+                        String message = matcher.getClass().getSimpleName() + " " + matchType + " " + words + " " + text;
+                        assertEquals(positions(matcher, text, matchType), positions(segmented, text, matchType), message);
+                        boolean longest = NLPAbstractHandler.MATCH_TYPE.MAXIMUM_MATCH == matchType;
+                        assertEquals(matcher.contains(text, longest), segmented.contains(text, longest), message);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameMatchesWithWordFilter() {
+        Random random = new Random(20200715L);
+        nlpProperties.setParallelScanSegmentSize(4);
+        for (int round = 0; round < 200; round++) {
+            Set<String> words = randomWords(random, 1 + random.nextInt(20), 4);
+            WordMatcher matcher = new AhoCorasickMatcher(CompactTrie.build(words));
+            SegmentedMatcher segmented = new SegmentedMatcher(matcher, batchExecutor, nlpProperties);
+            IntPredicate even = wordId -> wordId % 2 == 0;
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(200));
+                for (boolean longest : new boolean[]{false, true}) {
+                    StringBuilder expected = new StringBuilder();
+                    StringBuilder actual = new StringBuilder();
+                    matcher.match(text, longest, even, (start, end, wordId) -> expected.append(start).append('-').append(end).append(' '));
+                    segmented.match(text, longest, even, (start, end, wordId) -> actual.append(start).append('-').append(end).append(' '));
+                    assertEquals(expected.toString(), actual.toString(), words + " " + text);
+                    assertEquals(matcher.contains(text, longest, even), segmented.contains(text, longest, even), words + " " + text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameMatchesWithAllowList() {
+        Random random = new Random(20200727L);
+        for (int round = 0; round < 200; round++) {
+            Set<String> words = randomWords(random, 1 + random.nextInt(10), 3);
+            Set<String> phrases = randomWords(random, 1 + random.nextInt(5), 6);
+            phrases.removeAll(words);
+            WordMatcher matcher = allowList(words, phrases);
+            nlpProperties.setParallelScanSegmentSize(1 + random.nextInt(16));
+            SegmentedMatcher segmented = new SegmentedMatcher(matcher, batchExecutor, nlpProperties);
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(300));
+                for (NLPAbstractHandler.MATCH_TYPE matchType : NLPAbstractHandler.MATCH_TYPE.values()) {
+                    String message = matchType + " " + words + " " + phrases + " " + text;
+                    assertEquals(positions(matcher, text, matchType), positions(segmented, text, matchType), message);
+                    boolean longest = NLPAbstractHandler.MATCH_TYPE.MAXIMUM_MATCH == matchType;
+                    assertEquals(matcher.contains(text, longest), segmented.contains(text, longest), message);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.lhb.github.io.utilbox.handler;
+
+import com.lhb.github.io.utilbox.handler.matcher.AhoCorasickMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.AllowListMatcher;
+import com.lhb.github.io.utilbox.handler.matcher.CompactTrie;
+import com.lhb.github.io.utilbox.handler.matcher.WordMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static com.lhb.github.io.utilbox.handler.MatchEngineEquivalenceTest.randomText;
+import static com.lhb.github.io.utilbox.handler.MatchEngineEquivalenceTest.randomWords;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 流式替换与整段文本替换的结果一致，包括跨越缓冲区边界、从已写出的前文开始的白名单短语
+ *
+ * @author lihuibin
+ */
+class SensitiveWordFilterWriterTest {
+
+    @Test
+    void allowPhraseAcrossBufferBoundary() throws IOException {
+        Set<String> words = new HashSet<>();
+        words.add("苏大");
+        Set<String> phrases = new HashSet<>();
+        phrases.add("江苏大学");
+        WordMatcher matcher = allowList(words, phrases);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 8188; i++) {
+            text.append('x');
+        }
+        text.append("江苏大学");
+        for (int i = 0; i < 100; i++) {
+            text.append('y');
+        }
+        assertEquals(text.toString(), stream(matcher, text.toString(), false, new Random(0)));
+    }
+
+    @Test
+    void sameResultAsWholeText() throws IOException {
+        Random random = new Random(20200726L);
+        for (int round = 0; round < 40; round++) {
+            Set<String> words = randomWords(random, 1 + random.nextInt(10), 4);
+            Set<String> phrases = randomWords(random, 1 + random.nextInt(5), 6);
+            phrases.removeAll(words);
+            WordMatcher[] matchers = {new AhoCorasickMatcher(CompactTrie.build(words)), allowList(words, phrases)};
+            String text = randomText(random, 8000 + random.nextInt(20000));
+            for (WordMatcher matcher : matchers) {
+                for (boolean longest : new boolean[]{false, true}) {
+                    assertEquals(replace(matcher, text, longest), stream(matcher, text, longest, random), words + " " + phrases);
+                }
+            }
+        }
+    }
+
+    /**
+     * 随机长度分块写入，中间随机flush
+     */
+    private static String stream(WordMatcher matcher, String text, boolean longest, Random random) throws IOException {
+        StringWriter out = new StringWriter();
+        try (SensitiveWordFilterWriter writer = new SensitiveWordFilterWriter(out, matcher, longest, '*')) {
+            for (int off = 0; off < text.length(); ) {
+                int len = Math.min(text.length() - off, 1 + random.nextInt(3000));
+                writer.write(text, off, len);
+                off += len;
+                if (random.nextInt(4) == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static String replace(WordMatcher matcher, String text, boolean longest) {
+        char[] chars = text.toCharArray();
+        matcher.match(text, longest, (start, end, wordId) -> {
+            for (int i = start; i < end; i++) {
+                chars[i] = '*';
+            }
+        });
+        return new String(chars);
+    }
+
+    static WordMatcher allowList(Set<String> words, Set<String> phrases) {
+        Set<String> all = new HashSet<>(words);
+        all.addAll(phrases);
+        WordMatcher base = new AhoCorasickMatcher(CompactTrie.build(all));
+        BitSet allowed = new BitSet();
+        for (String phrase : phrases) {
+            allowed.set(base.getWordId(phrase));
+        }
+        return new AllowListMatcher(base, allowed);
+    }
+}
@@ -0,0 +1,133 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 白名单短语覆盖的敏感词与逐位置穷举的结果一致，带前文匹配时从前文开始的白名单短语同样可以覆盖之后的敏感词
+ *
+ * @author lihuibin
+ */
+class AllowListMatcherTest {
+    private static final String ALPHABET = "ab江苏大学";
+
+    @Test
+    void sameMatchesAsExhaustiveCoverage() {
+        Random random = new Random(20200725L);
+        for (int round = 0; round < 300; round++) {
+            Set<String> words = randomWords(random, 1 + random.nextInt(6), 3);
+            Set<String> phrases = randomWords(random, 1 + random.nextInt(4), 5);
+            // 自动机按结束位置、DFA按开始位置报告所有匹配
+            AllowListMatcher matcher = build(words, phrases, round % 2 == 0);
+            for (int t = 0; t < 30; t++) {
+                String text = random(random, random.nextInt(80));
+                for (boolean longest : new boolean[]{false, true}) {
+                    String message = longest + " " + words + " " + phrases + " " + text;
+                    List<String> expected = select(text, 0, words, phrases, longest);
+                    assertEquals(expected, positions(matcher, text, 0, longest), message);
+                    assertEquals(!expected.isEmpty(), matcher.contains(text, longest), message);
+                    int from = text.isEmpty() ? 0 : random.nextInt(text.length());
+                    List<String> fromExpected = select(text, from, words, phrases, longest);
+                    assertEquals(fromExpected, positions(matcher, text, from, longest), message + " " + from);
+                    assertEquals(!fromExpected.isEmpty(), matcher.contains(text, from, longest, null), message + " " + from);
+                }
+            }
+        }
+    }
+
+    @Test
+    void phraseStartingInContextCoversWord() {
+        Set<String> words = new HashSet<>();
+        words.add("苏大");
+        Set<String> phrases = new HashSet<>();
+        phrases.add("江苏大学");
+        AllowListMatcher matcher = build(words, phrases);
+        assertEquals(new ArrayList<>(), positions(matcher, "江苏大学", 1, false));
+        assertEquals(false, matcher.contains("江苏大学", 1, false, null));
+        List<String> expected = new ArrayList<>();
+        expected.add("0-2");
+        assertEquals(expected, positions(matcher, "苏大学", 0, false));
+    }
+
+    static AllowListMatcher build(Set<String> words, Set<String> phrases) {
+        return build(words, phrases, false);
+    }
+
+    static AllowListMatcher build(Set<String> words, Set<String> phrases, boolean dfa) {
+        Set<String> all = new HashSet<>(words);
+        all.addAll(phrases);
+        CompactTrie trie = CompactTrie.build(all);
+        WordMatcher base = dfa ? new DfaMatcher(trie) : new AhoCorasickMatcher(trie);
+        BitSet allowed = new BitSet();
+        for (String phrase : phrases) {
+            allowed.set(base.getWordId(phrase));
+        }
+        return new AllowListMatcher(base, allowed);
+    }
+
+    private static List<String> positions(WordMatcher matcher, String text, int from, boolean longest) {
+        List<String> positions = new ArrayList<>();
+        matcher.match(text, from, longest, null, (start, end, wordId) -> positions.add(start + "-" + end));
+        return positions;
+    }
+
+    /**
+     * 穷举from之后每个开始位置上没有被白名单短语覆盖的敏感词，按最小或最大匹配从左到右选出互不重叠的匹配
+     */
+    private static List<String> select(String text, int from, Set<String> words, Set<String> phrases, boolean longest) {
+        List<String> positions = new ArrayList<>();
+        for (int i = from; i < text.length(); i++) {
+            int best = 0;
+            for (int end = i + 1; end <= text.length(); end++) {
+                String candidate = text.substring(i, end);
+                if (!words.contains(candidate) || phrases.contains(candidate) || covered(text, i, end, phrases)) {
+                    continue;
+                }
+                best = end - i;
+                if (!longest) {
+                    break;
+                }
+            }
+            if (best > 0) {
+                positions.add(i + "-" + (i + best));
+                i = i + best - 1;
+            }
+        }
+        return positions;
+    }
+
+    private static boolean covered(String text, int start, int end, Set<String> phrases) {
+        for (int s = 0; s <= start; s++) {
+            for (int e = end; e <= text.length(); e++) {
+                if (phrases.contains(text.substring(s, e))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> randomWords(Random random, int count, int maxLength) {
+        Set<String> words = new HashSet<>();
+        while (words.size() < count) {
+            words.add(random(random, 1 + random.nextInt(maxLength)));
+        }
+        return words;
+    }
+
+    private static String random(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 匹配循环中的字符规范化与先规范化文本再匹配的结果一致，并且返回的是原文中的位置
+ *
+ * @author lihuibin
+ */
+class CharNormalizerTest {
+    /**
+     * 包含全角、大写、繁体和干扰字符，规范化后落在“ab中国”之中
+     */
+    private static final String TEXT_ALPHABET = "abAＢ中國国* -";
+    private static final String WORD_ALPHABET = "abAB中國国";
+
+    @Test
+    void sameOffsetsAsPreNormalizedText() {
+        Map<Character, Character> mapping = Collections.singletonMap('國', '国');
+        Random random = new Random(20200801L);
+        for (int round = 0; round < 300; round++) {
+            boolean withNoise = round % 2 == 0;
+            CharNormalizer normalizer = CharNormalizer.of(true, true, mapping, withNoise ? "* -" : null, Integer.MAX_VALUE);
+            Set<String> words = new HashSet<>();
+            for (int i = 1 + random.nextInt(10); i > 0; i--) {
+                String word = normalizer.normalize(random(random, WORD_ALPHABET, 1 + random.nextInt(4)));
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+            CompactTrie trie = CompactTrie.build(words);
+            WordMatcher reference = new DfaMatcher(trie);
+            WordMatcher[] matchers = {new DfaMatcher(trie, normalizer), new AhoCorasickMatcher(trie, false, normalizer)};
+            for (int t = 0; t < 50; t++) {
+                String text = random(random, withNoise ? TEXT_ALPHABET : WORD_ALPHABET, random.nextInt(80));
+                // 对照组：规范化并去掉干扰字符后匹配，再把位置映射回原文
+                StringBuilder normalized = new StringBuilder();
+                List<Integer> offsets = new ArrayList<>();
+                for (int i = 0; i < text.length(); i++) {
+                    char c = normalizer.normalize(text.charAt(i));
+                    if (c != CharNormalizer.NOISE) {
+                        normalized.append(c);
+                        offsets.add(i);
+                    }
+                }
+                for (boolean longest : new boolean[]{false, true}) {
+                    List<String> expected = new ArrayList<>();
+                    reference.match(normalized, longest, null,
+                            (start, end, wordId) -> expected.add(offsets.get(start) + "-" + (offsets.get(end - 1) + 1)));
+                    for (WordMatcher matcher : matchers) {
+                        List<String> actual = new ArrayList<>();
+                        matcher.match(text, longest, null, (start, end, wordId) -> actual.add(start + "-" + end));
+                        assertEquals(expected, actual, matcher.getClass().getSimpleName() + " " + longest + " " + words + " " + text);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void noiseLimitPerMatch() {
+        CharNormalizer normalizer = CharNormalizer.of(false, false, new HashMap<>(), "*", 2);
+        CompactTrie trie = CompactTrie.build(Collections.singleton("中国"));
+        for (WordMatcher matcher : new WordMatcher[]{new DfaMatcher(trie, normalizer), new AhoCorasickMatcher(trie, false, normalizer)}) {
+            List<String> matches = new ArrayList<>();
+            matcher.match("*中**国 中***国", false, null, (start, end, wordId) -> matches.add(start + "-" + end));
+            assertEquals(Collections.singletonList("1-5"), matches, matcher.getClass().getSimpleName());
+        }
+    }
+
+    private static String random(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
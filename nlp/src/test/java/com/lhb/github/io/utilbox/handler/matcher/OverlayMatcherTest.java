@@ -0,0 +1,128 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 在基础词库上增删词得到的增量匹配引擎与用增删后的词重新构建的Aho-Corasick匹配引擎结果一致
+ *
+ * @author lihuibin
+ */
+class OverlayMatcherTest {
+    private static final String ALPHABET = "abcA中国人*";
+
+    @Test
+    void sameMatchesAsRebuiltMatcher() {
+        Random random = new Random(20200801L);
+        CharNormalizer[] normalizers = {null, CharNormalizer.of(true, true, null, "*", 2)};
+        for (int round = 0; round < 300; round++) {
+            CharNormalizer normalizer = normalizers[round % normalizers.length];
+            Set<String> words = new HashSet<>();
+            while (words.size() < 1 + random.nextInt(20)) {
+                String word = normalize(normalizer, random(random, 1 + random.nextInt(5)));
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+            OverlayMatcher overlay = new OverlayMatcher(new AhoCorasickMatcher(CompactTrie.build(words), false, normalizer), normalizer);
+            for (int change = random.nextInt(12); change >= 0; change--) {
+                String word = random(random, 1 + random.nextInt(5));
+                String normalized = normalize(normalizer, word);
+                if (random.nextInt(3) == 0) {
+                    // 删除词库中的词或者随机的词
+                    String removed = words.isEmpty() || random.nextBoolean() ? word : new ArrayList<>(words).get(random.nextInt(words.size()));
+                    overlay = overlay.removeWord(removed);
+                    words.remove(normalize(normalizer, removed));
+                } else if (!normalized.isEmpty()) {
+                    overlay = overlay.addWord(word);
+                    words.add(normalized);
+                }
+            }
+            WordMatcher rebuilt = new AhoCorasickMatcher(CompactTrie.build(words), false, normalizer);
+            assertEquals(rebuilt.size(), overlay.size(), words.toString());
+            for (int t = 0; t < 30; t++) {
+                String text = random(random, random.nextInt(100));
+                int from = text.isEmpty() ? 0 : random.nextInt(text.length());
+                for (boolean longest : new boolean[]{false, true}) {
+                    String message = longest + " " + words + " " + text;
+                    assertEquals(matches(rebuilt, text, 0, longest, null), matches(overlay, text, 0, longest, null), message);
+                    assertEquals(matches(rebuilt, text, from, longest, null), matches(overlay, text, from, longest, null), message + " " + from);
+                    assertEquals(matches(rebuilt, text, 0, longest, withoutA(rebuilt)), matches(overlay, text, 0, longest, withoutA(overlay)), message);
+                    assertEquals(rebuilt.contains(text, longest), overlay.contains(text, longest), message);
+                    assertEquals(rebuilt.contains(text, longest, withoutA(rebuilt)), overlay.contains(text, longest, withoutA(overlay)), message);
+                }
+                assertEquals(all(rebuilt, text), all(overlay, text), words + " " + text);
+            }
+        }
+    }
+
+    @Test
+    void removedThenAddedWordMatchesAgain() {
+        Set<String> words = new HashSet<>();
+        words.add("中国");
+        words.add("中国人");
+        OverlayMatcher overlay = new OverlayMatcher(new AhoCorasickMatcher(CompactTrie.build(words)))
+                .removeWord("中国人").addWord("国人").addWord("中国人");
+        assertEquals("[0-3:中国人]", matches(overlay, "中国人", 0, true, null).toString());
+        assertEquals("[0-2:中国]", matches(overlay, "中国人", 0, false, null).toString());
+        overlay = overlay.removeWord("中国");
+        assertEquals("[0-3:中国人]", matches(overlay, "中国人", 0, false, null).toString());
+    }
+
+    @Test
+    void addedWordIdsResolveToWords() {
+        Set<String> words = new HashSet<>();
+        words.add("中国");
+        OverlayMatcher overlay = new OverlayMatcher(new AhoCorasickMatcher(CompactTrie.build(words)))
+                .addWord("国人").addWord("人民").removeWord("国人").addWord("国人");
+        for (String word : new String[]{"中国", "人民", "国人"}) {
+            int id = overlay.getWordId(word);
+            assertEquals(word, overlay.getWord(id), word + " " + id);
+        }
+        // 基础词库只有编号0，删除后再新增的“国人”从编号1换成编号3，编号1不再对应任何词
+        assertEquals(3, overlay.getWordId("国人"));
+        assertThrows(IllegalArgumentException.class, () -> overlay.getWord(1));
+        assertThrows(IllegalArgumentException.class, () -> overlay.getWord(overlay.getWordIdLimit()));
+    }
+
+    private static String normalize(CharNormalizer normalizer, String word) {
+        return normalizer == null ? word : normalizer.normalize(word);
+    }
+
+    /**
+     * 按词过滤，两个匹配引擎的词编号不同
+     */
+    private static IntPredicate withoutA(WordMatcher matcher) {
+        return wordId -> matcher.getWord(wordId).indexOf('a') < 0;
+    }
+
+    private static List<String> matches(WordMatcher matcher, String text, int from, boolean longest, IntPredicate wordFilter) {
+        List<String> matches = new ArrayList<>();
+        matcher.match(text, from, longest, wordFilter,
+                (start, end, wordId) -> matches.add(start + "-" + end + ":" + matcher.getWord(wordId)));
+        return matches;
+    }
+
+    private static Set<String> all(WordMatcher matcher, String text) {
+        Set<String> matches = new HashSet<>();
+        matcher.matchAll(text, (WordMatchVisitor) (start, end, wordId) -> matches.add(start + "-" + end + ":" + matcher.getWord(wordId)));
+        return matches;
+    }
+
+    private static String random(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.lhb.github.io.utilbox.handler.matcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 模式与普通词一起选出的匹配与逐位置穷举所有候选词再选择的结果一致，模式的匹配由等价的正则表达式穷举
+ *
+ * @author lihuibin
+ */
+class PatternMatcherTest {
+    private static final String ALPHABET = "abc中国";
+
+    @Test
+    void sameMatchesAsExhaustiveSelection() {
+        Random random = new Random(20200720L);
+        for (int round = 0; round < 300; round++) {
+            Set<String> words = new HashSet<>();
+            while (words.size() < 1 + random.nextInt(8)) {
+                words.add(random(random, 1 + random.nextInt(4)));
+            }
+            List<String> sources = new ArrayList<>();
+            List<Pattern> regexes = new ArrayList<>();
+            PatternMatcher.Builder builder = PatternMatcher.builder(null);
+            for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                StringBuilder source = new StringBuilder();
+                StringBuilder regex = new StringBuilder();
+                int elements = 1 + random.nextInt(4);
+                for (int e = 0; e < elements; e++) {
+                    int kind = random.nextInt(6);
+                    if (kind == 0) {
+                        source.append('?');
+                        regex.append('.');
+                    } else if (kind == 1) {
+                        source.append("[ab]");
+                        regex.append("[ab]");
+                    } else if (kind == 2) {
+                        source.append("[^a]");
+                        regex.append("[^a]");
+                    } else if (kind == 3 && e > 0 && e < elements - 1) {
+                        source.append("{0,2}");
+                        regex.append(".{0,2}");
+                    } else {
+                        char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                        source.append(c);
+                        regex.append(Pattern.quote(String.valueOf(c)));
+                    }
+                }
+                if (PatternMatcher.isPattern(source) && !sources.contains(source.toString())) {
+                    builder.add(source.toString());
+                    sources.add(source.toString());
+                    regexes.add(Pattern.compile(regex.toString()));
+                }
+            }
+            CompactTrie trie = CompactTrie.build(words);
+            WordMatcher[] matchers = {builder.build(new AhoCorasickMatcher(trie)), builder.build(new DfaMatcher(trie))};
+            for (int t = 0; t < 30; t++) {
+                String text = random(random, random.nextInt(100));
+                for (boolean longest : new boolean[]{false, true}) {
+                    List<String> expected = select(text, words, regexes, longest);
+                    for (WordMatcher matcher : matchers) {
+                        List<String> actual = new ArrayList<>();
+                        matcher.match(text, longest, null, (start, end, wordId) -> actual.add(start + "-" + end));
+                        String message = longest + " " + words + " " + sources + " " + text;
+                        assertEquals(expected, actual, message);
+                        assertEquals(!expected.isEmpty(), matcher.contains(text, longest), message);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 穷举每个开始位置上的所有候选词，按最小或最大匹配从左到右选出互不重叠的匹配
+     */
+    private static List<String> select(String text, Set<String> words, List<Pattern> regexes, boolean longest) {
+        List<String> positions = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            int best = 0;
+            for (int end = i + 1; end <= text.length(); end++) {
+                String candidate = text.substring(i, end);
+                boolean matched = words.contains(candidate);
+                for (int r = 0; r < regexes.size() && !matched; r++) {
+                    matched = regexes.get(r).matcher(candidate).matches();
+                }
+                if (matched) {
+                    best = end - i;
+                    if (!longest) {
+                        break;
+                    }
+                }
+            }
+            if (best > 0) {
+                positions.add(i + "-" + (i + best));
+                i = i + best - 1;
+            }
+        }
+        return positions;
+    }
+
+    private static String random(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.lhb.github.io.utilbox.handler.sensitiveWord;
+
+import com.lhb.github.io.utilbox.handler.matcher.DictionarySnapshot;
+import com.lhb.github.io.utilbox.handler.source.DictionarySource;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import com.lhb.github.io.utilbox.props.SensitiveWordProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 重新加载词库失败时抛出异常，继续使用当前词库快照
+ *
+ * @author lihuibin
+ */
+class SensitiveWordHandlerReloadTest {
+    private SensitiveWordHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null) {
+            handler.destroy();
+        }
+    }
+
+    @Test
+    void unreadableFileKeepsSnapshot(@TempDir Path dir) throws Exception {
+        Files.write(dir.resolve("default.txt"), "敏感词".getBytes(StandardCharsets.UTF_8));
+        NlpProperties properties = new NlpProperties();
+        properties.setBaseDir("file:" + dir.toAbsolutePath() + "/*.txt");
+        handler = new SensitiveWordHandler(new SensitiveWordProperties(), properties);
+        handler.afterPropertiesSet();
+        handler.onApplicationEvent(null);
+        DictionarySnapshot snapshot = handler.getDictionary();
+        assertEquals(Collections.singleton("敏感词"), handler.getSensitiveWordInText("这是敏感词"));
+
+        // 与词库文件同名的目录可以打开但无法读取，以前会当作空文件加载并发布空词库
+        Files.createDirectory(dir.resolve("broken.txt"));
+        assertThrows(IOException.class, handler::reload);
+        assertSame(snapshot, handler.getDictionary(), "读取失败时不发布新的词库快照");
+        assertEquals(Collections.singleton("敏感词"), handler.getSensitiveWordInText("这是敏感词"));
+    }
+
+    @Test
+    void failingSourceKeepsSnapshot() throws IOException {
+        AtomicBoolean broken = new AtomicBoolean();
+        handler = new SensitiveWordHandler(new SensitiveWordProperties(), new NlpProperties());
+        handler.setDictionarySource(new DictionarySource() {
+            @Override
+            public String getName() {
+                return "test";
+            }
+
+            @Override
+            public long getVersion() {
+                return 1;
+            }
+
+            @Override
+            public long load(int pageSize, PageConsumer consumer) throws IOException {
+                consumer.accept("default", Collections.singletonList("敏感词"));
+                if (broken.get()) {
+                    throw new IOException("connection reset");
+                }
+                return 1;
+            }
+        });
+        handler.onApplicationEvent(null);
+        DictionarySnapshot snapshot = handler.getDictionary();
+
+        broken.set(true);
+        assertThrows(IOException.class, handler::reload);
+        assertSame(snapshot, handler.getDictionary(), "读取失败时不发布新的词库快照");
+        assertEquals(Collections.singleton("敏感词"), handler.getSensitiveWordInText("这是敏感词"));
+    }
+}
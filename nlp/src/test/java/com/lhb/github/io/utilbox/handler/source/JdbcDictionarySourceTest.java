@@ -0,0 +1,195 @@
+package com.lhb.github.io.utilbox.handler.source;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 用H2内存数据库验证按主键分页读取和按版本回放：页的边界落在同一个词的多个分类之间或同一个版本的多行之间时不重复也不遗漏，
+ * 软删除的词在其他分类中仍未删除时回放剩余的分类
+ *
+ * @author lihuibin
+ */
+class JdbcDictionarySourceTest {
+    private static final String TABLE = "nlp_sensitive_word";
+
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+    private final JdbcDictionarySource source = new JdbcDictionarySource(dataSource, TABLE);
+    private Connection keepAlive;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID());
+        // 内存数据库在最后一个连接关闭时销毁
+        keepAlive = dataSource.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("create table " + TABLE + " (word varchar(64) not null, category varchar(32) not null, "
+                    + "version bigint not null, deleted smallint not null default 0, primary key (word, category))");
+        }
+    }
+
+    @AfterEach
+    void dropDatabase() throws SQLException {
+        keepAlive.close();
+    }
+
+    @Test
+    void loadPagesExactlyAtPageSize() throws IOException, SQLException {
+        insert("a", "ad", 1);
+        insert("b", "ad", 1);
+        insert("c", "ad", 2);
+        insert("d", "ad", 2);
+        for (int pageSize : new int[]{1, 2, 4}) {
+            List<Integer> pageSizes = new ArrayList<>();
+            Map<String, List<String>> words = load(pageSize, pageSizes);
+            assertEquals(Collections.singletonMap("ad", Arrays.asList("a", "b", "c", "d")), words, "pageSize " + pageSize);
+            // 最后一页正好是整页时再查询一次空页，空页不回调，词也不重复
+            assertEquals(Collections.nCopies(4 / pageSize, pageSize), pageSizes, "pageSize " + pageSize);
+        }
+        assertEquals(2, source.load(4, (category, page) -> {
+        }));
+    }
+
+    @Test
+    void loadKeysetTiesOnWord() throws IOException, SQLException {
+        insert("a", "ad", 1);
+        insert("a", "abuse", 1);
+        insert("a", "politics", 1);
+        insert("b", "ad", 1);
+        insert("c", "abuse", 1);
+        update("c", "abuse", 2, true);
+        for (int pageSize = 1; pageSize <= 5; pageSize++) {
+            Map<String, List<String>> expected = new LinkedHashMap<>();
+            expected.put("abuse", Collections.singletonList("a"));
+            expected.put("ad", Arrays.asList("a", "b"));
+            expected.put("politics", Collections.singletonList("a"));
+            assertEquals(expected, load(pageSize, new ArrayList<>()), "pageSize " + pageSize);
+        }
+    }
+
+    @Test
+    void replaySoftDeleteKeepsOtherCategories() throws IOException, SQLException {
+        insert("a", "ad", 1);
+        insert("a", "abuse", 1);
+        insert("b", "ad", 1);
+        long watermark = source.load(10, (category, words) -> {
+        });
+        assertEquals(1, watermark);
+
+        update("a", "ad", 2, true);
+        List<String> changes = new ArrayList<>();
+        watermark = source.replay(watermark, 10, (word, categories) -> changes.add(word + categories));
+        assertEquals(Collections.singletonList("a[abuse]"), changes);
+        assertEquals(2, watermark);
+
+        changes.clear();
+        update("a", "abuse", 3, true);
+        insert("b", "abuse", 3);
+        watermark = source.replay(watermark, 10, (word, categories) -> changes.add(word + categories));
+        assertEquals(Arrays.asList("a[]", "b[abuse, ad]"), changes);
+        assertEquals(3, watermark);
+    }
+
+    @Test
+    void replayWatermarkAfterPartialLastPage() throws IOException, SQLException {
+        insert("a", "ad", 1);
+        long watermark = source.load(2, (category, words) -> {
+        });
+        // 同一个版本的多行跨越页的边界
+        insert("b", "ad", 2);
+        insert("b", "abuse", 2);
+        insert("c", "ad", 2);
+        insert("d", "ad", 3);
+        insert("e", "ad", 4);
+        for (int pageSize = 1; pageSize <= 6; pageSize++) {
+            List<String> changes = new ArrayList<>();
+            long replayed = source.replay(watermark, pageSize, (word, categories) -> changes.add(word + categories));
+            assertEquals(4, replayed, "pageSize " + pageSize);
+            assertEquals(Arrays.asList("b[abuse, ad]", "c[ad]", "d[ad]", "e[ad]"), distinct(changes), "pageSize " + pageSize);
+            changes.clear();
+            assertEquals(4, source.replay(replayed, pageSize, (word, categories) -> changes.add(word + categories)));
+            assertEquals(Collections.emptyList(), changes, "pageSize " + pageSize);
+        }
+    }
+
+    @Test
+    void replayPageLargerThanInBatch() throws IOException, SQLException {
+        long watermark = source.load(10, (category, words) -> {
+        });
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            String word = String.format("w%04d", i);
+            insert(word, "ad", 1);
+            if (i % 3 == 0) {
+                insert(word, "abuse", 1);
+            }
+            if (i % 5 == 0) {
+                update(word, "ad", 1, true);
+            }
+            expected.add(word + (i % 3 == 0 ? i % 5 == 0 ? "[abuse]" : "[abuse, ad]" : i % 5 == 0 ? "[]" : "[ad]"));
+        }
+        List<String> changes = new ArrayList<>();
+        assertEquals(1, source.replay(watermark, 2000, (word, categories) -> changes.add(word + categories)));
+        assertEquals(expected, changes);
+    }
+
+    /**
+     * @param pageSizes 每次回调的词数量，所有词在同一个分类中时就是每页的词数量
+     */
+    private Map<String, List<String>> load(int pageSize, List<Integer> pageSizes) throws IOException {
+        Map<String, List<String>> words = new TreeMap<>();
+        source.load(pageSize, (category, page) -> {
+            words.computeIfAbsent(category, key -> new ArrayList<>()).addAll(page);
+            pageSizes.add(page.size());
+        });
+        return words;
+    }
+
+    private static List<String> distinct(List<String> changes) {
+        List<String> result = new ArrayList<>();
+        for (String change : changes) {
+            if (!result.contains(change)) {
+                result.add(change);
+            }
+        }
+        return result;
+    }
+
+    private void insert(String word, String category, long version) throws SQLException {
+        try (PreparedStatement statement = keepAlive.prepareStatement(
+                "insert into " + TABLE + " (word, category, version) values (?, ?, ?)")) {
+            statement.setString(1, word);
+            statement.setString(2, category);
+            statement.setLong(3, version);
+            statement.executeUpdate();
+        }
+    }
+
+    private void update(String word, String category, long version, boolean deleted) throws SQLException {
+        try (PreparedStatement statement = keepAlive.prepareStatement(
+                "update " + TABLE + " set version = ?, deleted = ? where word = ? and category = ?")) {
+            statement.setLong(1, version);
+            statement.setInt(2, deleted ? 1 : 0);
+            statement.setString(3, word);
+            statement.setString(4, category);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.handler.BatchExecutor;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 响应式流中的元素只有大小达到阈值时才切换到批量处理线程池，较小的元素不切换线程，元素顺序不变
+ *
+ * @author lihuibin
+ */
+class ReactiveSensitiveSupportTest {
+    private final BatchExecutor batchExecutor = new BatchExecutor(new NlpProperties());
+    /**
+     * 每个元素被处理时所在的线程
+     */
+    private final Map<Object, String> threads = new ConcurrentHashMap<>();
+
+    @AfterEach
+    void tearDown() {
+        batchExecutor.shutdown();
+    }
+
+    @Test
+    void fluxOffloadsOnlyLargeElements() {
+        ReactiveSensitiveSupport support = new ReactiveSensitiveSupport(batchExecutor, true, 100);
+        String large = String.join("", Collections.nCopies(100, "x"));
+        List<Object> elements = Arrays.asList("small", large, "tiny", new ArrayList<>(Collections.nCopies(200, "y")));
+        List<Object> result = flux(support, elements).collectList().block();
+
+        assertEquals(elements, result, "元素顺序不变");
+        assertEquals(Thread.currentThread().getName(), threads.get("small"));
+        assertEquals(threads.get(large), threads.get("tiny"), "小元素不切换线程，由处理完上一个元素的线程继续处理");
+        assertTrue(threads.get(large).startsWith("nlp-batch-"), threads.get(large));
+        assertTrue(threads.get(elements.get(3)).startsWith("nlp-batch-"), threads.get(elements.get(3)));
+    }
+
+    @Test
+    void monoBelowThresholdStaysOnCaller() {
+        ReactiveSensitiveSupport support = new ReactiveSensitiveSupport(batchExecutor, true, 100);
+        assertEquals("small", mono(support, "small").block());
+        assertEquals(Thread.currentThread().getName(), threads.get("small"));
+
+        String large = String.join("", Collections.nCopies(100, "x"));
+        assertEquals(large, mono(support, large).block());
+        assertTrue(threads.get(large).startsWith("nlp-batch-"), threads.get(large));
+    }
+
+    @Test
+    void offloadDisabled() {
+        ReactiveSensitiveSupport support = new ReactiveSensitiveSupport(batchExecutor, false, 0);
+        String large = String.join("", Collections.nCopies(10_000, "x"));
+        flux(support, Collections.singletonList(large)).blockLast();
+        assertEquals(Thread.currentThread().getName(), threads.get(large));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Flux<Object> flux(ReactiveSensitiveSupport support, List<Object> elements) {
+        return (Flux<Object>) support.apply(Flux.fromIterable(elements), ReactiveSensitiveSupport::sizeOf, this::record);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Object> mono(ReactiveSensitiveSupport support, Object element) {
+        return (Mono<Object>) support.apply(Mono.just(element), ReactiveSensitiveSupport::sizeOf, this::record);
+    }
+
+    private Object record(Object element) {
+        threads.put(element, Thread.currentThread().getName());
+        return element;
+    }
+}
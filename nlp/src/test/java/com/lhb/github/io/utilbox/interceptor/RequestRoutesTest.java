@@ -0,0 +1,118 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.annotation.Sensitive;
+import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 不启动Spring容器，检查接口路径的解析以及{@link SensitiveWord#ignoreApis()}按完整路径、方法路径、Ant风格通配符的匹配
+ *
+ * @author lihuibin
+ */
+class RequestRoutesTest {
+
+    @Test
+    void combineClassPrefix() throws NoSuchMethodException {
+        assertEquals("/api/users/{id}", routes("user").endpoint());
+        assertEquals("/api/a,/api/b", routes("multiple").endpoint());
+        assertEquals("/api", routes("prefixOnly").endpoint());
+        assertEquals("Unmapped#plain", RequestRoutes.of(Unmapped.class.getDeclaredMethod("plain")).endpoint());
+    }
+
+    @Test
+    void exactIgnore() throws NoSuchMethodException {
+        RequestRoutes user = routes("user");
+        assertTrue(user.matches(new String[]{"/api/users/{id}"}), "完整路径");
+        assertTrue(user.matches(new String[]{"/users/{id}"}), "只配置方法路径的旧写法");
+        assertFalse(user.matches(new String[]{"/api/users"}));
+        RequestRoutes create = routes("create");
+        assertTrue(create.matches(new String[]{"/other", "/api/users"}), "任意一个路径命中");
+        // 不是通配模式的路径只按字符串比较，不把映射路径中的变量当作通配符
+        assertFalse(user.matches(new String[]{"/api/users/1"}));
+    }
+
+    @Test
+    void antPatternIgnore() throws NoSuchMethodException {
+        RequestRoutes user = routes("user");
+        assertTrue(user.matches(new String[]{"/api/**"}));
+        assertTrue(user.matches(new String[]{"/api/*/{id}"}));
+        assertTrue(user.matches(new String[]{"/**/users/*"}));
+        assertFalse(user.matches(new String[]{"/admin/**"}));
+        assertFalse(user.matches(new String[]{"/api/*"}), "*只匹配一级路径");
+        assertTrue(routes("multiple").matches(new String[]{"/api/b*"}));
+    }
+
+    @Test
+    void emptyIgnoreMatchesNothing() throws NoSuchMethodException {
+        // 注解的默认值是空字符串，没有映射路径的方法也不能因此被忽略
+        RequestRoutes unmapped = RequestRoutes.of(Unmapped.class.getDeclaredMethod("plain"));
+        assertFalse(unmapped.matches(new String[]{""}));
+        assertFalse(routes("prefixOnly").matches(new String[]{""}));
+        assertFalse(routes("user").matches(new String[0]));
+    }
+
+    @Test
+    void ignoredApisCachedPerMethod() throws NoSuchMethodException {
+        assertSame(routes("user"), routes("user"), "每个方法只解析一次");
+        SensitiveClassPlan.FieldAccessor field = SensitiveClassPlan.of(Comment.class).getFields()[0];
+        Method user = Api.class.getDeclaredMethod("user");
+        Method create = Api.class.getDeclaredMethod("create");
+        // 同一个字段在不同接口上的结果分别缓存，交替查询时互不影响
+        for (int i = 0; i < 3; i++) {
+            assertTrue(field.isIgnored(user));
+            assertFalse(field.isIgnored(create));
+        }
+    }
+
+    private static RequestRoutes routes(String method) throws NoSuchMethodException {
+        return RequestRoutes.of(Api.class.getDeclaredMethod(method));
+    }
+
+    @RequestMapping("/api")
+    static class Api {
+        @GetMapping("/users/{id}")
+        void user() {
+        }
+
+        @PostMapping("users")
+        void create() {
+        }
+
+        @GetMapping({"/a", "/b"})
+        void multiple() {
+        }
+
+        @GetMapping
+        void prefixOnly() {
+        }
+    }
+
+    static class Unmapped {
+        void plain() {
+        }
+    }
+
+    @Sensitive
+    public static class Comment {
+        @SensitiveWord(ignoreApis = "/api/users/*")
+        private String content;
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.annotation.Sensitive;
+import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 不启动Spring容器，检查每个类解析出的处理计划：需要替换的字段和需要继续遍历的子对象字段
+ *
+ * @author lihuibin
+ */
+class SensitiveClassPlanTest {
+
+    @Test
+    void sensitiveStringFieldsOnly() {
+        SensitiveClassPlan plan = SensitiveClassPlan.of(Article.class);
+        assertEquals(Collections.singletonList("title"), fieldNames(plan), "只替换有getter/setter的String类型敏感词字段");
+        assertEquals(Collections.emptyList(), childNames(plan));
+        assertEquals("#", plan.getFields()[0].getReplacement());
+        assertEquals(Collections.singletonList("ad"), Arrays.asList(plan.getFields()[0].getCategories()));
+    }
+
+    @Test
+    void classWithoutSensitiveAnnotation() {
+        assertTrue(SensitiveClassPlan.of(Unmarked.class).isLeaf(), "没有@Sensitive的类不替换@SensitiveWord字段");
+    }
+
+    @Test
+    void jdkTypesAreLeaves() {
+        for (Class<?> type : new Class<?>[]{String.class, Integer.class, ArrayList.class, Map.class, TimeUnit.class, Article[].class}) {
+            assertTrue(SensitiveClassPlan.of(type).isLeaf(), type.getName());
+        }
+        assertSame(SensitiveClassPlan.of(Article.class), SensitiveClassPlan.of(Article.class), "每个类只解析一次");
+    }
+
+    @Test
+    void finalFields() {
+        SensitiveClassPlan plan = SensitiveClassPlan.of(Frozen.class);
+        assertEquals(Collections.emptyList(), fieldNames(plan), "没有setter的final敏感词字段不替换");
+        assertEquals(Collections.singletonList("articles"), childNames(plan), "final的集合字段照常遍历");
+    }
+
+    @Test
+    void inheritedFields() {
+        SensitiveClassPlan plan = SensitiveClassPlan.of(Child.class);
+        // 与逐个处理字段时一样只替换运行时类型自己声明的敏感词字段，父类中的子对象字段照常遍历
+        assertEquals(Collections.singletonList("childText"), fieldNames(plan));
+        assertEquals(Collections.singletonList("parentArticle"), childNames(plan));
+        assertEquals(Collections.singletonList("parentText"), fieldNames(SensitiveClassPlan.of(Parent.class)));
+    }
+
+    @Test
+    void containerFieldsByElementType() {
+        SensitiveClassPlan plan = SensitiveClassPlan.of(Containers.class);
+        assertEquals(Arrays.asList("articleList", "articleMap", "articleArray", "nestedList", "rawList", "object", "generic"),
+                childNames(plan));
+    }
+
+    @Test
+    void nestedBeans() {
+        SensitiveClassPlan plan = SensitiveClassPlan.of(Page.class);
+        assertEquals(Arrays.asList("wrapper", "deep"), childNames(plan), "只遍历可能间接到达敏感词字段的普通对象");
+        assertTrue(SensitiveClassPlan.of(Plain.class).isLeaf());
+        assertEquals(Collections.singletonList("article"), childNames(SensitiveClassPlan.of(Wrapper.class)));
+    }
+
+    static List<String> fieldNames(SensitiveClassPlan plan) {
+        List<String> names = new ArrayList<>();
+        for (SensitiveClassPlan.FieldAccessor field : plan.getFields()) {
+            names.add(field.getName());
+        }
+        return names;
+    }
+
+    static List<String> childNames(SensitiveClassPlan plan) {
+        List<String> names = new ArrayList<>();
+        for (SensitiveClassPlan.ChildAccessor child : plan.getChildren()) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+
+    @Sensitive
+    public static class Article {
+        @SensitiveWord(categories = "ad", replacement = "#")
+        private String title;
+        private String author;
+        @SensitiveWord
+        private Integer views;
+        @SensitiveWord
+        private String noAccessor;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+    }
+
+    public static class Unmarked {
+        @SensitiveWord
+        private String text;
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+    }
+
+    @Sensitive
+    public static class Frozen {
+        @SensitiveWord
+        private final String code;
+        private final List<Article> articles = new ArrayList<>();
+
+        public Frozen(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public List<Article> getArticles() {
+            return articles;
+        }
+    }
+
+    @Sensitive
+    public static class Parent {
+        @SensitiveWord
+        private String parentText;
+        private Article parentArticle;
+
+        public String getParentText() {
+            return parentText;
+        }
+
+        public void setParentText(String parentText) {
+            this.parentText = parentText;
+        }
+
+        public Article getParentArticle() {
+            return parentArticle;
+        }
+
+        public void setParentArticle(Article parentArticle) {
+            this.parentArticle = parentArticle;
+        }
+    }
+
+    @Sensitive
+    public static class Child extends Parent {
+        @SensitiveWord
+        private String childText;
+
+        public String getChildText() {
+            return childText;
+        }
+
+        public void setChildText(String childText) {
+            this.childText = childText;
+        }
+    }
+
+    public static class Containers<T> {
+        List<Article> articleList;
+        List<String> stringList;
+        Map<String, Article> articleMap;
+        Map<Article, String> articleKeys;
+        Article[] articleArray;
+        String[] stringArray;
+        List<List<Article>> nestedList;
+        @SuppressWarnings("rawtypes")
+        List rawList;
+        Object object;
+        T generic;
+        TimeUnit unit;
+        int count;
+    }
+
+    public static class Plain {
+        String name;
+        List<String> tags;
+    }
+
+    public static class Wrapper {
+        Article article;
+    }
+
+    public static class Deep {
+        Wrapper wrapper;
+    }
+
+    public static class Page {
+        Wrapper wrapper;
+        Plain plain;
+        Deep deep;
+    }
+}
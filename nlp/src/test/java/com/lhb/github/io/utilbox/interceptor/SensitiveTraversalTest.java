@@ -0,0 +1,182 @@
+package com.lhb.github.io.utilbox.interceptor;
+
+import com.lhb.github.io.utilbox.annotation.Sensitive;
+import com.lhb.github.io.utilbox.annotation.SensitiveWord;
+import com.lhb.github.io.utilbox.handler.BatchExecutor;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 不启动Spring容器，直接遍历对象图：集合、Map的值、数组和嵌套对象中的敏感词字段都被替换；
+ * 分段并行时子对象引用回上层对象不会无限递归，同一个对象出现在多段中时只替换一次
+ *
+ * @author lihuibin
+ */
+class SensitiveTraversalTest {
+    private static final int PARALLEL_SIZE = 3000;
+
+    private final NlpProperties nlpProperties = new NlpProperties();
+    private final BatchExecutor batchExecutor;
+    private final ConcurrentHashMap<String, AtomicInteger> replaced = new ConcurrentHashMap<>();
+
+    SensitiveTraversalTest() {
+        nlpProperties.setBatchParallelism(4);
+        nlpProperties.setBatchParallelThreshold(1000);
+        nlpProperties.setBatchChunkSize(64);
+        batchExecutor = new BatchExecutor(nlpProperties);
+    }
+
+    @AfterEach
+    void shutdown() {
+        batchExecutor.shutdown();
+    }
+
+    @Test
+    void parallelChunksDoNotRevisitCyclicOwner() throws NoSuchMethodException {
+        Owner owner = new Owner();
+        owner.setName("owner");
+        for (int i = 0; i < PARALLEL_SIZE; i++) {
+            Item item = new Item();
+            item.setTitle("item" + i);
+            item.owner = owner;
+            owner.items.add(item);
+        }
+        traversal().traverse(owner);
+        assertEquals("*owner", owner.getName());
+        assertEquals(1, replaced.get("owner").get());
+        for (int i = 0; i < PARALLEL_SIZE; i++) {
+            assertEquals("*item" + i, owner.items.get(i).getTitle());
+            assertEquals(1, replaced.get("item" + i).get());
+        }
+    }
+
+    @Test
+    void sharedElementReplacedOnceAcrossChunks() throws NoSuchMethodException {
+        Leaf shared = new Leaf();
+        shared.setText("shared");
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_SIZE; i++) {
+            if (i % 2 == 0) {
+                items.add(shared);
+            } else {
+                Leaf leaf = new Leaf();
+                leaf.setText("leaf" + i);
+                items.add(leaf);
+            }
+        }
+        traversal().traverse(items);
+        assertEquals("*shared", shared.getText());
+        assertEquals(1, replaced.get("shared").get());
+        assertEquals(PARALLEL_SIZE / 2 + 1, replaced.size());
+    }
+
+    @Test
+    void containersAndNestedBeans() throws NoSuchMethodException {
+        SensitiveClassPlanTest.Containers<SensitiveClassPlanTest.Article> containers = new SensitiveClassPlanTest.Containers<>();
+        containers.articleList = Collections.singletonList(article("list"));
+        containers.articleMap = Collections.singletonMap("key", article("map"));
+        containers.articleArray = new SensitiveClassPlanTest.Article[]{article("array")};
+        containers.nestedList = Collections.singletonList(Collections.singletonList(article("nested")));
+        containers.rawList = Collections.singletonList(article("raw"));
+        containers.object = article("object");
+        containers.generic = article("generic");
+        SensitiveClassPlanTest.Deep deep = new SensitiveClassPlanTest.Deep();
+        deep.wrapper = new SensitiveClassPlanTest.Wrapper();
+        deep.wrapper.article = article("deep");
+        SensitiveClassPlanTest.Frozen frozen = new SensitiveClassPlanTest.Frozen("code");
+        frozen.getArticles().add(article("frozen"));
+        SensitiveClassPlanTest.Child child = new SensitiveClassPlanTest.Child();
+        child.setChildText("child");
+        child.setParentText("parent");
+        child.setParentArticle(article("inherited"));
+
+        traversal().traverse(Arrays.asList(containers, deep, frozen, child));
+        assertEquals("*list", containers.articleList.get(0).getTitle());
+        assertEquals("*map", containers.articleMap.get("key").getTitle());
+        assertEquals("*array", containers.articleArray[0].getTitle());
+        assertEquals("*nested", containers.nestedList.get(0).get(0).getTitle());
+        assertEquals("*raw", ((SensitiveClassPlanTest.Article) containers.rawList.get(0)).getTitle());
+        assertEquals("*object", ((SensitiveClassPlanTest.Article) containers.object).getTitle());
+        assertEquals("*generic", containers.generic.getTitle());
+        assertEquals("*deep", deep.wrapper.article.getTitle());
+        assertEquals("code", frozen.getCode());
+        assertEquals("*frozen", frozen.getArticles().get(0).getTitle());
+        assertEquals("*child", child.getChildText());
+        assertEquals("parent", child.getParentText(), "父类中的敏感词字段不替换");
+        assertEquals("*inherited", child.getParentArticle().getTitle());
+    }
+
+    private static SensitiveClassPlanTest.Article article(String title) {
+        SensitiveClassPlanTest.Article article = new SensitiveClassPlanTest.Article();
+        article.setTitle(title);
+        return article;
+    }
+
+    private SensitiveTraversal traversal() throws NoSuchMethodException {
+        return new SensitiveTraversal(endpoint(), this::replace, batchExecutor);
+    }
+
+    static Method endpoint() throws NoSuchMethodException {
+        return SensitiveTraversalTest.class.getDeclaredMethod("endpoint");
+    }
+
+    private String replace(String text, String[] categories, String replacement) {
+        replaced.computeIfAbsent(text, key -> new AtomicInteger()).incrementAndGet();
+        return "*" + text;
+    }
+
+    @Sensitive
+    public static class Owner {
+        @SensitiveWord
+        private String name;
+        private final List<Item> items = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Sensitive
+    public static class Item {
+        @SensitiveWord
+        private String title;
+        private Owner owner;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+    }
+
+    @Sensitive
+    public static class Leaf {
+        @SensitiveWord
+        private String text;
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.lhb.github.io.utilbox.web;
+
+import com.lhb.github.io.utilbox.handler.sensitiveWord.SensitiveWordHandler;
+import com.lhb.github.io.utilbox.handler.source.DictionarySource;
+import com.lhb.github.io.utilbox.props.NlpProperties;
+import com.lhb.github.io.utilbox.props.SensitiveWordProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 按字节流写出的响应，没有指定编码时按UTF-8解码后替换敏感词
+ *
+ * @author lihuibin
+ */
+class SensitiveWordResponseWrapperTest {
+    private SensitiveWordHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new SensitiveWordHandler(new SensitiveWordProperties(), new NlpProperties());
+        handler.setDictionarySource(new DictionarySource() {
+            @Override
+            public String getName() {
+                return "test";
+            }
+
+            @Override
+            public long getVersion() {
+                return 1;
+            }
+
+            @Override
+            public long load(int pageSize, PageConsumer consumer) {
+                consumer.accept("default", Collections.singletonList("敏感词"));
+                return 1;
+            }
+        });
+        handler.onApplicationEvent(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.destroy();
+    }
+
+    @Test
+    void utf8JsonWithoutCharset() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        SensitiveWordResponseWrapper wrapper = new SensitiveWordResponseWrapper(response("application/json", body), handler);
+        byte[] json = "{\"msg\":\"这是敏感词\"}".getBytes(StandardCharsets.UTF_8);
+        // 逐字节写入，多字节字符跨越写入边界
+        for (byte b : json) {
+            wrapper.getOutputStream().write(b);
+        }
+        wrapper.finish();
+        assertEquals("{\"msg\":\"这是***\"}", new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void explicitCharset() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        SensitiveWordResponseWrapper wrapper = new SensitiveWordResponseWrapper(response("text/plain;charset=GBK", body), handler);
+        wrapper.getOutputStream().write("这是敏感词".getBytes("GBK"));
+        wrapper.finish();
+        assertEquals("这是***", new String(body.toByteArray(), "GBK"));
+    }
+
+    /**
+     * 只实现响应类型、编码和输出流的响应，未指定编码时与容器一样返回ISO-8859-1
+     */
+    private static HttpServletResponse response(String contentType, OutputStream body) {
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+        int charset = contentType.indexOf("charset=");
+        String encoding = charset < 0 ? "ISO-8859-1" : contentType.substring(charset + "charset=".length());
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getContentType":
+                            return contentType;
+                        case "getCharacterEncoding":
+                            return encoding;
+                        case "getOutputStream":
+                            return out;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}